@@ -0,0 +1,53 @@
+package com.example.demopugspring.engine;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Random;
+
+/**
+ * Loads the sample messages under {@code src/jmh/resources/corpus}. Files keep
+ * one segment per line; lines are turned into HL7 segment separators and the
+ * {@code @PDF_BASE64@} placeholder is expanded into a base64 encoded PDF-like
+ * payload, like the ones embedded in our ORU^R01 results.
+ */
+final class BenchmarkCorpus {
+
+	private static final String PDF_PLACEHOLDER = "@PDF_BASE64@";
+	private static final int PDF_SIZE = 256 * 1024;
+
+	private BenchmarkCorpus() {
+	}
+
+	static String load(String name) {
+		return load(name, PDF_SIZE);
+	}
+
+	/**
+	 * Loads the sample with a PDF payload of the given size, in bytes before
+	 * base64 encoding.
+	 */
+	static String load(String name, int pdfSize) {
+		try (InputStream input = BenchmarkCorpus.class.getResourceAsStream("/corpus/" + name + ".hl7")) {
+			if (input == null) {
+				throw new IllegalArgumentException("No sample message named " + name);
+			}
+			String message = new String(input.readAllBytes(), StandardCharsets.ISO_8859_1)
+					.replace("\r\n", "\r")
+					.replace('\n', '\r');
+			return message.replace(PDF_PLACEHOLDER, pdfPayload(pdfSize));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static String pdfPayload(int size) {
+		byte[] pdf = new byte[size];
+		new Random(42).nextBytes(pdf);
+		byte[] header = "%PDF-1.4\n".getBytes(StandardCharsets.ISO_8859_1);
+		System.arraycopy(header, 0, pdf, 0, header.length);
+		return Base64.getEncoder().encodeToString(pdf);
+	}
+}
@@ -0,0 +1,232 @@
+package com.example.demopugspring.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.core.env.StandardEnvironment;
+
+import com.example.demopugspring.engine.metrics.MappingMetrics;
+import com.example.demopugspring.engine.operation.OperationRegistry;
+import com.example.demopugspring.engine.plan.IntegrationPlan;
+import com.example.demopugspring.engine.plan.IntegrationPlanCache;
+import com.example.demopugspring.engine.plan.IntegrationPlanKey;
+import com.example.demopugspring.engine.trace.MappingTraceBuffer;
+import com.example.demopugspring.factory.ContextSingleton;
+import com.example.demopugspring.model.Mapper;
+import com.example.demopugspring.model.Mapper.Category;
+import com.example.demopugspring.model.Message.Version;
+import com.example.demopugspring.properties.Codes;
+import com.example.demopugspring.properties.CountryCodes;
+import com.example.demopugspring.properties.FacilitiesCodes;
+import com.example.demopugspring.properties.IdentificationCodes;
+import com.example.demopugspring.properties.InsurersCodes;
+import com.example.demopugspring.properties.MarriageStatusCodes;
+
+import ca.uhn.hl7v2.HL7Exception;
+import ca.uhn.hl7v2.model.Message;
+import ca.uhn.hl7v2.util.Terser;
+
+/**
+ * Builds a {@link MapperEngine} outside of Spring, with an in-memory plan for
+ * each sample of {@link BenchmarkCorpus}, so the benchmarks never reach the
+ * database.
+ * </p>
+ * The plans use one mapper of every category {@link MapperEngine} handles,
+ * written against the groups of the outgoing 2.5.1 structure the way our
+ * integrations are, plus a mapper over the repeating groups of each message
+ * type. The code tables are loaded from the property files the application
+ * loads.
+ */
+final class BenchmarkIntegrations {
+
+	/** Categories {@link MapperEngine#apply} handles, in the order of the plans */
+	static final List<Category> CATEGORIES = List.of(Category.TEXT, Category.FIELD, Category.NUMERIC, Category.TRANSCODING, Category.JOIN,
+			Category.ADD_SNS, Category.SWAP, Category.CONTACT, Category.CLEAR_IF, Category.REPLACE, Category.TEXT_IF, Category.SEGMENT);
+
+	private static final String OUTGOING_CHARACTER_SET = "8859/1";
+	private static final AtomicLong MAPPER_IDS = new AtomicLong();
+
+	private BenchmarkIntegrations() {
+	}
+
+	/**
+	 * Returns an engine with the plans of the given samples already cached.
+	 */
+	static MapperEngine engine(String... samples) throws HL7Exception {
+		MapperEngine engine = new MapperEngine();
+		engine.integrationPlanCache = new IntegrationPlanCache();
+		engine.operationRegistry = new OperationRegistry();
+		engine.pipeParser = ContextSingleton.getInstance().getPipeParser();
+		engine.mappingMetrics = new MappingMetrics();
+		engine.mappingTraceBuffer = new MappingTraceBuffer(50);
+
+		engine.countryCodes = load(new CountryCodes());
+		engine.identificationCodes = load(new IdentificationCodes());
+		engine.marriageStatusCodes = load(new MarriageStatusCodes());
+		engine.facilitiesCodes = load(new FacilitiesCodes());
+		engine.insurersCodes = load(new InsurersCodes());
+
+		long integrationId = 1;
+		for (String sample : samples) {
+			Message message = parse(sample);
+			Terser msg = new Terser(message);
+			IntegrationPlanKey key = new IntegrationPlanKey(msg.get("MSH-9-1"), msg.get("MSH-9-2"), msg.get("MSH-12"), msg.get("MSH-3-1"),
+					msg.get("MSH-5-1"));
+			com.example.demopugspring.model.Message resultMessage = new com.example.demopugspring.model.Message(msg.get("MSH-9-1"),
+					msg.get("MSH-9-2"), Version.v251);
+			engine.integrationPlanCache.put(key, IntegrationPlan.of(integrationId++, resultMessage, mappers(sample)));
+		}
+		return engine;
+	}
+
+	/**
+	 * Returns the fixed sample parsed with its own version.
+	 */
+	static Message parse(String sample) throws HL7Exception {
+		return ContextSingleton.getInstance().getPipeParser().parse(MapperEngine.fixMessage(BenchmarkCorpus.load(sample)));
+	}
+
+	/**
+	 * Returns the fixed sample parsed into the outgoing 2.5.1 structure, the
+	 * message the mappers write to.
+	 */
+	static Message parseOutgoing(String sample) throws HL7Exception {
+		return ContextSingleton.getInstance().getPipeParser().parse(retarget(MapperEngine.fixMessage(BenchmarkCorpus.load(sample))));
+	}
+
+	/**
+	 * Returns the fixed message with the header {@link MapperEngine} gives it
+	 * before parsing the outgoing message.
+	 */
+	static String retarget(String fixed) throws HL7Exception {
+		Terser msg = new Terser(ContextSingleton.getInstance().getPipeParser().parse(fixed));
+		return MessageHeaderRewriter.retarget(fixed, msg.get("MSH-9-1"), msg.get("MSH-9-2"), Version.v251.getValue(), OUTGOING_CHARACTER_SET);
+	}
+
+	/**
+	 * Returns the plan of the sample: one mapper per category and the mappers
+	 * over its repeating groups.
+	 */
+	static List<Mapper> mappers(String sample) {
+		List<Mapper> mappers = new ArrayList<>();
+		for (Category category : CATEGORIES) {
+			if (category != Category.SEGMENT) {
+				mappers.add(mapper(sample, category));
+			}
+		}
+		switch (sample) {
+		case "ADT_A31":
+			mappers.add(mapper(Category.TRANSCODING, "INSURERS-CODES", "/INSURANCE/IN1-3"));
+			break;
+		case "ORM_O01":
+			mappers.add(mapper(Category.TEXT, "US", "/ORDER(#)/ORDER_DETAIL/OBR-24"));
+			break;
+		case "OMG_O19":
+			mappers.add(mapper(Category.TEXT, "LAB", "/ORDER(#)/OBR-24"));
+			break;
+		case "ORU_R01":
+			mappers.add(mapper(Category.TEXT, "F", "/PATIENT_RESULT/ORDER_OBSERVATION(#)/OBSERVATION(#)/OBX-11"));
+			break;
+		default:
+			throw new IllegalArgumentException("No plan for sample " + sample);
+		}
+		return mappers;
+	}
+
+	/**
+	 * Returns the mapper of the given category used in the plan of the sample.
+	 */
+	static Mapper mapper(String sample, Category category) {
+		String pid = patientGroup(sample) + "PID";
+		switch (category) {
+		case TEXT:
+			return mapper(category, "EHCOS", "/MSH-5");
+		case FIELD:
+			return mapper(category, "/MSH-4", "/MSH-6");
+		case NUMERIC:
+			return mapper(category, null, pid + "-19");
+		case TRANSCODING:
+			return mapper(category, "IDENTIFICATIONS", pid + "-4(#)-4");
+		case JOIN:
+			return mapper(category, pid + "-4", pid + "-3");
+		case ADD_SNS:
+			return mapper(category, pid + "-19", pid + "-3");
+		case SWAP:
+			return mapper(category, pid + "-5-1", pid + "-5-2");
+		case CONTACT:
+			return mapper(category, null, pid);
+		case CLEAR_IF:
+			return mapper(category, "CUFC", pid + "-3(#)-4");
+		case REPLACE:
+			return mapper(category, "(00)+", pid + "-7");
+		case TEXT_IF:
+			return mapper(category, "N", pid + "-30", pid + "-8", "M|F");
+		case SEGMENT:
+			return mapper(category, null, visitGroup(sample) + "PV1");
+		default:
+			throw new IllegalArgumentException("No benchmark mapper for " + category);
+		}
+	}
+
+	/**
+	 * Fails the setup of a benchmark whose mappers didn't apply cleanly, since
+	 * it would be measuring the error path.
+	 */
+	static void checkNoErrors(String what, List<MapperError> errors) {
+		if (!errors.isEmpty()) {
+			StringBuilder detail = new StringBuilder(what).append(" doesn't map cleanly:");
+			for (MapperError error : errors) {
+				detail.append(' ').append(error.getField()).append(": ").append(error.getError()).append(';');
+			}
+			throw new IllegalStateException(detail.toString());
+		}
+	}
+
+	/**
+	 * Returns a mapper with an id of its own, as saved mappers have.
+	 */
+	private static Mapper mapper(Category category, String value, String... keys) {
+		Mapper mapper = new Mapper(Arrays.asList(keys), value, category);
+		mapper.setId(MAPPER_IDS.incrementAndGet());
+		return mapper;
+	}
+
+	/**
+	 * Returns the path of the group holding the PID of the sample.
+	 */
+	static String patientGroup(String sample) {
+		switch (sample) {
+		case "ADT_A31":
+			return "/";
+		case "ORM_O01":
+		case "OMG_O19":
+			return "/PATIENT/";
+		case "ORU_R01":
+			return "/PATIENT_RESULT/PATIENT/";
+		default:
+			throw new IllegalArgumentException("No plan for sample " + sample);
+		}
+	}
+
+	private static String visitGroup(String sample) {
+		switch (sample) {
+		case "ADT_A31":
+			return "/";
+		case "ORM_O01":
+		case "OMG_O19":
+			return "/PATIENT/PATIENT_VISIT/";
+		case "ORU_R01":
+			return "/PATIENT_RESULT/PATIENT/VISIT/";
+		default:
+			throw new IllegalArgumentException("No plan for sample " + sample);
+		}
+	}
+
+	private static <T extends Codes> T load(T codes) {
+		codes.setEnvironment(new StandardEnvironment());
+		codes.loadTable();
+		return codes;
+	}
+}
@@ -0,0 +1,60 @@
+package com.example.demopugspring.engine;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.demopugspring.factory.ContextSingleton;
+
+import ca.uhn.hl7v2.HL7Exception;
+import ca.uhn.hl7v2.model.Message;
+import ca.uhn.hl7v2.util.Terser;
+
+/**
+ * Compares encoding the outgoing message and removing its empty repetitions
+ * afterwards, {@link MapperEngine#cleanMessage(String)}, with
+ * {@link CleanPipeEncoder}, which never writes them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class CleanPipeEncoderBenchmark {
+
+	@Param({ "ADT_A31", "ORU_R01" })
+	public String sample;
+
+	private Message message;
+
+	@Setup
+	public void setup() throws HL7Exception {
+		message = ContextSingleton.getInstance().getPipeParser().parse(MapperEngine.fixMessage(BenchmarkCorpus.load(sample)));
+		// Leave empty repetitions behind, like the mappers that move identifiers do
+		Terser terser = new Terser(message);
+		String pid = BenchmarkIntegrations.patientGroup(sample) + "PID";
+		int identifiers = terser.getSegment(pid).getField(3).length;
+		terser.set(pid + "-3(" + identifiers + ")-1", "");
+		terser.set(pid + "-3(" + (identifiers + 1) + ")-1", "JMS43417401");
+		terser.set(pid + "-13(" + terser.getSegment(pid).getField(13).length + ")-1", "");
+	}
+
+	@Benchmark
+	public String encodeAndClean() throws HL7Exception {
+		return MapperEngine.cleanMessage(message.encode());
+	}
+
+	@Benchmark
+	public String cleanEncode() throws HL7Exception {
+		return CleanPipeEncoder.encode(message);
+	}
+}
@@ -0,0 +1,48 @@
+package com.example.demopugspring.engine;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ca.uhn.hl7v2.HL7Exception;
+
+/**
+ * End to end {@link MapperEngine#run(String)} over each sample message, with
+ * its integration plan already cached. See {@link MapperEngineStageBenchmark}
+ * for the cost of each stage.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class MapperEngineBenchmark {
+
+	@Param({ "ADT_A31", "ORM_O01", "OMG_O19", "ORU_R01" })
+	public String sample;
+
+	private MapperEngine engine;
+	private String message;
+
+	@Setup
+	public void setup() throws HL7Exception {
+		engine = BenchmarkIntegrations.engine(sample);
+		message = BenchmarkCorpus.load(sample);
+
+		BenchmarkIntegrations.checkNoErrors("The plan of " + sample, engine.run(message).getErrorList());
+	}
+
+	@Benchmark
+	public Response run() {
+		return engine.run(message);
+	}
+}
@@ -0,0 +1,103 @@
+package com.example.demopugspring.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.demopugspring.factory.ContextSingleton;
+import com.example.demopugspring.model.Mapper;
+
+import ca.uhn.hl7v2.HL7Exception;
+import ca.uhn.hl7v2.model.Message;
+import ca.uhn.hl7v2.parser.PipeParser;
+import ca.uhn.hl7v2.util.Terser;
+
+/**
+ * Each stage of {@link MapperEngine#run(String)} on its own, in the order they
+ * run: fixing the incoming string, parsing it, parsing it again into the
+ * outgoing structure, and encoding the mapped message. The mappers are
+ * measured one category at a time by {@link MapperOperationBenchmark}.
+ * </p>
+ * Encoding is measured both with {@link CleanPipeEncoder} and with the former
+ * encode plus {@link MapperEngine#cleanMessage(String)}, on the outgoing
+ * message after applying the whole plan of the sample.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class MapperEngineStageBenchmark {
+
+	@Param({ "ADT_A31", "ORM_O01", "OMG_O19", "ORU_R01" })
+	public String sample;
+
+	private PipeParser parser;
+	private String incoming;
+	private String fixed;
+	private String retargeted;
+	private Message outgoing;
+	private String encoded;
+
+	@Setup
+	public void setup() throws HL7Exception {
+		parser = ContextSingleton.getInstance().getPipeParser();
+		incoming = BenchmarkCorpus.load(sample);
+		fixed = MapperEngine.fixMessage(incoming);
+
+		Message message = parser.parse(fixed);
+		Terser msg = new Terser(message);
+		retargeted = BenchmarkIntegrations.retarget(fixed);
+		outgoing = parser.parse(retargeted);
+
+		MapperEngine engine = BenchmarkIntegrations.engine();
+		Terser tmp = new Terser(outgoing);
+		List<MapperError> errors = new ArrayList<>();
+		for (Mapper mapper : BenchmarkIntegrations.mappers(sample)) {
+			engine.apply(mapper, message, outgoing, msg, tmp, errors);
+		}
+		BenchmarkIntegrations.checkNoErrors("The plan of " + sample, errors);
+		encoded = outgoing.encode();
+	}
+
+	@Benchmark
+	public String fixMessage() {
+		return MapperEngine.fixMessage(incoming);
+	}
+
+	@Benchmark
+	public Message parse() throws HL7Exception {
+		return parser.parse(fixed);
+	}
+
+	@Benchmark
+	public Message parseOutgoing() throws HL7Exception {
+		return parser.parse(retargeted);
+	}
+
+	@Benchmark
+	public String encode() throws HL7Exception {
+		return CleanPipeEncoder.encode(outgoing);
+	}
+
+	@Benchmark
+	public String encodeAndClean() throws HL7Exception {
+		return MapperEngine.cleanMessage(outgoing.encode());
+	}
+
+	@Benchmark
+	public String cleanMessage() {
+		return MapperEngine.cleanMessage(encoded);
+	}
+}
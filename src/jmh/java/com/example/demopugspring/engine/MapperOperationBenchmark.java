@@ -0,0 +1,89 @@
+package com.example.demopugspring.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.demopugspring.factory.ContextSingleton;
+import com.example.demopugspring.model.Mapper;
+import com.example.demopugspring.model.Mapper.Category;
+
+import ca.uhn.hl7v2.HL7Exception;
+import ca.uhn.hl7v2.model.Message;
+import ca.uhn.hl7v2.parser.PipeParser;
+import ca.uhn.hl7v2.util.Terser;
+
+/**
+ * A single mapper of each {@link Category} applied through
+ * {@link MapperEngine#apply}, with the mapper used by the sample plans.
+ * </p>
+ * Several operations add repetitions or clear what they read, so every
+ * invocation gets a freshly parsed outgoing message. Parsing it is left out of
+ * the measurement, but per invocation setup adds some timing noise to the
+ * fastest operations.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class MapperOperationBenchmark {
+
+	@Param({ "ADT_A31", "ORU_R01" })
+	public String sample;
+
+	@Param({ "TEXT", "FIELD", "NUMERIC", "TRANSCODING", "JOIN", "ADD_SNS", "SWAP", "CONTACT", "CLEAR_IF", "REPLACE", "TEXT_IF", "SEGMENT" })
+	public String category;
+
+	private PipeParser parser;
+	private MapperEngine engine;
+	private Mapper mapper;
+	private Message incoming;
+	private Terser msg;
+	private String retargeted;
+
+	private Message outgoing;
+	private Terser tmp;
+	private List<MapperError> errors;
+
+	@Setup
+	public void setup() throws HL7Exception {
+		parser = ContextSingleton.getInstance().getPipeParser();
+		engine = BenchmarkIntegrations.engine();
+		mapper = BenchmarkIntegrations.mapper(sample, Category.valueOf(category));
+
+		String fixed = MapperEngine.fixMessage(BenchmarkCorpus.load(sample));
+		incoming = parser.parse(fixed);
+		msg = new Terser(incoming);
+		retargeted = BenchmarkIntegrations.retarget(fixed);
+
+		newOutgoing();
+		apply();
+		BenchmarkIntegrations.checkNoErrors("The " + category + " mapper of " + sample, errors);
+	}
+
+	@Setup(Level.Invocation)
+	public void newOutgoing() throws HL7Exception {
+		outgoing = parser.parse(retargeted);
+		tmp = new Terser(outgoing);
+		errors = new ArrayList<>();
+	}
+
+	@Benchmark
+	public List<MapperError> apply() throws HL7Exception {
+		engine.apply(mapper, incoming, outgoing, msg, tmp, errors);
+		return errors;
+	}
+}
@@ -0,0 +1,49 @@
+package com.example.demopugspring.engine;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the regex based fixes applied to incoming messages before parsing,
+ * {@link LegacyMessageFixer}, with the single pass {@link MessageFixer}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class MessageFixerBenchmark {
+
+	@Param({ "ADT_A31", "ORU_R01" })
+	public String sample;
+
+	private String message;
+
+	@Setup
+	public void setup() {
+		message = BenchmarkCorpus.load(sample);
+		if (!LegacyMessageFixer.fix(message).equals(MessageFixer.fix(message))) {
+			throw new IllegalStateException("Fixes differ for " + sample);
+		}
+	}
+
+	@Benchmark
+	public String legacy() {
+		return LegacyMessageFixer.fix(message);
+	}
+
+	@Benchmark
+	public String scanner() {
+		return MessageFixer.fix(message);
+	}
+}
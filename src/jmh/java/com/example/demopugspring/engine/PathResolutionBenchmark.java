@@ -0,0 +1,100 @@
+package com.example.demopugspring.engine;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.example.demopugspring.visitor.CompiledPath;
+import com.example.demopugspring.visitor.StandardVisitor;
+
+import ca.uhn.hl7v2.HL7Exception;
+import ca.uhn.hl7v2.model.Message;
+import ca.uhn.hl7v2.model.Primitive;
+import ca.uhn.hl7v2.model.Segment;
+import ca.uhn.hl7v2.model.Type;
+import ca.uhn.hl7v2.util.Terser;
+
+/**
+ * Resolving the same field through {@link Terser} and through
+ * {@link StandardVisitor}, which the operations use for wildcard paths: a
+ * single component, and the first component of every repetition of PID-3.
+ * The visitor is measured built from the path string, as the operations do,
+ * and from an already compiled path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PathResolutionBenchmark {
+
+	@Param({ "ADT_A31", "ORU_R01" })
+	public String sample;
+
+	private Message message;
+	private Terser terser;
+	private String segmentPath;
+	private String componentPath;
+	private String repetitionsPath;
+	private CompiledPath compiledComponentPath;
+
+	@Setup
+	public void setup() throws HL7Exception {
+		message = BenchmarkIntegrations.parseOutgoing(sample);
+		terser = new Terser(message);
+		segmentPath = "ORU_R01".equals(sample) ? "/PATIENT_RESULT/PATIENT/PID" : "/PID";
+		componentPath = segmentPath + "-5-1";
+		repetitionsPath = segmentPath + "-3(#)-1";
+		compiledComponentPath = CompiledPath.compile(componentPath);
+
+		if (!terser.get(componentPath).equals(((Primitive) visitor()).getValue())) {
+			throw new IllegalStateException("Terser and StandardVisitor resolve " + componentPath + " differently");
+		}
+	}
+
+	@Benchmark
+	public String terser() throws HL7Exception {
+		return terser.get(componentPath);
+	}
+
+	@Benchmark
+	public Type visitor() throws HL7Exception {
+		StandardVisitor visitor = new StandardVisitor(componentPath);
+		visitor.start(message);
+		return visitor.getVisitedTypes().get(0);
+	}
+
+	@Benchmark
+	public Type visitorCompiled() throws HL7Exception {
+		StandardVisitor visitor = new StandardVisitor(compiledComponentPath);
+		visitor.start(message);
+		return visitor.getVisitedTypes().get(0);
+	}
+
+	@Benchmark
+	public void terserRepetitions(Blackhole blackhole) throws HL7Exception {
+		Segment pid = terser.getSegment(segmentPath);
+		int repetitions = pid.getField(3).length;
+		for (int i = 0; i < repetitions; i++) {
+			blackhole.consume(Terser.get(pid, 3, i, 1, 1));
+		}
+	}
+
+	@Benchmark
+	public List<Type> visitorRepetitions() throws HL7Exception {
+		StandardVisitor visitor = new StandardVisitor(repetitionsPath);
+		visitor.start(message);
+		return visitor.getVisitedTypes();
+	}
+}
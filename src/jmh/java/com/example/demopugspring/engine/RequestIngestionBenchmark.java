@@ -0,0 +1,138 @@
+package com.example.demopugspring.engine;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.StreamUtils;
+
+import com.example.demopugspring.factory.ContextSingleton;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import ca.uhn.hl7v2.HL7Exception;
+import ca.uhn.hl7v2.model.Message;
+
+/**
+ * Compares reading a /mapper request body into a String, as
+ * {@code @RequestBody String} did, and fixing it, with reading it into an
+ * array grown as it arrives and into one pooled by {@link RequestBodies},
+ * fixing it from the bytes through {@link Latin1Chars}.
+ * </p>
+ * Then compares writing the JSON response from the outgoing message encoded
+ * into a String with writing it straight from the pooled buffer of an
+ * {@link EncodedMessage}. ORU_R01_5MB is the ORU with a PDF of about 5 MB
+ * once base64 encoded. Run with the GC profiler for the bytes allocated per
+ * message.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class RequestIngestionBenchmark {
+
+	private static final String LARGE = "_5MB";
+	private static final int LARGE_PDF_SIZE = 15 * 256 * 1024;
+	private static final int MAX_INITIAL_BUFFER = 256 * 1024;
+
+	@Param({ "ADT_A31", "ORU_R01", "ORU_R01" + LARGE })
+	public String sample;
+
+	private byte[] body;
+	private Message outgoing;
+	private ObjectMapper objectMapper;
+
+	@Setup
+	public void setup() throws IOException, HL7Exception {
+		String message = sample.endsWith(LARGE) ? BenchmarkCorpus.load(sample.substring(0, sample.length() - LARGE.length()), LARGE_PDF_SIZE)
+				: BenchmarkCorpus.load(sample);
+		body = message.getBytes(StandardCharsets.ISO_8859_1);
+		outgoing = ContextSingleton.getInstance().getPipeParser().parse(MapperEngine.fixMessage(message));
+		objectMapper = new ObjectMapper();
+		if (!stringBody().equals(grownBody()) || !stringBody().equals(pooledBody())) {
+			throw new IllegalStateException("Fixes differ for " + sample);
+		}
+		String json = objectMapper.writeValueAsString(response(CleanPipeEncoder.encode(outgoing, body.length)));
+		if (!json.equals(objectMapper.writeValueAsString(response(CleanPipeEncoder.encodePooled(outgoing, body.length))))) {
+			throw new IllegalStateException("Responses differ for " + sample);
+		}
+	}
+
+	@Benchmark
+	public String stringBody() throws IOException {
+		return MessageFixer.fix(StreamUtils.copyToString(new ByteArrayInputStream(body), StandardCharsets.ISO_8859_1));
+	}
+
+	@Benchmark
+	public String grownBody() throws IOException {
+		InputStream input = new ByteArrayInputStream(body);
+		byte[] read = new byte[Math.min(body.length, MAX_INITIAL_BUFFER)];
+		int length = 0;
+		int count;
+		while (length < body.length) {
+			if (length == read.length) {
+				read = Arrays.copyOf(read, (int) Math.min(body.length, 2L * read.length));
+			}
+			if ((count = input.read(read, length, read.length - length)) < 0) {
+				break;
+			}
+			length += count;
+		}
+		return MessageFixer.fix(new Latin1Chars(read, 0, length));
+	}
+
+	@Benchmark
+	public String pooledBody() throws IOException {
+		InputStream input = new ByteArrayInputStream(body);
+		byte[] read = RequestBodies.take(body.length);
+		int length = 0;
+		int count;
+		while (length < body.length) {
+			if (length == read.length) {
+				read = RequestBodies.grow(read, body.length);
+			}
+			if ((count = input.read(read, length, Math.min(read.length, body.length) - length)) < 0) {
+				break;
+			}
+			length += count;
+		}
+		Latin1Chars message = new Latin1Chars(read, 0, length);
+		try {
+			return MessageFixer.fix(message);
+		} finally {
+			RequestBodies.release(message);
+		}
+	}
+
+	@Benchmark
+	public void stringResponse() throws IOException, HL7Exception {
+		objectMapper.writeValue(OutputStream.nullOutputStream(), response(CleanPipeEncoder.encode(outgoing, body.length)));
+	}
+
+	@Benchmark
+	public void pooledResponse() throws IOException, HL7Exception {
+		objectMapper.writeValue(OutputStream.nullOutputStream(), response(CleanPipeEncoder.encodePooled(outgoing, body.length)));
+	}
+
+	private static Response response(CharSequence message) {
+		Response response = new Response();
+		response.setErrorList(List.of());
+		response.setMessage(message);
+		return response;
+	}
+}
@@ -0,0 +1,74 @@
+package com.example.demopugspring.engine;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.demopugspring.factory.ContextSingleton;
+
+import ca.uhn.hl7v2.HL7Exception;
+import ca.uhn.hl7v2.model.Message;
+import ca.uhn.hl7v2.parser.PipeParser;
+import ca.uhn.hl7v2.util.Terser;
+
+/**
+ * Compares the way {@link MapperEngine#run(String)} used to build the outgoing
+ * message (two parses of the incoming message, a Terser rewrite of the header,
+ * an encode and a third parse) with retargeting the header through
+ * {@link MessageHeaderRewriter} and parsing once more.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class StructureConversionBenchmark {
+
+	private static final String TARGET_VERSION = "2.5.1";
+	private static final String CHARACTER_SET = "8859/1";
+
+	@Param({ "ADT_A31", "ORU_R01" })
+	public String sample;
+
+	private PipeParser parser;
+	private String message;
+	private String code;
+	private String event;
+
+	@Setup
+	public void setup() throws HL7Exception {
+		parser = ContextSingleton.getInstance().getPipeParser();
+		message = MapperEngine.fixMessage(BenchmarkCorpus.load(sample));
+
+		Terser terser = new Terser(parser.parse(message));
+		code = terser.get("MSH-9-1");
+		event = terser.get("MSH-9-2");
+	}
+
+	@Benchmark
+	public Message[] reparse() throws HL7Exception {
+		Message incoming = parser.parse(message);
+		Message volatileMessage = parser.parse(message);
+		Terser volatileTerser = new Terser(volatileMessage);
+		volatileTerser.set("MSH-9-1", code);
+		volatileTerser.set("MSH-9-2", event);
+		volatileTerser.set("MSH-12", TARGET_VERSION);
+		volatileTerser.set("MSH-18", CHARACTER_SET);
+		return new Message[] { incoming, parser.parse(volatileMessage.encode()) };
+	}
+
+	@Benchmark
+	public Message[] retarget() throws HL7Exception {
+		Message incoming = parser.parse(message);
+		return new Message[] { incoming, parser.parse(MessageHeaderRewriter.retarget(message, code, event, TARGET_VERSION, CHARACTER_SET)) };
+	}
+}
@@ -0,0 +1,118 @@
+package com.example.demopugspring.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.demopugspring.factory.ContextSingleton;
+import com.example.demopugspring.model.Mapper.Category;
+import com.example.demopugspring.visitor.StandardVisitor;
+
+import ca.uhn.hl7v2.HL7Exception;
+import ca.uhn.hl7v2.model.Message;
+import ca.uhn.hl7v2.model.Type;
+import ca.uhn.hl7v2.util.Terser;
+
+/**
+ * A wildcard mapper writing OBX-11 of every observation of an ORU with more
+ * or fewer of them, expanded by {@link MapperEngine#mapper} from the
+ * {@link SegmentIndex} of the message, and by the loop it replaced, which
+ * resolved one path after the other until one led to an empty segment.
+ * </p>
+ * TEXT and FIELD mappers run as operations, whose wildcards go through
+ * {@link StandardVisitor} in a single walk of the message instead; it is
+ * measured as well for comparison.
+ * </p>
+ * Each benchmark writes to its own message: the loop leaves an empty
+ * observation past the last one, which the others would then count.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class WildcardExpansionBenchmark {
+
+	private static final String PATH = "/PATIENT_RESULT/ORDER_OBSERVATION/OBSERVATION(#)/OBX-11";
+	private static final String SEGMENT_PATH = "/PATIENT_RESULT/ORDER_OBSERVATION/OBSERVATION(#)/OBX";
+
+	@Param({ "10", "300" })
+	public int observations;
+
+	private MapperEngine engine;
+	private Message indexed;
+	private Message probed;
+	private Message visited;
+	private List<MapperError> errors;
+
+	@Setup
+	public void setup() throws HL7Exception {
+		engine = new MapperEngine();
+		String message = message(observations);
+		indexed = ContextSingleton.getInstance().getPipeParser().parse(message);
+		probed = ContextSingleton.getInstance().getPipeParser().parse(message);
+		visited = ContextSingleton.getInstance().getPipeParser().parse(message);
+
+		BenchmarkIntegrations.checkNoErrors("The indexed expansion", indexed());
+		probed();
+		visited();
+		for (Message written : List.of(indexed, probed, visited)) {
+			Terser terser = new Terser(written);
+			for (int i = 0; i < observations; i++) {
+				if (!"F".equals(terser.get(PATH.replace("#", String.valueOf(i))))) {
+					throw new IllegalStateException("Observation " + i + " wasn't written");
+				}
+			}
+		}
+	}
+
+	@Benchmark
+	public List<MapperError> indexed() {
+		errors = new ArrayList<>();
+		// A new terser per message, as in MapperEngine.run, so the index is built every time
+		engine.mapper(new IndexedTerser(indexed), new Terser(indexed), List.of(PATH), "F", Category.TEXT, errors);
+		return errors;
+	}
+
+	@Benchmark
+	public int probed() throws HL7Exception {
+		Terser terser = new Terser(probed);
+		int i = 0;
+		while (!terser.getSegment(SEGMENT_PATH.replace("#", String.valueOf(i))).isEmpty()) {
+			terser.set(PATH.replace("#", String.valueOf(i)), "F");
+			i++;
+		}
+		return i;
+	}
+
+	@Benchmark
+	public int visited() throws HL7Exception {
+		StandardVisitor visitor = new StandardVisitor(PATH);
+		visitor.start(visited);
+		for (Type type : visitor.getVisitedTypes()) {
+			type.parse("F");
+		}
+		return visitor.getVisitedTypes().size();
+	}
+
+	private static String message(int observations) {
+		StringBuilder message = new StringBuilder("MSH|^~\\&|CWM|CCTV|GH|CCB|20201103160113||ORU^R01|7ba75e23|P|2.5.1|||AL\r"
+				+ "PID||43417401|43417401^^^JMS^NS||CUNHA^LETICIA SOFIA^||19830224|F\r"
+				+ "OBR||2060770|CCTV2020118074|62009903^ECO PELVICA\r");
+		for (int i = 1; i <= observations; i++) {
+			message.append("OBX|").append(i).append("|TX|904476||RESULT ").append(i).append("\r");
+		}
+		return message.toString();
+	}
+}
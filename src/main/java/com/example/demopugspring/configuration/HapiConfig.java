@@ -0,0 +1,77 @@
+package com.example.demopugspring.configuration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.example.demopugspring.factory.CachingModelClassFactory;
+import com.example.demopugspring.factory.ContextSingleton;
+import com.example.demopugspring.model.Message.Version;
+
+import ca.uhn.hl7v2.HapiContext;
+import ca.uhn.hl7v2.parser.PipeParser;
+import ca.uhn.hl7v2.validation.ValidationContext;
+import ca.uhn.hl7v2.validation.impl.ValidationContextFactory;
+
+/**
+ * The HAPI context and parser shared by every request thread.
+ * </p>
+ * {@code hapi.validation} selects the rules run on every parse: {@code default}
+ * for HAPI's default rules, {@code none} to skip validation. With
+ * {@code hapi.preload} the model classes of every {@link Version} are loaded at
+ * startup rather than by the first messages.
+ */
+@Configuration
+public class HapiConfig {
+	private static final Logger log = LoggerFactory.getLogger(HapiConfig.class);
+
+	private static final String NO_VALIDATION = "none";
+	private static final String DEFAULT_VALIDATION = "default";
+
+	@Value("${hapi.validation:" + DEFAULT_VALIDATION + "}")
+	String validation;
+	@Value("${hapi.preload:true}")
+	boolean preload;
+
+	@Bean
+	public CachingModelClassFactory modelClassFactory() {
+		CachingModelClassFactory modelClassFactory = new CachingModelClassFactory();
+		if (preload) {
+			for (Version version : Version.values()) {
+				long start = System.nanoTime();
+				int loaded = modelClassFactory.preload(version.getValue());
+				log.info("Preloaded {} message structures of version {} in {} ms", loaded, version.getValue(),
+						(System.nanoTime() - start) / 1_000_000);
+			}
+		}
+		return modelClassFactory;
+	}
+
+	@Bean
+	public HapiContext hapiContext(CachingModelClassFactory modelClassFactory) {
+		return ContextSingleton.create(validationContext(), modelClassFactory);
+	}
+
+	/**
+	 * The parser used by {@link com.example.demopugspring.engine.MapperEngine}.
+	 * Parsers hold no state between calls once configured, so one instance
+	 * serves all threads.
+	 */
+	@Bean
+	public PipeParser pipeParser(HapiContext hapiContext) {
+		return hapiContext.getPipeParser();
+	}
+
+	private ValidationContext validationContext() {
+		switch (validation) {
+		case NO_VALIDATION:
+			return ValidationContextFactory.noValidation();
+		case DEFAULT_VALIDATION:
+			return ValidationContextFactory.defaultValidation();
+		default:
+			throw new IllegalArgumentException("Unknown hapi.validation '" + validation + "', expected " + NO_VALIDATION + " or " + DEFAULT_VALIDATION);
+		}
+	}
+}
@@ -0,0 +1,77 @@
+package com.example.demopugspring.controller;
+
+import com.example.demopugspring.model.CodeEntry;
+import com.example.demopugspring.properties.PropertiesCategoriesEnum;
+import com.example.demopugspring.service.CodeTableService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.ModelAttribute;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+
+@Controller
+public class CodeTableController {
+
+	private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+	@Autowired
+	CodeTableService codeTableService;
+
+	@GetMapping(value = {"/codes", "/codes/index"})
+	public String getCategories(Model model) {
+		model.addAttribute("categories", codeTableService.findCategories());
+		model.addAttribute("versions", codeTableService.findVersions());
+		model.addAttribute("codeTableService", codeTableService);
+		return "codes/index";
+	}
+
+	@GetMapping(value = "/codes/unmapped")
+	public String getTelemetry(Model model, @RequestParam(value = "limit", defaultValue = "20") int limit) {
+		model.addAttribute("telemetry", codeTableService.findTelemetry(limit));
+		return "codes/unmapped";
+	}
+
+	@GetMapping(value = "/codes/table")
+	public String getTable(Model model, @RequestParam("category") PropertiesCategoriesEnum category) {
+		model.addAttribute("category", category);
+		model.addAttribute("entries", codeTableService.findByCategory(category));
+		model.addAttribute("entry", new CodeEntry(category, "", ""));
+		return "codes/table";
+	}
+
+	@GetMapping(value = "/codes/edit")
+	public String showEditEntry(Model model, @RequestParam("id") Long id) {
+		model.addAttribute("entry", codeTableService.findById(id));
+		return "codes/edit";
+	}
+
+	@PostMapping(value = {"/codes/create", "/codes/edit"})
+	public String saveEntry(Model model, @ModelAttribute("entry") CodeEntry entry) {
+		try {
+			logger.info("Saving code " + entry);
+			codeTableService.save(entry);
+			return "redirect:/codes/table?category=" + entry.getCategory();
+		} catch (Exception ex) {
+			// log exception first,
+			// then show error
+			String errorMessage = ex.getMessage();
+			logger.error(errorMessage);
+			model.addAttribute("errorMessage", errorMessage);
+			model.addAttribute("category", entry.getCategory());
+			model.addAttribute("entries", codeTableService.findByCategory(entry.getCategory()));
+			return "codes/table";
+		}
+	}
+
+	@PostMapping(value = "/codes/delete")
+	public String deleteEntry(@RequestParam("id") Long id) {
+		CodeEntry entry = codeTableService.findById(id);
+		logger.info("Deleting code " + entry);
+		codeTableService.delete(id);
+		return "redirect:/codes/table?category=" + entry.getCategory();
+	}
+}
@@ -0,0 +1,27 @@
+package com.example.demopugspring.controller;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.example.demopugspring.service.CodeTableService;
+import com.example.demopugspring.service.CodeTableTelemetry;
+
+@RestController
+public class CodeTableRestController {
+	@Autowired
+	CodeTableService codeTableService;
+
+	/**
+	 * Lookup counters of every code table since startup, with the codes most
+	 * often missing for each sending application.
+	 */
+	@GetMapping(value = "/codes/telemetry", produces = MediaType.APPLICATION_JSON_VALUE)
+	public List<CodeTableTelemetry> telemetry(@RequestParam(value = "limit", defaultValue = "20") int limit) {
+		return codeTableService.findTelemetry(limit);
+	}
+}
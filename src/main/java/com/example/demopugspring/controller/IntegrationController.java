@@ -8,6 +8,7 @@ import com.example.demopugspring.service.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -16,6 +17,7 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 
+import com.example.demopugspring.engine.plan.IntegrationPlan;
 import com.example.demopugspring.helper.PugHelper;
 import com.example.demopugspring.model.Integration;
 import com.example.demopugspring.model.Mapper;
@@ -35,6 +37,8 @@ public class IntegrationController {
 	MessageService messageService;
 	@Autowired
 	ApplicationService applicationService;
+	@Value("${mapper.optimize-plans:true}")
+	boolean optimizePlans;
 
 	@GetMapping(value = "/integrations")
 	public String getIntegrations(Model model) {
@@ -65,6 +69,22 @@ public class IntegrationController {
 		return "integrations/details";
 	}
 
+	/**
+	 * Shows the steps the engine runs the active mappers of the integration
+	 * in, once optimized.
+	 */
+	@GetMapping(value = "/integrations/{id}/plan")
+	public String getIntegrationPlan(Model model, @PathVariable(name = "id") Long id) {
+		Integration integration = integrationService.findById(id);
+		IntegrationPlan plan = IntegrationPlan.compile(integration,
+				integrationMapperService.retrieveActiveIntegrationMappersFromIntegration(integration), optimizePlans);
+		model.addAttribute("integration", integration);
+		model.addAttribute("plan", plan);
+		model.addAttribute("optimized", optimizePlans);
+		model.addAttribute("PugHelper", new PugHelper());
+		return "integrations/plan";
+	}
+
 	@GetMapping(value = {"/integrations/create"})
 	public String showAddIntegration(Model model) {
 		model.addAttribute("messages", messageService.findAll());
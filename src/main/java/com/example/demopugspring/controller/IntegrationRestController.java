@@ -1,27 +1,221 @@
 package com.example.demopugspring.controller;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+import javax.servlet.http.HttpServletRequest;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.server.ResponseStatusException;
 
-import com.example.demopugspring.engine.MapperEngine;
+import com.example.demopugspring.engine.BatchMapper;
+import com.example.demopugspring.engine.BatchResponse;
+import com.example.demopugspring.engine.EncodedMessage;
+import com.example.demopugspring.engine.Latin1Chars;
+import com.example.demopugspring.engine.MapperError;
+import com.example.demopugspring.engine.MappingExecutor;
+import com.example.demopugspring.engine.RequestBodies;
 import com.example.demopugspring.engine.Response;
 
 @RestController
 public class IntegrationRestController {
 	private static final Logger log = LoggerFactory.getLogger(IntegrationRestController.class);
 	@Autowired
-	MapperEngine mapperEngine;
+	MappingExecutor mappingExecutor;
+	@Autowired
+	BatchMapper batchMapper;
 
+	static final String TRACE_HEADER = "X-Mapper-Trace";
+	static final String TRACE_ID_HEADER = "X-Mapper-Trace-Id";
+	static final String PROFILE_HEADER = "X-Mapper-Profile";
+
+	/**
+	 * Maps a message. With an {@value #TRACE_HEADER} header of true the mapping
+	 * is traced, and the id of the trace, shown under /traces, is answered in
+	 * an {@value #TRACE_ID_HEADER} header. With an {@value #PROFILE_HEADER}
+	 * header or a profile parameter of true the response has the time and
+	 * memory taken by each stage and mapper.
+	 * </p>
+	 * The message is mapped by {@link MappingExecutor}, freeing the request
+	 * thread. Answers 429 when too many messages are waiting and 503 when it
+	 * isn't mapped in time, both with a Retry-After header.
+	 * </p>
+	 * The body is read as bytes, see {@link #readMessage(HttpServletRequest)},
+	 * and the mapped message written into the response straight from the
+	 * buffer it was encoded into, see {@link EncodedMessage}.
+	 */
 	@PostMapping(value = "/mapper", consumes = "text/plain", produces = MediaType.APPLICATION_JSON_VALUE)
-	public ResponseEntity<?> map(@RequestBody String msg) {
-		Response response = mapperEngine.run(msg);
+	public DeferredResult<ResponseEntity<?>> map(HttpServletRequest request, @RequestHeader(value = TRACE_HEADER, defaultValue = "false") boolean trace,
+			@RequestHeader(value = PROFILE_HEADER, defaultValue = "false") boolean profileHeader,
+			@RequestParam(value = "profile", defaultValue = "false") boolean profile) throws IOException {
+		CharSequence msg = readMessage(request);
+		DeferredResult<ResponseEntity<?>> result = new DeferredResult<>(mappingExecutor.getTimeoutMillis());
+		CompletableFuture<Response> future;
+		try {
+			future = mappingExecutor.submit(msg, trace, profile || profileHeader);
+		} catch (RejectedExecutionException e) {
+			RequestBodies.release(msg);
+			log.warn("Rejected a message, too many are waiting to be mapped");
+			result.setResult(unavailable(HttpStatus.TOO_MANY_REQUESTS, "Too many messages waiting to be mapped"));
+			return result;
+		}
+		result.onTimeout(() -> {
+			mappingExecutor.timeOut(future);
+			result.setResult(unavailable(HttpStatus.SERVICE_UNAVAILABLE,
+					"Not mapped within " + mappingExecutor.getTimeoutMillis() + " ms"));
+		});
+		future.whenComplete((response, error) -> {
+			if (error == null) {
+				result.setResult(toResponseEntity(response));
+			} else if (!(error instanceof CancellationException)) {
+				result.setErrorResult(error);
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Reads the body into an array pooled by {@link RequestBodies}, and maps
+	 * ISO-8859-1 bodies, the character set of the messages we send, from these
+	 * bytes as they are. So are UTF-8 bodies made only of ASCII characters, as
+	 * the two agree on those; any other is decoded into a String first. The
+	 * character set is found as {@code @RequestBody String} did: from the
+	 * Content-Type, else the request encoding, else ISO-8859-1.
+	 * </p>
+	 * A new array grows as the body arrives rather than being allocated at its
+	 * declared length, so a Content-Length alone never has a large array
+	 * allocated. Answers 400 when the body doesn't have its declared length,
+	 * and 415 for a character set that isn't supported.
+	 */
+	static CharSequence readMessage(HttpServletRequest request) throws IOException {
+		Charset charset = charset(request);
+		byte[] body;
+		int length;
+		try (InputStream input = request.getInputStream()) {
+			long contentLength = request.getContentLengthLong();
+			if (contentLength >= 0 && contentLength <= Integer.MAX_VALUE) {
+				length = (int) contentLength;
+				body = readFully(input, length);
+			} else {
+				body = input.readAllBytes();
+				length = body.length;
+			}
+		}
+		if (charset == null || StandardCharsets.ISO_8859_1.equals(charset)
+				|| ((StandardCharsets.UTF_8.equals(charset) || StandardCharsets.US_ASCII.equals(charset)) && isAscii(body, length))) {
+			return new Latin1Chars(body, 0, length);
+		}
+		try {
+			return new String(body, 0, length, charset);
+		} finally {
+			RequestBodies.release(body);
+		}
+	}
+
+	private static Charset charset(HttpServletRequest request) {
+		try {
+			Charset charset = null;
+			if (request.getContentType() != null) {
+				charset = MediaType.parseMediaType(request.getContentType()).getCharset();
+			}
+			if (charset == null && request.getCharacterEncoding() != null) {
+				charset = Charset.forName(request.getCharacterEncoding());
+			}
+			return charset;
+		} catch (InvalidMediaTypeException e) {
+			// Also thrown by parseMediaType for a charset parameter it can't resolve
+			throw new ResponseStatusException(HttpStatus.UNSUPPORTED_MEDIA_TYPE, e.getMessage());
+		} catch (IllegalCharsetNameException | UnsupportedCharsetException e) {
+			throw new ResponseStatusException(HttpStatus.UNSUPPORTED_MEDIA_TYPE, "Unsupported character set " + e.getMessage());
+		}
+	}
+
+	private static byte[] readFully(InputStream input, int length) throws IOException {
+		byte[] body = RequestBodies.take(length);
+		int read = 0;
+		int count;
+		while (read < length) {
+			if (read == body.length) {
+				body = RequestBodies.grow(body, length);
+			}
+			if ((count = input.read(body, read, Math.min(body.length, length) - read)) < 0) {
+				break;
+			}
+			read += count;
+		}
+		if (read < length) {
+			RequestBodies.release(body);
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Body ended after " + read + " of its " + length + " bytes");
+		}
+		if (input.read() >= 0) {
+			RequestBodies.release(body);
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Body is longer than its " + length + " bytes");
+		}
+		return body;
+	}
+
+	private static boolean isAscii(byte[] body, int length) {
+		for (int i = 0; i < length; i++) {
+			if (body[i] < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static ResponseEntity<?> toResponseEntity(Response response) {
+		HttpHeaders headers = new HttpHeaders();
+		if (response.getTraceId() != null) {
+			headers.set(TRACE_ID_HEADER, response.getTraceId().toString());
+		}
+		return response.getErrorList().isEmpty() ? new ResponseEntity<>(response, headers, HttpStatus.OK)
+				: new ResponseEntity<>(response, headers, HttpStatus.BAD_REQUEST);
+	}
+
+	private ResponseEntity<?> unavailable(HttpStatus status, String error) {
+		Response response = new Response();
+		response.setMessage("");
+		response.setErrorList(List.of(new MapperError("Global", error)));
+		HttpHeaders headers = new HttpHeaders();
+		headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(mappingExecutor.getRetryAfterSeconds()));
+		return new ResponseEntity<>(response, headers, status);
+	}
+
+	/**
+	 * Maps many messages in one request, MLLP framed or in the HL7 batch
+	 * format. Answers with the response of every message, in order, and only
+	 * fails the request when the batch itself is rejected. Answers 503 once the
+	 * application is shutting down.
+	 */
+	@PostMapping(value = "/mapper/batch", consumes = "text/plain", produces = MediaType.APPLICATION_JSON_VALUE)
+	public ResponseEntity<?> mapBatch(@RequestBody String batch) {
+		BatchResponse response;
+		try {
+			response = batchMapper.run(batch);
+		} catch (RejectedExecutionException e) {
+			throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage());
+		}
 		return response.getErrorList().isEmpty() ? new ResponseEntity<>(response, HttpStatus.OK)
 				: new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
 	}
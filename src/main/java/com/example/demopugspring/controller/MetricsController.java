@@ -0,0 +1,43 @@
+package com.example.demopugspring.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import com.example.demopugspring.engine.metrics.MappingMetrics;
+import com.example.demopugspring.engine.plan.IntegrationPlanCache;
+import com.example.demopugspring.helper.PugHelper;
+
+@Controller
+public class MetricsController {
+
+	@Autowired
+	MappingMetrics mappingMetrics;
+
+	@Autowired
+	IntegrationPlanCache integrationPlanCache;
+
+	@GetMapping(value = "/dashboard")
+	public String getDashboard(Model model, @RequestParam(value = "limit", defaultValue = "20") int limit) {
+		model.addAttribute("stages", MappingMetrics.Stage.values());
+		model.addAttribute("metrics", mappingMetrics);
+		model.addAttribute("integrations", mappingMetrics.findIntegrations());
+		model.addAttribute("mappers", mappingMetrics.findSlowestMappers(limit));
+		model.addAttribute("planCache", integrationPlanCache);
+		model.addAttribute("PugHelper", new PugHelper());
+		return "metrics/dashboard";
+	}
+
+	/**
+	 * Drops every cached plan, for changes the admin pages didn't make, such
+	 * as ones made straight in the database.
+	 */
+	@PostMapping(value = "/dashboard/plan-cache/clear")
+	public String clearPlanCache() {
+		integrationPlanCache.invalidateAll();
+		return "redirect:/dashboard";
+	}
+}
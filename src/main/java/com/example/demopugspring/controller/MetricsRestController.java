@@ -0,0 +1,33 @@
+package com.example.demopugspring.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.example.demopugspring.engine.MappingExecutor;
+import com.example.demopugspring.engine.metrics.MappingMetrics;
+import com.example.demopugspring.engine.plan.IntegrationPlanCache;
+
+@RestController
+public class MetricsRestController {
+
+	static final String PROMETHEUS_TEXT = "text/plain; version=0.0.4; charset=utf-8";
+
+	@Autowired
+	MappingMetrics mappingMetrics;
+
+	@Autowired
+	IntegrationPlanCache integrationPlanCache;
+
+	@Autowired
+	MappingExecutor mappingExecutor;
+
+	/**
+	 * Mapping metrics of this node in the Prometheus text format, for it to
+	 * scrape.
+	 */
+	@GetMapping(value = "/metrics", produces = PROMETHEUS_TEXT)
+	public String metrics() {
+		return mappingMetrics.toPrometheus() + integrationPlanCache.toPrometheus() + mappingExecutor.toPrometheus();
+	}
+}
@@ -0,0 +1,36 @@
+package com.example.demopugspring.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.example.demopugspring.engine.trace.MappingTraceBuffer;
+
+/**
+ * Shows the traces of the last messages mapped with tracing on, kept by the
+ * {@link MappingTraceBuffer} of this node.
+ */
+@Controller
+public class TraceController {
+
+	@Autowired
+	MappingTraceBuffer mappingTraceBuffer;
+
+	@GetMapping(value = "/traces")
+	public String getTraces(Model model) {
+		model.addAttribute("traces", mappingTraceBuffer.findAll());
+		model.addAttribute("capacity", mappingTraceBuffer.getCapacity());
+		return "traces/index";
+	}
+
+	@GetMapping(value = "/traces/{id}")
+	public String getTrace(Model model, @PathVariable(name = "id") long id) {
+		model.addAttribute("trace", mappingTraceBuffer.find(id)
+				.orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Trace " + id + " is no longer kept")));
+		return "traces/details";
+	}
+}
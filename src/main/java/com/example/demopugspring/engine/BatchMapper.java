@@ -0,0 +1,162 @@
+package com.example.demopugspring.engine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import ca.uhn.hl7v2.HL7Exception;
+
+/**
+ * Maps every message of a batch request with {@link MapperEngine}, on a
+ * bounded pool of worker threads shared by all batch requests.
+ * </p>
+ * Messages wait in a bounded queue for a free worker; once it is full, the
+ * request thread maps the message itself, which slows down the sender instead
+ * of queueing without limit. A message not mapped within
+ * {@code mapper.batch.timeout} milliseconds of being waited for is answered
+ * with an error, so a stuck one can't hold the whole batch.
+ */
+@Service
+public class BatchMapper {
+
+	private static final Logger log = LoggerFactory.getLogger(BatchMapper.class);
+
+	/**
+	 * Runs the message on the request thread with the queue full, but rejects
+	 * it once shut down, where {@link ThreadPoolExecutor.CallerRunsPolicy}
+	 * would silently drop it and leave its future never done.
+	 */
+	private static final RejectedExecutionHandler CALLER_RUNS_UNTIL_SHUTDOWN = (task, pool) -> {
+		if (pool.isShutdown()) {
+			throw new RejectedExecutionException("The batch mapper is shut down");
+		}
+		task.run();
+	};
+
+	@Autowired
+	MapperEngine mapperEngine;
+
+	/** Worker threads, one per available processor when 0 */
+	@Value("${mapper.batch.threads:0}")
+	int threads;
+	@Value("${mapper.batch.queue-capacity:1000}")
+	int queueCapacity;
+	@Value("${mapper.batch.max-messages:10000}")
+	int maxMessages;
+	/** Milliseconds waited for each message once the ones before it are mapped */
+	@Value("${mapper.batch.timeout:30000}")
+	long timeoutMillis = 30000;
+
+	private ThreadPoolExecutor executor;
+
+	@PostConstruct
+	void start() {
+		int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+		executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity),
+				new CustomizableThreadFactory("mapper-batch-"), CALLER_RUNS_UNTIL_SHUTDOWN);
+		log.info("Batch mapping with {} threads and a queue of {} messages", poolSize, queueCapacity);
+	}
+
+	@PreDestroy
+	void stop() {
+		executor.shutdown();
+	}
+
+	/**
+	 * Splits the batch with {@link BatchSplitter} and maps its messages
+	 * concurrently.
+	 *
+	 * @param batch
+	 *            the body of the batch request.
+	 * @return the response of each message in order, or only batch errors if
+	 *         the batch was rejected.
+	 * @throws RejectedExecutionException
+	 *             if the mapper is shut down.
+	 */
+	public BatchResponse run(String batch) {
+		long start = System.nanoTime();
+		BatchResponse response = new BatchResponse();
+		response.setErrorList(new ArrayList<>());
+		response.setResponses(Collections.emptyList());
+
+		List<String> messages;
+		try {
+			messages = BatchSplitter.split(batch);
+		} catch (HL7Exception e) {
+			log.error(e.getMessage());
+			response.getErrorList().add(new MapperError("Batch", e.getMessage()));
+			return response;
+		}
+		if (messages.size() > maxMessages) {
+			response.getErrorList().add(new MapperError("Batch", "Batch has " + messages.size() + " messages, the limit is " + maxMessages));
+			return response;
+		}
+
+		List<Future<Response>> futures = new ArrayList<>(messages.size());
+		try {
+			for (String message : messages) {
+				futures.add(executor.submit(() -> mapperEngine.run(message)));
+			}
+		} catch (RejectedExecutionException e) {
+			futures.forEach(future -> future.cancel(true));
+			throw e;
+		}
+		List<Response> responses = new ArrayList<>(messages.size());
+		for (Future<Response> future : futures) {
+			responses.add(await(future));
+		}
+
+		int failed = 0;
+		for (Response messageResponse : responses) {
+			if (!messageResponse.getErrorList().isEmpty()) {
+				failed++;
+			}
+		}
+		response.setResponses(responses);
+		response.setTotal(responses.size());
+		response.setMapped(responses.size() - failed);
+		response.setFailed(failed);
+		response.setElapsedMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+		return response;
+	}
+
+	private Response await(Future<Response> future) {
+		String error;
+		try {
+			return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e) {
+			future.cancel(true);
+			log.warn("A message of a batch wasn't mapped within {} ms", timeoutMillis);
+			error = "Not mapped within " + timeoutMillis + " ms";
+		} catch (ExecutionException e) {
+			log.error("Unexpected exception mapping a message of a batch", e.getCause());
+			error = "Unexpected exception mapping the message: " + e.getCause();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			future.cancel(true);
+			error = "Interrupted before the message was mapped";
+		}
+		Response response = new Response();
+		response.setMessage("");
+		response.setErrorList(List.of(new MapperError("Global", error)));
+		return response;
+	}
+}
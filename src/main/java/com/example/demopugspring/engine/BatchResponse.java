@@ -0,0 +1,39 @@
+package com.example.demopugspring.engine;
+
+import java.io.Serializable;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+/**
+ * Result of mapping a batch of messages: the {@link Response} of each message,
+ * in the order they were sent, and a summary of the batch.
+ * </p>
+ * {@link #errorList} only holds errors about the batch itself, such as a body
+ * that couldn't be split into messages; errors of each message stay in its own
+ * {@link Response}.
+ */
+@Getter
+@Setter
+@ToString
+public class BatchResponse implements Serializable {
+
+	private static final long serialVersionUID = 6014587213066930515L;
+
+	@JsonProperty
+	private int total;
+	@JsonProperty
+	private int mapped;
+	@JsonProperty
+	private int failed;
+	@JsonProperty
+	private long elapsedMillis;
+	@JsonProperty
+	private List<MapperError> errorList;
+	@JsonProperty
+	private List<Response> responses;
+}
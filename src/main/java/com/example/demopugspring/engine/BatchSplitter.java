@@ -0,0 +1,161 @@
+package com.example.demopugspring.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import ca.uhn.hl7v2.HL7Exception;
+
+/**
+ * Splits the body of a batch request into the HL7v2 messages it carries.
+ * </p>
+ * Two layouts are accepted:
+ * <ul>
+ * <li>MLLP framing: every message between a start block ({@code 0x0B}) and an
+ * end block ({@code 0x1C}), optionally followed by a carriage return. Only
+ * whitespace is allowed between frames.</li>
+ * <li>HL7 batch format: messages one after the other, optionally wrapped in
+ * FHS/BHS headers and BTS/FTS trailers, which are dropped. A message starts at
+ * each MSH segment.</li>
+ * </ul>
+ * The messages are returned untouched, so they are fixed and parsed by
+ * {@link MapperEngine#run(String)} exactly as if they were sent on their own.
+ * Segments only start at the beginning of a line, so the line breaks some
+ * senders leave inside OBX text never split a message.
+ */
+public final class BatchSplitter {
+
+	static final char START_BLOCK = '\u000b';
+	static final char END_BLOCK = '\u001c';
+	static final char CARRIAGE_RETURN = '\r';
+
+	private static final String MESSAGE_HEADER = "MSH";
+	private static final String[] BATCH_SEGMENTS = { "FHS", "BHS", "BTS", "FTS" };
+
+	private BatchSplitter() {
+	}
+
+	/**
+	 * Returns the messages of the batch, in the order they were sent.
+	 *
+	 * @param batch
+	 *            MLLP framed messages, or messages in the HL7 batch format.
+	 * @return the messages, never empty.
+	 * @throws HL7Exception
+	 *             if an MLLP frame isn't terminated, there is content outside
+	 *             of a frame or message, or the batch holds no message.
+	 */
+	public static List<String> split(String batch) throws HL7Exception {
+		List<String> messages = new ArrayList<>();
+		if (batch.indexOf(START_BLOCK) >= 0) {
+			splitFrames(batch, messages);
+		} else {
+			splitSegments(batch, messages);
+		}
+		if (messages.isEmpty()) {
+			throw new HL7Exception("No message found in the batch");
+		}
+		return messages;
+	}
+
+	private static void splitFrames(String batch, List<String> messages) throws HL7Exception {
+		int position = 0;
+		while (position < batch.length()) {
+			char c = batch.charAt(position);
+			if (c != START_BLOCK) {
+				// The start block itself is whitespace to Character
+				if (Character.isWhitespace(c)) {
+					position++;
+					continue;
+				}
+				throw new HL7Exception("Content outside of an MLLP frame at position " + position);
+			}
+			int end = batch.indexOf(END_BLOCK, position + 1);
+			if (end < 0) {
+				throw new HL7Exception("MLLP frame starting at position " + position + " is not terminated");
+			}
+			String frame = batch.substring(position + 1, end);
+			if (isBatchSegment(frame.stripLeading(), 0)) {
+				splitSegments(frame, messages);
+			} else if (!frame.isBlank()) {
+				messages.add(frame);
+			}
+			position = end + 1;
+			if (position < batch.length() && batch.charAt(position) == CARRIAGE_RETURN) {
+				position++;
+			}
+		}
+	}
+
+	private static void splitSegments(String batch, List<String> messages) throws HL7Exception {
+		int messageStart = -1;
+		int segmentStart = 0;
+		while (segmentStart < batch.length()) {
+			int segmentEnd = endOfSegment(batch, segmentStart);
+			int nameStart = skipIndentation(batch, segmentStart, segmentEnd);
+			if (isSegment(batch, nameStart, MESSAGE_HEADER)) {
+				addMessage(batch, messageStart, segmentStart, messages);
+				messageStart = nameStart;
+			} else if (isBatchSegment(batch, nameStart)) {
+				addMessage(batch, messageStart, segmentStart, messages);
+				messageStart = -1;
+			} else if (messageStart < 0 && nameStart < segmentEnd) {
+				throw new HL7Exception("Segment outside of a message at position " + segmentStart);
+			}
+			segmentStart = segmentEnd + 1;
+		}
+		addMessage(batch, messageStart, batch.length(), messages);
+	}
+
+	private static void addMessage(String batch, int start, int end, List<String> messages) {
+		if (start >= 0) {
+			messages.add(batch.substring(start, end));
+		}
+	}
+
+	/**
+	 * Returns the index of the line break ending the segment, or the length of
+	 * the batch for the last one.
+	 */
+	private static int endOfSegment(String batch, int start) {
+		for (int i = start; i < batch.length(); i++) {
+			char c = batch.charAt(i);
+			if (c == CARRIAGE_RETURN || c == '\n') {
+				return i;
+			}
+		}
+		return batch.length();
+	}
+
+	private static int skipIndentation(String batch, int start, int end) {
+		int i = start;
+		while (i < end && (batch.charAt(i) == ' ' || batch.charAt(i) == '\t')) {
+			i++;
+		}
+		return i;
+	}
+
+	private static boolean isBatchSegment(String batch, int start) {
+		for (String name : BATCH_SEGMENTS) {
+			if (isSegment(batch, start, name)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Whether the segment at the given index has the given name, followed by
+	 * the field separator or the end of the line rather than more text.
+	 */
+	private static boolean isSegment(String batch, int start, String name) {
+		if (!batch.startsWith(name, start)) {
+			return false;
+		}
+		int separator = start + name.length();
+		if (separator == batch.length()) {
+			return true;
+		}
+		char c = batch.charAt(separator);
+		return !Character.isLetterOrDigit(c) && c != ' ' && c != '\t';
+	}
+}
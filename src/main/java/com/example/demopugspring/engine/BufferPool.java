@@ -0,0 +1,57 @@
+package com.example.demopugspring.engine;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.function.ToIntFunction;
+
+/**
+ * Buffers kept between messages for any thread to reuse, so the large arrays
+ * a message needs aren't allocated again for the next one.
+ * </p>
+ * Both the number of buffers kept and their size are bounded: a buffer given
+ * back once the pool is full, or larger than its retained capacity, is left
+ * to the garbage collector instead, so one unusually large message doesn't
+ * stay allocated for good.
+ */
+public final class BufferPool<T> {
+
+	private final ArrayBlockingQueue<T> buffers;
+	private final int maxRetainedCapacity;
+	private final ToIntFunction<T> capacity;
+
+	/**
+	 * @param maxBuffers
+	 *            the most buffers kept.
+	 * @param maxRetainedCapacity
+	 *            the largest capacity of a buffer kept.
+	 * @param capacity
+	 *            the capacity of a buffer.
+	 */
+	public BufferPool(int maxBuffers, int maxRetainedCapacity, ToIntFunction<T> capacity) {
+		this.buffers = new ArrayBlockingQueue<>(maxBuffers);
+		this.maxRetainedCapacity = maxRetainedCapacity;
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Takes a buffer out of the pool.
+	 *
+	 * @return a buffer given back earlier, null when there is none.
+	 */
+	public T take() {
+		return buffers.poll();
+	}
+
+	/**
+	 * Gives back a buffer no longer used, keeping it unless the pool is full
+	 * or it is too large. It mustn't be used anymore either way.
+	 */
+	public void give(T buffer) {
+		if (buffer != null && capacity.applyAsInt(buffer) <= maxRetainedCapacity) {
+			buffers.offer(buffer);
+		}
+	}
+
+	public int size() {
+		return buffers.size();
+	}
+}
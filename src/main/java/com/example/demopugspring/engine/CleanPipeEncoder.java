@@ -0,0 +1,247 @@
+package com.example.demopugspring.engine;
+
+import ca.uhn.hl7v2.HL7Exception;
+import ca.uhn.hl7v2.model.Group;
+import ca.uhn.hl7v2.model.Message;
+import ca.uhn.hl7v2.model.Segment;
+import ca.uhn.hl7v2.model.Structure;
+import ca.uhn.hl7v2.model.Type;
+import ca.uhn.hl7v2.parser.DefaultEscaping;
+import ca.uhn.hl7v2.parser.EncodingCharacters;
+import ca.uhn.hl7v2.parser.Escaping;
+import ca.uhn.hl7v2.parser.PipeParser;
+import ca.uhn.hl7v2.util.Terser;
+
+/**
+ * Encodes a message to ER7 (pipe delimited) the way {@link PipeParser} does,
+ * except that empty field repetitions are never written: a field is encoded
+ * as its non empty repetitions only.
+ * </p>
+ * {@link MapperEngine} used to encode the outgoing message and then remove
+ * the empty repetitions with four more passes over the whole string, see
+ * {@link MapperEngine#cleanMessage(String)}. This writes the same output
+ * straight into a per-thread reusable buffer, or into a pooled one handed out
+ * as an {@link EncodedMessage}. The only difference is that a segment whose
+ * last field ended with an empty repetition keeps its segment separator,
+ * where the old "~\r" replacement joined it to the next segment.
+ * </p>
+ * Groups are encoded following {@link PipeParser}: segments without any
+ * field are skipped and, when the parser configuration asks for it, the first
+ * mandatory segment of a group with content is written even if empty.
+ */
+public final class CleanPipeEncoder {
+
+	private static final char SEGMENT_SEPARATOR = '\r';
+
+	/** Buffers above this size are released instead of being reused. */
+	private static final int MAX_RETAINED_CAPACITY = 1 << 20;
+
+	private static final ThreadLocal<StringBuilder> BUFFERS = ThreadLocal.withInitial(StringBuilder::new);
+
+	private static final int MAX_POOLED_BUFFERS = 8;
+	/** Pooled buffers above this size are released instead of being reused */
+	private static final int MAX_POOLED_CAPACITY = 16 << 20;
+
+	/** Buffers of the messages encoded by {@link #encodePooled(Message, int)}, until written */
+	private static final BufferPool<StringBuilder> POOLED_BUFFERS = new BufferPool<>(MAX_POOLED_BUFFERS, MAX_POOLED_CAPACITY,
+			StringBuilder::capacity);
+
+	private static final Escaping ESCAPING = new DefaultEscaping();
+
+	private CleanPipeEncoder() {
+	}
+
+	/**
+	 * Returns the message encoded without empty repetitions.
+	 *
+	 * @param message
+	 *            the message to encode.
+	 * @return the ER7 encoded message.
+	 * @throws HL7Exception
+	 *             if MSH-1 or MSH-2 is missing.
+	 */
+	public static String encode(Message message) throws HL7Exception {
+		return encode(message, 0);
+	}
+
+	/**
+	 * Returns the message encoded without empty repetitions, sizing the buffer
+	 * for the expected length up front, such as the one of the incoming
+	 * message, rather than growing it as the message is written.
+	 *
+	 * @param message
+	 *            the message to encode.
+	 * @param expectedLength
+	 *            the length the encoded message is expected to have.
+	 * @return the ER7 encoded message.
+	 * @throws HL7Exception
+	 *             if MSH-1 or MSH-2 is missing.
+	 */
+	public static String encode(Message message, int expectedLength) throws HL7Exception {
+		StringBuilder buffer = BUFFERS.get();
+		try {
+			encode(message, expectedLength, buffer);
+			return buffer.toString();
+		} finally {
+			if (buffer.capacity() > MAX_RETAINED_CAPACITY) {
+				BUFFERS.remove();
+			} else {
+				buffer.setLength(0);
+			}
+		}
+	}
+
+	/**
+	 * Returns the message encoded without empty repetitions into a buffer
+	 * taken from a pool shared by every thread, for a caller writing it out
+	 * without copying it into a String first. The buffer goes back to the pool
+	 * once the message is released, see {@link EncodedMessage}.
+	 *
+	 * @param message
+	 *            the message to encode.
+	 * @param expectedLength
+	 *            the length the encoded message is expected to have.
+	 * @return the ER7 encoded message.
+	 * @throws HL7Exception
+	 *             if MSH-1 or MSH-2 is missing.
+	 */
+	public static EncodedMessage encodePooled(Message message, int expectedLength) throws HL7Exception {
+		StringBuilder buffer = POOLED_BUFFERS.take();
+		if (buffer == null) {
+			buffer = new StringBuilder();
+		}
+		try {
+			encode(message, expectedLength, buffer);
+		} catch (HL7Exception | RuntimeException e) {
+			release(buffer);
+			throw e;
+		}
+		return new EncodedMessage(buffer);
+	}
+
+	static void release(StringBuilder buffer) {
+		buffer.setLength(0);
+		POOLED_BUFFERS.give(buffer);
+	}
+
+	private static void encode(Message message, int expectedLength, StringBuilder buffer) throws HL7Exception {
+		Segment msh = (Segment) message.get("MSH");
+		String fieldSeparator = Terser.get(msh, 1, 0, 1, 1);
+		if (fieldSeparator == null) {
+			throw new HL7Exception("Can't encode message: MSH-1 (field separator) is missing");
+		}
+		String encodingCharacters = Terser.get(msh, 2, 0, 1, 1);
+		if (encodingCharacters == null) {
+			throw new HL7Exception("Can't encode message: MSH-2 (encoding characters) is missing");
+		}
+		EncodingCharacters encoding = new EncodingCharacters(fieldSeparator.isEmpty() ? '|' : fieldSeparator.charAt(0), encodingCharacters);
+		boolean encodeEmptyMandatorySegments = message.getParser().getParserConfiguration().isEncodeEmptyMandatorySegments();
+
+		buffer.ensureCapacity(expectedLength);
+		encode(message, encoding, encodeEmptyMandatorySegments, buffer);
+	}
+
+	/**
+	 * Appends the encoded group to the buffer, returning whether anything was
+	 * appended.
+	 */
+	private static boolean encode(Group group, EncodingCharacters encoding, boolean encodeEmptyMandatorySegments, StringBuilder buffer)
+			throws HL7Exception {
+		int groupStart = buffer.length();
+		String firstMandatorySegmentName = null;
+		boolean haveEncounteredMandatorySegment = false;
+		boolean haveEncounteredContent = false;
+		boolean haveHadMandatorySegment = false;
+		boolean haveHadSegmentBeforeMandatorySegment = false;
+
+		for (String name : group.getNames()) {
+			group.get(name, 0);
+			Structure[] reps = group.getAll(name);
+			boolean required = group.isRequired(name);
+
+			boolean havePreviouslyEncounteredMandatorySegment = haveEncounteredMandatorySegment;
+			haveEncounteredMandatorySegment |= required;
+			if (required && !haveHadMandatorySegment && !group.isGroup(name)) {
+				firstMandatorySegmentName = name;
+			}
+
+			for (Structure rep : reps) {
+				boolean encoded;
+				if (rep instanceof Group) {
+					encoded = encode((Group) rep, encoding, encodeEmptyMandatorySegments, buffer);
+					if (encoded && required && !haveHadMandatorySegment && !havePreviouslyEncounteredMandatorySegment) {
+						haveHadMandatorySegment = true;
+					}
+				} else {
+					encoded = encode((Segment) rep, encoding, buffer);
+					if (encoded && required) {
+						haveHadMandatorySegment = true;
+					}
+				}
+				if (encoded) {
+					haveEncounteredContent = true;
+					if (!haveHadMandatorySegment && !haveEncounteredMandatorySegment) {
+						haveHadSegmentBeforeMandatorySegment = true;
+					}
+				}
+			}
+		}
+
+		if (firstMandatorySegmentName != null && !haveHadMandatorySegment && !haveHadSegmentBeforeMandatorySegment && haveEncounteredContent
+				&& encodeEmptyMandatorySegments) {
+			buffer.insert(groupStart, firstMandatorySegmentName.toUpperCase() + encoding.getFieldSeparator() + SEGMENT_SEPARATOR);
+		}
+		return buffer.length() > groupStart;
+	}
+
+	/**
+	 * Appends the encoded segment to the buffer, unless it has no field at all,
+	 * returning whether it was appended.
+	 * </p>
+	 * Which trailing fields are dropped is decided before leaving out the empty
+	 * repetitions, like the encode and clean passes did: a field made only of
+	 * empty repetitions is kept as an empty field.
+	 */
+	private static boolean encode(Segment segment, EncodingCharacters encoding, StringBuilder buffer) throws HL7Exception {
+		int segmentStart = buffer.length();
+		String name = segment.getName();
+		boolean delimiterDefinition = isDelimiterDefinitionSegment(name);
+		buffer.append(name).append(encoding.getFieldSeparator());
+
+		int contentEnd = -1;
+		int startAt = delimiterDefinition ? 2 : 1;
+		for (int i = startAt; i <= segment.numFields(); i++) {
+			Type[] reps = segment.getField(i);
+			boolean hasRepetition = false;
+			for (Type rep : reps) {
+				String text = PipeParser.encode(rep, encoding);
+				if (delimiterDefinition && i == 2) {
+					text = ESCAPING.unescape(text, encoding);
+				}
+				if (!text.isEmpty()) {
+					if (hasRepetition) {
+						buffer.append(encoding.getRepetitionSeparator());
+					}
+					buffer.append(text);
+					hasRepetition = true;
+				}
+			}
+			if (hasRepetition || reps.length > 1) {
+				contentEnd = buffer.length();
+			}
+			buffer.append(encoding.getFieldSeparator());
+		}
+
+		if (contentEnd < 0 && name.length() < 4) {
+			buffer.setLength(segmentStart);
+			return false;
+		}
+		buffer.setLength(contentEnd < 0 ? segmentStart + name.length() : contentEnd);
+		buffer.append(SEGMENT_SEPARATOR);
+		return true;
+	}
+
+	private static boolean isDelimiterDefinitionSegment(String name) {
+		return "MSH".equals(name) || "FHS".equals(name) || "BHS".equals(name);
+	}
+}
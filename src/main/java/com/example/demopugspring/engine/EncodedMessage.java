@@ -0,0 +1,118 @@
+package com.example.demopugspring.engine;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+/**
+ * An outgoing message left in the pooled buffer {@link CleanPipeEncoder}
+ * encoded it into, rather than copied into a String, until it is written.
+ * </p>
+ * The {@link Serializer} of {@link Response#getMessage()} writes it to the
+ * JSON response as it reads it from the buffer, then gives the buffer back
+ * to the pool: a large message is then never held twice, let alone three
+ * times with its escaped JSON string. It can't be read once released.
+ */
+public final class EncodedMessage implements CharSequence {
+
+	private StringBuilder buffer;
+
+	EncodedMessage(StringBuilder buffer) {
+		this.buffer = buffer;
+	}
+
+	@Override
+	public int length() {
+		return buffer().length();
+	}
+
+	@Override
+	public char charAt(int index) {
+		return buffer().charAt(index);
+	}
+
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		return buffer().subSequence(start, end);
+	}
+
+	@Override
+	public String toString() {
+		return buffer().toString();
+	}
+
+	/**
+	 * Returns a reader of the message, valid until it is released.
+	 */
+	public Reader reader() {
+		StringBuilder chars = buffer();
+		return new Reader() {
+			private int position;
+
+			@Override
+			public int read(char[] cbuf, int off, int len) {
+				if (position >= chars.length()) {
+					return -1;
+				}
+				int count = Math.min(len, chars.length() - position);
+				chars.getChars(position, position + count, cbuf, off);
+				position += count;
+				return count;
+			}
+
+			@Override
+			public void close() {
+			}
+		};
+	}
+
+	/**
+	 * Gives the buffer back to {@link CleanPipeEncoder}; does nothing once
+	 * released.
+	 */
+	public void release() {
+		if (buffer != null) {
+			CleanPipeEncoder.release(buffer);
+			buffer = null;
+		}
+	}
+
+	private StringBuilder buffer() {
+		if (buffer == null) {
+			throw new IllegalStateException("Encoded message already released");
+		}
+		return buffer;
+	}
+
+	/**
+	 * Writes an {@link EncodedMessage} through
+	 * {@link JsonGenerator#writeString(Reader, int)}, escaping it a chunk at a
+	 * time into the output, and releases it; any other message is written as
+	 * a String.
+	 */
+	public static final class Serializer extends StdSerializer<CharSequence> {
+
+		private static final long serialVersionUID = 1L;
+
+		public Serializer() {
+			super(CharSequence.class);
+		}
+
+		@Override
+		public void serialize(CharSequence value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+			if (value instanceof EncodedMessage) {
+				EncodedMessage message = (EncodedMessage) value;
+				try {
+					gen.writeString(message.reader(), message.length());
+				} finally {
+					message.release();
+				}
+			} else {
+				gen.writeString(value.toString());
+			}
+		}
+	}
+}
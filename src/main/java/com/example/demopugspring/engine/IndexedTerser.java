@@ -0,0 +1,28 @@
+package com.example.demopugspring.engine;
+
+import ca.uhn.hl7v2.HL7Exception;
+import ca.uhn.hl7v2.model.Message;
+import ca.uhn.hl7v2.util.Terser;
+
+/**
+ * {@link Terser} of the incoming message keeping its {@link SegmentIndex},
+ * built the first time a wildcard mapper needs it. The incoming message is
+ * only read while mapping, so one index serves every mapper.
+ */
+class IndexedTerser extends Terser {
+
+	private final Message message;
+	private SegmentIndex index;
+
+	IndexedTerser(Message message) {
+		super(message);
+		this.message = message;
+	}
+
+	SegmentIndex getIndex() throws HL7Exception {
+		if (index == null) {
+			index = new SegmentIndex(message);
+		}
+		return index;
+	}
+}
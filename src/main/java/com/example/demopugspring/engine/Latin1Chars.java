@@ -0,0 +1,59 @@
+package com.example.demopugspring.engine;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * ISO-8859-1 encoded bytes read as characters, without decoding them into a
+ * String first: each byte is the character of the same code.
+ * </p>
+ * Lets a request body be handed to {@link MessageFixer}, which builds the
+ * only String of the incoming message, straight from the bytes read. The bytes
+ * aren't copied, so they mustn't change while the sequence is in use: a
+ * pooled array is only given back to {@link RequestBodies} once the message
+ * is mapped.
+ */
+public final class Latin1Chars implements CharSequence {
+
+	final byte[] bytes;
+	private final int offset;
+	private final int length;
+
+	public Latin1Chars(byte[] bytes) {
+		this(bytes, 0, bytes.length);
+	}
+
+	public Latin1Chars(byte[] bytes, int offset, int length) {
+		if (offset < 0 || length < 0 || offset + length > bytes.length) {
+			throw new IndexOutOfBoundsException("offset " + offset + ", length " + length + ", bytes " + bytes.length);
+		}
+		this.bytes = bytes;
+		this.offset = offset;
+		this.length = length;
+	}
+
+	@Override
+	public int length() {
+		return length;
+	}
+
+	@Override
+	public char charAt(int index) {
+		if (index < 0 || index >= length) {
+			throw new StringIndexOutOfBoundsException("index " + index + ", length " + length);
+		}
+		return (char) (bytes[offset + index] & 0xFF);
+	}
+
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		if (start < 0 || start > end || end > length) {
+			throw new StringIndexOutOfBoundsException("begin " + start + ", end " + end + ", length " + length);
+		}
+		return new Latin1Chars(bytes, offset + start, end - start);
+	}
+
+	@Override
+	public String toString() {
+		return new String(bytes, offset, length, StandardCharsets.ISO_8859_1);
+	}
+}
@@ -1,23 +1,34 @@
 package com.example.demopugspring.engine;
 
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
-import java.util.StringTokenizer;
-import java.util.regex.Matcher;
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
 
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import com.example.demopugspring.engine.metrics.IntegrationMetrics;
+import com.example.demopugspring.engine.metrics.MappingMetrics;
+import com.example.demopugspring.engine.metrics.MappingMetrics.Stage;
+import com.example.demopugspring.engine.metrics.MappingProfile;
 import com.example.demopugspring.engine.operation.AbstractOperation;
-import com.example.demopugspring.factory.ContextSingleton;
+import com.example.demopugspring.engine.operation.OperationRegistry;
+import com.example.demopugspring.engine.plan.IntegrationPlan;
+import com.example.demopugspring.engine.plan.IntegrationPlanCache;
+import com.example.demopugspring.engine.plan.IntegrationPlanKey;
+import com.example.demopugspring.engine.plan.PlanStep;
+import com.example.demopugspring.engine.trace.MappingTrace;
+import com.example.demopugspring.engine.trace.MappingTraceBuffer;
+import com.example.demopugspring.engine.trace.TraceDiff;
+import com.example.demopugspring.engine.trace.TraceStep;
 import com.example.demopugspring.filter.MatchesValueFilter;
 import com.example.demopugspring.model.Integration;
 import com.example.demopugspring.model.IntegrationMapper;
@@ -26,6 +37,7 @@ import com.example.demopugspring.model.Mapper.Category;
 import com.example.demopugspring.operation.ClearFilteredOperation;
 import com.example.demopugspring.operation.ReplaceOperation;
 import com.example.demopugspring.operation.SwapOperation;
+import com.example.demopugspring.properties.CodeLookups;
 import com.example.demopugspring.properties.Codes;
 import com.example.demopugspring.properties.CountryCodes;
 import com.example.demopugspring.properties.FacilitiesCodes;
@@ -33,17 +45,14 @@ import com.example.demopugspring.properties.IdentificationCodes;
 import com.example.demopugspring.properties.InsurersCodes;
 import com.example.demopugspring.properties.MarriageStatusCodes;
 import com.example.demopugspring.properties.PropertiesCategoriesEnum;
-import com.example.demopugspring.service.ApplicationService;
 import com.example.demopugspring.service.IntegrationMapperService;
 import com.example.demopugspring.service.IntegrationService;
-import com.example.demopugspring.service.MessageService;
 import com.example.demopugspring.visitor.TranscodingVisitor;
 
 import ca.uhn.hl7v2.HL7Exception;
-import ca.uhn.hl7v2.HapiContext;
+import ca.uhn.hl7v2.model.Composite;
 import ca.uhn.hl7v2.model.Message;
 import ca.uhn.hl7v2.model.Segment;
-import ca.uhn.hl7v2.model.v24.datatype.CX;
 import ca.uhn.hl7v2.parser.PipeParser;
 import ca.uhn.hl7v2.util.Terser;
 
@@ -52,21 +61,9 @@ public class MapperEngine {
 
 	private static final Logger log = LoggerFactory.getLogger(MapperEngine.class);
 
-	private static final String SEGMENT_SEPARATOR = "\r";
 	private static final String FIELD_SEPARATOR = "|";
-	private static final String COMPONENT_SEPARATOR = "^";
 
-	private static final String ESCAPED_CARRIAGE_RETURN = "\\.br\\";
-
-	private static final Pattern HL7_ESCAPED_HEX_PATTERN = Pattern.compile("\\\\X[89A-F][0-9A-F]\\\\");
-
-	private static final int NUMBER_PID_SEQ = 39;
-	
-	private static final Pattern OBX2_ED_PATTERN = Pattern.compile("(?<=OBX\\|\\d{0,4}\\|)ED");
-	private static final Pattern OBX2_PDF_BASE64_PATTERN = Pattern.compile("(?<=OBX\\|\\d{0,4}\\|)PDF_BASE64");
-	private static final Pattern OBX5_JVBER_PATTERN = Pattern.compile("(?<=OBX\\|\\d{0,4}\\|ED\\|.{0,250}\\|.{0,20}\\|)JVBER");
-
-	private static final String OPERATIONS_PACKAGE = "operation";
+	private static final String OUTGOING_CHARACTER_SET = "8859/1";
 
     @Autowired
     IdentificationCodes identificationCodes;
@@ -83,12 +80,35 @@ public class MapperEngine {
     @Autowired
     IntegrationMapperService integrationMapperService;
     @Autowired
-    ApplicationService applicationService;
+    IntegrationPlanCache integrationPlanCache;
+    @Autowired
+    OperationRegistry operationRegistry;
+    @Autowired
+    PipeParser pipeParser;
     @Autowired
-    MessageService messageService;
+    MappingTraceBuffer mappingTraceBuffer;
+    @Autowired
+    MappingMetrics mappingMetrics;
+    /** Whether integrations are run as laid out by the plan optimizer */
+    @Value("${mapper.optimize-plans:true}")
+    boolean optimizePlans = true;
+    /** Messages mapped for every one whose summary is logged at info, 0 for none */
+    @Value("${mapper.log.sample-every:100}")
+    int logSampleEvery = 100;
+
+    private final AtomicLong mapped = new AtomicLong();
 
 
 	public void transcode(Terser tmp, List<String> keys, String value) throws HL7Exception {
+		transcode(tmp, keys, value, null);
+	}
+
+	/**
+	 * Transcodes the primitives of the keys with the code table named by the
+	 * value, recording the lookups under the sending application in the
+	 * telemetry of the table.
+	 */
+	public void transcode(Terser tmp, List<String> keys, String value, String sendingApp) throws HL7Exception {
         TranscodingVisitor transcodeVisitor;
         Codes codeInterface;
         PropertiesCategoriesEnum property = PropertiesCategoriesEnum.valueOfProperty(value);
@@ -112,13 +132,23 @@ public class MapperEngine {
 				throw new HL7Exception("Transcode propperty is incorrect.");
         }
 
-        for (String key : keys) {
-            transcodeVisitor = new TranscodingVisitor(key, value, codeInterface);
-            transcodeVisitor.start(tmp.getSegment(key.split("-")[0]).getMessage());
+        CodeLookups lookups = new CodeLookups();
+        try {
+            for (String key : keys) {
+                transcodeVisitor = new TranscodingVisitor(key, value, codeInterface, lookups);
+                transcodeVisitor.start(tmp.getSegment(key.split("-")[0]).getMessage());
+            }
+        } finally {
+            codeInterface.record(lookups, sendingApp);
         }
     }
 
     /**
+     * Maps the fields of a mapper the registry has no operation for, expanding
+     * wildcards from the {@link SegmentIndex} of the incoming message. TEXT and
+     * FIELD mappers run as operations instead, whose wildcards are expanded by
+     * {@link com.example.demopugspring.visitor.StandardVisitor} in a single walk of the outgoing message.
+     *
      * @param msg
      * @param tmp
      * @param fields
@@ -130,47 +160,32 @@ public class MapperEngine {
         fields.forEach(field -> {
             try {
                 if (field.contains("#")) {
-                    boolean toContinue = true;
-                    log.info("Contains # - loop all segments/fields");
+                    WildcardPath path = WildcardPath.compile(field);
+                    if (path != null) {
+                        int repetitions = indexOf(msg).countRepetitions(path);
+                        log.debug("{} repetitions of {}", repetitions, field);
+                        for (int i = 0; i < repetitions; i++) {
+                            mapRepetition(msg, tmp, field, path.expand(i), repetitionValue(value, type, i), type, errorList);
+                        }
+                        return;
+                    }
+                    log.debug("{} can't be indexed, resolving its repetitions one by one", field);
 
                     int i = 0;
 
-					while (toContinue) {
+					while (true) {
 
                         var fieldRep = field.replace("#", String.valueOf(i));
-
-                        var valueRep = value;
-                        if (value.equals("#")) {
-                            valueRep = String.valueOf(i + 1);
-                        } else if (type == Mapper.Category.FIELD) {
-                            valueRep = value.replace("#", i + "");
-                        }
-                        log.info(fieldRep);
-                        log.info(valueRep);
+                        var valueRep = repetitionValue(value, type, i);
+                        log.debug("{} = {}", fieldRep, valueRep);
                         if (msg.getSegment(fieldRep).isEmpty()) {
-                            log.info("Segmento:" + msg.getSegment(fieldRep).encode());
-                            log.info("Segment is empty.");
+                            log.debug("Segment of {} is empty", fieldRep);
                             break;
                         }
-                        switch (type) {
-                            case TEXT:
-                                tmp.set(fieldRep, valueRep);
-                                break;
-                            case FIELD:
-                                tmp.set(fieldRep, msg.get(valueRep));
-                                break;
-                            case SWAP:
-                                tmp.set(fieldRep, msg.get(valueRep));
-                                tmp.set(valueRep, msg.get(fieldRep));
-                                break;
-                            default:
-                                log.error("No defined Category");
-                                errorList.add(new MapperError(field, "No Category defined as: " + type));
-                        }
+                        mapRepetition(msg, tmp, field, fieldRep, valueRep, type, errorList);
                         i++;
                     }
                 } else {
-                    log.info("No # on field - just a simple map");
                     switch (type) {
                         case TEXT:
                             tmp.set(field, value);
@@ -189,13 +204,13 @@ public class MapperEngine {
                         case JOIN:
                             StringBuilder joined = new StringBuilder();
                             String valueToAppend;
-                            log.info("Fields to join:" + value);
+                            log.debug("Fields to join: {}", value);
                             for (String val : value.split(",")) {
 								valueToAppend = msg.get(val);
-								log.info("Value for " + val + ":" + valueToAppend);
+								log.debug("Value for {}: {}", val, valueToAppend);
 								joined.append(valueToAppend);
                             }
-                            log.info("joined fields:" + joined.toString());
+                            log.debug("Joined fields: {}", joined);
                             tmp.set(field, joined.toString());
                             break;
                         case NUMERIC:
@@ -279,132 +294,349 @@ public class MapperEngine {
 	}
 
     public Response run(String incomingMessage) {
-        String result = "";
+        return run(incomingMessage, false);
+    }
+
+    /**
+     * Maps the message as {@link #run(String)} does, recording what every
+     * mapper changed in a {@link MappingTrace} when asked to or when its
+     * integration is traced. The id of the trace in the
+     * {@link MappingTraceBuffer} is set in the response.
+     */
+    public Response run(String incomingMessage, boolean traced) {
+        return run(incomingMessage, traced, false);
+    }
+
+    /**
+     * Maps the message as {@link #run(String, boolean)} does, measuring each
+     * stage and each mapper in a {@link MappingProfile} set in the response
+     * when asked to. The message is only read while it's fixed, see
+     * {@link Latin1Chars} to map one from bytes.
+     */
+    public Response run(CharSequence incomingMessage, boolean traced, boolean profiled) {
+        return run(incomingMessage, traced, profiled, false);
+    }
+
+    /**
+     * Maps the message as {@link #run(CharSequence, boolean, boolean)} does,
+     * leaving the outgoing message in a pooled buffer when asked to: the
+     * message of the response is then an {@link EncodedMessage}, to be
+     * written out and released by whoever gets the response.
+     */
+    public Response run(CharSequence incomingMessage, boolean traced, boolean profiled, boolean pooled) {
+        long start = System.nanoTime();
+        MappingProfile profile = profiled ? new MappingProfile() : null;
+        CharSequence result = "";
+        String messageType = null;
+        MappingTrace trace = null;
+        IntegrationMetrics metrics = null;
         Response response = new Response();
         List<MapperError> errorList = new ArrayList<>();
-        HapiContext context = ContextSingleton.getInstance();
-        PipeParser parser = context.getPipeParser();
+        PipeParser parser = pipeParser;
         try {
             // Transforming the string before parsing to a HL7v2 Message
-			incomingMessage = fixMessage(incomingMessage);
-            Message message = parser.parse(incomingMessage);
-            Message volatileMessage = parser.parse(incomingMessage);
-            log.info("Incoming message version:" + message.getVersion());
-            Terser msg = new Terser(message);
-            Terser volatileTerser = new Terser(volatileMessage);
+			String fixedMessage = fixMessage(incomingMessage);
+            long stageStart = record(Stage.FIX, start, profile);
+            Message message = parser.parse(fixedMessage);
+            stageStart = record(Stage.PARSE, stageStart, profile);
+            Terser msg = new IndexedTerser(message);
             String messageCode = msg.get("MSH-9-1");
             String messageEvent = msg.get("MSH-9-2");
             String sendingApp = msg.get("MSH-3-1");
             String receivingApp = msg.get("MSH-5-1");
             String messageVersion = msg.get("MSH-12");
-
-            Integration integration = integrationService.findByMessageAndApplications(
-                    messageService.find(messageCode, messageEvent, messageVersion),
-                    applicationService.findByCode(sendingApp),
-                    applicationService.findByCode(receivingApp));
-
-            if (integration == null) {
-                throw new HL7Exception("No integration found for message " + messageCode + "-" + messageEvent +
-                        " and sending application " + sendingApp + " and receiving application " + receivingApp);
+            messageType = messageCode + "^" + messageEvent;
+            log.debug("Incoming {} {} from {} to {}", messageType, messageVersion, sendingApp, receivingApp);
+
+            IntegrationPlanKey key = new IntegrationPlanKey(messageCode, messageEvent, messageVersion, sendingApp, receivingApp);
+            IntegrationPlan plan = integrationPlanCache.get(key, this::loadPlan);
+            if (plan == null) {
+                throw new HL7Exception("No integration found for message " + key.getMessageCode() + "-" + key.getMessageEvent() +
+                        " and sending application " + key.getSendingApp() + " and receiving application " + key.getReceivingApp());
             }
-            List<IntegrationMapper> integrationMappers = integrationMapperService.retrieveActiveIntegrationMappersFromIntegration(integration);
-            List<Mapper> mappers = new ArrayList<>();
-
-            for(IntegrationMapper intMapper : integrationMappers){
-                mappers.add(intMapper.getMapper());
-            }
-            log.info("Integration:" + mappers.toString());
-            // Change message version
-            volatileTerser.set("MSH-9-1", integration.getResultMessage().getCode());
-            volatileTerser.set("MSH-9-2", integration.getResultMessage().getEvent());
-            volatileTerser.set("MSH-12", integration.getResultMessage().getVersion().getValue());
-			volatileTerser.set("MSH-18", "8859/1");
-            Message outMessage = parser.parse(volatileMessage.encode());
-            log.info(outMessage.getName() + " " + outMessage.getVersion());
+            stageStart = record(Stage.ROUTE, stageStart, profile);
+            metrics = mappingMetrics.integration(plan.getIntegrationId());
+            log.debug("Integration {}: {}", plan.getIntegrationId(), plan.getMappers());
+            // Change message version, parsing straight into the result structure
+            Message outMessage = parser.parse(MessageHeaderRewriter.retarget(fixedMessage,
+                    plan.getResultMessage().getCode(),
+                    plan.getResultMessage().getEvent(),
+                    plan.getResultMessage().getVersion().getValue(),
+                    OUTGOING_CHARACTER_SET));
+            stageStart = record(Stage.RETARGET, stageStart, profile);
             Terser tmp = new Terser(outMessage);
-            for (Mapper mapper : mappers) {
-                Category mapperCategory = mapper.getCategory();
-                List<Category> supportedOperations = Arrays.asList(Category.TEXT, Category.FIELD);
-                if (supportedOperations.contains(mapperCategory)) {
-                    String mapperClassName = this.getClass().getPackageName() + "." + OPERATIONS_PACKAGE + "." + mapperCategory.getValue();
-
-                    AbstractOperation mapperInstance = null;
-                    try {
-                        log.debug("Searching for class {}...", mapperClassName);
-                        @SuppressWarnings("unchecked")
-                        Class<? extends AbstractOperation> mapperClass = (Class<? extends AbstractOperation>) Class.forName(mapperClassName);
-
-                        Constructor<? extends AbstractOperation> mapperConstructor = mapperClass.getConstructor(this.getClass(), Message.class, Message.class,
-                                Terser.class, Terser.class, List.class, String.class);
-
-                        mapperInstance = mapperConstructor.newInstance(this, message, outMessage, msg, tmp, mapper.getKey(), mapper.getValue());
-
-                        mapperInstance.map();
-                        errorList.addAll(mapperInstance.getErrors());
-                    } catch (ClassNotFoundException e) {
-                        log.error("Couldn't find class for Mapper category '{}' ('{}')!", mapperCategory, mapperClassName, e);
-                        errorList.add(new MapperError("Global", "Mapper category " + mapperCategory + " isn't supported!"));
-                    } catch (NoSuchMethodException | SecurityException e) {
-                        log.error("Couldn't find right constructor for '{}'!", mapperClassName, e);
-                        errorList.add(new MapperError("Global", "Mapper category " + mapperCategory + " isn't supported!"));
-                    } catch (InstantiationException | IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
-                        log.error("Couldn't instantiate '{}'!", mapperClassName, e);
-                        errorList.add(new MapperError("Global", "Mapper category " + mapperCategory + " isn't supported!"));
-                    } catch (Exception e) {
-                        log.error("Unexpected exception setting or running Mapper '{}'!", mapperClassName, e);
-                        errorList.add(new MapperError("Global", "Unexpected setting or running Mapper '" + mapperClassName + "'!"));
-                    }
+            if (traced || plan.isTraced()) {
+                trace = new MappingTrace(plan.getIntegrationId(), messageType, msg.get("MSH-10"));
+            }
+            for (PlanStep step : plan.getSteps()) {
+                if (trace == null && profile == null) {
+                    apply(step, metrics, message, outMessage, msg, tmp, errorList);
                 } else {
-                    switch (mapperCategory) {
-                        case TEXT:
-                        case SEGMENT:
-                        case NUMERIC:
-                            log.info("TEXT or FIELD");
-                            mapper(msg, tmp, mapper.getKey(), mapper.getValue(), mapperCategory, errorList);
-                            break;
-                        case CONTACT:
-                            String field = mapper.getKey().get(0);
-                            addContactRepetitions(tmp, field, tmp.get(field + "-13-7-1"), tmp.get(field + "-13-12-1"), tmp.get(field + "-14-7-1"), tmp.get(field + "-14-12-1"), tmp.get(field + "-13-04"));
-                            break;
-                        case ADD_SNS:
-                            addFieldSNS(tmp, msg, mapper.getKey(), mapper.getValue(), errorList);
-                            break;
-						case JOIN:
-                            joinFields(tmp, mapper.getKey(), mapper.getValue(), errorList);
-                            break;
-						case SWAP:
-                            swapOperation(tmp, mapper.getKey(), mapper.getValue(), mapperCategory, errorList);
-                            break;
-                        case TRANSCODING:
-							transcode(tmp, mapper.getKey(), mapper.getValue());
-                            break;
-                        case CLEAR_IF:
-                            clearIfOperation(tmp, mapper.getKey(), mapper.getValue(), errorList);
-                            break;
-                        case REPLACE:
-                            replaceOperation(tmp, mapper.getKey(), mapper.getValue(), errorList);
-                            break;
-						case TEXT_IF:
-							textIf(msg, tmp, mapper.getKey(), mapper.getValue(), errorList);
-							break;
-                        default:
-                            errorList.add(new MapperError(mapper.getKey().toString(), "No Category: " + mapperCategory));
-                    }
+                    inspect(step, plan, metrics, trace, profile, message, outMessage, msg, tmp, errorList);
                 }
             }
-            log.info("Out message version:" + outMessage.getName() + " " + outMessage.getVersion());
-            result = outMessage.encode();
-            result = cleanMessage(result);
-            log.info(result);
+            if (profile != null) {
+                profile.mark();
+            }
+            stageStart = System.nanoTime();
+            result = pooled ? CleanPipeEncoder.encodePooled(outMessage, fixedMessage.length())
+                    : CleanPipeEncoder.encode(outMessage, fixedMessage.length());
+            record(Stage.ENCODE, stageStart, profile);
+            log.debug("Outgoing {} {}: {}", outMessage.getName(), outMessage.getVersion(), result);
         } catch (HL7Exception ex) {
             log.error(ex.getMessage());
             errorList.add(new MapperError("Global", ex.getMessage()));
         }
+        long elapsed = System.nanoTime() - start;
+        mappingMetrics.record(Stage.TOTAL, elapsed);
+        if (metrics != null) {
+            metrics.record(elapsed, errorList.size());
+        } else {
+            mappingMetrics.recordUnrouted();
+        }
+        if (trace != null) {
+            trace.finish(errorList.size());
+            response.setTraceId(mappingTraceBuffer.add(trace));
+        }
+        if (profile != null) {
+            profile.finish();
+            response.setProfile(profile);
+        }
+        if (logSampleEvery > 0 && mapped.incrementAndGet() % logSampleEvery == 0) {
+            log.info("Mapped {} in {} ms with {} errors (1 in {} messages logged)", messageType,
+                    TimeUnit.NANOSECONDS.toMillis(elapsed), errorList.size(), logSampleEvery);
+        }
         response.setMessage(result);
         response.setErrorList(errorList);
         return response;
     }
 
+    /**
+     * Records the time since the start of a stage, in the profile as well when
+     * there's one, returning the end of it.
+     */
+    private long record(Stage stage, long stageStart, MappingProfile profile) {
+        long now = System.nanoTime();
+        mappingMetrics.record(stage, now - stageStart);
+        if (profile != null) {
+            profile.stage(stage);
+        }
+        return now;
+    }
+
+    private static SegmentIndex indexOf(Terser msg) throws HL7Exception {
+        return msg instanceof IndexedTerser ? ((IndexedTerser) msg).getIndex() : new SegmentIndex(msg.getFinder().getRoot());
+    }
+
+    /**
+     * Returns the value of a wildcard mapper for a repetition: its number,
+     * counting from 1, for a value of "#", the path of the repetition for a
+     * FIELD.
+     */
+    private static String repetitionValue(String value, Mapper.Category type, int repetition) {
+        if (value.equals("#")) {
+            return String.valueOf(repetition + 1);
+        } else if (type == Mapper.Category.FIELD) {
+            return value.replace("#", String.valueOf(repetition));
+        }
+        return value;
+    }
+
+    private void mapRepetition(Terser msg, Terser tmp, String field, String fieldRep, String valueRep, Mapper.Category type, List<MapperError> errorList) throws HL7Exception {
+        switch (type) {
+            case TEXT:
+                tmp.set(fieldRep, valueRep);
+                break;
+            case FIELD:
+                tmp.set(fieldRep, msg.get(valueRep));
+                break;
+            case SWAP:
+                tmp.set(fieldRep, msg.get(valueRep));
+                tmp.set(valueRep, msg.get(fieldRep));
+                break;
+            default:
+                log.error("No defined Category");
+                errorList.add(new MapperError(field, "No Category defined as: " + type));
+        }
+    }
+
+    /**
+     * Applies a step of the integration plan to the outgoing message, timing
+     * each mapper in the metrics of the integration. The merged mapper of a
+     * {@link PlanStep.Kind#MERGED_REPLACE} step is timed as the first of the
+     * mappers it stands for.
+     */
+    void apply(PlanStep step, IntegrationMetrics metrics, Message message, Message outMessage, Terser msg, Terser tmp, List<MapperError> errorList)
+            throws HL7Exception {
+        switch (step.getKind()) {
+            case ELIMINATED:
+                break;
+            case SEGMENT_WRITES:
+                Terser writes = new SegmentCachingTerser(outMessage);
+                int errors = errorList.size();
+                for (Mapper mapper : step.getMappers()) {
+                    apply(mapper, metrics, message, outMessage, msg, writes, errorList);
+                }
+                try {
+                    // Leave the outgoing terser on the segment, as the writes would have
+                    tmp.getSegment(step.getTarget());
+                } catch (HL7Exception e) {
+                    // A target the writes couldn't reach was reported by each of
+                    // them, as when run one by one; report it only if none did
+                    if (errorList.size() == errors) {
+                        log.error("Error on HL7 mapping", e);
+                        errorList.add(new MapperError(step.getTarget(), e.getMessage()));
+                    }
+                }
+                break;
+            default:
+                apply(step.getMapper(), metrics, message, outMessage, msg, tmp, errorList);
+        }
+    }
+
+    private void apply(Mapper mapper, IntegrationMetrics metrics, Message message, Message outMessage, Terser msg, Terser tmp,
+            List<MapperError> errorList) throws HL7Exception {
+        long start = System.nanoTime();
+        int errors = errorList.size();
+        try {
+            apply(mapper, message, outMessage, msg, tmp, errorList);
+        } finally {
+            metrics.mapper(mapper).record(System.nanoTime() - start, errorList.size() - errors);
+        }
+    }
+
+    /**
+     * Applies a step of the integration plan as {@link #apply(PlanStep, IntegrationMetrics, Message, Message, Terser, Terser, List)}
+     * does, one mapper at a time, adding the fields each one changes to the
+     * trace and what each one took to the profile, either of them may be
+     * null. When tracing every mapper encodes the message twice, so the
+     * mappers aren't timed in the metrics.
+     */
+    void inspect(PlanStep step, IntegrationPlan plan, IntegrationMetrics metrics, MappingTrace trace, MappingProfile profile, Message message,
+            Message outMessage, Terser msg, Terser tmp, List<MapperError> errorList) throws HL7Exception {
+        switch (step.getKind()) {
+            case ELIMINATED:
+                if (trace != null) {
+                    trace.add(new TraceStep(describe(step.getMappers()), step.getNote(), List.of(), List.of()));
+                }
+                break;
+            case SEGMENT_WRITES:
+                // Run on their own, the writes end up the same as grouped
+                for (Mapper mapper : step.getMappers()) {
+                    inspect(mapper, plan.getOrderIndex(mapper), List.of(mapper), null, metrics, trace, profile, message, outMessage, msg, tmp, errorList);
+                }
+                break;
+            case MERGED_REPLACE:
+                inspect(step.getMapper(), plan.getOrderIndex(step.getMappers().get(0)), step.getMappers(), step.getNote(), metrics, trace, profile,
+                        message, outMessage, msg, tmp, errorList);
+                break;
+            default:
+                inspect(step.getMapper(), plan.getOrderIndex(step.getMapper()), List.of(step.getMapper()), null, metrics, trace, profile, message,
+                        outMessage, msg, tmp, errorList);
+        }
+    }
+
+    private void inspect(Mapper mapper, Integer orderIndex, List<Mapper> mappers, String note, IntegrationMetrics metrics, MappingTrace trace,
+            MappingProfile profile, Message message, Message outMessage, Terser msg, Terser tmp, List<MapperError> errorList) throws HL7Exception {
+        String before = trace != null ? CleanPipeEncoder.encode(outMessage) : null;
+        int errors = errorList.size();
+        if (profile != null) {
+            profile.mark();
+        }
+        if (trace != null) {
+            apply(mapper, message, outMessage, msg, tmp, errorList);
+        } else {
+            apply(mapper, metrics, message, outMessage, msg, tmp, errorList);
+        }
+        if (profile != null) {
+            profile.mapper(orderIndex, mapper);
+        }
+        if (trace != null) {
+            trace.add(new TraceStep(describe(mappers), note, TraceDiff.diff(before, CleanPipeEncoder.encode(outMessage)),
+                    new ArrayList<>(errorList.subList(errors, errorList.size()))));
+        }
+    }
+
+    private static String describe(List<Mapper> mappers) {
+        StringJoiner description = new StringJoiner("; ");
+        for (Mapper mapper : mappers) {
+            description.add("#" + mapper.getId() + " " + mapper.getCategory() + " " + String.join(",", mapper.getKey()) + " = " + mapper.getValue());
+        }
+        return description.toString();
+    }
+
+    /**
+     * Applies a single mapper of the integration to the outgoing message.
+     */
+    void apply(Mapper mapper, Message message, Message outMessage, Terser msg, Terser tmp, List<MapperError> errorList) throws HL7Exception {
+        Category mapperCategory = mapper.getCategory();
+        if (operationRegistry.supports(mapperCategory)) {
+            try {
+                AbstractOperation mapperInstance = operationRegistry.create(mapperCategory, this, message, outMessage, msg, tmp, mapper.getKey(), mapper.getValue());
+                mapperInstance.map();
+                errorList.addAll(mapperInstance.getErrors());
+            } catch (Exception e) {
+                log.error("Unexpected exception setting or running Mapper '{}'!", mapperCategory, e);
+                errorList.add(new MapperError("Global", "Unexpected setting or running Mapper '" + mapperCategory + "'!"));
+            }
+        } else {
+            switch (mapperCategory) {
+                case TEXT:
+                case SEGMENT:
+                case NUMERIC:
+                    mapper(msg, tmp, mapper.getKey(), mapper.getValue(), mapperCategory, errorList);
+                    break;
+                case CONTACT:
+                    String field = mapper.getKey().get(0);
+                    addContactRepetitions(tmp, field, tmp.get(field + "-13-7-1"), tmp.get(field + "-13-12-1"), tmp.get(field + "-14-7-1"), tmp.get(field + "-14-12-1"), tmp.get(field + "-13-04"));
+                    break;
+                case ADD_SNS:
+                    addFieldSNS(tmp, msg, mapper.getKey(), mapper.getValue(), errorList);
+                    break;
+                case JOIN:
+                    joinFields(tmp, mapper.getKey(), mapper.getValue(), errorList);
+                    break;
+                case SWAP:
+                    swapOperation(tmp, mapper.getKey(), mapper.getValue(), mapperCategory, errorList);
+                    break;
+                case TRANSCODING:
+                    transcode(tmp, mapper.getKey(), mapper.getValue(), msg.get("MSH-3-1"));
+                    break;
+                case CLEAR_IF:
+                    clearIfOperation(tmp, mapper.getKey(), mapper.getValue(), errorList);
+                    break;
+                case REPLACE:
+                    replaceOperation(tmp, mapper.getKey(), mapper.getValue(), errorList);
+                    break;
+                case TEXT_IF:
+                    textIf(msg, tmp, mapper.getKey(), mapper.getValue(), errorList);
+                    break;
+                default:
+                    errorList.add(new MapperError(mapper.getKey().toString(), "No Category: " + mapperCategory));
+            }
+        }
+    }
+
+    /**
+     * Resolves the integration for the given routing key from the database and
+     * compiles it into an {@link IntegrationPlan}, creating the metrics of its
+     * mappers, or returns null without one. Only called on a miss of
+     * {@link IntegrationPlanCache}.
+     */
+    IntegrationPlan loadPlan(IntegrationPlanKey key) throws HL7Exception {
+        // The mappers come with their integration, which is only looked up
+        // on its own when it has no active mapper
+        List<IntegrationMapper> mappers = integrationMapperService.retrieveActiveIntegrationMappersByRoute(key);
+        Integration integration = mappers.isEmpty() ? integrationService.findByRoute(key) : mappers.get(0).getIntegration();
+
+        if (integration == null) {
+            return null;
+        }
+        IntegrationPlan plan = IntegrationPlan.compile(integration, mappers, optimizePlans);
+        mappingMetrics.register(plan);
+        return plan;
+    }
+
     public void joinFields(Terser tmp, List<String> key, String value, List<MapperError> errorList) throws HL7Exception {
         String[] field_split = key.get(0).split("-");
         String[] value_split = value.split("-");
@@ -419,7 +651,7 @@ public class MapperEngine {
         while (indexRepTarget < totalRepetitions) {
             while (indexRepSource < numberRepSource) {
                 int indexFields = 1;
-                int numFieldsSource = ((CX) segmentTarget.getField(Integer.valueOf(field_split[1]), indexRepSource)).getComponents().length;
+                int numFieldsSource = ((Composite) segmentTarget.getField(Integer.valueOf(field_split[1]), indexRepSource)).getComponents().length;
                 while (indexFields < numFieldsSource + 1) {
                     String valueToPass = Terser.get(segmentTarget, Integer.valueOf(value_split[1]), indexRepSource, indexFields, 1);
                     Terser.set(segmentTarget, Integer.valueOf(field_split[1]), indexRepTarget, indexFields, 1, valueToPass);
@@ -444,7 +676,12 @@ public class MapperEngine {
 		}
 	}
 
-    private String cleanMessage(String message) {
+	/**
+	 * Removes the empty repetitions of an encoded message. No longer used when
+	 * mapping, {@link CleanPipeEncoder} doesn't write them in the first place,
+	 * but kept to check the encoder against.
+	 */
+    static String cleanMessage(String message) {
 		String messageContent = message.replaceAll("~(~)+", "~");
 		messageContent = messageContent.replace("|~", FIELD_SEPARATOR);
 		messageContent = messageContent.replace("~|", FIELD_SEPARATOR);
@@ -455,141 +692,13 @@ public class MapperEngine {
 	/**
 	 * Returns a new string which, by applying some needed general fixes or ones
 	 * specific to each segment, should now be valid when parsing into an Hapi
-	 * HL7v2 Message.
+	 * HL7v2 Message. See {@link MessageFixer} for the fixes applied.
 	 * 
 	 * @param message
 	 *            the content of an HL7v2 message.
 	 * @return a valid message, ready to be parsed.
 	 */
-	public static String fixMessage(String message) {
-		// Replace all LF (0x0A) characters with HL7-escaped CR sequence,
-		// "\.br\"
-		message = message.replace("\n", ESCAPED_CARRIAGE_RETURN);
-
-		// Unescapes all HL7-escaped hexadecimal sequences greater than decimal
-		// 127, "\X80\"
-		message = unescapeNonASCIISequences(message);
-
-		// Iterate each segment and apply specific fixes
-		StringTokenizer messageTokenizer = new StringTokenizer(message, SEGMENT_SEPARATOR);
-		String segment = "";
-		StringBuilder newMessageBuilder = new StringBuilder();
-
-		while (messageTokenizer.hasMoreTokens()) {
-			segment = messageTokenizer.nextToken();
-			if (Character.isWhitespace(segment.charAt(0)))
-				segment = segment.stripLeading();
-
-			switch (segment.substring(0, 3)) {
-			case "PID":
-				newMessageBuilder.append(fixPID(segment));
-				break;
-			case "OBX":
-				newMessageBuilder.append(fixOBX(segment));
-				break;
-			default:
-				newMessageBuilder.append(segment);
-			}
-
-			newMessageBuilder.append(SEGMENT_SEPARATOR);
-		}
-
-		return newMessageBuilder.toString();
-	}
-
-	private static String fixPID(String segment) {
-		String[] fields = segment.split("\\" + FIELD_SEPARATOR);
-
-		StringBuilder newSegmentBuilder = new StringBuilder();
-		for (int i = 0; i < fields.length; i++) {
-			switch (i) {
-			case 13:
-				newSegmentBuilder.append(getFixContactPhone(fields[i]));
-				break;
-			case 14:
-				newSegmentBuilder.append(getFixContactPhone(fields[i]));
-				break;
-			default:
-				newSegmentBuilder.append(fields[i]);
-			}
-
-			newSegmentBuilder.append(FIELD_SEPARATOR);
-		}
-
-		return newSegmentBuilder.toString();
-	}
-
-	/**
-	 * Swap Field PID-13-7 to PID-13-12. PID-13-7 doesn't support non digits. So
-	 * it's necessary a swap between PID-13-7 and PID-13-12. This function could
-	 * be applied to PID-14-7.
-	 * 
-	 * @param field13Old
-	 *            The field PID-13(0)
-	 * @return
-	 */
-	private static String getFixContactPhone(String field13Old) {
-		String[] field13NewArray = new String[NUMBER_PID_SEQ];
-		int i = 0;
-		String[] field13OldTokenizer = field13Old.split("\\" + COMPONENT_SEPARATOR);
-		for (String component : field13OldTokenizer) {
-			field13NewArray[i] = component;
-			i++;
-		}
-		if (!StringUtils.isEmpty(field13NewArray[7 - 1])) {
-			field13NewArray[12 - 1] = field13NewArray[7 - 1];
-			field13NewArray[7 - 1] = StringUtils.EMPTY;
-		}
-		StringBuilder field13New = new StringBuilder();
-		for (String field : field13NewArray) {
-			field13New.append(field == null ? StringUtils.EMPTY : field);
-			field13New.append(COMPONENT_SEPARATOR);
-		}
-		return field13New.toString().replaceAll("\\^{2,}$", "");
-	}
-
-
-	/**
-	 * Returns a new string which, by fixing the OBX-2 and OBX-5 fields, should
-	 * now be valid when parsing.
-	 * 
-	 * @param segment
-	 *            the OBX segment to be fixed.
-	 * @return a valid OBX segment, ready to be parsed.
-	 */
-	public static String fixOBX(String segment) {
-		String newSegment = OBX2_ED_PATTERN.matcher(segment).replaceFirst("TX");
-		newSegment = OBX2_PDF_BASE64_PATTERN.matcher(newSegment).replaceFirst("ED");
-		return OBX5_JVBER_PATTERN.matcher(newSegment).replaceFirst("^^^^JVBER");
-	}
-
-	/**
-	 * Converts all HL7-escaped hexadecimal sequences with code greater than 127
-	 * found in {@link str} to ASCII.
-	 * 
-	 * @param str
-	 *            the string to be converted
-	 * @return the converted string
-	 */
-	public static String unescapeNonASCIISequences(String str) {
-		StringBuffer newString = new StringBuffer();
-		Matcher matcher = HL7_ESCAPED_HEX_PATTERN.matcher(str);
-		while (matcher.find()) {
-			matcher.appendReplacement(newString, String.valueOf(unescapeNonASCIIChar(matcher.group())));
-		}
-		matcher.appendTail(newString);
-
-		return newString.toString();
-	}
-
-	/**
-	 * Converts an HL7-escaped hexadecimal sequence to ASCII.
-	 * 
-	 * @param str
-	 *            the string sequence to be converted
-	 * @return the converted char
-	 */
-	private static char unescapeNonASCIIChar(String str) {
-		return (char) Integer.parseInt(str.substring(2, 4), 16);
+	public static String fixMessage(CharSequence message) {
+		return MessageFixer.fix(message);
 	}
 }
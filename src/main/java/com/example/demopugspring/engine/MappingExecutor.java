@@ -0,0 +1,154 @@
+package com.example.demopugspring.engine;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+/**
+ * Maps the messages of /mapper requests with {@link MapperEngine} on its own
+ * bounded pool of threads, so the request threads stay free for the admin
+ * pages and health checks whatever the mapping load.
+ * </p>
+ * Messages wait in a bounded queue for a free thread; once it is full, new
+ * ones are rejected for the sender to retry later, rather than holding a
+ * request thread as {@link BatchMapper} does. A message whose request timed
+ * out while it waited is skipped.
+ * </p>
+ * The outgoing message is left in a pooled buffer, see {@link EncodedMessage},
+ * and a message read by {@link RequestBodies} gives its array back once
+ * mapped or skipped.
+ */
+@Service
+public class MappingExecutor {
+
+	private static final Logger log = LoggerFactory.getLogger(MappingExecutor.class);
+
+	@Autowired
+	MapperEngine mapperEngine;
+
+	/** Mapping threads, one per available processor when 0 */
+	@Value("${mapper.async.threads:0}")
+	int threads;
+	@Value("${mapper.async.queue-capacity:200}")
+	int queueCapacity;
+	/** Milliseconds a request waits for its message to be mapped */
+	@Value("${mapper.async.timeout:30000}")
+	long timeoutMillis;
+	/** Seconds a rejected sender is asked to wait before retrying */
+	@Value("${mapper.async.retry-after:1}")
+	long retryAfterSeconds;
+
+	private ThreadPoolExecutor executor;
+	private final LongAdder rejected = new LongAdder();
+	private final LongAdder timedOut = new LongAdder();
+
+	@PostConstruct
+	void start() {
+		int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+		executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity),
+				new CustomizableThreadFactory("mapper-"), new ThreadPoolExecutor.AbortPolicy());
+		log.info("Mapping with {} threads and a queue of {} messages", poolSize, queueCapacity);
+	}
+
+	@PreDestroy
+	void stop() {
+		executor.shutdown();
+	}
+
+	/**
+	 * Queues the message to be mapped. A message read by {@link RequestBodies}
+	 * is given back to it once a thread is done with it; a rejected one is
+	 * left to the caller.
+	 *
+	 * @return the response, completed exceptionally if the mapping threw.
+	 *         Cancelling it before a thread takes the message skips it.
+	 * @throws RejectedExecutionException
+	 *             if the queue is full.
+	 */
+	public CompletableFuture<Response> submit(CharSequence message, boolean traced, boolean profiled) {
+		CompletableFuture<Response> future = new CompletableFuture<>();
+		try {
+			executor.execute(() -> {
+				try {
+					if (!future.isDone()) {
+						future.complete(mapperEngine.run(message, traced, profiled, true));
+					}
+				} catch (RuntimeException e) {
+					future.completeExceptionally(e);
+				} finally {
+					RequestBodies.release(message);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			rejected.increment();
+			throw e;
+		}
+		return future;
+	}
+
+	/**
+	 * Gives up on the message of a request that timed out, skipping it if it
+	 * is still waiting.
+	 */
+	public void timeOut(CompletableFuture<Response> future) {
+		if (future.cancel(false)) {
+			timedOut.increment();
+		}
+	}
+
+	public long getTimeoutMillis() {
+		return timeoutMillis;
+	}
+
+	public long getRetryAfterSeconds() {
+		return retryAfterSeconds;
+	}
+
+	public int getQueued() {
+		return executor.getQueue().size();
+	}
+
+	public int getActive() {
+		return executor.getActiveCount();
+	}
+
+	public long getRejected() {
+		return rejected.sum();
+	}
+
+	public long getTimedOut() {
+		return timedOut.sum();
+	}
+
+	/**
+	 * Counters of the executor in the Prometheus text format, appended to
+	 * the ones of {@link com.example.demopugspring.engine.metrics.MappingMetrics}.
+	 */
+	public String toPrometheus() {
+		return "# HELP mapper_requests_rejected_total /mapper requests rejected with the queue full\n"
+				+ "# TYPE mapper_requests_rejected_total counter\n"
+				+ "mapper_requests_rejected_total " + getRejected() + "\n"
+				+ "# HELP mapper_requests_timed_out_total /mapper requests answered before their message was mapped\n"
+				+ "# TYPE mapper_requests_timed_out_total counter\n"
+				+ "mapper_requests_timed_out_total " + getTimedOut() + "\n"
+				+ "# HELP mapper_executor_queued_messages Messages of /mapper requests waiting for a thread\n"
+				+ "# TYPE mapper_executor_queued_messages gauge\n"
+				+ "mapper_executor_queued_messages " + getQueued() + "\n"
+				+ "# HELP mapper_executor_active_threads Threads mapping a message of a /mapper request\n"
+				+ "# TYPE mapper_executor_active_threads gauge\n"
+				+ "mapper_executor_active_threads " + getActive() + "\n";
+	}
+}
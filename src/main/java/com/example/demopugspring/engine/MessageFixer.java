@@ -0,0 +1,420 @@
+package com.example.demopugspring.engine;
+
+import java.util.Arrays;
+
+/**
+ * Applies, in a single forward scan of the incoming message, the fixes needed
+ * for it to be parsed into an Hapi HL7v2 Message:
+ * <ul>
+ * <li>LF (0x0A) characters become the HL7-escaped CR sequence, "\.br\";</li>
+ * <li>HL7-escaped hexadecimal sequences greater than decimal 127, "\X80\", are
+ * unescaped;</li>
+ * <li>empty segments are dropped and leading whitespace is stripped;</li>
+ * <li>PID-13 and PID-14 have their 7th component moved to the 12th, and PID
+ * trailing empty fields are dropped;</li>
+ * <li>OBX-2 "ED" becomes "TX", "PDF_BASE64" becomes "ED" and a base64 PDF in
+ * OBX-5 of an ED observation is moved to its 5th component.</li>
+ * </ul>
+ * The output is exactly the one of the regex based implementation it replaces,
+ * kept with the tests as {@code LegacyMessageFixer}, including its corner
+ * cases: a segment shorter than three characters fails with a
+ * {@link StringIndexOutOfBoundsException} and a PID-13 or PID-14 with more
+ * than 39 components with an {@link ArrayIndexOutOfBoundsException}.
+ * </p>
+ * Each thread reuses its own buffers, so only the resulting string is allocated
+ * per message. The message is read as a {@link CharSequence}, so a request
+ * body can be fixed straight from its bytes, see {@link Latin1Chars}.
+ */
+public final class MessageFixer {
+
+	private static final char SEGMENT_SEPARATOR = '\r';
+	private static final char FIELD_SEPARATOR = '|';
+	private static final char COMPONENT_SEPARATOR = '^';
+	private static final char ESCAPE_CHARACTER = '\\';
+	private static final char LINE_FEED = '\n';
+
+	/** "\.br\" without its closing escape character. */
+	private static final String ESCAPED_CARRIAGE_RETURN_START = "\\.br";
+
+	private static final int NUMBER_PID_SEQ = 39;
+	private static final int PID_PHONE_HOME = 13;
+	private static final int PID_PHONE_BUSINESS = 14;
+	private static final int PHONE_NUMBER_COMPONENT = 7 - 1;
+	private static final int PHONE_TEXT_COMPONENT = 12 - 1;
+
+	private static final String OBX_HEADER = "OBX|";
+	private static final int OBX_SET_ID_MAX_DIGITS = 4;
+	private static final String OBX_ED = "ED";
+	private static final String OBX_TX = "TX";
+	private static final String OBX_PDF_BASE64 = "PDF_BASE64";
+	private static final String OBX_ED_FIELD = "ED|";
+	private static final String OBX_PDF_START = "JVBER";
+	private static final String OBX_PDF_PREFIX = "^^^^";
+	/*
+	 * Limits of the look-behind the regex version used to find the PDF, so that
+	 * the same PDFs are found: (?<=OBX\|\d{0,4}\|ED\|.{0,250}\|.{0,20}\|)JVBER
+	 */
+	private static final int OBX_PDF_MAX_OBX4_LENGTH = 250;
+	private static final int OBX_PDF_MAX_OBX5_PREFIX_LENGTH = 20;
+	private static final int OBX_PDF_MAX_LOOKBEHIND = 284;
+
+	/** Buffers above this size are released instead of being reused. */
+	private static final int MAX_RETAINED_CAPACITY = 1 << 20;
+
+	private static final ThreadLocal<MessageFixer> FIXERS = ThreadLocal.withInitial(MessageFixer::new);
+
+	private StringBuilder output = new StringBuilder();
+	private StringBuilder segment = new StringBuilder();
+	private final int[] componentStarts = new int[NUMBER_PID_SEQ];
+	private final int[] componentEnds = new int[NUMBER_PID_SEQ];
+	private int[] obxHeaderStarts = new int[4];
+	private int[] obxHeaderEnds = new int[4];
+	private int obxHeaders;
+
+	private MessageFixer() {
+	}
+
+	/**
+	 * Returns a new string which, by applying some needed general fixes or ones
+	 * specific to each segment, should now be valid when parsing into an Hapi
+	 * HL7v2 Message.
+	 *
+	 * @param message
+	 *            the content of an HL7v2 message.
+	 * @return a valid message, ready to be parsed.
+	 */
+	public static String fix(CharSequence message) {
+		MessageFixer fixer = FIXERS.get();
+		try {
+			return fixer.scan(message);
+		} finally {
+			fixer.release();
+		}
+	}
+
+	private String scan(CharSequence message) {
+		int length = message.length();
+		int i = 0;
+		// The fixes barely change the length, growing the buffer of a large
+		// message by doubling would copy it several times over
+		output.ensureCapacity(length + (length >> 6));
+
+		while (i < length) {
+			int start = i;
+			char c = 0;
+			while (i < length && (c = message.charAt(i)) != SEGMENT_SEPARATOR && c != LINE_FEED && c != ESCAPE_CHARACTER) {
+				i++;
+			}
+			segment.append(message, start, i);
+
+			if (i == length) {
+				break;
+			}
+			if (c == SEGMENT_SEPARATOR) {
+				endSegment();
+				i++;
+			} else if (c == LINE_FEED) {
+				segment.append(ESCAPED_CARRIAGE_RETURN_START);
+				i = escape(message, i + 1);
+			} else {
+				i = escape(message, i + 1);
+			}
+		}
+		endSegment();
+
+		return output.toString();
+	}
+
+	/**
+	 * Handles an escape character, either from the message or closing an
+	 * expanded LF, whose following characters start at {@code next}. Returns
+	 * where scanning should resume.
+	 */
+	private int escape(CharSequence message, int next) {
+		while (isEscapedNonASCII(message, next)) {
+			segment.append((char) (Character.digit(message.charAt(next + 1), 16) << 4 | Character.digit(message.charAt(next + 2), 16)));
+			next += 4;
+			if (message.charAt(next - 1) == ESCAPE_CHARACTER) {
+				return next;
+			}
+			// The sequence was closed by the escape character an LF expands to,
+			// the rest of that "\.br\" follows.
+			segment.append(ESCAPED_CARRIAGE_RETURN_START, 1, ESCAPED_CARRIAGE_RETURN_START.length());
+		}
+		segment.append(ESCAPE_CHARACTER);
+		return next;
+	}
+
+	/**
+	 * Whether "X[89A-F][0-9A-F]\" starts at {@code i}, the closing escape
+	 * character possibly being the first one of an expanded LF.
+	 */
+	private static boolean isEscapedNonASCII(CharSequence message, int i) {
+		if (i + 3 >= message.length() || message.charAt(i) != 'X') {
+			return false;
+		}
+		char high = message.charAt(i + 1);
+		char low = message.charAt(i + 2);
+		char close = message.charAt(i + 3);
+		return (high == '8' || high == '9' || (high >= 'A' && high <= 'F'))
+				&& ((low >= '0' && low <= '9') || (low >= 'A' && low <= 'F'))
+				&& (close == ESCAPE_CHARACTER || close == LINE_FEED);
+	}
+
+	private void endSegment() {
+		if (segment.length() == 0) {
+			return;
+		}
+
+		int leading = 0;
+		while (leading < segment.length() && Character.isWhitespace(segment.charAt(leading))) {
+			leading++;
+		}
+		if (leading > 0) {
+			segment.delete(0, leading);
+		}
+		if (segment.length() < 3) {
+			throw new StringIndexOutOfBoundsException("begin 0, end 3, length " + segment.length());
+		}
+
+		if (startsWith(segment, 0, "PID")) {
+			appendPID();
+		} else {
+			if (startsWith(segment, 0, "OBX")) {
+				fixOBX();
+			}
+			output.append(segment);
+		}
+		output.append(SEGMENT_SEPARATOR);
+		segment.setLength(0);
+	}
+
+	private void appendPID() {
+		int end = segment.length();
+		while (segment.charAt(end - 1) == FIELD_SEPARATOR) {
+			end--;
+		}
+
+		int field = 0;
+		int start = 0;
+		for (int i = 0; i <= end; i++) {
+			if (i == end || segment.charAt(i) == FIELD_SEPARATOR) {
+				if (field == PID_PHONE_HOME || field == PID_PHONE_BUSINESS) {
+					appendContactPhone(start, i);
+				} else {
+					output.append(segment, start, i);
+				}
+				output.append(FIELD_SEPARATOR);
+				field++;
+				start = i + 1;
+			}
+		}
+	}
+
+	/**
+	 * Swap Field PID-13-7 to PID-13-12. PID-13-7 doesn't support non digits. So
+	 * it's necessary a swap between PID-13-7 and PID-13-12. Trailing empty
+	 * components are dropped, unless all 39 are present.
+	 */
+	private void appendContactPhone(int start, int end) {
+		while (end > start && segment.charAt(end - 1) == COMPONENT_SEPARATOR) {
+			end--;
+		}
+
+		int components = 0;
+		if (end > start) {
+			int componentStart = start;
+			for (int i = start; i <= end; i++) {
+				if (i == end || segment.charAt(i) == COMPONENT_SEPARATOR) {
+					if (components == NUMBER_PID_SEQ) {
+						throw new ArrayIndexOutOfBoundsException("Index " + NUMBER_PID_SEQ + " out of bounds for length " + NUMBER_PID_SEQ);
+					}
+					componentStarts[components] = componentStart;
+					componentEnds[components] = i;
+					components++;
+					componentStart = i + 1;
+				}
+			}
+		}
+		for (int i = components; i < NUMBER_PID_SEQ; i++) {
+			componentStarts[i] = 0;
+			componentEnds[i] = 0;
+		}
+
+		if (componentEnds[PHONE_NUMBER_COMPONENT] > componentStarts[PHONE_NUMBER_COMPONENT]) {
+			componentStarts[PHONE_TEXT_COMPONENT] = componentStarts[PHONE_NUMBER_COMPONENT];
+			componentEnds[PHONE_TEXT_COMPONENT] = componentEnds[PHONE_NUMBER_COMPONENT];
+			componentEnds[PHONE_NUMBER_COMPONENT] = componentStarts[PHONE_NUMBER_COMPONENT];
+		}
+
+		int last = NUMBER_PID_SEQ - 1;
+		while (last >= 0 && componentEnds[last] == componentStarts[last]) {
+			last--;
+		}
+		for (int i = 0; i <= last; i++) {
+			if (i > 0) {
+				output.append(COMPONENT_SEPARATOR);
+			}
+			output.append(segment, componentStarts[i], componentEnds[i]);
+		}
+		if (last == NUMBER_PID_SEQ - 1) {
+			output.append(COMPONENT_SEPARATOR);
+		}
+	}
+
+	/**
+	 * Fixes, in place, the first OBX-2 "ED" to "TX", then the first OBX-2
+	 * "PDF_BASE64" to "ED", and then moves the first PDF found in OBX-5 of an ED
+	 * observation to its 5th component. Like the regexes this replaces, "OBX|"
+	 * headers are looked for anywhere in the segment.
+	 */
+	private void fixOBX() {
+		findOBXHeaders();
+
+		int ed = -1;
+		int pdf = -1;
+		for (int i = 0; i < obxHeaders && (ed < 0 || pdf < 0); i++) {
+			int header = obxHeaderEnds[i];
+			if (ed < 0 && startsWith(segment, header, OBX_ED)) {
+				ed = header;
+			} else if (pdf < 0 && startsWith(segment, header, OBX_PDF_BASE64)) {
+				pdf = header;
+			}
+		}
+
+		if (ed >= 0) {
+			segment.replace(ed, ed + OBX_TX.length(), OBX_TX);
+		}
+		if (pdf >= 0) {
+			segment.replace(pdf, pdf + OBX_PDF_BASE64.length(), OBX_ED);
+			int shift = OBX_PDF_BASE64.length() - OBX_ED.length();
+			for (int i = 0; i < obxHeaders; i++) {
+				if (obxHeaderEnds[i] > pdf) {
+					obxHeaderStarts[i] -= shift;
+					obxHeaderEnds[i] -= shift;
+				}
+			}
+		}
+
+		int jvber = -1;
+		for (int i = 0; i < obxHeaders; i++) {
+			int found = findPDF(obxHeaderStarts[i], obxHeaderEnds[i]);
+			if (found >= 0 && (jvber < 0 || found < jvber)) {
+				jvber = found;
+			}
+		}
+		if (jvber >= 0) {
+			segment.insert(jvber, OBX_PDF_PREFIX);
+		}
+	}
+
+	/**
+	 * Collects where each "OBX|" followed by up to 4 digits and a field
+	 * separator starts and ends.
+	 */
+	private void findOBXHeaders() {
+		obxHeaders = 0;
+		int length = segment.length();
+		int start = segment.indexOf(OBX_HEADER);
+		while (start >= 0) {
+			int end = start + OBX_HEADER.length();
+			int digits = 0;
+			while (end < length && digits <= OBX_SET_ID_MAX_DIGITS && isDigit(segment.charAt(end))) {
+				end++;
+				digits++;
+			}
+			if (digits <= OBX_SET_ID_MAX_DIGITS && end < length && segment.charAt(end) == FIELD_SEPARATOR) {
+				if (obxHeaders == obxHeaderStarts.length) {
+					obxHeaderStarts = Arrays.copyOf(obxHeaderStarts, obxHeaders * 2);
+					obxHeaderEnds = Arrays.copyOf(obxHeaderEnds, obxHeaders * 2);
+				}
+				obxHeaderStarts[obxHeaders] = start;
+				obxHeaderEnds[obxHeaders] = end + 1;
+				obxHeaders++;
+			}
+			start = segment.indexOf(OBX_HEADER, start + OBX_HEADER.length());
+		}
+	}
+
+	/**
+	 * Returns the first position of a "JVBER" following "ED|", up to 250
+	 * characters, a field separator, up to 20 characters and another field
+	 * separator after the given header, or -1 if there is none. Characters are
+	 * counted, and line terminators excluded, the way the regex "." does.
+	 */
+	private int findPDF(int headerStart, int headerEnd) {
+		if (!startsWith(segment, headerEnd, OBX_ED_FIELD)) {
+			return -1;
+		}
+		int length = segment.length();
+		int limit = Math.min(length, headerStart + OBX_PDF_MAX_LOOKBEHIND + 1);
+		int obx4Start = headerEnd + OBX_ED_FIELD.length();
+		int obx4Length = 0;
+
+		for (int obx4End = obx4Start; obx4End < limit && obx4Length <= OBX_PDF_MAX_OBX4_LENGTH; obx4End = next(obx4End)) {
+			char c = segment.charAt(obx4End);
+			if (c == FIELD_SEPARATOR) {
+				int obx5Length = 0;
+				for (int obx5End = obx4End + 1; obx5End < limit && obx5Length <= OBX_PDF_MAX_OBX5_PREFIX_LENGTH; obx5End = next(obx5End)) {
+					char d = segment.charAt(obx5End);
+					if (d == FIELD_SEPARATOR && obx5End + 1 - headerStart <= OBX_PDF_MAX_LOOKBEHIND
+							&& startsWith(segment, obx5End + 1, OBX_PDF_START)) {
+						return obx5End + 1;
+					}
+					if (isLineTerminator(d)) {
+						break;
+					}
+					obx5Length++;
+				}
+			}
+			if (isLineTerminator(c)) {
+				break;
+			}
+			obx4Length++;
+		}
+		return -1;
+	}
+
+	/**
+	 * Index of the code point following the one at {@code i}.
+	 */
+	private int next(int i) {
+		if (Character.isHighSurrogate(segment.charAt(i)) && i + 1 < segment.length() && Character.isLowSurrogate(segment.charAt(i + 1))) {
+			return i + 2;
+		}
+		return i + 1;
+	}
+
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+
+	private static boolean isLineTerminator(char c) {
+		return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+	}
+
+	private static boolean startsWith(CharSequence sequence, int offset, String prefix) {
+		if (offset < 0 || offset + prefix.length() > sequence.length()) {
+			return false;
+		}
+		for (int i = 0; i < prefix.length(); i++) {
+			if (sequence.charAt(offset + i) != prefix.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void release() {
+		if (output.capacity() > MAX_RETAINED_CAPACITY) {
+			output = new StringBuilder();
+		} else {
+			output.setLength(0);
+		}
+		if (segment.capacity() > MAX_RETAINED_CAPACITY) {
+			segment = new StringBuilder();
+		} else {
+			segment.setLength(0);
+		}
+	}
+}
@@ -0,0 +1,130 @@
+package com.example.demopugspring.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rewrites components of the MSH segment of an already fixed HL7v2 message
+ * string, without parsing or encoding the rest of the message.
+ * </p>
+ * {@link MapperEngine} uses it to retarget the incoming message to the result
+ * message type and version (MSH-9-1, MSH-9-2, MSH-12 and MSH-18) before the
+ * outgoing message is parsed, instead of parsing a second copy of the incoming
+ * message, setting the fields with a {@link ca.uhn.hl7v2.util.Terser} and
+ * encoding it again.
+ * </p>
+ * The values are written the same way {@code Terser.set} would: into the first
+ * subcomponent of the given component of the first repetition of the field.
+ */
+public final class MessageHeaderRewriter {
+
+	private static final String MSH = "MSH";
+	private static final char SEGMENT_SEPARATOR = '\r';
+
+	private MessageHeaderRewriter() {
+	}
+
+	/**
+	 * Returns the message with its header retargeted to the given message type,
+	 * version and character set. Messages that don't start with an MSH segment
+	 * are returned untouched, so that the parser reports them as before.
+	 */
+	public static String retarget(String message, String code, String event, String version, String characterSet) {
+		if (!message.startsWith(MSH) || message.length() < 8) {
+			return message;
+		}
+
+		int headerEnd = message.indexOf(SEGMENT_SEPARATOR);
+		if (headerEnd < 0) {
+			headerEnd = message.length();
+		}
+
+		char fieldSeparator = message.charAt(3);
+		List<String> fields = split(message.substring(0, headerEnd), fieldSeparator);
+		if (fields.size() < 2 || fields.get(1).length() < 2) {
+			return message;
+		}
+
+		String encodingCharacters = fields.get(1);
+		char componentSeparator = encodingCharacters.charAt(0);
+		char repetitionSeparator = encodingCharacters.charAt(1);
+		char subcomponentSeparator = encodingCharacters.length() > 3 ? encodingCharacters.charAt(3) : '&';
+		Separators separators = new Separators(componentSeparator, repetitionSeparator, subcomponentSeparator);
+
+		set(fields, 9, 1, code, separators);
+		set(fields, 9, 2, event, separators);
+		set(fields, 12, 1, version, separators);
+		set(fields, 18, 1, characterSet, separators);
+
+		StringBuilder header = new StringBuilder(message.length() + 16);
+		for (int i = 0; i < fields.size(); i++) {
+			if (i > 0) {
+				header.append(fieldSeparator);
+			}
+			header.append(fields.get(i));
+		}
+		return header.append(message, headerEnd, message.length()).toString();
+	}
+
+	/**
+	 * Sets MSH-{@code field}-{@code component}. MSH-1 is the field separator
+	 * itself, so MSH-n is found at index n - 1 of the split segment.
+	 */
+	private static void set(List<String> fields, int field, int component, String value, Separators separators) {
+		int index = field - 1;
+		while (fields.size() <= index) {
+			fields.add("");
+		}
+
+		String fieldValue = fields.get(index);
+		int repetitionEnd = fieldValue.indexOf(separators.repetition);
+		String firstRepetition = repetitionEnd < 0 ? fieldValue : fieldValue.substring(0, repetitionEnd);
+		String otherRepetitions = repetitionEnd < 0 ? "" : fieldValue.substring(repetitionEnd);
+
+		List<String> components = split(firstRepetition, separators.component);
+		while (components.size() < component) {
+			components.add("");
+		}
+
+		String componentValue = components.get(component - 1);
+		int subcomponentEnd = componentValue.indexOf(separators.subcomponent);
+		components.set(component - 1, subcomponentEnd < 0 ? value : value + componentValue.substring(subcomponentEnd));
+
+		fields.set(index, join(components, separators.component) + otherRepetitions);
+	}
+
+	private static List<String> split(String value, char separator) {
+		List<String> parts = new ArrayList<>();
+		int start = 0;
+		int end;
+		while ((end = value.indexOf(separator, start)) >= 0) {
+			parts.add(value.substring(start, end));
+			start = end + 1;
+		}
+		parts.add(value.substring(start));
+		return parts;
+	}
+
+	private static String join(List<String> parts, char separator) {
+		StringBuilder joined = new StringBuilder();
+		for (int i = 0; i < parts.size(); i++) {
+			if (i > 0) {
+				joined.append(separator);
+			}
+			joined.append(parts.get(i));
+		}
+		return joined.toString();
+	}
+
+	private static final class Separators {
+		private final char component;
+		private final char repetition;
+		private final char subcomponent;
+
+		private Separators(char component, char repetition, char subcomponent) {
+			this.component = component;
+			this.repetition = repetition;
+			this.subcomponent = subcomponent;
+		}
+	}
+}
@@ -0,0 +1,63 @@
+package com.example.demopugspring.engine;
+
+import java.util.Arrays;
+
+/**
+ * Arrays /mapper request bodies are read into, pooled across requests so a
+ * large body doesn't have its array allocated, and grown, again for every
+ * request.
+ * </p>
+ * A body is read into {@link #take(long)}, grown with {@link #grow(byte[], long)}
+ * as it arrives and mapped through a {@link Latin1Chars} over the array, which
+ * {@link MappingExecutor} gives back with {@link #release(CharSequence)} once
+ * the message is mapped.
+ */
+public final class RequestBodies {
+
+	/** New arrays start at no more than this size, grown as more of the body arrives */
+	private static final int MAX_INITIAL_BUFFER = 256 * 1024;
+	private static final int MAX_POOLED_BUFFERS = 8;
+	/** Arrays above this size are released instead of being reused */
+	private static final int MAX_POOLED_CAPACITY = 16 << 20;
+
+	private static final BufferPool<byte[]> BUFFERS = new BufferPool<>(MAX_POOLED_BUFFERS, MAX_POOLED_CAPACITY, buffer -> buffer.length);
+
+	private RequestBodies() {
+	}
+
+	/**
+	 * Returns an array to read a body of the given length into: a pooled one,
+	 * whatever its size, else a new one of at most
+	 * {@value #MAX_INITIAL_BUFFER} bytes, so a Content-Length alone never has
+	 * a large array allocated.
+	 */
+	public static byte[] take(long length) {
+		byte[] buffer = BUFFERS.take();
+		return buffer != null ? buffer : new byte[(int) Math.min(length, MAX_INITIAL_BUFFER)];
+	}
+
+	/**
+	 * Returns the filled array grown to twice its size, and to no more than
+	 * the length of the body.
+	 */
+	public static byte[] grow(byte[] buffer, long length) {
+		return Arrays.copyOf(buffer, (int) Math.min(length, Math.max(2L * buffer.length, MAX_INITIAL_BUFFER)));
+	}
+
+	/**
+	 * Gives back an array no longer read from.
+	 */
+	public static void release(byte[] buffer) {
+		BUFFERS.give(buffer);
+	}
+
+	/**
+	 * Gives back the array of a message read as {@link Latin1Chars}; any other
+	 * message is left alone.
+	 */
+	public static void release(CharSequence message) {
+		if (message instanceof Latin1Chars) {
+			release(((Latin1Chars) message).bytes);
+		}
+	}
+}
@@ -3,7 +3,11 @@ package com.example.demopugspring.engine;
 import java.io.Serializable;
 import java.util.List;
 
+import com.example.demopugspring.engine.metrics.MappingProfile;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 
 import lombok.Getter;
 import lombok.Setter;
@@ -20,6 +24,15 @@ public class Response implements Serializable {
 
 	@JsonProperty
 	private List<MapperError> errorList;
+	/** A String, or an {@link EncodedMessage} released once serialized */
 	@JsonProperty
-	private String message;
+	@JsonSerialize(using = EncodedMessage.Serializer.class)
+	private CharSequence message;
+	/** Id of the trace of the mapping in the trace buffer, null when not traced */
+	@JsonIgnore
+	private Long traceId;
+	/** Time and memory taken by each stage and mapper, only when asked for */
+	@JsonProperty
+	@JsonInclude(JsonInclude.Include.NON_NULL)
+	private MappingProfile profile;
 }
@@ -0,0 +1,40 @@
+package com.example.demopugspring.engine;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import ca.uhn.hl7v2.HL7Exception;
+import ca.uhn.hl7v2.model.Message;
+import ca.uhn.hl7v2.model.Segment;
+import ca.uhn.hl7v2.util.Terser;
+
+/**
+ * {@link Terser} resolving each absolute segment path once, for a
+ * {@link com.example.demopugspring.engine.plan.PlanStep.Kind#SEGMENT_WRITES}
+ * step: every write of the step goes to the same segment, which the plain
+ * Terser would look up from the root of the message each time.
+ * </p>
+ * Only meant to live for one step. TEXT and FIELD mappers never remove
+ * segments, so the segments resolved stay those the paths lead to.
+ */
+class SegmentCachingTerser extends Terser {
+
+	private final Map<String, Segment> segments = new HashMap<>();
+
+	SegmentCachingTerser(Message message) {
+		super(message);
+	}
+
+	@Override
+	public Segment getSegment(String segSpec) throws HL7Exception {
+		if (!segSpec.startsWith("/")) {
+			return super.getSegment(segSpec);
+		}
+		Segment segment = segments.get(segSpec);
+		if (segment == null) {
+			segment = super.getSegment(segSpec);
+			segments.put(segSpec, segment);
+		}
+		return segment;
+	}
+}
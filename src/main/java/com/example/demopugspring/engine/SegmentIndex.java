@@ -0,0 +1,101 @@
+package com.example.demopugspring.engine;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import ca.uhn.hl7v2.HL7Exception;
+import ca.uhn.hl7v2.model.Group;
+import ca.uhn.hl7v2.model.Segment;
+import ca.uhn.hl7v2.model.Structure;
+
+/**
+ * Index of the groups and segments of a message, built in one walk of the
+ * message: the repetitions of every structure, by name, under each
+ * repetition of its parent.
+ * </p>
+ * Lets a {@link WildcardPath} go through the repetitions a message has,
+ * instead of resolving one path after the other until one leads to an empty
+ * segment. Only the structures present when the index is built are in it, so
+ * it's meant for a message that is read, not written.
+ */
+final class SegmentIndex {
+
+	private final Node root;
+
+	private static final class Node {
+		private final Structure structure;
+		private final Map<String, Node[]> children;
+
+		private Node(Structure structure) throws HL7Exception {
+			this.structure = structure;
+			if (structure instanceof Group) {
+				Group group = (Group) structure;
+				children = new HashMap<>();
+				for (String name : group.getNames()) {
+					Structure[] repetitions = group.getAll(name);
+					Node[] nodes = new Node[repetitions.length];
+					for (int i = 0; i < repetitions.length; i++) {
+						nodes[i] = new Node(repetitions[i]);
+					}
+					children.put(name, nodes);
+				}
+			} else {
+				children = Map.of();
+			}
+		}
+
+		private Node[] get(String name) throws HL7Exception {
+			Node[] repetitions = children.get(name);
+			if (repetitions == null) {
+				throw new HL7Exception("Can't find " + name + " as a direct child of " + structure.getName());
+			}
+			return repetitions;
+		}
+	}
+
+	SegmentIndex(Group message) throws HL7Exception {
+		this.root = new Node(message);
+	}
+
+	/**
+	 * Returns the number of repetitions the wildcard of the path has, counting
+	 * up to the first one whose segment is missing or empty, as the path
+	 * expanded by hand would stop.
+	 */
+	int countRepetitions(WildcardPath path) throws HL7Exception {
+		Node parent = root;
+		for (int i = 0; i < path.getWildcardElement(); i++) {
+			Node[] repetitions = parent.get(path.getName(i));
+			if (path.getRepetition(i) >= repetitions.length) {
+				return 0;
+			}
+			parent = repetitions[path.getRepetition(i)];
+		}
+
+		Node[] wildcards = parent.get(path.getName(path.getWildcardElement()));
+		int count = 0;
+		while (count < wildcards.length && !isEmpty(segmentOf(path, wildcards[count]))) {
+			count++;
+		}
+		return count;
+	}
+
+	private static Segment segmentOf(WildcardPath path, Node node) throws HL7Exception {
+		for (int i = path.getWildcardElement() + 1; i < path.size(); i++) {
+			Node[] repetitions = node.get(path.getName(i));
+			if (path.getRepetition(i) >= repetitions.length) {
+				return null;
+			}
+			node = repetitions[path.getRepetition(i)];
+		}
+		return node.structure instanceof Segment ? (Segment) node.structure : null;
+	}
+
+	private static boolean isEmpty(Segment segment) {
+		try {
+			return segment == null || segment.isEmpty();
+		} catch (HL7Exception e) {
+			return true;
+		}
+	}
+}
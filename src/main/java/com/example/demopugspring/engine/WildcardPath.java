@@ -0,0 +1,140 @@
+package com.example.demopugspring.engine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Absolute Terser path with a wildcard ({@code #}) for the repetition of one
+ * of its groups or of its segment, such as
+ * {@code /PATIENT_RESULT/ORDER_OBSERVATION(#)/OBX-5}, parsed once so a
+ * {@link SegmentIndex} can count its repetitions and {@link #expand(int)}
+ * write each one without parsing the path again.
+ * </p>
+ * Paths the index can't follow, relative ones, ones searching for a
+ * structure ({@code .}) or matching names with a pattern, and ones with the
+ * wildcard in a field, aren't compiled: {@link #compile(String)} returns null
+ * for them.
+ */
+final class WildcardPath {
+
+	static final String WILDCARD = "#";
+
+	private static final int MAX_CACHED_PATHS = 1024;
+	private static final Map<String, WildcardPath> CACHE = new ConcurrentHashMap<>();
+	private static final WildcardPath UNSUPPORTED = new WildcardPath();
+
+	private final List<String> names;
+	private final int[] repetitions;
+	private final int wildcardElement;
+	/** The path before and after the wildcard */
+	private final String prefix;
+	private final String suffix;
+
+	private WildcardPath() {
+		this.names = List.of();
+		this.repetitions = new int[0];
+		this.wildcardElement = -1;
+		this.prefix = null;
+		this.suffix = null;
+	}
+
+	private WildcardPath(List<String> names, int[] repetitions, int wildcardElement, String prefix, String suffix) {
+		this.names = Collections.unmodifiableList(names);
+		this.repetitions = repetitions;
+		this.wildcardElement = wildcardElement;
+		this.prefix = prefix;
+		this.suffix = suffix;
+	}
+
+	/**
+	 * Returns the compiled path, null if the index can't follow it.
+	 */
+	static WildcardPath compile(String path) {
+		WildcardPath compiled = CACHE.get(path);
+		if (compiled == null) {
+			compiled = parse(path);
+			if (CACHE.size() >= MAX_CACHED_PATHS) {
+				evictOne();
+			}
+			CACHE.putIfAbsent(path, compiled);
+		}
+		return compiled == UNSUPPORTED ? null : compiled;
+	}
+
+	private static void evictOne() {
+		Iterator<String> keys = CACHE.keySet().iterator();
+		if (keys.hasNext()) {
+			keys.next();
+			keys.remove();
+		}
+	}
+
+	private static WildcardPath parse(String path) {
+		int wildcard = path.indexOf(WILDCARD);
+		int dash = path.indexOf('-');
+		String segmentSpec = dash < 0 ? path : path.substring(0, dash);
+		if (!path.startsWith("/") || wildcard < 0 || wildcard != path.lastIndexOf(WILDCARD) || wildcard > segmentSpec.length()) {
+			return UNSUPPORTED;
+		}
+
+		List<String> names = new ArrayList<>();
+		String[] elements = segmentSpec.substring(1).split("/");
+		int[] repetitions = new int[elements.length];
+		int wildcardElement = -1;
+		for (int i = 0; i < elements.length; i++) {
+			String element = elements[i];
+			int open = element.indexOf('(');
+			String name = open < 0 ? element : element.substring(0, open);
+			if (name.isEmpty() || name.startsWith(".") || name.contains("*") || name.contains("?")) {
+				return UNSUPPORTED;
+			}
+			if (open >= 0) {
+				if (!element.endsWith(")")) {
+					return UNSUPPORTED;
+				}
+				String repetition = element.substring(open + 1, element.length() - 1);
+				if (WILDCARD.equals(repetition)) {
+					wildcardElement = i;
+				} else {
+					try {
+						repetitions[i] = Integer.parseInt(repetition);
+					} catch (NumberFormatException e) {
+						return UNSUPPORTED;
+					}
+				}
+			}
+			names.add(name);
+		}
+		if (wildcardElement < 0) {
+			return UNSUPPORTED;
+		}
+		return new WildcardPath(names, repetitions, wildcardElement, path.substring(0, wildcard), path.substring(wildcard + 1));
+	}
+
+	/**
+	 * Returns the path with the wildcard replaced by the repetition.
+	 */
+	String expand(int repetition) {
+		return prefix + repetition + suffix;
+	}
+
+	int size() {
+		return names.size();
+	}
+
+	String getName(int element) {
+		return names.get(element);
+	}
+
+	int getRepetition(int element) {
+		return repetitions[element];
+	}
+
+	int getWildcardElement() {
+		return wildcardElement;
+	}
+}
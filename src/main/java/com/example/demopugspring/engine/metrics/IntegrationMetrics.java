@@ -0,0 +1,82 @@
+package com.example.demopugspring.engine.metrics;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.example.demopugspring.model.Mapper;
+
+/**
+ * Messages mapped by one integration, the time they took and the errors
+ * they had, with the {@link MapperMetrics} of each of its mappers.
+ */
+public final class IntegrationMetrics {
+
+	private final Long integrationId;
+	private final LatencyHistogram latency = new LatencyHistogram();
+	private final LongAdder failed = new LongAdder();
+	private final LongAdder errors = new LongAdder();
+	private final Map<Long, MapperMetrics> mappers = new ConcurrentHashMap<>();
+
+	IntegrationMetrics(Long integrationId) {
+		this.integrationId = integrationId;
+	}
+
+	/**
+	 * Returns the metrics of the mapper in this integration, created the
+	 * first time the mapper is seen, when its plan is loaded. A mapper changed
+	 * to another category starts over. A mapper that isn't saved yet has no id
+	 * to be kept under, so its metrics are not kept.
+	 */
+	public MapperMetrics mapper(Mapper mapper) {
+		if (mapper.getId() == null) {
+			return new MapperMetrics(integrationId, null, mapper.getCategory());
+		}
+		MapperMetrics metrics = mappers.get(mapper.getId());
+		if (metrics == null || metrics.getCategory() != mapper.getCategory()) {
+			metrics = mappers.compute(mapper.getId(), (id, current) -> current != null && current.getCategory() == mapper.getCategory() ? current
+					: new MapperMetrics(integrationId, id, mapper.getCategory()));
+		}
+		return metrics;
+	}
+
+	/**
+	 * Records a message mapped by the integration, with the number of errors
+	 * it had.
+	 */
+	public void record(long nanos, int errorCount) {
+		latency.record(nanos);
+		if (errorCount > 0) {
+			failed.increment();
+			errors.add(errorCount);
+		}
+	}
+
+	public Long getIntegrationId() {
+		return integrationId;
+	}
+
+	public LatencyHistogram getLatency() {
+		return latency;
+	}
+
+	public long getMessages() {
+		return latency.getCount();
+	}
+
+	/**
+	 * Returns the number of messages answered with at least one error.
+	 */
+	public long getFailed() {
+		return failed.sum();
+	}
+
+	public long getErrors() {
+		return errors.sum();
+	}
+
+	public Collection<MapperMetrics> getMappers() {
+		return mappers.values();
+	}
+}
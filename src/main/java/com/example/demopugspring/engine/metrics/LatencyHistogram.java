@@ -0,0 +1,98 @@
+package com.example.demopugspring.engine.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of durations over fixed buckets, from 10 microseconds to 10
+ * seconds, in the shape Prometheus expects.
+ * </p>
+ * The buckets are allocated with the histogram and recording only increments
+ * {@link LongAdder}s, so threads mapping messages never wait on each other to
+ * record a duration.
+ */
+public final class LatencyHistogram {
+
+	/** Upper bounds of the buckets, in nanoseconds, the last one unbounded */
+	static final long[] BOUNDS = {
+			TimeUnit.MICROSECONDS.toNanos(10), TimeUnit.MICROSECONDS.toNanos(25), TimeUnit.MICROSECONDS.toNanos(50),
+			TimeUnit.MICROSECONDS.toNanos(100), TimeUnit.MICROSECONDS.toNanos(250), TimeUnit.MICROSECONDS.toNanos(500),
+			TimeUnit.MILLISECONDS.toNanos(1), TimeUnit.MICROSECONDS.toNanos(2500), TimeUnit.MILLISECONDS.toNanos(5),
+			TimeUnit.MILLISECONDS.toNanos(10), TimeUnit.MILLISECONDS.toNanos(25), TimeUnit.MILLISECONDS.toNanos(50),
+			TimeUnit.MILLISECONDS.toNanos(100), TimeUnit.MILLISECONDS.toNanos(250), TimeUnit.MILLISECONDS.toNanos(500),
+			TimeUnit.SECONDS.toNanos(1), TimeUnit.MILLISECONDS.toNanos(2500), TimeUnit.SECONDS.toNanos(5),
+			TimeUnit.SECONDS.toNanos(10) };
+
+	private final LongAdder[] buckets = new LongAdder[BOUNDS.length + 1];
+	private final LongAdder totalNanos = new LongAdder();
+
+	public LatencyHistogram() {
+		for (int i = 0; i < buckets.length; i++) {
+			buckets[i] = new LongAdder();
+		}
+	}
+
+	public void record(long nanos) {
+		int bucket = 0;
+		while (bucket < BOUNDS.length && nanos > BOUNDS[bucket]) {
+			bucket++;
+		}
+		buckets[bucket].increment();
+		totalNanos.add(nanos);
+	}
+
+	/**
+	 * Returns the number of durations in each bucket and the ones before it,
+	 * the last one being the total count.
+	 */
+	public long[] getCumulativeCounts() {
+		long[] counts = new long[buckets.length];
+		long count = 0;
+		for (int i = 0; i < buckets.length; i++) {
+			count += buckets[i].sum();
+			counts[i] = count;
+		}
+		return counts;
+	}
+
+	public long getCount() {
+		long count = 0;
+		for (LongAdder bucket : buckets) {
+			count += bucket.sum();
+		}
+		return count;
+	}
+
+	public long getTotalNanos() {
+		return totalNanos.sum();
+	}
+
+	/**
+	 * Returns the mean duration, 0 before any.
+	 */
+	public long getMeanNanos() {
+		long count = getCount();
+		return count == 0 ? 0 : getTotalNanos() / count;
+	}
+
+	/**
+	 * Returns the upper bound of the bucket the quantile falls in, such as
+	 * 0.95 for the 95th percentile: the durations are only known to the
+	 * bucket. Past the last bound the mean of the slowest bucket isn't known
+	 * either, so the last bound is returned. 0 before any duration.
+	 */
+	public long getQuantileNanos(double quantile) {
+		long[] counts = getCumulativeCounts();
+		long total = counts[counts.length - 1];
+		if (total == 0) {
+			return 0;
+		}
+		long rank = (long) Math.ceil(quantile * total);
+		for (int i = 0; i < BOUNDS.length; i++) {
+			if (counts[i] >= rank) {
+				return BOUNDS[i];
+			}
+		}
+		return BOUNDS[BOUNDS.length - 1];
+	}
+}
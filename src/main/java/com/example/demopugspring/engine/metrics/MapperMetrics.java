@@ -0,0 +1,53 @@
+package com.example.demopugspring.engine.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import com.example.demopugspring.model.Mapper;
+
+/**
+ * Time taken and errors reported by one mapper of an integration.
+ */
+public final class MapperMetrics {
+
+	private final Long integrationId;
+	private final Long mapperId;
+	private final Mapper.Category category;
+	private final LatencyHistogram latency = new LatencyHistogram();
+	private final LongAdder errors = new LongAdder();
+
+	MapperMetrics(Long integrationId, Long mapperId, Mapper.Category category) {
+		this.integrationId = integrationId;
+		this.mapperId = mapperId;
+		this.category = category;
+	}
+
+	/**
+	 * Records a run of the mapper, with the number of errors it reported.
+	 */
+	public void record(long nanos, int errorCount) {
+		latency.record(nanos);
+		if (errorCount > 0) {
+			errors.add(errorCount);
+		}
+	}
+
+	public Long getIntegrationId() {
+		return integrationId;
+	}
+
+	public Long getMapperId() {
+		return mapperId;
+	}
+
+	public Mapper.Category getCategory() {
+		return category;
+	}
+
+	public LatencyHistogram getLatency() {
+		return latency;
+	}
+
+	public long getErrors() {
+		return errors.sum();
+	}
+}
@@ -0,0 +1,188 @@
+package com.example.demopugspring.engine.metrics;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.stereotype.Component;
+
+import com.example.demopugspring.engine.plan.IntegrationPlan;
+import com.example.demopugspring.model.Mapper;
+
+/**
+ * Timings and error counts of the messages mapped on this node since
+ * startup: of every stage of {@link com.example.demopugspring.engine.MapperEngine#run(String)},
+ * of every integration and of every mapper of each integration.
+ * </p>
+ * Exposed in the Prometheus text format under {@code /metrics} and as a
+ * dashboard under {@code /dashboard}. The metrics of an integration and of
+ * its mappers are created when its plan is loaded, so mapping a message only
+ * looks them up and adds to {@link LongAdder}s.
+ */
+@Component
+public class MappingMetrics {
+
+	public enum Stage {
+		/** Fixing the incoming message before parsing it */
+		FIX,
+		/** Parsing the incoming message */
+		PARSE,
+		/** Finding the plan of the integration of the message */
+		ROUTE,
+		/** Parsing the incoming message into the result structure */
+		RETARGET,
+		/** Encoding the outgoing message */
+		ENCODE,
+		/** The whole mapping, from the incoming message to the response */
+		TOTAL
+	}
+
+	private static final double NANOS_PER_SECOND = 1_000_000_000d;
+
+	private final LatencyHistogram[] stages = new LatencyHistogram[Stage.values().length];
+	private final Map<Long, IntegrationMetrics> integrations = new ConcurrentHashMap<>();
+	private final LongAdder unrouted = new LongAdder();
+
+	public MappingMetrics() {
+		for (int i = 0; i < stages.length; i++) {
+			stages[i] = new LatencyHistogram();
+		}
+	}
+
+	public void record(Stage stage, long nanos) {
+		stages[stage.ordinal()].record(nanos);
+	}
+
+	/**
+	 * Counts a message whose integration couldn't be found, or that couldn't
+	 * be parsed far enough to look for it.
+	 */
+	public void recordUnrouted() {
+		unrouted.increment();
+	}
+
+	/**
+	 * Creates the metrics of the integration of the plan and of all of its
+	 * mappers, if they don't exist yet.
+	 */
+	public IntegrationMetrics register(IntegrationPlan plan) {
+		IntegrationMetrics metrics = integration(plan.getIntegrationId());
+		for (Mapper mapper : plan.getMappers()) {
+			metrics.mapper(mapper);
+		}
+		return metrics;
+	}
+
+	public IntegrationMetrics integration(Long integrationId) {
+		IntegrationMetrics metrics = integrations.get(integrationId);
+		if (metrics == null) {
+			metrics = integrations.computeIfAbsent(integrationId, IntegrationMetrics::new);
+		}
+		return metrics;
+	}
+
+	public LatencyHistogram getStage(Stage stage) {
+		return stages[stage.ordinal()];
+	}
+
+	public long getUnrouted() {
+		return unrouted.sum();
+	}
+
+	/**
+	 * Returns the metrics of the integrations that mapped messages, the
+	 * busiest first.
+	 */
+	public List<IntegrationMetrics> findIntegrations() {
+		List<IntegrationMetrics> found = new ArrayList<>(integrations.values());
+		found.sort(Comparator.comparingLong(IntegrationMetrics::getMessages).reversed());
+		return found;
+	}
+
+	/**
+	 * Returns the metrics of the mappers that took the most time altogether,
+	 * at most the given number.
+	 */
+	public List<MapperMetrics> findSlowestMappers(int limit) {
+		List<MapperMetrics> found = new ArrayList<>();
+		integrations.values().forEach(integration -> found.addAll(integration.getMappers()));
+		found.sort(Comparator.comparingLong((MapperMetrics mapper) -> mapper.getLatency().getTotalNanos()).reversed());
+		return found.size() > limit ? found.subList(0, limit) : found;
+	}
+
+	/**
+	 * Writes every metric in the Prometheus text exposition format, version
+	 * 0.0.4.
+	 */
+	public String toPrometheus() {
+		StringBuilder out = new StringBuilder(4096);
+
+		header(out, "mapper_stage_seconds", "histogram", "Time taken by each stage of mapping a message");
+		for (Stage stage : Stage.values()) {
+			histogram(out, "mapper_stage_seconds", "stage=\"" + stage.name().toLowerCase(Locale.ROOT) + "\"", getStage(stage));
+		}
+
+		header(out, "mapper_unrouted_messages_total", "counter", "Messages without an integration to map them");
+		out.append("mapper_unrouted_messages_total ").append(getUnrouted()).append('\n');
+
+		Collection<IntegrationMetrics> all = integrations.values();
+		header(out, "mapper_integration_seconds", "histogram", "Time taken mapping the messages of each integration");
+		for (IntegrationMetrics integration : all) {
+			histogram(out, "mapper_integration_seconds", integrationLabel(integration.getIntegrationId()), integration.getLatency());
+		}
+		header(out, "mapper_integration_failed_messages_total", "counter", "Messages of each integration answered with errors");
+		for (IntegrationMetrics integration : all) {
+			sample(out, "mapper_integration_failed_messages_total", integrationLabel(integration.getIntegrationId()), integration.getFailed());
+		}
+		header(out, "mapper_integration_errors_total", "counter", "Errors reported mapping the messages of each integration");
+		for (IntegrationMetrics integration : all) {
+			sample(out, "mapper_integration_errors_total", integrationLabel(integration.getIntegrationId()), integration.getErrors());
+		}
+
+		header(out, "mapper_mapper_seconds", "histogram", "Time taken by each mapper of each integration");
+		for (IntegrationMetrics integration : all) {
+			for (MapperMetrics mapper : integration.getMappers()) {
+				histogram(out, "mapper_mapper_seconds", mapperLabels(mapper), mapper.getLatency());
+			}
+		}
+		header(out, "mapper_mapper_errors_total", "counter", "Errors reported by each mapper of each integration");
+		for (IntegrationMetrics integration : all) {
+			for (MapperMetrics mapper : integration.getMappers()) {
+				sample(out, "mapper_mapper_errors_total", mapperLabels(mapper), mapper.getErrors());
+			}
+		}
+		return out.toString();
+	}
+
+	private static void header(StringBuilder out, String name, String type, String help) {
+		out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+		out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+	}
+
+	private static void histogram(StringBuilder out, String name, String labels, LatencyHistogram histogram) {
+		long[] counts = histogram.getCumulativeCounts();
+		for (int i = 0; i < LatencyHistogram.BOUNDS.length; i++) {
+			sample(out, name + "_bucket", labels + ",le=\"" + LatencyHistogram.BOUNDS[i] / NANOS_PER_SECOND + "\"", counts[i]);
+		}
+		sample(out, name + "_bucket", labels + ",le=\"+Inf\"", counts[counts.length - 1]);
+		out.append(name).append("_sum{").append(labels).append("} ").append(histogram.getTotalNanos() / NANOS_PER_SECOND).append('\n');
+		sample(out, name + "_count", labels, counts[counts.length - 1]);
+	}
+
+	private static void sample(StringBuilder out, String name, String labels, long value) {
+		out.append(name).append('{').append(labels).append("} ").append(value).append('\n');
+	}
+
+	private static String integrationLabel(Long integrationId) {
+		return "integration=\"" + integrationId + "\"";
+	}
+
+	private static String mapperLabels(MapperMetrics mapper) {
+		return integrationLabel(mapper.getIntegrationId()) + ",mapper=\"" + mapper.getMapperId() + "\",category=\"" + mapper.getCategory() + "\"";
+	}
+}
@@ -0,0 +1,121 @@
+package com.example.demopugspring.engine.metrics;
+
+import java.io.Serializable;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.example.demopugspring.model.Mapper;
+
+/**
+ * Breakdown of the wall time, CPU time and memory allocated mapping one
+ * message, by stage and by mapper, asked for with the profile flag of
+ * {@code /mapper}.
+ * </p>
+ * Measured on the thread mapping the message, between marks: each entry
+ * covers what the thread did since the previous mark. CPU time and
+ * allocations come from the {@link ThreadMXBean} of the JVM and are -1 where
+ * it doesn't support them. Only created for the requests asking for it.
+ */
+public final class MappingProfile implements Serializable {
+
+	private static final long serialVersionUID = -2214808131467651309L;
+
+	private static final String MAPPER = "MAPPER";
+	private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+	private final List<ProfileEntry> entries = new ArrayList<>();
+	private final long startWall;
+	private final long startCpu;
+	private final long startAllocated;
+	private long wall;
+	private long cpu;
+	private long allocated;
+	private ProfileEntry total;
+
+	public MappingProfile() {
+		mark();
+		startWall = wall;
+		startCpu = cpu;
+		startAllocated = allocated;
+	}
+
+	/**
+	 * Starts measuring from now, leaving out what the thread did since the
+	 * last entry.
+	 */
+	public void mark() {
+		wall = System.nanoTime();
+		cpu = cpuTime();
+		allocated = allocatedBytes();
+	}
+
+	/**
+	 * Adds an entry for the stage with what the thread did since the last
+	 * mark, and marks.
+	 */
+	public void stage(MappingMetrics.Stage stage) {
+		add(stage.name(), null, null, null);
+	}
+
+	/**
+	 * Adds an entry for the mapper with what the thread did since the last
+	 * mark, and marks.
+	 */
+	public void mapper(Integer orderIndex, Mapper mapper) {
+		add(MAPPER, orderIndex, mapper.getId(), mapper.getCategory());
+	}
+
+	private void add(String stage, Integer orderIndex, Long mapperId, Mapper.Category category) {
+		long now = System.nanoTime();
+		long cpuNow = cpuTime();
+		long allocatedNow = allocatedBytes();
+		entries.add(new ProfileEntry(stage, orderIndex, mapperId, category, now - wall, difference(cpuNow, cpu), difference(allocatedNow, allocated)));
+		wall = now;
+		cpu = cpuNow;
+		allocated = allocatedNow;
+	}
+
+	/**
+	 * Returns the entries, in the order they were measured.
+	 */
+	public List<ProfileEntry> getEntries() {
+		return Collections.unmodifiableList(entries);
+	}
+
+	/**
+	 * Ends the profile, measuring everything the thread did since it was
+	 * created, in the entries or not.
+	 */
+	public void finish() {
+		total = new ProfileEntry(MappingMetrics.Stage.TOTAL.name(), null, null, null, System.nanoTime() - startWall, difference(cpuTime(), startCpu),
+				difference(allocatedBytes(), startAllocated));
+	}
+
+	/**
+	 * Returns the entry measured by {@link #finish()}, null before.
+	 */
+	public ProfileEntry getTotal() {
+		return total;
+	}
+
+	private static long difference(long now, long before) {
+		return now < 0 || before < 0 ? -1 : now - before;
+	}
+
+	private static long cpuTime() {
+		return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : -1;
+	}
+
+	private static long allocatedBytes() {
+		if (THREADS instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+			if (threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) {
+				return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+			}
+		}
+		return -1;
+	}
+}
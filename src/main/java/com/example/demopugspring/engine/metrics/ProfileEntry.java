@@ -0,0 +1,76 @@
+package com.example.demopugspring.engine.metrics;
+
+import java.io.Serializable;
+
+import com.example.demopugspring.model.Mapper;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Time and memory one stage of mapping a message, or one of its mappers,
+ * took on the thread mapping it. See {@link MappingProfile}.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public final class ProfileEntry implements Serializable {
+
+	private static final long serialVersionUID = 4310583287326716018L;
+
+	private final String stage;
+	private final Integer orderIndex;
+	private final Long mapperId;
+	private final Mapper.Category category;
+	private final long wallNanos;
+	private final long cpuNanos;
+	private final long allocatedBytes;
+
+	ProfileEntry(String stage, Integer orderIndex, Long mapperId, Mapper.Category category, long wallNanos, long cpuNanos, long allocatedBytes) {
+		this.stage = stage;
+		this.orderIndex = orderIndex;
+		this.mapperId = mapperId;
+		this.category = category;
+		this.wallNanos = wallNanos;
+		this.cpuNanos = cpuNanos;
+		this.allocatedBytes = allocatedBytes;
+	}
+
+	/**
+	 * Returns the stage, one of {@link MappingMetrics.Stage} or "MAPPER".
+	 */
+	public String getStage() {
+		return stage;
+	}
+
+	/**
+	 * Returns the order index of the mapper in its integration, null for a
+	 * stage.
+	 */
+	public Integer getOrderIndex() {
+		return orderIndex;
+	}
+
+	public Long getMapperId() {
+		return mapperId;
+	}
+
+	public Mapper.Category getCategory() {
+		return category;
+	}
+
+	public long getWallNanos() {
+		return wallNanos;
+	}
+
+	/**
+	 * Returns the CPU time of the thread, -1 when the JVM doesn't measure it.
+	 */
+	public long getCpuNanos() {
+		return cpuNanos;
+	}
+
+	/**
+	 * Returns the bytes allocated by the thread, -1 when the JVM doesn't
+	 * measure them.
+	 */
+	public long getAllocatedBytes() {
+		return allocatedBytes;
+	}
+}
@@ -0,0 +1,19 @@
+package com.example.demopugspring.engine.operation;
+
+import java.util.List;
+
+import com.example.demopugspring.engine.MapperEngine;
+
+import ca.uhn.hl7v2.model.Message;
+import ca.uhn.hl7v2.util.Terser;
+
+/**
+ * Creates the {@link AbstractOperation} that runs a single mapper. Matches the
+ * constructor every operation exposes, so implementations are usually a
+ * constructor reference such as {@code Text::new}.
+ */
+@FunctionalInterface
+public interface OperationFactory {
+
+	AbstractOperation create(MapperEngine engine, Message incomingMessage, Message outgoingMessage, Terser incomingTerser, Terser outgoingTerser, List<String> keys, String value);
+}
@@ -0,0 +1,79 @@
+package com.example.demopugspring.engine.operation;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.stereotype.Component;
+
+import com.example.demopugspring.engine.MapperEngine;
+import com.example.demopugspring.model.Mapper.Category;
+
+import ca.uhn.hl7v2.model.Message;
+import ca.uhn.hl7v2.util.Terser;
+
+/**
+ * Maps each {@link Category} that is run as an {@link AbstractOperation} to the
+ * {@link OperationFactory} creating it.
+ * </p>
+ * The registry is built once, when the bean is created, and refuses to start if
+ * a category of {@link Category#values()} has no factory and isn't one of
+ * {@link #ENGINE_CATEGORIES} or {@link #UNMAPPED_CATEGORIES}. To add a new
+ * operation, register its constructor in {@link #OperationRegistry()}.
+ */
+@Component
+public class OperationRegistry {
+
+	/**
+	 * Categories {@link MapperEngine} maps itself instead of dispatching them to
+	 * an {@link AbstractOperation}.
+	 */
+	public static final Set<Category> ENGINE_CATEGORIES = Collections.unmodifiableSet(EnumSet.of(Category.SEGMENT, Category.NUMERIC,
+			Category.CONTACT, Category.ADD_SNS, Category.JOIN, Category.SWAP, Category.TRANSCODING, Category.CLEAR_IF, Category.REPLACE,
+			Category.TEXT_IF));
+
+	/**
+	 * Categories nothing maps: their mappers are reported as errors.
+	 */
+	public static final Set<Category> UNMAPPED_CATEGORIES = Collections.unmodifiableSet(EnumSet.of(Category.AFTER_SWAP, Category.AFTER_FIELD,
+			Category.AFTER_JOIN_FIELDS));
+
+	private final Map<Category, OperationFactory> factories;
+
+	public OperationRegistry() {
+		this(operations());
+	}
+
+	OperationRegistry(Map<Category, OperationFactory> registered) {
+		Set<Category> missing = EnumSet.allOf(Category.class);
+		missing.removeAll(registered.keySet());
+		missing.removeAll(ENGINE_CATEGORIES);
+		missing.removeAll(UNMAPPED_CATEGORIES);
+		if (!missing.isEmpty()) {
+			throw new IllegalStateException("No operation registered for Mapper categories " + missing + "!");
+		}
+		this.factories = Collections.unmodifiableMap(registered);
+	}
+
+	private static Map<Category, OperationFactory> operations() {
+		Map<Category, OperationFactory> registered = new EnumMap<>(Category.class);
+		registered.put(Category.TEXT, Text::new);
+		registered.put(Category.FIELD, Field::new);
+		return registered;
+	}
+
+	public boolean supports(Category category) {
+		return factories.containsKey(category);
+	}
+
+	public AbstractOperation create(Category category, MapperEngine engine, Message incomingMessage, Message outgoingMessage, Terser incomingTerser, Terser outgoingTerser, List<String> keys, String value) {
+		OperationFactory factory = factories.get(category);
+		if (factory == null) {
+			throw new IllegalArgumentException("Mapper category " + category + " isn't supported!");
+		}
+		return factory.create(engine, incomingMessage, outgoingMessage, incomingTerser, outgoingTerser, keys, value);
+	}
+}
@@ -0,0 +1,131 @@
+package com.example.demopugspring.engine.plan;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.example.demopugspring.model.Integration;
+import com.example.demopugspring.model.IntegrationMapper;
+import com.example.demopugspring.model.Mapper;
+import com.example.demopugspring.model.Message;
+
+/**
+ * Immutable, precompiled view of an {@link Integration}: the result
+ * {@link Message}, the ordered list of its active {@link Mapper}s and the
+ * {@link PlanStep}s running them, laid out by {@link PlanOptimizer}.
+ * </p>
+ * Both the result message and the mappers are detached copies of the JPA
+ * entities, so a plan can be shared between request threads without touching
+ * the persistence context again.
+ */
+public final class IntegrationPlan {
+
+	private final Long integrationId;
+	private final Message resultMessage;
+	private final List<Mapper> mappers;
+	private final Set<Long> mapperIds;
+	private final Map<Mapper, Integer> orderIndexes = new IdentityHashMap<>();
+	private final List<PlanStep> steps;
+	private final boolean traced;
+
+	private IntegrationPlan(Long integrationId, Message resultMessage, List<Mapper> mappers, List<Integer> orderIndexes, boolean optimize,
+			boolean traced) {
+		this.integrationId = integrationId;
+		this.traced = traced;
+		this.resultMessage = resultMessage;
+		this.mappers = Collections.unmodifiableList(mappers);
+		this.steps = Collections.unmodifiableList(optimize ? PlanOptimizer.optimize(this.mappers) : PlanOptimizer.unoptimized(this.mappers));
+
+		Set<Long> ids = new HashSet<>();
+		for (int i = 0; i < mappers.size(); i++) {
+			ids.add(mappers.get(i).getId());
+			this.orderIndexes.put(mappers.get(i), orderIndexes.get(i));
+		}
+		this.mapperIds = Collections.unmodifiableSet(ids);
+	}
+
+	/**
+	 * Builds a plan from an integration and its active mappers, which must
+	 * already be sorted by {@link IntegrationMapper#getOrderIndex()}.
+	 */
+	public static IntegrationPlan compile(Integration integration, List<IntegrationMapper> activeMappers) {
+		return compile(integration, activeMappers, true);
+	}
+
+	/**
+	 * Builds a plan as {@link #compile(Integration, List)} does, running every
+	 * mapper as it is unless asked to optimize it.
+	 */
+	public static IntegrationPlan compile(Integration integration, List<IntegrationMapper> activeMappers, boolean optimize) {
+		List<Mapper> mappers = new ArrayList<>(activeMappers.size());
+		List<Integer> orderIndexes = new ArrayList<>(activeMappers.size());
+		for (IntegrationMapper integrationMapper : activeMappers) {
+			mappers.add(copyOf(integrationMapper.getMapper()));
+			orderIndexes.add(integrationMapper.getOrderIndex());
+		}
+		return new IntegrationPlan(integration.getId(), copyOf(integration.getResultMessage()), mappers, orderIndexes, optimize, integration.isTrace());
+	}
+
+	public static IntegrationPlan of(Long integrationId, Message resultMessage, List<Mapper> mappers) {
+		List<Mapper> copies = new ArrayList<>(mappers.size());
+		List<Integer> orderIndexes = new ArrayList<>(mappers.size());
+		for (Mapper mapper : mappers) {
+			copies.add(copyOf(mapper));
+			orderIndexes.add(orderIndexes.size());
+		}
+		return new IntegrationPlan(integrationId, copyOf(resultMessage), copies, orderIndexes, true, false);
+	}
+
+	private static Mapper copyOf(Mapper mapper) {
+		Mapper copy = new Mapper(Collections.unmodifiableList(new ArrayList<>(mapper.getKey())), mapper.getValue(), mapper.getCategory());
+		copy.setId(mapper.getId());
+		copy.setActive(true);
+		return copy;
+	}
+
+	private static Message copyOf(Message message) {
+		Message copy = new Message(message.getCode(), message.getEvent(), message.getVersion());
+		copy.setId(message.getId());
+		return copy;
+	}
+
+	public Long getIntegrationId() {
+		return integrationId;
+	}
+
+	public Message getResultMessage() {
+		return resultMessage;
+	}
+
+	public List<Mapper> getMappers() {
+		return mappers;
+	}
+
+	public List<PlanStep> getSteps() {
+		return steps;
+	}
+
+	/**
+	 * Returns the {@link IntegrationMapper#getOrderIndex()} of one of the
+	 * mappers of the plan, their position in the list when built with
+	 * {@link #of(Long, Message, List)}, null for a mapper not in the plan.
+	 */
+	public Integer getOrderIndex(Mapper mapper) {
+		return orderIndexes.get(mapper);
+	}
+
+	/**
+	 * Returns whether every message of the integration is traced.
+	 */
+	public boolean isTraced() {
+		return traced;
+	}
+
+	public boolean containsMapper(Long mapperId) {
+		return mapperIds.contains(mapperId);
+	}
+}
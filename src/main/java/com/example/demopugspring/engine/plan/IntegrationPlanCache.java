@@ -0,0 +1,228 @@
+package com.example.demopugspring.engine.plan;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import ca.uhn.hl7v2.HL7Exception;
+
+/**
+ * In-memory cache of {@link IntegrationPlan}s, keyed by
+ * {@link IntegrationPlanKey}.
+ * </p>
+ * Plans are only loaded from the database on a miss, and are removed again
+ * when the integration, or one of the mappers they hold, is changed. Every
+ * invalidation bumps a generation counter, so a plan loaded concurrently with
+ * a change is never stored over the newer state.
+ * </p>
+ * Keys without an integration are cached too, for a shorter time, so
+ * unrouted messages don't each reach the database. Entries expire after
+ * {@code mapper.plan-cache.ttl} milliseconds, picking up changes made by other
+ * nodes, and at most {@code mapper.plan-cache.max-size} are kept: past it,
+ * the ones closest to expiring go first.
+ */
+@Component
+public class IntegrationPlanCache {
+
+	private static final Logger log = LoggerFactory.getLogger(IntegrationPlanCache.class);
+
+	@Value("${mapper.plan-cache.max-size:10000}")
+	int maxSize = 10000;
+
+	@Value("${mapper.plan-cache.ttl:600000}")
+	long ttlMillis = 600000;
+
+	@Value("${mapper.plan-cache.unrouted-ttl:60000}")
+	long unroutedTtlMillis = 60000;
+
+	LongSupplier clock = System::nanoTime;
+
+	private final Map<IntegrationPlanKey, Entry> plans = new ConcurrentHashMap<>();
+	private final AtomicLong generation = new AtomicLong();
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder expirations = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	@FunctionalInterface
+	public interface PlanLoader {
+		/**
+		 * Returns the plan of the key, null when no integration matches it.
+		 */
+		IntegrationPlan load(IntegrationPlanKey key) throws HL7Exception;
+	}
+
+	private static final class Entry {
+		/** Null for a key without an integration */
+		private final IntegrationPlan plan;
+		private final long loadedAt;
+		/** 0 or less to never expire */
+		private final long ttlNanos;
+
+		private Entry(IntegrationPlan plan, long loadedAt, long ttlNanos) {
+			this.plan = plan;
+			this.loadedAt = loadedAt;
+			this.ttlNanos = ttlNanos;
+		}
+
+		private long remaining(long now) {
+			return ttlNanos > 0 ? ttlNanos - (now - loadedAt) : Long.MAX_VALUE;
+		}
+
+		private boolean isExpired(long now) {
+			return remaining(now) <= 0;
+		}
+	}
+
+	/**
+	 * Returns the plan of the key, loading it on a miss. Null when no
+	 * integration matches the key.
+	 */
+	public IntegrationPlan get(IntegrationPlanKey key, PlanLoader loader) throws HL7Exception {
+		Entry entry = plans.get(key);
+		if (entry != null) {
+			if (!entry.isExpired(clock.getAsLong())) {
+				hits.increment();
+				return entry.plan;
+			}
+			if (plans.remove(key, entry)) {
+				expirations.increment();
+			}
+		}
+		misses.increment();
+
+		long loadedAt = generation.get();
+		IntegrationPlan plan = loader.load(key);
+		if (generation.get() == loadedAt) {
+			Entry stored = store(key, plan);
+			// an invalidation between the check and the put may have missed it
+			if (generation.get() != loadedAt) {
+				plans.remove(key, stored);
+			}
+		}
+		return plan;
+	}
+
+	public void put(IntegrationPlanKey key, IntegrationPlan plan) {
+		store(key, plan);
+	}
+
+	/**
+	 * Stores the plan, making room for it first if the cache is full. Locked
+	 * so concurrent misses can't each see room for one more and overfill it.
+	 */
+	private synchronized Entry store(IntegrationPlanKey key, IntegrationPlan plan) {
+		long now = clock.getAsLong();
+		if (plans.size() >= maxSize && !plans.containsKey(key)) {
+			makeRoom(now);
+		}
+		long ttl = plan == null ? unroutedTtlMillis : ttlMillis;
+		Entry entry = new Entry(plan, now, TimeUnit.MILLISECONDS.toNanos(ttl));
+		plans.put(key, entry);
+		return entry;
+	}
+
+	/**
+	 * Drops the expired entries or, without any, the one closest to expiring.
+	 * Only runs on a miss with the cache full, so a scan of it is fine. Holds
+	 * the lock of {@link #store}.
+	 */
+	private void makeRoom(long now) {
+		Map.Entry<IntegrationPlanKey, Entry> first = null;
+		for (Iterator<Map.Entry<IntegrationPlanKey, Entry>> it = plans.entrySet().iterator(); it.hasNext();) {
+			Map.Entry<IntegrationPlanKey, Entry> candidate = it.next();
+			if (candidate.getValue().isExpired(now)) {
+				it.remove();
+				expirations.increment();
+			} else if (first == null || candidate.getValue().remaining(now) < first.getValue().remaining(now)) {
+				first = candidate;
+			}
+		}
+		if (plans.size() >= maxSize && first != null && plans.remove(first.getKey(), first.getValue())) {
+			evictions.increment();
+			log.debug("Evicted the plan of {}, the cache holds {}", first.getKey(), maxSize);
+		}
+	}
+
+	/**
+	 * Removes the plans of the integration, and the keys without one: the
+	 * integration may now match them.
+	 */
+	public void invalidateIntegration(Long integrationId) {
+		generation.incrementAndGet();
+		plans.values().removeIf(entry -> entry.plan == null || entry.plan.getIntegrationId().equals(integrationId));
+		log.debug("Invalidated plans of integration {}", integrationId);
+	}
+
+	public void invalidateMapper(Long mapperId) {
+		generation.incrementAndGet();
+		plans.values().removeIf(entry -> entry.plan != null && entry.plan.containsMapper(mapperId));
+		log.debug("Invalidated plans using mapper {}", mapperId);
+	}
+
+	public void invalidateAll() {
+		generation.incrementAndGet();
+		plans.clear();
+		log.debug("Invalidated all integration plans");
+	}
+
+	public int size() {
+		return plans.size();
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public long getHits() {
+		return hits.sum();
+	}
+
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * Share of the lookups answered without the database, 0 before the first.
+	 */
+	public double getHitRate() {
+		long hitCount = getHits();
+		long total = hitCount + getMisses();
+		return total == 0 ? 0 : (double) hitCount / total;
+	}
+
+	public long getExpirations() {
+		return expirations.sum();
+	}
+
+	public long getEvictions() {
+		return evictions.sum();
+	}
+
+	/**
+	 * Counters of the cache in the Prometheus text format, appended to
+	 * the ones of {@link com.example.demopugspring.engine.metrics.MappingMetrics}.
+	 */
+	public String toPrometheus() {
+		return "# HELP mapper_plan_cache_requests_total Integration plan lookups, by whether the cache answered them\n"
+				+ "# TYPE mapper_plan_cache_requests_total counter\n"
+				+ "mapper_plan_cache_requests_total{result=\"hit\"} " + getHits() + "\n"
+				+ "mapper_plan_cache_requests_total{result=\"miss\"} " + getMisses() + "\n"
+				+ "# HELP mapper_plan_cache_removals_total Integration plans dropped other than by an invalidation\n"
+				+ "# TYPE mapper_plan_cache_removals_total counter\n"
+				+ "mapper_plan_cache_removals_total{cause=\"expired\"} " + getExpirations() + "\n"
+				+ "mapper_plan_cache_removals_total{cause=\"size\"} " + getEvictions() + "\n"
+				+ "# HELP mapper_plan_cache_entries Integration plans, and keys without one, in the cache\n"
+				+ "# TYPE mapper_plan_cache_entries gauge\n"
+				+ "mapper_plan_cache_entries " + size() + "\n";
+	}
+}
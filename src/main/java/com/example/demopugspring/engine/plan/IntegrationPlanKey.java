@@ -0,0 +1,24 @@
+package com.example.demopugspring.engine.plan;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Routing key of an {@link IntegrationPlan}, made of the values the engine
+ * reads from the incoming MSH segment: MSH-9-1, MSH-9-2, MSH-12, MSH-3-1 and
+ * MSH-5-1.
+ */
+@Getter
+@ToString
+@EqualsAndHashCode
+@AllArgsConstructor
+public final class IntegrationPlanKey {
+
+	private final String messageCode;
+	private final String messageEvent;
+	private final String messageVersion;
+	private final String sendingApp;
+	private final String receivingApp;
+}
@@ -0,0 +1,280 @@
+package com.example.demopugspring.engine.plan;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.example.demopugspring.model.Mapper;
+import com.example.demopugspring.model.Mapper.Category;
+
+/**
+ * Lays out the mappers of an integration as the {@link PlanStep}s the engine
+ * runs, doing away with the work integrations built in the UI tend to repeat.
+ * </p>
+ * A TEXT or FIELD write is eliminated when a later TEXT or FIELD mapper
+ * writes the same path and nothing in between reads the segment from the
+ * outgoing message. Consecutive TEXT and FIELD writes to the same segment are
+ * run as one step, which resolves the segment once for all of them.
+ * Consecutive REPLACE mappers on the same paths are run as one set of rules,
+ * in a single traversal of each path.
+ * </p>
+ * The {@link ca.uhn.hl7v2.util.Terser}s resolve a path without a leading
+ * {@code /} from the segment they were last on, so only mappers whose paths
+ * are all absolute and without wildcards are eliminated or grouped, and only
+ * when the mappers whose paths could resolve differently are absolute as
+ * well. Errors an eliminated mapper would have reported aren't, the writes
+ * overwriting it report the same ones for the path.
+ */
+public final class PlanOptimizer {
+
+	private static final String ABSOLUTE_PATH = "/";
+	private static final String WILDCARD = "#";
+	private static final String USE_MSG_VALUE_PREFIX = "/[MSG]";
+	private static final String USE_TMP_VALUE_PREFIX = "/[TMP]";
+	private static final String RULE_SEPARATOR = "\n";
+
+	private PlanOptimizer() {
+	}
+
+	/**
+	 * Returns one {@link PlanStep.Kind#MAPPER} step for each mapper.
+	 */
+	public static List<PlanStep> unoptimized(List<Mapper> mappers) {
+		List<PlanStep> steps = new ArrayList<>(mappers.size());
+		for (Mapper mapper : mappers) {
+			steps.add(PlanStep.mapper(mapper));
+		}
+		return steps;
+	}
+
+	/**
+	 * Returns the steps running the given mappers, in the order they must
+	 * run. Eliminated mappers are kept as {@link PlanStep.Kind#ELIMINATED}
+	 * steps, after the step they were found in, so the plan still accounts for
+	 * every mapper.
+	 */
+	public static List<PlanStep> optimize(List<Mapper> mappers) {
+		Mapper[] overwrittenBy = new Mapper[mappers.size()];
+		for (int i = 0; i < mappers.size(); i++) {
+			if (isWrite(mappers.get(i))) {
+				overwrittenBy[i] = findOverwrite(mappers, i);
+			}
+		}
+
+		List<PlanStep> steps = new ArrayList<>();
+		List<PlanStep> eliminated = new ArrayList<>();
+		int i = 0;
+		while (i < mappers.size()) {
+			Mapper mapper = mappers.get(i);
+			if (overwrittenBy[i] != null) {
+				steps.add(PlanStep.eliminated(mapper, overwrittenBy[i]));
+				i++;
+				continue;
+			}
+
+			List<Mapper> group = new ArrayList<>();
+			group.add(mapper);
+			int next = i + 1;
+			while (next < mappers.size() && (overwrittenBy[next] != null || canGroup(mapper, mappers.get(next)))) {
+				if (overwrittenBy[next] != null) {
+					eliminated.add(PlanStep.eliminated(mappers.get(next), overwrittenBy[next]));
+				} else {
+					group.add(mappers.get(next));
+				}
+				next++;
+			}
+			// Trailing eliminated mappers belong after the group, not in it
+			while (next > i + 1 && overwrittenBy[next - 1] != null) {
+				next--;
+				eliminated.remove(eliminated.size() - 1);
+			}
+
+			if (group.size() == 1) {
+				steps.add(PlanStep.mapper(mapper));
+			} else if (mapper.getCategory() == Category.REPLACE) {
+				steps.add(PlanStep.mergedReplace(mergeReplaces(group), group));
+			} else {
+				steps.add(PlanStep.segmentWrites(segmentSpec(mapper.getKey().get(0)), group));
+			}
+			steps.addAll(eliminated);
+			eliminated.clear();
+			i = next;
+		}
+		return steps;
+	}
+
+	/**
+	 * Returns the mapper overwriting the write at the given index before
+	 * anything reads it, null if there's none or it can't be told.
+	 */
+	private static Mapper findOverwrite(List<Mapper> mappers, int index) {
+		Mapper write = mappers.get(index);
+		String key = write.getKey().get(0);
+		String segment = segmentName(key);
+		for (int i = index + 1; i < mappers.size(); i++) {
+			Mapper next = mappers.get(i);
+			if (!hasAbsolutePaths(next) || readsOutgoing(next, segment)) {
+				return null;
+			}
+			if (isWrite(next) && next.getKey().get(0).equals(key)) {
+				return readsIncoming(write) && !nextIncomingReadIsAbsolute(mappers, index) ? null : next;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns whether the first mapper after the given index reading the
+	 * incoming message, if any, does so with absolute paths only, so it
+	 * doesn't depend on where the mapper at the index left the incoming
+	 * {@link ca.uhn.hl7v2.util.Terser}.
+	 */
+	private static boolean nextIncomingReadIsAbsolute(List<Mapper> mappers, int index) {
+		for (int i = index + 1; i < mappers.size(); i++) {
+			if (readsIncoming(mappers.get(i))) {
+				return hasAbsolutePaths(mappers.get(i));
+			}
+		}
+		return true;
+	}
+
+	private static boolean canGroup(Mapper first, Mapper next) {
+		if (first.getCategory() == Category.REPLACE) {
+			return next.getCategory() == Category.REPLACE && next.getKey().equals(first.getKey()) && isRules(first.getValue())
+					&& isRules(next.getValue()) && haveDistinctSegments(first.getKey());
+		}
+		return isWrite(first) && isWrite(next) && segmentSpec(first.getKey().get(0)).equals(segmentSpec(next.getKey().get(0)));
+	}
+
+	/**
+	 * Returns whether the REPLACE value keeps its meaning as lines of a
+	 * longer one: a blank line there is skipped.
+	 */
+	private static boolean isRules(String value) {
+		return value != null && !value.isBlank();
+	}
+
+	/**
+	 * Returns whether no two of the paths can reach the same primitive, so
+	 * running every rule on one path and then on the next gives the same
+	 * result as running each rule on every path in turn.
+	 */
+	private static boolean haveDistinctSegments(List<String> paths) {
+		Set<String> segments = new HashSet<>();
+		for (String path : paths) {
+			if (!segments.add(segmentName(path))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static Mapper mergeReplaces(List<Mapper> replaces) {
+		List<String> rules = new ArrayList<>();
+		for (Mapper replace : replaces) {
+			rules.add(replace.getValue());
+		}
+		Mapper merged = new Mapper(replaces.get(0).getKey(), String.join(RULE_SEPARATOR, rules), Category.REPLACE);
+		merged.setId(replaces.get(0).getId());
+		merged.setActive(true);
+		return merged;
+	}
+
+	private static boolean isWrite(Mapper mapper) {
+		return (mapper.getCategory() == Category.TEXT || mapper.getCategory() == Category.FIELD) && hasAbsolutePaths(mapper);
+	}
+
+	/**
+	 * Returns whether every path the mapper reads or writes is absolute and
+	 * without wildcards. Only TEXT, FIELD and NUMERIC mappers are looked into.
+	 */
+	private static boolean hasAbsolutePaths(Mapper mapper) {
+		switch (mapper.getCategory()) {
+			case TEXT:
+				return isAbsolute(firstKey(mapper));
+			case FIELD:
+				return isAbsolute(firstKey(mapper)) && mapper.getValue() != null && isAbsolute(sourcePath(mapper.getValue()));
+			case NUMERIC:
+				for (String key : mapper.getKey()) {
+					if (!isAbsolute(key)) {
+						return false;
+					}
+				}
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	/**
+	 * Returns whether the mapper reads the given segment from the outgoing
+	 * message. Only asked of mappers with absolute paths.
+	 */
+	private static boolean readsOutgoing(Mapper mapper, String segment) {
+		if (mapper.getCategory() == Category.FIELD) {
+			return !mapper.getValue().startsWith(USE_MSG_VALUE_PREFIX) && segmentName(sourcePath(mapper.getValue())).equals(segment);
+		}
+		return mapper.getCategory() != Category.TEXT && mapper.getCategory() != Category.NUMERIC;
+	}
+
+	private static boolean readsIncoming(Mapper mapper) {
+		switch (mapper.getCategory()) {
+			case FIELD:
+				return mapper.getValue().startsWith(USE_MSG_VALUE_PREFIX);
+			case TEXT:
+			case SWAP:
+			case TRANSCODING:
+			case SEGMENT:
+			case JOIN:
+			case CONTACT:
+			case CLEAR_IF:
+			case REPLACE:
+			case TEXT_IF:
+				return false;
+			default:
+				return true;
+		}
+	}
+
+	private static String firstKey(Mapper mapper) {
+		return mapper.getKey().isEmpty() ? null : mapper.getKey().get(0);
+	}
+
+	private static String sourcePath(String value) {
+		if (value.startsWith(USE_MSG_VALUE_PREFIX)) {
+			return value.substring(USE_MSG_VALUE_PREFIX.length());
+		}
+		if (value.startsWith(USE_TMP_VALUE_PREFIX)) {
+			return value.substring(USE_TMP_VALUE_PREFIX.length());
+		}
+		return value;
+	}
+
+	private static boolean isAbsolute(String path) {
+		return path != null && path.startsWith(ABSOLUTE_PATH) && !path.contains(WILDCARD);
+	}
+
+	/**
+	 * Returns the segment part of a path, groups included, such as
+	 * {@code /PATIENT/PID(1)} for {@code /PATIENT/PID(1)-3-1}.
+	 */
+	static String segmentSpec(String path) {
+		int dash = path.indexOf('-');
+		return dash < 0 ? path : path.substring(0, dash);
+	}
+
+	/**
+	 * Returns the name of the segment of a path, such as {@code PID} for
+	 * {@code /PATIENT/.PID(1)-3-1}.
+	 */
+	static String segmentName(String path) {
+		String spec = segmentSpec(path);
+		String name = spec.substring(spec.lastIndexOf('/') + 1);
+		int repetition = name.indexOf('(');
+		if (repetition >= 0) {
+			name = name.substring(0, repetition);
+		}
+		return name.startsWith(".") ? name.substring(1) : name;
+	}
+}
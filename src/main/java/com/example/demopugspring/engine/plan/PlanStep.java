@@ -0,0 +1,96 @@
+package com.example.demopugspring.engine.plan;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.example.demopugspring.model.Mapper;
+
+/**
+ * One step of an {@link IntegrationPlan}, as laid out by {@link PlanOptimizer}:
+ * the mappers of the integration it stands for and how they are run.
+ */
+public final class PlanStep {
+
+	public enum Kind {
+		/** A single mapper, run as it is */
+		MAPPER,
+		/** TEXT and FIELD mappers writing to the same segment, resolved once */
+		SEGMENT_WRITES,
+		/** REPLACE mappers on the same paths, run as one set of rules */
+		MERGED_REPLACE,
+		/** A write overwritten before anything reads it, not run */
+		ELIMINATED
+	}
+
+	private final Kind kind;
+	private final List<Mapper> mappers;
+	private final Mapper mapper;
+	private final String target;
+	private final String note;
+
+	private PlanStep(Kind kind, List<Mapper> mappers, Mapper mapper, String target, String note) {
+		this.kind = kind;
+		this.mappers = Collections.unmodifiableList(mappers);
+		this.mapper = mapper;
+		this.target = target;
+		this.note = note;
+	}
+
+	static PlanStep mapper(Mapper mapper) {
+		return new PlanStep(Kind.MAPPER, List.of(mapper), mapper, null, null);
+	}
+
+	static PlanStep segmentWrites(String segment, List<Mapper> mappers) {
+		return new PlanStep(Kind.SEGMENT_WRITES, mappers, null, segment, mappers.size() + " writes to " + segment);
+	}
+
+	static PlanStep mergedReplace(Mapper merged, List<Mapper> mappers) {
+		return new PlanStep(Kind.MERGED_REPLACE, mappers, merged, String.join(",", merged.getKey()),
+				merged.getValue().split("\n").length + " rules in one traversal");
+	}
+
+	static PlanStep eliminated(Mapper mapper, Mapper overwrittenBy) {
+		return new PlanStep(Kind.ELIMINATED, List.of(mapper), null, mapper.getKey().get(0), "Overwritten by mapper " + overwrittenBy.getId());
+	}
+
+	public Kind getKind() {
+		return kind;
+	}
+
+	/**
+	 * Returns the mappers of the integration the step stands for, in their
+	 * order.
+	 */
+	public List<Mapper> getMappers() {
+		return mappers;
+	}
+
+	/**
+	 * Returns the mapper run by a {@link Kind#MAPPER} or
+	 * {@link Kind#MERGED_REPLACE} step, null for the others.
+	 */
+	public Mapper getMapper() {
+		return mapper;
+	}
+
+	/**
+	 * Returns the segment or paths the step writes to, null for a
+	 * {@link Kind#MAPPER} step.
+	 */
+	public String getTarget() {
+		return target;
+	}
+
+	public String getNote() {
+		return note;
+	}
+
+	public boolean isExecuted() {
+		return kind != Kind.ELIMINATED;
+	}
+
+	@Override
+	public String toString() {
+		return kind + (target == null ? "" : " " + target) + " " + mappers;
+	}
+}
@@ -0,0 +1,40 @@
+package com.example.demopugspring.engine.trace;
+
+/**
+ * A field of the outgoing message changed by a mapper, as its encoded value
+ * before and after it. A field the mapper added has an empty value before,
+ * one it cleared an empty value after.
+ */
+public final class FieldChange {
+
+	private final String path;
+	private final String before;
+	private final String after;
+
+	FieldChange(String path, String before, String after) {
+		this.path = path;
+		this.before = before;
+		this.after = after;
+	}
+
+	/**
+	 * Returns the path of the field, such as "PID-5" or "OBX(1)-5" for the
+	 * second OBX segment of the message.
+	 */
+	public String getPath() {
+		return path;
+	}
+
+	public String getBefore() {
+		return before;
+	}
+
+	public String getAfter() {
+		return after;
+	}
+
+	@Override
+	public String toString() {
+		return path + ": " + before + " -> " + after;
+	}
+}
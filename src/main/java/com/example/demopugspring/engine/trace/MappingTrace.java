@@ -0,0 +1,83 @@
+package com.example.demopugspring.engine.trace;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Record of a message run through {@link com.example.demopugspring.engine.MapperEngine}
+ * with tracing on: the steps of its integration, one per mapper, in the order
+ * they were run.
+ * </p>
+ * Steps are added by the thread mapping the message; the trace is only read
+ * once it's in the {@link MappingTraceBuffer}.
+ */
+public final class MappingTrace {
+
+	private final Instant time = Instant.now();
+	private final Long integrationId;
+	private final String messageType;
+	private final String controlId;
+	private final List<TraceStep> steps = new ArrayList<>();
+	private long id;
+	private long elapsedMillis;
+	private int errorCount;
+
+	public MappingTrace(Long integrationId, String messageType, String controlId) {
+		this.integrationId = integrationId;
+		this.messageType = messageType;
+		this.controlId = controlId;
+	}
+
+	public void add(TraceStep step) {
+		steps.add(step);
+	}
+
+	/**
+	 * Records the end of the mapping, with the number of errors it reported.
+	 */
+	public void finish(int errorCount) {
+		this.errorCount = errorCount;
+		this.elapsedMillis = Instant.now().toEpochMilli() - time.toEpochMilli();
+	}
+
+	void setId(long id) {
+		this.id = id;
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	public Instant getTime() {
+		return time;
+	}
+
+	public Long getIntegrationId() {
+		return integrationId;
+	}
+
+	public String getMessageType() {
+		return messageType;
+	}
+
+	/**
+	 * Returns the control id of the incoming message, MSH-10.
+	 */
+	public String getControlId() {
+		return controlId;
+	}
+
+	public List<TraceStep> getSteps() {
+		return Collections.unmodifiableList(steps);
+	}
+
+	public long getElapsedMillis() {
+		return elapsedMillis;
+	}
+
+	public int getErrorCount() {
+		return errorCount;
+	}
+}
@@ -0,0 +1,63 @@
+package com.example.demopugspring.engine.trace;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * The last {@code mapper.trace.capacity} {@link MappingTrace}s of this node,
+ * kept in memory and shown under {@code /traces}. Older traces are dropped as
+ * new ones come in.
+ */
+@Component
+public class MappingTraceBuffer {
+
+	private final MappingTrace[] traces;
+	private long sequence;
+
+	public MappingTraceBuffer(@Value("${mapper.trace.capacity:50}") int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("The trace buffer needs room for at least one trace, got " + capacity);
+		}
+		this.traces = new MappingTrace[capacity];
+	}
+
+	/**
+	 * Adds the trace, numbering it, in place of the oldest one when full.
+	 *
+	 * @return the id of the trace.
+	 */
+	public synchronized long add(MappingTrace trace) {
+		trace.setId(++sequence);
+		traces[(int) ((sequence - 1) % traces.length)] = trace;
+		return sequence;
+	}
+
+	/**
+	 * Returns the traces still in the buffer, the most recent first.
+	 */
+	public synchronized List<MappingTrace> findAll() {
+		List<MappingTrace> found = new ArrayList<>(traces.length);
+		for (long id = sequence; id > 0 && id > sequence - traces.length; id--) {
+			found.add(traces[(int) ((id - 1) % traces.length)]);
+		}
+		return found;
+	}
+
+	/**
+	 * Returns the trace with the id, empty once it's been dropped.
+	 */
+	public synchronized Optional<MappingTrace> find(long id) {
+		if (id < 1 || id > sequence || id <= sequence - traces.length) {
+			return Optional.empty();
+		}
+		return Optional.of(traces[(int) ((id - 1) % traces.length)]);
+	}
+
+	public int getCapacity() {
+		return traces.length;
+	}
+}
@@ -0,0 +1,72 @@
+package com.example.demopugspring.engine.trace;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Compares two encodings of a message field by field.
+ * </p>
+ * Segments are matched by name and by their position among the segments of
+ * the same name, wherever they are in the message, so a segment inserted in a
+ * group shows as added instead of shifting every segment after it.
+ */
+public final class TraceDiff {
+
+	private static final String SEGMENT_SEPARATOR = "\r";
+	private static final String MSH = "MSH";
+
+	private TraceDiff() {
+	}
+
+	/**
+	 * Returns the fields whose encoded value differs between the two
+	 * messages, in the order of their segments.
+	 */
+	public static List<FieldChange> diff(String before, String after) {
+		Map<String, String[]> beforeSegments = segments(before);
+		Map<String, String[]> afterSegments = segments(after);
+
+		Map<String, String[]> all = new LinkedHashMap<>(beforeSegments);
+		afterSegments.forEach(all::putIfAbsent);
+
+		List<FieldChange> changes = new ArrayList<>();
+		for (String segment : all.keySet()) {
+			String[] beforeFields = beforeSegments.getOrDefault(segment, new String[0]);
+			String[] afterFields = afterSegments.getOrDefault(segment, new String[0]);
+			int offset = segment.startsWith(MSH) ? 1 : 0;
+			for (int i = 1; i < Math.max(beforeFields.length, afterFields.length); i++) {
+				String beforeField = i < beforeFields.length ? beforeFields[i] : "";
+				String afterField = i < afterFields.length ? afterFields[i] : "";
+				if (!beforeField.equals(afterField)) {
+					changes.add(new FieldChange(segment + "-" + (i + offset), beforeField, afterField));
+				}
+			}
+		}
+		return changes;
+	}
+
+	/**
+	 * Splits the message in its segments, keyed by name, followed by the
+	 * repetition when it isn't the first segment of that name.
+	 */
+	private static Map<String, String[]> segments(String message) {
+		Map<String, String[]> segments = new LinkedHashMap<>();
+		if (message == null || message.isEmpty()) {
+			return segments;
+		}
+		Pattern fieldSeparator = Pattern.compile(Pattern.quote(message.startsWith(MSH) && message.length() > 3 ? message.substring(3, 4) : "|"));
+		Map<String, Integer> repetitions = new LinkedHashMap<>();
+		for (String segment : message.split(SEGMENT_SEPARATOR)) {
+			if (segment.isEmpty()) {
+				continue;
+			}
+			String[] fields = fieldSeparator.split(segment, -1);
+			int repetition = repetitions.merge(fields[0], 1, Integer::sum) - 1;
+			segments.put(repetition == 0 ? fields[0] : fields[0] + "(" + repetition + ")", fields);
+		}
+		return segments;
+	}
+}
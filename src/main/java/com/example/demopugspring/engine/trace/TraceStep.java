@@ -0,0 +1,48 @@
+package com.example.demopugspring.engine.trace;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.example.demopugspring.engine.MapperError;
+
+/**
+ * What one mapper of an integration did to the outgoing message: the fields
+ * it changed and the errors it reported.
+ */
+public final class TraceStep {
+
+	private final String mapper;
+	private final String note;
+	private final List<FieldChange> changes;
+	private final List<MapperError> errors;
+
+	public TraceStep(String mapper, String note, List<FieldChange> changes, List<MapperError> errors) {
+		this.mapper = mapper;
+		this.note = note;
+		this.changes = Collections.unmodifiableList(changes);
+		this.errors = Collections.unmodifiableList(errors);
+	}
+
+	/**
+	 * Returns a description of the mapper, its id, category, keys and value.
+	 */
+	public String getMapper() {
+		return mapper;
+	}
+
+	/**
+	 * Returns why the mapper was run the way it was, such as being merged with
+	 * others or skipped by the plan, null when it was run as it is.
+	 */
+	public String getNote() {
+		return note;
+	}
+
+	public List<FieldChange> getChanges() {
+		return changes;
+	}
+
+	public List<MapperError> getErrors() {
+		return errors;
+	}
+}
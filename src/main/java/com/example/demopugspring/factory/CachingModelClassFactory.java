@@ -0,0 +1,116 @@
+package com.example.demopugspring.factory;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
+import org.springframework.core.type.filter.AssignableTypeFilter;
+
+import ca.uhn.hl7v2.HL7Exception;
+import ca.uhn.hl7v2.model.Group;
+import ca.uhn.hl7v2.model.Message;
+import ca.uhn.hl7v2.model.Segment;
+import ca.uhn.hl7v2.model.Structure;
+import ca.uhn.hl7v2.model.Type;
+import ca.uhn.hl7v2.parser.DefaultModelClassFactory;
+import ca.uhn.hl7v2.parser.ModelClassFactory;
+
+/**
+ * {@link DefaultModelClassFactory} remembering every class it resolves.
+ * </p>
+ * The default factory looks the class up by name on every call, going
+ * through the custom and standard packages and catching a
+ * {@link ClassNotFoundException} for each one it isn't in. Parsing asks for
+ * every message, group and segment class of the message, so the lookups are
+ * done once per name and version here. Names without a class, like Z
+ * segments, are remembered as well.
+ * </p>
+ * {@link #preload(String)} instantiates every message structure of a version
+ * up front, so the first messages after a deploy don't pay for loading the
+ * model classes.
+ */
+public class CachingModelClassFactory extends DefaultModelClassFactory {
+
+	private static final Logger log = LoggerFactory.getLogger(CachingModelClassFactory.class);
+
+	private final Map<String, Optional<Class<? extends Message>>> messageClasses = new ConcurrentHashMap<>();
+	private final Map<String, Optional<Class<? extends Group>>> groupClasses = new ConcurrentHashMap<>();
+	private final Map<String, Optional<Class<? extends Segment>>> segmentClasses = new ConcurrentHashMap<>();
+	private final Map<String, Optional<Class<? extends Type>>> typeClasses = new ConcurrentHashMap<>();
+
+	@FunctionalInterface
+	private interface ClassLookup<T> {
+		Class<? extends T> find() throws HL7Exception;
+	}
+
+	@Override
+	public Class<? extends Message> getMessageClass(String name, String version, boolean isExplicit) throws HL7Exception {
+		return cached(messageClasses, name + '|' + version + '|' + isExplicit, () -> super.getMessageClass(name, version, isExplicit));
+	}
+
+	@Override
+	public Class<? extends Group> getGroupClass(String name, String version) throws HL7Exception {
+		return cached(groupClasses, name + '|' + version, () -> super.getGroupClass(name, version));
+	}
+
+	@Override
+	public Class<? extends Segment> getSegmentClass(String name, String version) throws HL7Exception {
+		return cached(segmentClasses, name + '|' + version, () -> super.getSegmentClass(name, version));
+	}
+
+	@Override
+	public Class<? extends Type> getTypeClass(String name, String version) throws HL7Exception {
+		return cached(typeClasses, name + '|' + version, () -> super.getTypeClass(name, version));
+	}
+
+	private static <T> Class<? extends T> cached(Map<String, Optional<Class<? extends T>>> cache, String key, ClassLookup<T> lookup)
+			throws HL7Exception {
+		Optional<Class<? extends T>> found = cache.get(key);
+		if (found == null) {
+			found = Optional.ofNullable(lookup.find());
+			cache.putIfAbsent(key, found);
+		}
+		return found.orElse(null);
+	}
+
+	/**
+	 * Loads every message structure of the version found in the classpath,
+	 * with all of its groups and segments.
+	 *
+	 * @param version
+	 *            the HL7 version, such as "2.5.1".
+	 * @return the number of message structures loaded, 0 if the structures of
+	 *         the version aren't in the classpath.
+	 */
+	public int preload(String version) {
+		String messagePackage = "ca.uhn.hl7v2.model.v" + version.replace(".", "") + ".message";
+		ClassPathScanningCandidateComponentProvider scanner = new ClassPathScanningCandidateComponentProvider(false);
+		scanner.addIncludeFilter(new AssignableTypeFilter(Message.class));
+
+		int loaded = 0;
+		for (BeanDefinition candidate : scanner.findCandidateComponents(messagePackage)) {
+			try {
+				String structure = Class.forName(candidate.getBeanClassName()).getSimpleName();
+				Class<? extends Message> messageClass = getMessageClass(structure, version, true);
+				loadStructures(messageClass.getConstructor(ModelClassFactory.class).newInstance(this));
+				loaded++;
+			} catch (ReflectiveOperationException | HL7Exception | RuntimeException e) {
+				log.warn("Couldn't preload message structure {}: {}", candidate.getBeanClassName(), e.toString());
+			}
+		}
+		return loaded;
+	}
+
+	private static void loadStructures(Group group) throws HL7Exception {
+		for (String name : group.getNames()) {
+			Structure structure = group.get(name, 0);
+			if (structure instanceof Group) {
+				loadStructures((Group) structure);
+			}
+		}
+	}
+}
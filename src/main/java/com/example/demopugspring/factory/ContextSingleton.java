@@ -2,18 +2,38 @@ package com.example.demopugspring.factory;
 
 import ca.uhn.hl7v2.DefaultHapiContext;
 import ca.uhn.hl7v2.HapiContext;
+import ca.uhn.hl7v2.parser.ModelClassFactory;
+import ca.uhn.hl7v2.validation.ValidationContext;
+import ca.uhn.hl7v2.validation.impl.ValidationContextFactory;
 
+/**
+ * Shared {@link HapiContext} for code running outside of Spring, like the
+ * tests and benchmarks. The application uses the context configured by
+ * {@link com.example.demopugspring.configuration.HapiConfig} instead.
+ * </p>
+ * The instance is created once, on first use, by the class loader, so
+ * concurrent first callers always get the same context.
+ */
 public class ContextSingleton {
 
-	private static HapiContext singleton;
-
 	private ContextSingleton() {
 	}
 
+	private static final class Holder {
+		private static final HapiContext INSTANCE = create(ValidationContextFactory.defaultValidation(), new CachingModelClassFactory());
+	}
+
 	public static HapiContext getInstance() {
-		if (singleton == null) {
-			singleton = new DefaultHapiContext();
-		}
-		return singleton;
+		return Holder.INSTANCE;
+	}
+
+	/**
+	 * Returns a new context validating with the given rules and resolving the
+	 * model classes through the given factory.
+	 */
+	public static HapiContext create(ValidationContext validationContext, ModelClassFactory modelClassFactory) {
+		HapiContext context = new DefaultHapiContext(modelClassFactory);
+		context.setValidationContext(validationContext);
+		return context;
 	}
 }
@@ -0,0 +1,166 @@
+package com.example.demopugspring.filter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import ca.uhn.hl7v2.HL7Exception;
+import ca.uhn.hl7v2.util.Terser;
+
+/**
+ * Immutable, thread-safe result of parsing the value of a CLEAR_IF mapper: a
+ * regular expression the primitives must match, negated when the value holds
+ * a {@code !}, in which every {@code =PATH=} is replaced by the value of the
+ * path in the message.
+ * </p>
+ * The value is split once into its literal text and its paths. An expression
+ * without paths has its {@link Pattern} compiled here, once; an expression
+ * with paths resolves them once per message in {@link #resolve(Terser)}, and
+ * keeps the last pattern compiled, since the same paths usually hold the same
+ * values message after message.
+ * </p>
+ * The parsing follows the one {@link MatchesValueFilter} always did: a path is
+ * a run of characters between two {@code =}, which are replaced along with
+ * it, so {@code ==PID-3-1==} leaves a {@code =} on each side of the value. A
+ * path the message doesn't resolve stays in the pattern as written. Every
+ * {@code !} is removed from the pattern, also from the values of the paths.
+ * Runs without a {@code -} are never paths, a {@link Terser} path needs a
+ * field.
+ */
+public final class FilterExpression {
+
+	private static final char PARSE_TOKEN = '=';
+	private static final String NOT_OPERATOR = "!";
+	private static final int MAX_CACHED_EXPRESSIONS = 1024;
+	private static final Map<String, FilterExpression> CACHE = new ConcurrentHashMap<>();
+
+	private final String value;
+	private final boolean negated;
+	/** Literal text, with every {@code !} removed, and paths, alternating and starting with text */
+	private final List<String> parts;
+	private final Pattern pattern;
+	private volatile Pattern lastPattern;
+
+	private FilterExpression(String value) {
+		this.value = value;
+		this.negated = value.contains(NOT_OPERATOR);
+
+		List<String> parsed = new ArrayList<>();
+		StringBuilder text = new StringBuilder();
+		int position = 0;
+		while (position < value.length()) {
+			int end = pathEnd(value, position);
+			if (end < 0) {
+				text.append(value.charAt(position));
+				position++;
+			} else {
+				parsed.add(text.toString().replace(NOT_OPERATOR, ""));
+				parsed.add(value.substring(position + 1, end));
+				text.setLength(0);
+				position = end + 1;
+			}
+		}
+		parsed.add(text.toString().replace(NOT_OPERATOR, ""));
+		this.parts = Collections.unmodifiableList(parsed);
+		this.pattern = parts.size() == 1 ? Pattern.compile(parts.get(0)) : null;
+	}
+
+	/**
+	 * Returns the index of the {@code =} closing the path opened by the
+	 * {@code =} at the given index, -1 if there's no path there.
+	 */
+	private static int pathEnd(String value, int start) {
+		if (value.charAt(start) != PARSE_TOKEN) {
+			return -1;
+		}
+		int end = value.indexOf(PARSE_TOKEN, start + 1);
+		int dash = value.indexOf('-', start + 1);
+		if (end < 0 || end - start <= 2 || dash < 0 || dash > end) {
+			return -1;
+		}
+		return end;
+	}
+
+	/**
+	 * Returns the compiled form of the given value, parsing it only the first
+	 * time it is seen.
+	 *
+	 * @throws java.util.regex.PatternSyntaxException
+	 *             if the value has no paths and isn't a valid regular
+	 *             expression.
+	 */
+	public static FilterExpression compile(String value) {
+		FilterExpression expression = CACHE.get(value);
+		if (expression == null) {
+			expression = new FilterExpression(value);
+			if (CACHE.size() >= MAX_CACHED_EXPRESSIONS) {
+				evictOne();
+			}
+			CACHE.putIfAbsent(value, expression);
+		}
+		return expression;
+	}
+
+	private static void evictOne() {
+		Iterator<String> keys = CACHE.keySet().iterator();
+		if (keys.hasNext()) {
+			keys.next();
+			keys.remove();
+		}
+	}
+
+	/**
+	 * Returns the pattern the primitives of the message must match, with the
+	 * paths replaced by their values in the message.
+	 */
+	public Pattern resolve(Terser tmp) {
+		if (pattern != null) {
+			return pattern;
+		}
+		StringBuilder source = new StringBuilder(parts.get(0));
+		for (int i = 1; i < parts.size(); i += 2) {
+			String path = parts.get(i);
+			try {
+				String fieldValue = tmp.get(path);
+				if (fieldValue != null) {
+					source.append(fieldValue.replace(NOT_OPERATOR, ""));
+				}
+			} catch (HL7Exception e) {
+				// Not a path of this message, kept as written
+				source.append(PARSE_TOKEN).append(path.replace(NOT_OPERATOR, "")).append(PARSE_TOKEN);
+			}
+			source.append(parts.get(i + 1));
+		}
+
+		Pattern last = lastPattern;
+		if (last == null || !last.pattern().contentEquals(source)) {
+			last = Pattern.compile(source.toString());
+			lastPattern = last;
+		}
+		return last;
+	}
+
+	public boolean isNegated() {
+		return negated;
+	}
+
+	/**
+	 * Returns whether the pattern depends on the message.
+	 */
+	public boolean hasPaths() {
+		return pattern == null;
+	}
+
+	public String getValue() {
+		return value;
+	}
+
+	@Override
+	public String toString() {
+		return value;
+	}
+}
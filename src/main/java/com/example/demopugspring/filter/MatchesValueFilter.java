@@ -1,57 +1,39 @@
 package com.example.demopugspring.filter;
 
-import java.util.StringTokenizer;
+import java.util.regex.Pattern;
 
 import ca.uhn.hl7v2.HL7Exception;
 import ca.uhn.hl7v2.model.Primitive;
 import ca.uhn.hl7v2.util.Terser;
 
+/**
+ * Filters the primitives matching a {@link FilterExpression}, resolved against
+ * one message.
+ */
 public class MatchesValueFilter implements Filter {
 
-    private static final String PARSE_TOKEN = "=";
-    private static final String NOT_OPERATOR = "!";
-    private String valueToCheck;
-    private boolean negativize;
+    private final Pattern pattern;
+    private final boolean blank;
+    private final boolean negativize;
 
     public MatchesValueFilter(String value, Terser tmp) throws HL7Exception {
-
-        this.valueToCheck = parseValue(value, tmp);
-        negativize = value.contains(NOT_OPERATOR);
-        this.valueToCheck = valueToCheck.replace(NOT_OPERATOR, "");
+        this(FilterExpression.compile(value), tmp);
 	}
 
-    private String parseValue(String value, Terser tmp) throws HL7Exception {
-		String token;
-		String fieldValue;
-
-		StringTokenizer tok = new StringTokenizer(value, PARSE_TOKEN + PARSE_TOKEN, false);
-		while (tok.hasMoreTokens()) {
-			token = tok.nextToken();
-
-			if (token.length() <= 1) {
-				continue;
-			}
-
-			try {
-				fieldValue = tmp.get(token);
-				if (fieldValue == null) {
-					fieldValue = "";
-				}
-				value = value.replaceAll(PARSE_TOKEN + token + PARSE_TOKEN, fieldValue);
-			} catch (HL7Exception e) {
-				// DO NOTHING TOKEN IT'S NOT A HL/ PATH
-			}
-		}
-        return value;
+    public MatchesValueFilter(FilterExpression expression, Terser tmp) {
+        this.pattern = expression.resolve(tmp);
+        this.blank = pattern.pattern().isBlank();
+        this.negativize = expression.isNegated();
     }
 
 	@Override
 	public boolean doFilter(Primitive primitive) {
 		boolean primitiveHasCondition = false;
-		if (primitive.getValue() == null) {
-            primitiveHasCondition = valueToCheck.isBlank();
+		String value = primitive.getValue();
+		if (value == null) {
+            primitiveHasCondition = blank;
 		} else {
-			primitiveHasCondition = primitive.getValue().matches(valueToCheck);
+			primitiveHasCondition = pattern.matcher(value).matches();
 		}
         return primitiveHasCondition ^ negativize;
 	}
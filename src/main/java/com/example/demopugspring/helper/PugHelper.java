@@ -1,9 +1,18 @@
 package com.example.demopugspring.helper;
 
 import java.util.List;
+import java.util.Locale;
 
 public class PugHelper {
 	public String join(String delimiter, List<String> text) {
 		return String.join(delimiter, text);
 	}
+
+	public String millis(long nanos) {
+		return String.format(Locale.ROOT, "%.3f", nanos / 1_000_000d);
+	}
+
+	public String percent(double ratio) {
+		return String.format(Locale.ROOT, "%.1f%%", ratio * 100);
+	}
 }
@@ -0,0 +1,156 @@
+package com.example.demopugspring.mllp;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+import com.example.demopugspring.engine.MapperError;
+import com.example.demopugspring.engine.Response;
+
+/**
+ * Builds the HL7 acknowledgement returned over MLLP for a message and the
+ * {@link Response} of mapping it: AA when it mapped without errors, AE with the
+ * errors in MSA-3 otherwise, and AR when the message has no readable MSH.
+ * </p>
+ * The header of the incoming message is read straight from its first segment,
+ * without parsing it again, so a message HAPI can't parse still gets an
+ * acknowledgement addressed back to its sender.
+ */
+final class MllpAcknowledgement {
+
+	static final String APPLICATION_ACCEPT = "AA";
+	static final String APPLICATION_ERROR = "AE";
+	static final String APPLICATION_REJECT = "AR";
+
+	private static final char DEFAULT_FIELD_SEPARATOR = '|';
+	private static final String DEFAULT_ENCODING_CHARACTERS = "^~\\&";
+	private static final char SEGMENT_SEPARATOR = '\r';
+	/** Length of MSA-3 up to version 2.4 */
+	private static final int MAX_TEXT_LENGTH = 80;
+	private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+
+	private MllpAcknowledgement() {
+	}
+
+	/**
+	 * Returns the ER7 encoded acknowledgement of the message.
+	 */
+	static String build(String message, Response response) {
+		String[] header = header(message);
+		if (header == null) {
+			return reject("Message has no MSH segment");
+		}
+		char fieldSeparator = message.charAt(message.indexOf("MSH") + 3);
+		String encodingCharacters = header.length > 1 && header[1].length() >= 4 ? header[1] : DEFAULT_ENCODING_CHARACTERS;
+		List<MapperError> errors = response.getErrorList();
+		if (errors == null || errors.isEmpty()) {
+			return build(header, fieldSeparator, encodingCharacters, APPLICATION_ACCEPT, null);
+		}
+		StringBuilder text = new StringBuilder();
+		for (MapperError error : errors) {
+			if (text.length() > 0) {
+				text.append("; ");
+			}
+			text.append(error.getField()).append(": ").append(error.getError());
+		}
+		return build(header, fieldSeparator, encodingCharacters, APPLICATION_ERROR, text.toString());
+	}
+
+	/**
+	 * Returns an AR acknowledgement with the text, addressed to no one, for a
+	 * message whose header can't be read.
+	 */
+	static String reject(String text) {
+		return build(new String[0], DEFAULT_FIELD_SEPARATOR, DEFAULT_ENCODING_CHARACTERS, APPLICATION_REJECT, text);
+	}
+
+	private static String build(String[] header, char fieldSeparator, String encodingCharacters, String code, String text) {
+		String event = component(field(header, 9), encodingCharacters.charAt(0), 1);
+		String version = field(header, 12);
+
+		StringBuilder ack = new StringBuilder(256);
+		ack.append("MSH").append(fieldSeparator).append(encodingCharacters);
+		appendFields(ack, fieldSeparator, field(header, 5), field(header, 6), field(header, 3), field(header, 4),
+				LocalDateTime.now().format(TIMESTAMP), "", "ACK" + (event.isEmpty() ? "" : encodingCharacters.charAt(0) + event),
+				UUID.randomUUID().toString(), field(header, 11), version);
+		ack.append(SEGMENT_SEPARATOR);
+
+		ack.append("MSA").append(fieldSeparator).append(code).append(fieldSeparator).append(field(header, 10));
+		if (text != null) {
+			String truncated = text.length() > MAX_TEXT_LENGTH ? text.substring(0, MAX_TEXT_LENGTH) : text;
+			ack.append(fieldSeparator).append(escape(truncated, fieldSeparator, encodingCharacters));
+		}
+		ack.append(SEGMENT_SEPARATOR);
+		return ack.toString();
+	}
+
+	private static void appendFields(StringBuilder ack, char fieldSeparator, String... fields) {
+		for (String field : fields) {
+			ack.append(fieldSeparator).append(field);
+		}
+	}
+
+	/**
+	 * Returns the fields of the MSH segment, MSH-n being at index n - 1, or
+	 * null if the message has no MSH.
+	 */
+	private static String[] header(String message) {
+		int start = message.indexOf("MSH");
+		if (start < 0 || start + 3 >= message.length()) {
+			return null;
+		}
+		int end = start;
+		while (end < message.length() && message.charAt(end) != '\r' && message.charAt(end) != '\n') {
+			end++;
+		}
+		String separator = String.valueOf(message.charAt(start + 3));
+		String[] fields = message.substring(start + 4, end).split(Pattern.quote(separator), -1);
+		String[] header = new String[fields.length + 1];
+		header[0] = "MSH";
+		System.arraycopy(fields, 0, header, 1, fields.length);
+		return header;
+	}
+
+	private static String field(String[] header, int number) {
+		return number - 1 < header.length ? header[number - 1] : "";
+	}
+
+	private static String component(String field, char componentSeparator, int index) {
+		int start = 0;
+		for (int i = 0; i < index; i++) {
+			start = field.indexOf(componentSeparator, start);
+			if (start < 0) {
+				return "";
+			}
+			start++;
+		}
+		int end = field.indexOf(componentSeparator, start);
+		return end < 0 ? field.substring(start) : field.substring(start, end);
+	}
+
+	private static String escape(String text, char fieldSeparator, String encodingCharacters) {
+		char escape = encodingCharacters.charAt(2);
+		StringBuilder escaped = new StringBuilder(text.length() + 16);
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c == fieldSeparator) {
+				escaped.append(escape).append('F').append(escape);
+			} else if (c == encodingCharacters.charAt(0)) {
+				escaped.append(escape).append('S').append(escape);
+			} else if (c == encodingCharacters.charAt(1)) {
+				escaped.append(escape).append('R').append(escape);
+			} else if (c == escape) {
+				escaped.append(escape).append('E').append(escape);
+			} else if (c == encodingCharacters.charAt(3)) {
+				escaped.append(escape).append('T').append(escape);
+			} else if (c == '\r' || c == '\n') {
+				escaped.append(' ');
+			} else {
+				escaped.append(c);
+			}
+		}
+		return escaped.toString();
+	}
+}
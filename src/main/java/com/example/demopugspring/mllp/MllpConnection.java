@@ -0,0 +1,38 @@
+package com.example.demopugspring.mllp;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * State of one MLLP connection. Only touched by the selector thread of
+ * {@link MllpServer}, except for the completion of the responses.
+ */
+final class MllpConnection {
+
+	final SocketChannel channel;
+	final SelectionKey key;
+	final MllpFrameDecoder decoder;
+
+	/** Messages decoded but not handed to a worker yet, held back by the pending limit */
+	final Deque<String> decoded = new ArrayDeque<>();
+	/** Acknowledgements in the order of the messages, until fully written */
+	final Deque<CompletableFuture<ByteBuffer>> responses = new ArrayDeque<>();
+	/** Acknowledgement being written, the head of the responses */
+	ByteBuffer writing;
+	/** Whether the peer shut down its output; the connection closes once answered */
+	boolean inputClosed;
+
+	MllpConnection(SocketChannel channel, SelectionKey key, MllpFrameDecoder decoder) {
+		this.channel = channel;
+		this.key = key;
+		this.decoder = decoder;
+	}
+
+	boolean isAnswered() {
+		return decoded.isEmpty() && responses.isEmpty();
+	}
+}
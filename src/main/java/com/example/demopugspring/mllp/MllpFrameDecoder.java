@@ -0,0 +1,84 @@
+package com.example.demopugspring.mllp;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Incremental decoder of MLLP frames: a start block ({@code 0x0B}), the
+ * message, an end block ({@code 0x1C}) and a carriage return. Bytes are fed as
+ * they are read from the connection, so a frame may arrive in any number of
+ * reads and a read may hold any number of frames.
+ * </p>
+ * Bytes between frames are ignored, and a missing carriage return after the
+ * end block is tolerated. Not thread-safe, there is one per connection.
+ */
+class MllpFrameDecoder {
+
+	static final byte START_BLOCK = 0x0b;
+	static final byte END_BLOCK = 0x1c;
+	static final byte CARRIAGE_RETURN = 0x0d;
+
+	private static final int INITIAL_FRAME_SIZE = 8192;
+	/** Frame buffers above this size are released after the frame */
+	private static final int MAX_RETAINED_FRAME_SIZE = 1 << 20;
+
+	private final int maxFrameSize;
+	private final Charset charset;
+
+	private byte[] frame;
+	private int frameLength;
+	private boolean inFrame;
+	private boolean afterEndBlock;
+
+	MllpFrameDecoder(int maxFrameSize, Charset charset) {
+		this.maxFrameSize = maxFrameSize;
+		this.charset = charset;
+		this.frame = new byte[Math.min(INITIAL_FRAME_SIZE, maxFrameSize)];
+	}
+
+	/**
+	 * Consumes every remaining byte of the input, adding the messages of the
+	 * frames completed by them.
+	 *
+	 * @throws IOException
+	 *             if a frame is bigger than the maximum frame size; the
+	 *             connection can't be trusted to be in sync anymore.
+	 */
+	void decode(ByteBuffer input, List<String> messages) throws IOException {
+		while (input.hasRemaining()) {
+			byte b = input.get();
+			if (afterEndBlock) {
+				afterEndBlock = false;
+				if (b == CARRIAGE_RETURN) {
+					continue;
+				}
+			}
+			if (!inFrame) {
+				inFrame = b == START_BLOCK;
+			} else if (b == END_BLOCK) {
+				messages.add(new String(frame, 0, frameLength, charset));
+				frameLength = 0;
+				if (frame.length > MAX_RETAINED_FRAME_SIZE) {
+					frame = new byte[INITIAL_FRAME_SIZE];
+				}
+				inFrame = false;
+				afterEndBlock = true;
+			} else {
+				append(b);
+			}
+		}
+	}
+
+	private void append(byte b) throws IOException {
+		if (frameLength == frame.length) {
+			if (frameLength >= maxFrameSize) {
+				throw new IOException("MLLP frame bigger than " + maxFrameSize + " bytes");
+			}
+			frame = Arrays.copyOf(frame, (int) Math.min((long) frame.length * 2, maxFrameSize));
+		}
+		frame[frameLength++] = b;
+	}
+}
@@ -0,0 +1,322 @@
+package com.example.demopugspring.mllp;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import com.example.demopugspring.engine.MapperEngine;
+import com.example.demopugspring.engine.MapperError;
+import com.example.demopugspring.engine.Response;
+
+/**
+ * MLLP listener running every message it receives through
+ * {@link MapperEngine#run(String)} and answering with an acknowledgement built
+ * from the {@link Response}, see {@link MllpAcknowledgement}.
+ * </p>
+ * A single selector thread accepts the connections, reads and writes them
+ * without blocking, and hands the messages to a small pool of workers, so
+ * idle connections cost no thread. Acknowledgements are written in the order
+ * the messages arrived on each connection.
+ * </p>
+ * Each connection has at most {@code mllp.max-pending-messages} messages
+ * being mapped or acknowledged; past that the server stops reading from it,
+ * leaving the sender to wait on TCP flow control instead of piling up
+ * messages in memory.
+ */
+@Component
+@ConditionalOnProperty(name = "mllp.enabled", havingValue = "true")
+public class MllpServer implements Runnable {
+
+	private static final Logger log = LoggerFactory.getLogger(MllpServer.class);
+
+	private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+	@Autowired
+	MapperEngine mapperEngine;
+
+	@Value("${mllp.port:2575}")
+	int port;
+	/** Threads mapping the messages, one per available processor when 0 */
+	@Value("${mllp.worker-threads:0}")
+	int workerThreads;
+	@Value("${mllp.max-pending-messages:8}")
+	int maxPendingMessages;
+	@Value("${mllp.max-message-size:16777216}")
+	int maxMessageSize;
+	@Value("${mllp.charset:ISO-8859-1}")
+	String charset;
+
+	private final Queue<MllpConnection> completed = new ConcurrentLinkedQueue<>();
+	private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+	private final List<String> frames = new ArrayList<>();
+
+	private Charset messageCharset;
+	private Selector selector;
+	private ServerSocketChannel serverChannel;
+	private ThreadPoolExecutor workers;
+	private Thread selectorThread;
+	private volatile boolean running;
+
+	@PostConstruct
+	void start() throws IOException {
+		messageCharset = Charset.forName(charset);
+		int poolSize = workerThreads > 0 ? workerThreads : Runtime.getRuntime().availableProcessors();
+		workers = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+				new CustomizableThreadFactory("mllp-worker-"));
+
+		selector = Selector.open();
+		serverChannel = ServerSocketChannel.open();
+		serverChannel.bind(new InetSocketAddress(port));
+		serverChannel.configureBlocking(false);
+		serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+		running = true;
+		selectorThread = new Thread(this, "mllp-selector");
+		selectorThread.start();
+		log.info("MLLP listener on port {} with {} workers", getLocalPort(), poolSize);
+	}
+
+	@PreDestroy
+	void stop() throws InterruptedException {
+		running = false;
+		selector.wakeup();
+		selectorThread.join(TimeUnit.SECONDS.toMillis(10));
+		workers.shutdownNow();
+	}
+
+	/**
+	 * Returns the port the listener is bound to, useful when configured with 0.
+	 */
+	public int getLocalPort() {
+		return serverChannel.socket().getLocalPort();
+	}
+
+	@Override
+	public void run() {
+		while (running) {
+			try {
+				selector.select();
+			} catch (IOException e) {
+				log.error("MLLP selector failed", e);
+				break;
+			}
+			MllpConnection connection;
+			while ((connection = completed.poll()) != null) {
+				if (connection.key.isValid()) {
+					try {
+						updateInterest(connection);
+					} catch (RuntimeException e) {
+						fail(connection, e);
+					}
+				}
+			}
+			Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+			while (keys.hasNext()) {
+				SelectionKey key = keys.next();
+				keys.remove();
+				try {
+					if (key.isValid() && key.isAcceptable()) {
+						accept();
+					} else if (key.isValid()) {
+						handle((MllpConnection) key.attachment());
+					}
+				} catch (RuntimeException e) {
+					if (key.attachment() instanceof MllpConnection) {
+						fail((MllpConnection) key.attachment(), e);
+					} else {
+						log.error("Unexpected exception accepting an MLLP connection", e);
+					}
+				}
+			}
+		}
+		closeAll();
+	}
+
+	/**
+	 * Closes a connection that failed unexpectedly, keeping the selector
+	 * thread, and so every other connection, running.
+	 */
+	private void fail(MllpConnection connection, RuntimeException e) {
+		log.error("Unexpected exception on an MLLP connection, closing it", e);
+		close(connection);
+	}
+
+	private void accept() {
+		try {
+			SocketChannel channel = serverChannel.accept();
+			if (channel == null) {
+				return;
+			}
+			channel.configureBlocking(false);
+			channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+			SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+			key.attach(new MllpConnection(channel, key, new MllpFrameDecoder(maxMessageSize, messageCharset)));
+			log.debug("MLLP connection from {}", channel.getRemoteAddress());
+		} catch (IOException e) {
+			log.warn("Couldn't accept an MLLP connection", e);
+		}
+	}
+
+	private void handle(MllpConnection connection) {
+		try {
+			if (connection.key.isReadable()) {
+				read(connection);
+			}
+			if (connection.key.isValid() && connection.key.isWritable()) {
+				write(connection);
+			}
+		} catch (IOException e) {
+			log.warn("Closing MLLP connection: {}", e.getMessage());
+			close(connection);
+		}
+	}
+
+	private void read(MllpConnection connection) throws IOException {
+		readBuffer.clear();
+		int read = connection.channel.read(readBuffer);
+		if (read < 0) {
+			connection.inputClosed = true;
+		} else {
+			readBuffer.flip();
+			frames.clear();
+			connection.decoder.decode(readBuffer, frames);
+			connection.decoded.addAll(frames);
+			dispatch(connection);
+		}
+		updateInterest(connection);
+	}
+
+	private void write(MllpConnection connection) throws IOException {
+		while (true) {
+			if (connection.writing == null) {
+				CompletableFuture<ByteBuffer> head = connection.responses.peek();
+				if (head == null || !head.isDone()) {
+					break;
+				}
+				connection.writing = head.join();
+			}
+			connection.channel.write(connection.writing);
+			if (connection.writing.hasRemaining()) {
+				break;
+			}
+			connection.writing = null;
+			connection.responses.poll();
+		}
+		dispatch(connection);
+		updateInterest(connection);
+	}
+
+	/**
+	 * Hands the decoded messages to the workers, up to the pending limit.
+	 */
+	private void dispatch(MllpConnection connection) {
+		while (!connection.decoded.isEmpty() && connection.responses.size() < maxPendingMessages) {
+			String message = connection.decoded.poll();
+			CompletableFuture<ByteBuffer> response;
+			try {
+				response = CompletableFuture.supplyAsync(() -> acknowledge(message), workers);
+			} catch (RejectedExecutionException e) {
+				// Shutting down
+				return;
+			}
+			connection.responses.add(response);
+			response.whenComplete((ack, e) -> {
+				completed.add(connection);
+				selector.wakeup();
+			});
+		}
+	}
+
+	private void updateInterest(MllpConnection connection) {
+		if (connection.inputClosed && connection.isAnswered()) {
+			close(connection);
+			return;
+		}
+		int ops = 0;
+		if (!connection.inputClosed && connection.decoded.isEmpty() && connection.responses.size() < maxPendingMessages) {
+			ops |= SelectionKey.OP_READ;
+		}
+		CompletableFuture<ByteBuffer> head = connection.responses.peek();
+		if (connection.writing != null || (head != null && head.isDone())) {
+			ops |= SelectionKey.OP_WRITE;
+		}
+		connection.key.interestOps(ops);
+	}
+
+	private ByteBuffer acknowledge(String message) {
+		Response response;
+		try {
+			response = mapperEngine.run(message);
+		} catch (RuntimeException e) {
+			log.error("Unexpected exception mapping an MLLP message", e);
+			response = new Response();
+			response.setMessage("");
+			response.setErrorList(List.of(new MapperError("Global", "Unexpected exception mapping the message")));
+		}
+		String acknowledgement;
+		try {
+			acknowledgement = MllpAcknowledgement.build(message, response);
+		} catch (RuntimeException e) {
+			log.error("Unexpected exception acknowledging an MLLP message", e);
+			acknowledgement = MllpAcknowledgement.reject("Couldn't acknowledge the message");
+		}
+		byte[] ack = acknowledgement.getBytes(messageCharset);
+		ByteBuffer frame = ByteBuffer.allocate(ack.length + 3);
+		frame.put(MllpFrameDecoder.START_BLOCK).put(ack).put(MllpFrameDecoder.END_BLOCK).put(MllpFrameDecoder.CARRIAGE_RETURN);
+		frame.flip();
+		return frame;
+	}
+
+	private void close(MllpConnection connection) {
+		connection.key.cancel();
+		for (CompletableFuture<ByteBuffer> response : connection.responses) {
+			response.cancel(false);
+		}
+		try {
+			connection.channel.close();
+		} catch (IOException e) {
+			log.debug("Error closing MLLP connection", e);
+		}
+	}
+
+	private void closeAll() {
+		for (SelectionKey key : selector.keys()) {
+			if (key.attachment() instanceof MllpConnection) {
+				close((MllpConnection) key.attachment());
+			}
+		}
+		try {
+			serverChannel.close();
+			selector.close();
+		} catch (IOException e) {
+			log.debug("Error closing the MLLP listener", e);
+		}
+	}
+}
@@ -0,0 +1,44 @@
+package com.example.demopugspring.model;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+
+import com.example.demopugspring.properties.PropertiesCategoriesEnum;
+
+/**
+ * One code of a transcoding table and the value it decodes to.
+ */
+@Entity
+@Table(uniqueConstraints = @UniqueConstraint(columnNames = {"category", "code"}))
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+public class CodeEntry {
+	@Id
+	@GeneratedValue
+	private Long id;
+	@Enumerated(EnumType.STRING)
+	@Column(nullable = false)
+	private PropertiesCategoriesEnum category;
+	@Column(nullable = false)
+	private String code;
+	private String value;
+
+	public CodeEntry(PropertiesCategoriesEnum category, String code, String value) {
+		this.category = category;
+		this.code = code;
+		this.value = value;
+	}
+}
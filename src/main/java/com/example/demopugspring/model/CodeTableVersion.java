@@ -0,0 +1,35 @@
+package com.example.demopugspring.model;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.Id;
+
+import com.example.demopugspring.properties.PropertiesCategoriesEnum;
+
+/**
+ * Version of the codes of a category, incremented in the same transaction as
+ * every change to them. Nodes compare it with the version of the table they
+ * hold to know when to reload it.
+ */
+@Entity
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+public class CodeTableVersion {
+	@Id
+	@Enumerated(EnumType.STRING)
+	private PropertiesCategoriesEnum category;
+	private long version;
+
+	public CodeTableVersion(PropertiesCategoriesEnum category, long version) {
+		this.category = category;
+		this.version = version;
+	}
+}
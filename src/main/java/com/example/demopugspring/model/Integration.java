@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import javax.persistence.CascadeType;
+import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
@@ -36,6 +37,9 @@ public class Integration {
 	private Application receivingApp;
 	@OneToOne(fetch = FetchType.EAGER, cascade = CascadeType.MERGE)
 	private Message resultMessage;
+	/** Whether every message of the integration is traced, see /traces */
+	@Column(nullable = false, columnDefinition = "boolean default false")
+	private boolean trace;
 
 	public Integration(Message message, Application sendingApp, Application receivingApp, List<Mapper> mappers) {
 		this.message = message;
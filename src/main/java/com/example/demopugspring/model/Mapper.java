@@ -4,6 +4,8 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import lombok.ToString;
+import org.hibernate.annotations.Fetch;
+import org.hibernate.annotations.FetchMode;
 
 import javax.persistence.*;
 import java.util.List;
@@ -18,8 +20,15 @@ public class Mapper {
 	@Id
 	@GeneratedValue
 	private Long id;
+	/**
+	 * Loaded for all the mappers a query returns at once, in a second
+	 * statement, rather than one statement for each mapper
+	 */
 	@ElementCollection(fetch = FetchType.EAGER)
+	@Fetch(FetchMode.SUBSELECT)
 	private List<String> key;
+	/** REPLACE mappers hold one rule per line */
+	@Column(length = 4096)
 	private String value;
 	private Mapper.Category category;
 	@Transient
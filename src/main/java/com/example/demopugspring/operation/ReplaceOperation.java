@@ -2,28 +2,23 @@ package com.example.demopugspring.operation;
 
 import ca.uhn.hl7v2.HL7Exception;
 import ca.uhn.hl7v2.model.Message;
+import com.example.demopugspring.replace.ReplaceRuleSet;
 import com.example.demopugspring.visitor.ReplaceVisitor;
 
 import java.util.List;
 
 public class ReplaceOperation implements Operation {
 
-	private static String SPLITTER_CHAR = ",";
-
 	private List<String> destinationsPath;
-	private String valueToReplace;
-	private String regex;
+	private ReplaceRuleSet rules;
 
 	public ReplaceOperation(String value, List<String> destinations) {
-		this.destinationsPath = destinations;
-		String[] args = value.split(SPLITTER_CHAR);
+		this(ReplaceRuleSet.compile(value), destinations);
+	}
 
-		regex = args[0];
-		if (args.length > 1) {
-			valueToReplace = args[1];
-		} else {
-			valueToReplace = "";
-		}
+	public ReplaceOperation(ReplaceRuleSet rules, List<String> destinations) {
+		this.destinationsPath = destinations;
+		this.rules = rules;
 	}
 
 	@Override
@@ -35,7 +30,7 @@ public class ReplaceOperation implements Operation {
 
 	@Override
 	public void doOperation(Message message, String destination) throws HL7Exception {
-		ReplaceVisitor replaceVisitor = new ReplaceVisitor(destination, this.valueToReplace, this.regex);
+		ReplaceVisitor replaceVisitor = new ReplaceVisitor(destination, rules);
 		replaceVisitor.start(message);
 	}
 
@@ -0,0 +1,88 @@
+package com.example.demopugspring.properties;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Counts the lookups of one transcoding, to be added to the
+ * {@link CodeTelemetry} of the category once it is done with
+ * {@link Codes#record(CodeLookups, String)}.
+ * </p>
+ * Counting in plain fields and publishing once keeps the shared counters off
+ * the path of every lookup. Only one lookup in {@value #TIMING_INTERVAL} is
+ * timed, counting the lookups of every transcoding run on the thread, so a
+ * transcoding of a single field isn't timed every time. Not thread-safe,
+ * there is one per transcoding, used by the thread that created it.
+ */
+public final class CodeLookups {
+
+	static final int TIMING_INTERVAL = 16;
+
+	private static final ThreadLocal<long[]> THREAD_LOOKUPS = ThreadLocal.withInitial(() -> new long[1]);
+
+	/** Lookups made on the thread, shared by its transcodings */
+	private final long[] threadLookups = THREAD_LOOKUPS.get();
+
+	private long hits;
+	private long misses;
+	private long blanks;
+	private long timed;
+	private long timedNanos;
+	private List<String> unmapped;
+
+	/**
+	 * Decodes the code with the given codes, counting the lookup.
+	 */
+	public String decode(Codes codes, String code) {
+		String decoded;
+		if (++threadLookups[0] % TIMING_INTERVAL == 0) {
+			long start = System.nanoTime();
+			decoded = codes.getDecodeCode(code);
+			timedNanos += System.nanoTime() - start;
+			timed++;
+		} else {
+			decoded = codes.getDecodeCode(code);
+		}
+
+		if (code == null || code.isEmpty()) {
+			blanks++;
+		} else if (decoded != null) {
+			hits++;
+		} else {
+			misses++;
+			if (unmapped == null) {
+				unmapped = new ArrayList<>();
+			}
+			unmapped.add(code);
+		}
+		return decoded;
+	}
+
+	public long getHits() {
+		return hits;
+	}
+
+	public long getMisses() {
+		return misses;
+	}
+
+	public long getBlanks() {
+		return blanks;
+	}
+
+	public long getTimed() {
+		return timed;
+	}
+
+	public long getTimedNanos() {
+		return timedNanos;
+	}
+
+	/**
+	 * Returns the codes not found, once per lookup.
+	 */
+	public List<String> getUnmapped() {
+		return unmapped == null ? Collections.emptyList() : unmapped;
+	}
+}
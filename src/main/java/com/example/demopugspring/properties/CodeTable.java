@@ -0,0 +1,49 @@
+package com.example.demopugspring.properties;
+
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Immutable table from the codes of one category to their decoded values.
+ * </p>
+ * A table is a snapshot: it is never changed once built, so it is shared by
+ * every thread without locking, and a new version of the codes is a new table
+ * swapped in whole.
+ * </p>
+ * The tables built with {@link #of(long, Map)} hold the codes on the heap,
+ * the ones opened with {@link MappedCodeTable#open(java.nio.file.Path)} read
+ * them from a memory-mapped file.
+ */
+public interface CodeTable {
+
+	CodeTable EMPTY = new HashCodeTable(0, Map.of());
+
+	/**
+	 * Returns a table with a copy of the given codes.
+	 */
+	static CodeTable of(Map<String, String> codes) {
+		return of(0, codes);
+	}
+
+	/**
+	 * Returns a table with a copy of the given codes, as of the given version
+	 * of the category.
+	 */
+	static CodeTable of(long version, Map<String, String> codes) {
+		return version == 0 && codes.isEmpty() ? EMPTY : new HashCodeTable(version, Map.copyOf(codes));
+	}
+
+	/**
+	 * Returns the decoded value of the code, null if the table hasn't got it.
+	 */
+	String get(String code);
+
+	int size();
+
+	long getVersion();
+
+	/**
+	 * Calls the action with every code of the table and its value.
+	 */
+	void forEach(BiConsumer<String, String> action);
+}
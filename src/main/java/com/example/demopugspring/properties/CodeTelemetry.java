@@ -0,0 +1,85 @@
+package com.example.demopugspring.properties;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lookup counters of one code table since startup: hits, misses, blank codes
+ * and the mean time of a lookup, plus the codes most often missing for each
+ * sending application, see {@link UnmappedCodeSketch}.
+ */
+public final class CodeTelemetry {
+
+	/** Slots of the sketch of each sending application */
+	static final int SKETCH_CAPACITY = 256;
+	/** Sending applications with their own sketch, the rest share one */
+	static final int MAX_APPLICATIONS = 64;
+	static final String OTHER_APPLICATIONS = "*";
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder blanks = new LongAdder();
+	private final LongAdder timed = new LongAdder();
+	private final LongAdder timedNanos = new LongAdder();
+	private final Map<String, UnmappedCodeSketch> unmapped = new ConcurrentHashMap<>();
+
+	void record(CodeLookups lookups, String sendingApp) {
+		hits.add(lookups.getHits());
+		misses.add(lookups.getMisses());
+		blanks.add(lookups.getBlanks());
+		if (lookups.getTimed() > 0) {
+			timed.add(lookups.getTimed());
+			timedNanos.add(lookups.getTimedNanos());
+		}
+		if (!lookups.getUnmapped().isEmpty()) {
+			UnmappedCodeSketch sketch = sketch(sendingApp == null ? "" : sendingApp);
+			for (String code : lookups.getUnmapped()) {
+				sketch.add(code);
+			}
+		}
+	}
+
+	private UnmappedCodeSketch sketch(String sendingApp) {
+		UnmappedCodeSketch sketch = unmapped.get(sendingApp);
+		if (sketch == null) {
+			String key = unmapped.size() < MAX_APPLICATIONS ? sendingApp : OTHER_APPLICATIONS;
+			sketch = unmapped.computeIfAbsent(key, app -> new UnmappedCodeSketch(SKETCH_CAPACITY));
+		}
+		return sketch;
+	}
+
+	public long getHits() {
+		return hits.sum();
+	}
+
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	public long getBlanks() {
+		return blanks.sum();
+	}
+
+	/**
+	 * Returns the mean time of the lookups timed, 0 before any.
+	 */
+	public long getMeanLookupNanos() {
+		long count = timed.sum();
+		return count == 0 ? 0 : timedNanos.sum() / count;
+	}
+
+	/**
+	 * Returns the codes missing most often, at most the given number for each
+	 * sending application, the most frequent first.
+	 */
+	public List<UnmappedCode> getTopUnmapped(int limit) {
+		List<UnmappedCode> codes = new ArrayList<>();
+		unmapped.forEach((sendingApp, sketch) -> codes.addAll(sketch.top(sendingApp, limit)));
+		codes.sort(Comparator.comparing(UnmappedCode::getSendingApp).thenComparing(Comparator.comparingLong(UnmappedCode::getCount).reversed()));
+		return codes;
+	}
+}
@@ -1,19 +1,81 @@
 package com.example.demopugspring.properties;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.PropertySource;
+import org.springframework.core.annotation.AnnotationUtils;
 import org.springframework.core.env.Environment;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.core.io.support.EncodedResource;
+import org.springframework.core.io.support.ResourcePropertySource;
 
+/**
+ * Decodes the codes of one category, read from the property file of the
+ * {@link PropertySource} on the subclass, where every key starts with the
+ * suffix of the category.
+ * </p>
+ * The file is loaded into a {@link CodeTable} when the bean is created, each
+ * value resolved through the {@link Environment} so that properties
+ * overriding the file still win.
+ * </p>
+ * Categories too big for the heap are read from a {@link MappedCodeTable}
+ * instead: when {@code codes.mapped-directory} holds a file named after the
+ * category, such as {@code INSURERS_CODES.codes}, it is mapped in place of
+ * the property file, see {@link MappedCodeTableBuilder}.
+ * </p>
+ * With {@code codes.lookup=database} the table is then replaced by the
+ * snapshots of the codes kept in the database, see
+ * {@link com.example.demopugspring.service.CodeTableService}. A snapshot is
+ * swapped in whole, so lookups never wait on a reload.
+ * </p>
+ * Setting {@code codes.lookup=environment} goes back to asking the
+ * {@link Environment} on every lookup, which walks every property source for
+ * each code. It is only kept for comparing both.
+ */
 public abstract class Codes {
 
-	@Autowired
+	private static final Logger log = LoggerFactory.getLogger(Codes.class);
+
+	static final String LOOKUP_PROPERTY = "codes.lookup";
+	static final String ENVIRONMENT_LOOKUP = "environment";
+	static final String MAPPED_DIRECTORY_PROPERTY = "codes.mapped-directory";
+	static final String MAPPED_EXTENSION = ".codes";
+
 	private Environment env;
 
+	private volatile CodeTable table = CodeTable.EMPTY;
+	private boolean environmentLookup;
+	private final CodeTelemetry telemetry = new CodeTelemetry();
+
+	@Autowired
+	public void setEnvironment(Environment env) {
+		this.env = env;
+	}
+
 	public String getDecodeCode(String encodedCode) {
-		String result;
 		if (encodedCode == null) {
 			encodedCode = "";
 		}
+		if (environmentLookup) {
+			return getEnvironmentDecodeCode(encodedCode);
+		}
+		return table.get(encodedCode);
+	}
 
+	private String getEnvironmentDecodeCode(String encodedCode) {
+		String result;
 		if (getSuffix().isBlank()) {
 			result = env.getProperty(encodedCode);
 		} else {
@@ -22,6 +84,104 @@ public abstract class Codes {
 		return result;
 	}
 
+	/**
+	 * Adds the lookups of a transcoding of the given sending application to
+	 * the telemetry of the category.
+	 */
+	public void record(CodeLookups lookups, String sendingApp) {
+		telemetry.record(lookups, sendingApp);
+	}
+
+	public CodeTelemetry getTelemetry() {
+		return telemetry;
+	}
+
+	public CodeTable getTable() {
+		return table;
+	}
+
+	/**
+	 * Replaces the codes of the category by the given snapshot.
+	 */
+	public void setTable(CodeTable table) {
+		this.table = table;
+	}
+
+	/**
+	 * Returns whether the codes are looked up in the {@link Environment} rather
+	 * than in the table.
+	 */
+	public boolean isEnvironmentLookup() {
+		return environmentLookup;
+	}
+
+	/**
+	 * Loads the code table from the property files of the category, or maps it
+	 * from its file in {@code codes.mapped-directory} when there is one.
+	 */
+	@PostConstruct
+	public void loadTable() {
+		environmentLookup = ENVIRONMENT_LOOKUP.equals(env.getProperty(LOOKUP_PROPERTY));
+		if (environmentLookup) {
+			return;
+		}
+		Path mapped = mappedFile();
+		if (mapped != null && Files.isRegularFile(mapped)) {
+			try {
+				table = MappedCodeTable.open(mapped);
+			} catch (IOException e) {
+				throw new UncheckedIOException("Couldn't map the codes in " + mapped, e);
+			}
+			log.info("Mapped {} {} codes from {}", table.size(), getClass().getSimpleName(), mapped);
+		} else {
+			table = readTable();
+			log.info("Loaded {} {} codes", table.size(), getClass().getSimpleName());
+		}
+	}
+
+	/**
+	 * Returns whether the codes are read from a {@link MappedCodeTable} rather
+	 * than held on the heap.
+	 */
+	public boolean isMapped() {
+		return table instanceof MappedCodeTable;
+	}
+
+	private Path mappedFile() {
+		String directory = env.getProperty(MAPPED_DIRECTORY_PROPERTY);
+		if (directory == null || directory.isBlank()) {
+			return null;
+		}
+		return Paths.get(directory, getCategory().name() + MAPPED_EXTENSION);
+	}
+
+	private CodeTable readTable() {
+		PropertySource source = AnnotationUtils.findAnnotation(getClass(), PropertySource.class);
+		if (source == null) {
+			return CodeTable.EMPTY;
+		}
+		String prefix = getSuffix().isBlank() ? "" : getSuffix() + ".";
+		ResourceLoader resourceLoader = new DefaultResourceLoader(getClass().getClassLoader());
+		Map<String, String> codes = new HashMap<>();
+		for (String location : source.value()) {
+			ResourcePropertySource properties;
+			try {
+				EncodedResource resource = new EncodedResource(resourceLoader.getResource(env.resolveRequiredPlaceholders(location)),
+						source.encoding().isEmpty() ? null : source.encoding());
+				properties = new ResourcePropertySource(resource);
+			} catch (IOException e) {
+				throw new UncheckedIOException("Couldn't read the codes in " + location, e);
+			}
+			for (String name : properties.getPropertyNames()) {
+				if (name.startsWith(prefix)) {
+					codes.put(name.substring(prefix.length()), env.getProperty(name, (String) properties.getProperty(name)));
+				}
+			}
+		}
+		return CodeTable.of(codes);
+	}
 
 	protected abstract String getSuffix();
+
+	public abstract PropertiesCategoriesEnum getCategory();
 }
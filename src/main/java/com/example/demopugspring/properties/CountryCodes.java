@@ -12,4 +12,9 @@ public class CountryCodes extends Codes {
 		return SUFFIX;
 	}
 
+	@Override
+	public PropertiesCategoriesEnum getCategory() {
+		return PropertiesCategoriesEnum.GH_LOCATIONS;
+	}
+
 }
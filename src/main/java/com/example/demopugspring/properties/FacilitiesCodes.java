@@ -11,4 +11,9 @@ public class FacilitiesCodes extends Codes {
 	public String getSuffix() {
 		return SUFFIX;
 	}
+
+	@Override
+	public PropertiesCategoriesEnum getCategory() {
+		return PropertiesCategoriesEnum.FACILITIES;
+	}
 }
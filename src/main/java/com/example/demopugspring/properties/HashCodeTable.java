@@ -0,0 +1,39 @@
+package com.example.demopugspring.properties;
+
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * {@link CodeTable} holding its codes in an immutable hash map. A lookup is a
+ * single hash probe on the code, no key is built and nothing is allocated.
+ */
+final class HashCodeTable implements CodeTable {
+
+	private final long version;
+	private final Map<String, String> codes;
+
+	HashCodeTable(long version, Map<String, String> codes) {
+		this.version = version;
+		this.codes = codes;
+	}
+
+	@Override
+	public String get(String code) {
+		return codes.get(code);
+	}
+
+	@Override
+	public int size() {
+		return codes.size();
+	}
+
+	@Override
+	public long getVersion() {
+		return version;
+	}
+
+	@Override
+	public void forEach(BiConsumer<String, String> action) {
+		codes.forEach(action);
+	}
+}
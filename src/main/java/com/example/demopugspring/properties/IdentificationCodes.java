@@ -12,5 +12,10 @@ public class IdentificationCodes extends Codes {
 		return SUFFIX;
 	}
 
+	@Override
+	public PropertiesCategoriesEnum getCategory() {
+		return PropertiesCategoriesEnum.IDENTIFICATIONS;
+	}
+
 
 }
@@ -12,4 +12,9 @@ public class InsurersCodes extends Codes {
 		return SUFFIX;
 	}
 
+	@Override
+	public PropertiesCategoriesEnum getCategory() {
+		return PropertiesCategoriesEnum.INSURERS_CODES;
+	}
+
 }
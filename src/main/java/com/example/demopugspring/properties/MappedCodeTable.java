@@ -0,0 +1,203 @@
+package com.example.demopugspring.properties;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+
+/**
+ * {@link CodeTable} reading its codes from a memory-mapped file, for tables
+ * too big to hold on the heap of every node.
+ * </p>
+ * The file holds the codes sorted, UTF-8 encoded, after an index with the
+ * offset of each entry, and is looked up with a binary search straight on the
+ * mapped pages: only the value found is copied onto the heap. The pages are
+ * the operating system's page cache, so every JVM on the host mapping the
+ * same file shares them.
+ * </p>
+ * Layout, big-endian: the magic number, the format version and the number of
+ * entries, one int each; the offset of every entry from the start of the
+ * file, an int each; the entries, each the length of the code and of the
+ * value in bytes, an int each, followed by the bytes of the code and of the
+ * value. Files are limited to 2 GB, the size of a single mapping.
+ */
+public final class MappedCodeTable implements CodeTable {
+
+	static final int MAGIC = 0x48434454;
+	static final int FORMAT_VERSION = 1;
+	private static final int HEADER_SIZE = 12;
+	private static final int ENTRY_HEADER_SIZE = 8;
+
+	private final Path file;
+	private final ByteBuffer buffer;
+	private final int size;
+
+	private MappedCodeTable(Path file, ByteBuffer buffer) throws IOException {
+		this.file = file;
+		this.buffer = buffer;
+		if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+			throw new IOException(file + " is not a code table");
+		}
+		if (buffer.getInt(4) != FORMAT_VERSION) {
+			throw new IOException(file + " has code table format " + buffer.getInt(4) + ", expected " + FORMAT_VERSION);
+		}
+		this.size = buffer.getInt(8);
+		if (size < 0 || HEADER_SIZE + (long) size * Integer.BYTES > buffer.limit()) {
+			throw new IOException(file + " is truncated");
+		}
+	}
+
+	/**
+	 * Maps the code table written to the file by {@link #write(Path, Map)}.
+	 */
+	public static MappedCodeTable open(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new IOException(file + " is bigger than 2 GB");
+			}
+			// The mapping stays valid after the channel is closed
+			return new MappedCodeTable(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+
+	/**
+	 * Writes the codes to the file in the format {@link #open(Path)} maps. The
+	 * file is written next to the target and moved over it, so a table mapped
+	 * by another JVM never sees it half written.
+	 */
+	public static void write(Path file, Map<String, String> codes) throws IOException {
+		SortedMap<String, String> sorted = new TreeMap<>(codes);
+		byte[][] keys = new byte[sorted.size()][];
+		byte[][] values = new byte[sorted.size()][];
+		long offset = HEADER_SIZE + (long) sorted.size() * Integer.BYTES;
+		int[] offsets = new int[sorted.size()];
+		int i = 0;
+		for (Map.Entry<String, String> entry : sorted.entrySet()) {
+			keys[i] = entry.getKey().getBytes(StandardCharsets.UTF_8);
+			values[i] = entry.getValue().getBytes(StandardCharsets.UTF_8);
+			offsets[i] = (int) offset;
+			offset += ENTRY_HEADER_SIZE + keys[i].length + values[i].length;
+			if (offset > Integer.MAX_VALUE) {
+				throw new IOException("Code table bigger than 2 GB");
+			}
+			i++;
+		}
+
+		Path temporary = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+		try {
+			try (OutputStream stream = Files.newOutputStream(temporary);
+					DataOutputStream output = new DataOutputStream(new BufferedOutputStream(stream, 64 * 1024))) {
+				output.writeInt(MAGIC);
+				output.writeInt(FORMAT_VERSION);
+				output.writeInt(sorted.size());
+				for (int entryOffset : offsets) {
+					output.writeInt(entryOffset);
+				}
+				for (int entry = 0; entry < keys.length; entry++) {
+					output.writeInt(keys[entry].length);
+					output.writeInt(values[entry].length);
+					output.write(keys[entry]);
+					output.write(values[entry]);
+				}
+			}
+			Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temporary);
+		}
+	}
+
+	@Override
+	public String get(String code) {
+		if (code == null) {
+			return null;
+		}
+		int low = 0;
+		int high = size - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int entry = buffer.getInt(HEADER_SIZE + middle * Integer.BYTES);
+			int comparison = compare(code, entry);
+			if (comparison > 0) {
+				low = middle + 1;
+			} else if (comparison < 0) {
+				high = middle - 1;
+			} else {
+				return value(entry);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Compares the code with the code of the entry in the order of
+	 * {@link String#compareTo(String)}, the order the file is sorted in.
+	 * ASCII codes are compared byte by byte without decoding them.
+	 */
+	private int compare(String code, int entry) {
+		int keyLength = buffer.getInt(entry);
+		int keyStart = entry + ENTRY_HEADER_SIZE;
+		int length = Math.min(code.length(), keyLength);
+		for (int i = 0; i < length; i++) {
+			byte b = buffer.get(keyStart + i);
+			if (b < 0) {
+				// Not ASCII, code units no longer line up with bytes
+				return code.compareTo(string(keyStart, keyLength));
+			}
+			char c = code.charAt(i);
+			if (c != b) {
+				return c - b;
+			}
+		}
+		// Equal up to the shorter one: a longer key, ASCII or not, has more
+		// characters left than the code
+		return code.length() - keyLength;
+	}
+
+	private String value(int entry) {
+		int keyLength = buffer.getInt(entry);
+		int valueLength = buffer.getInt(entry + Integer.BYTES);
+		return string(entry + ENTRY_HEADER_SIZE + keyLength, valueLength);
+	}
+
+	private String string(int start, int length) {
+		byte[] bytes = new byte[length];
+		for (int i = 0; i < length; i++) {
+			bytes[i] = buffer.get(start + i);
+		}
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public long getVersion() {
+		return 0;
+	}
+
+	@Override
+	public void forEach(BiConsumer<String, String> action) {
+		for (int i = 0; i < size; i++) {
+			int entry = buffer.getInt(HEADER_SIZE + i * Integer.BYTES);
+			int keyLength = buffer.getInt(entry);
+			action.accept(string(entry + ENTRY_HEADER_SIZE, keyLength), value(entry));
+		}
+	}
+
+	public Path getFile() {
+		return file;
+	}
+}
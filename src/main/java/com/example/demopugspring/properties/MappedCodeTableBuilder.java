@@ -0,0 +1,88 @@
+package com.example.demopugspring.properties;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Builds the file of a {@link MappedCodeTable} from a property file, like the
+ * ones under {@code /properties}, or from a CSV file with the code and the
+ * value in the first two columns.
+ * </p>
+ * Usage: {@code MappedCodeTableBuilder <source.properties|source.csv> <target> [prefix]}.
+ * When given, only the keys of the property file starting with the prefix
+ * are kept, without it, as the {@link Codes} subclasses do with their suffix.
+ */
+public final class MappedCodeTableBuilder {
+
+	private MappedCodeTableBuilder() {
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("Usage: MappedCodeTableBuilder <source.properties|source.csv> <target> [prefix]");
+			System.exit(1);
+		}
+		Path source = Paths.get(args[0]);
+		Map<String, String> codes = source.toString().endsWith(".csv") ? readCsv(source)
+				: readProperties(source, args.length > 2 ? args[2] : "");
+		MappedCodeTable.write(Paths.get(args[1]), codes);
+		System.out.println("Wrote " + codes.size() + " codes to " + args[1]);
+	}
+
+	static Map<String, String> readProperties(Path source, String prefix) throws IOException {
+		Properties properties = new Properties();
+		try (Reader reader = Files.newBufferedReader(source, StandardCharsets.UTF_8)) {
+			properties.load(reader);
+		}
+		String keyPrefix = prefix.isEmpty() || prefix.endsWith(".") ? prefix : prefix + ".";
+		Map<String, String> codes = new HashMap<>();
+		for (String name : properties.stringPropertyNames()) {
+			if (name.startsWith(keyPrefix)) {
+				codes.put(name.substring(keyPrefix.length()), properties.getProperty(name));
+			}
+		}
+		return codes;
+	}
+
+	/**
+	 * Reads a code and a value from each line, separated by a comma or a
+	 * semicolon. Blank lines are skipped and values aren't unquoted.
+	 */
+	static Map<String, String> readCsv(Path source) throws IOException {
+		Map<String, String> codes = new HashMap<>();
+		try (BufferedReader reader = Files.newBufferedReader(source, StandardCharsets.UTF_8)) {
+			String line;
+			int number = 0;
+			while ((line = reader.readLine()) != null) {
+				number++;
+				if (line.isBlank()) {
+					continue;
+				}
+				int separator = indexOfSeparator(line, 0);
+				if (separator < 0) {
+					throw new IOException(source + ":" + number + " has no value");
+				}
+				int end = indexOfSeparator(line, separator + 1);
+				codes.put(line.substring(0, separator).trim(), line.substring(separator + 1, end < 0 ? line.length() : end).trim());
+			}
+		}
+		return codes;
+	}
+
+	private static int indexOfSeparator(String line, int from) {
+		for (int i = from; i < line.length(); i++) {
+			if (line.charAt(i) == ',' || line.charAt(i) == ';') {
+				return i;
+			}
+		}
+		return -1;
+	}
+}
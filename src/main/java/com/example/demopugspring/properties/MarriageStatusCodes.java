@@ -11,4 +11,9 @@ public class MarriageStatusCodes extends Codes {
 	public String getSuffix() {
 		return SUFFIX;
 	}
+
+	@Override
+	public PropertiesCategoriesEnum getCategory() {
+		return PropertiesCategoriesEnum.MARRIAGE_STATUS;
+	}
 }
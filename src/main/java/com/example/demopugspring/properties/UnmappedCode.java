@@ -0,0 +1,30 @@
+package com.example.demopugspring.properties;
+
+/**
+ * A code a sending application sent that its code table hasn't got, and about
+ * how many times it was sent.
+ */
+public final class UnmappedCode {
+
+	private final String sendingApp;
+	private final String code;
+	private final long count;
+
+	public UnmappedCode(String sendingApp, String code, long count) {
+		this.sendingApp = sendingApp;
+		this.code = code;
+		this.count = count;
+	}
+
+	public String getSendingApp() {
+		return sendingApp;
+	}
+
+	public String getCode() {
+		return code;
+	}
+
+	public long getCount() {
+		return count;
+	}
+}
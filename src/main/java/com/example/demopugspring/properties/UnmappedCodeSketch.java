@@ -0,0 +1,97 @@
+package com.example.demopugspring.properties;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded, lock-free sketch of the most frequent codes added to it.
+ * </p>
+ * Codes are counted in a fixed array of slots, each code hashing to a window
+ * of {@value #WINDOW} of them. A code already in its window is counted there;
+ * a new one takes a free slot of the window or else wears down the smallest
+ * count in it, taking the slot over once it reaches zero. Frequent codes keep
+ * their slots while rare ones replace each other, so the memory stays
+ * fixed however many distinct codes arrive. The counts are estimates: a code
+ * loses what it counted when it is evicted, and wearing a count down is
+ * racy, so concurrent adds may be lost.
+ */
+final class UnmappedCodeSketch {
+
+	static final int WINDOW = 4;
+
+	private static final class Slot {
+		final String code;
+		final AtomicLong count = new AtomicLong(1);
+
+		Slot(String code) {
+			this.code = code;
+		}
+	}
+
+	private final AtomicReferenceArray<Slot> slots;
+	private final int mask;
+
+	/**
+	 * @param capacity
+	 *            number of slots, rounded up to a power of two.
+	 */
+	UnmappedCodeSketch(int capacity) {
+		int size = Integer.highestOneBit(Math.max(WINDOW, capacity - 1)) << 1;
+		this.slots = new AtomicReferenceArray<>(size);
+		this.mask = size - 1;
+	}
+
+	void add(String code) {
+		int hash = code.hashCode();
+		hash ^= hash >>> 16;
+		for (int attempt = 0; attempt < WINDOW; attempt++) {
+			int weakest = -1;
+			long weakestCount = Long.MAX_VALUE;
+			for (int i = 0; i < WINDOW; i++) {
+				int index = (hash + i) & mask;
+				Slot slot = slots.get(index);
+				if (slot == null) {
+					if (slots.compareAndSet(index, null, new Slot(code))) {
+						return;
+					}
+					slot = slots.get(index);
+				}
+				if (slot.code.equals(code)) {
+					slot.count.incrementAndGet();
+					return;
+				}
+				long count = slot.count.get();
+				if (count < weakestCount) {
+					weakest = index;
+					weakestCount = count;
+				}
+			}
+			Slot slot = slots.get(weakest);
+			if (slot.count.decrementAndGet() > 0) {
+				return;
+			}
+			if (slots.compareAndSet(weakest, slot, new Slot(code))) {
+				return;
+			}
+			// Someone else took the slot over, look again
+		}
+	}
+
+	/**
+	 * Returns the codes with the highest counts, at most the given number.
+	 */
+	List<UnmappedCode> top(String sendingApp, int limit) {
+		List<UnmappedCode> codes = new ArrayList<>();
+		for (int i = 0; i < slots.length(); i++) {
+			Slot slot = slots.get(i);
+			if (slot != null && slot.count.get() > 0) {
+				codes.add(new UnmappedCode(sendingApp, slot.code, slot.count.get()));
+			}
+		}
+		codes.sort(Comparator.comparingLong(UnmappedCode::getCount).reversed());
+		return codes.size() > limit ? new ArrayList<>(codes.subList(0, limit)) : codes;
+	}
+}
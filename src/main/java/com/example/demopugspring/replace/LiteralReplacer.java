@@ -0,0 +1,125 @@
+package com.example.demopugspring.replace;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Replaces several literal strings in a single pass, with an Aho-Corasick
+ * automaton.
+ * </p>
+ * The replacement of the leftmost match is written and the scan resumes after
+ * it, so a literal on its own is replaced like {@link String#replace} does.
+ * The literals must not overlap: none of them contains another, and no end of
+ * one is the start of another. {@link ReplaceRuleSet} only groups rules this
+ * way, and for those the first match ending is always the leftmost, so the
+ * scan never has to look back.
+ */
+final class LiteralReplacer {
+
+	private static final int ROOT = 0;
+	private static final int NO_MATCH = -1;
+
+	/** Characters leaving each state, sorted, and the state each leads to */
+	private final char[][] labels;
+	private final int[][] targets;
+	private final int[] failure;
+	/** Index of the literal ending in each state, {@link #NO_MATCH} if none */
+	private final int[] matches;
+	private final int[] lengths;
+	private final String[] replacements;
+
+	LiteralReplacer(List<ReplaceRule> rules) {
+		List<Map<Character, Integer>> trie = new ArrayList<>();
+		List<Integer> ends = new ArrayList<>();
+		trie.add(new TreeMap<>());
+		ends.add(NO_MATCH);
+		lengths = new int[rules.size()];
+		replacements = new String[rules.size()];
+
+		for (int rule = 0; rule < rules.size(); rule++) {
+			String literal = rules.get(rule).getRegex();
+			int state = ROOT;
+			for (int i = 0; i < literal.length(); i++) {
+				Integer next = trie.get(state).get(literal.charAt(i));
+				if (next == null) {
+					next = trie.size();
+					trie.get(state).put(literal.charAt(i), next);
+					trie.add(new TreeMap<>());
+					ends.add(NO_MATCH);
+				}
+				state = next;
+			}
+			ends.set(state, rule);
+			lengths[rule] = literal.length();
+			replacements[rule] = rules.get(rule).getReplacement();
+		}
+
+		int states = trie.size();
+		labels = new char[states][];
+		targets = new int[states][];
+		matches = new int[states];
+		for (int state = 0; state < states; state++) {
+			Map<Character, Integer> edges = trie.get(state);
+			labels[state] = new char[edges.size()];
+			targets[state] = new int[edges.size()];
+			int edge = 0;
+			for (Map.Entry<Character, Integer> entry : edges.entrySet()) {
+				labels[state][edge] = entry.getKey();
+				targets[state][edge] = entry.getValue();
+				edge++;
+			}
+			matches[state] = ends.get(state);
+		}
+
+		failure = new int[states];
+		Deque<Integer> queue = new ArrayDeque<>();
+		for (int child : targets[ROOT]) {
+			queue.add(child);
+		}
+		while (!queue.isEmpty()) {
+			int state = queue.poll();
+			for (int edge = 0; edge < labels[state].length; edge++) {
+				int child = targets[state][edge];
+				failure[child] = next(failure[state], labels[state][edge]);
+				queue.add(child);
+			}
+		}
+	}
+
+	private int next(int state, char c) {
+		while (true) {
+			int edge = Arrays.binarySearch(labels[state], c);
+			if (edge >= 0) {
+				return targets[state][edge];
+			}
+			if (state == ROOT) {
+				return ROOT;
+			}
+			state = failure[state];
+		}
+	}
+
+	String replace(String value) {
+		StringBuilder result = null;
+		int copied = 0;
+		int state = ROOT;
+		for (int i = 0; i < value.length(); i++) {
+			state = next(state, value.charAt(i));
+			int rule = matches[state];
+			if (rule != NO_MATCH) {
+				if (result == null) {
+					result = new StringBuilder(value.length());
+				}
+				result.append(value, copied, i + 1 - lengths[rule]).append(replacements[rule]);
+				copied = i + 1;
+				state = ROOT;
+			}
+		}
+		return result == null ? value : result.append(value, copied, value.length()).toString();
+	}
+}
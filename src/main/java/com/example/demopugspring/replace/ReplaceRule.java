@@ -0,0 +1,75 @@
+package com.example.demopugspring.replace;
+
+import java.util.regex.Pattern;
+
+/**
+ * One rule of a REPLACE mapper: every match of a regular expression is
+ * replaced, as {@link String#replaceAll(String, String)} does.
+ * </p>
+ * A rule is written {@code regex,replacement}, the replacement being empty
+ * when left out. Rules whose expression has no metacharacters and whose
+ * replacement has no group references or escapes are literal, and are run by
+ * a {@link LiteralReplacer} instead of a {@link Pattern}.
+ */
+public final class ReplaceRule {
+
+	private static final String SPLITTER_CHAR = ",";
+	private static final String REGEX_METACHARACTERS = "\\^$.|?*+()[]{}";
+
+	private final String regex;
+	private final String replacement;
+	private final boolean literal;
+	private final Pattern pattern;
+
+	public ReplaceRule(String regex, String replacement) {
+		this.regex = regex;
+		this.replacement = replacement;
+		this.literal = isLiteral(regex, replacement);
+		this.pattern = literal ? null : Pattern.compile(regex);
+	}
+
+	/**
+	 * Parses a rule written {@code regex,replacement}. Anything after a second
+	 * comma is ignored, as it always was.
+	 */
+	public static ReplaceRule parse(String rule) {
+		String[] args = rule.split(SPLITTER_CHAR);
+		return new ReplaceRule(args.length > 0 ? args[0] : "", args.length > 1 ? args[1] : "");
+	}
+
+	private static boolean isLiteral(String regex, String replacement) {
+		if (regex.isEmpty() || replacement.indexOf('$') >= 0 || replacement.indexOf('\\') >= 0) {
+			return false;
+		}
+		for (int i = 0; i < regex.length(); i++) {
+			if (REGEX_METACHARACTERS.indexOf(regex.charAt(i)) >= 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Applies the rule on its own.
+	 */
+	public String apply(String value) {
+		return literal ? value.replace(regex, replacement) : pattern.matcher(value).replaceAll(replacement);
+	}
+
+	public String getRegex() {
+		return regex;
+	}
+
+	public String getReplacement() {
+		return replacement;
+	}
+
+	public boolean isLiteral() {
+		return literal;
+	}
+
+	@Override
+	public String toString() {
+		return regex + SPLITTER_CHAR + replacement;
+	}
+}
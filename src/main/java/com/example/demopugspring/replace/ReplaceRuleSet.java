@@ -0,0 +1,169 @@
+package com.example.demopugspring.replace;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+
+/**
+ * Immutable, thread-safe list of {@link ReplaceRule}s applied one after the
+ * other to every primitive of a path, so a single traversal of the message
+ * runs all of them.
+ * </p>
+ * The value of a REPLACE mapper holds one rule per line. Regular expression
+ * rules are compiled once. Consecutive literal rules that can't see each
+ * other's work are run together by one {@link LiteralReplacer} pass: their
+ * literals don't overlap, and no literal can be made of the replacement of an
+ * earlier rule of the group or of the text a deletion brings together. For
+ * those, replacing all of them at once gives the same result as replacing
+ * them one after the other.
+ * </p>
+ * Rule sets are compiled once per distinct value through
+ * {@link #compile(String)} and kept in a bounded cache, like the paths.
+ */
+public final class ReplaceRuleSet {
+
+	private static final String RULE_SEPARATOR = "\\r?\\n";
+	private static final int MAX_CACHED_RULE_SETS = 1024;
+	private static final Map<String, ReplaceRuleSet> CACHE = new ConcurrentHashMap<>();
+
+	private final List<ReplaceRule> rules;
+	private final List<UnaryOperator<String>> steps;
+
+	private ReplaceRuleSet(List<ReplaceRule> rules) {
+		this.rules = Collections.unmodifiableList(new ArrayList<>(rules));
+
+		List<UnaryOperator<String>> compiled = new ArrayList<>();
+		List<ReplaceRule> literals = new ArrayList<>();
+		for (ReplaceRule rule : rules) {
+			if (rule.isLiteral() && canJoin(literals, rule)) {
+				literals.add(rule);
+				continue;
+			}
+			addLiterals(compiled, literals);
+			if (rule.isLiteral()) {
+				literals.add(rule);
+			} else {
+				compiled.add(rule::apply);
+			}
+		}
+		addLiterals(compiled, literals);
+		this.steps = Collections.unmodifiableList(compiled);
+	}
+
+	private static void addLiterals(List<UnaryOperator<String>> steps, List<ReplaceRule> literals) {
+		if (literals.size() == 1) {
+			steps.add(literals.get(0)::apply);
+		} else if (!literals.isEmpty()) {
+			steps.add(new LiteralReplacer(literals)::replace);
+		}
+		literals.clear();
+	}
+
+	/**
+	 * Returns whether the literal rule gives the same result run together
+	 * with the group as after it.
+	 */
+	private static boolean canJoin(List<ReplaceRule> group, ReplaceRule rule) {
+		String literal = rule.getRegex();
+		for (ReplaceRule previous : group) {
+			if (overlap(previous.getRegex(), literal)) {
+				return false;
+			}
+			String replacement = previous.getReplacement();
+			if (replacement.isEmpty() ? literal.length() > 1 : sharesCharacter(replacement, literal)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean overlap(String a, String b) {
+		if (a.contains(b) || b.contains(a)) {
+			return true;
+		}
+		for (int length = 1; length < Math.min(a.length(), b.length()); length++) {
+			if (a.regionMatches(a.length() - length, b, 0, length) || b.regionMatches(b.length() - length, a, 0, length)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean sharesCharacter(String a, String b) {
+		for (int i = 0; i < a.length(); i++) {
+			if (b.indexOf(a.charAt(i)) >= 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the compiled rules of the given value, parsing it only the first
+	 * time it is seen. Blank lines are skipped.
+	 *
+	 * @throws java.util.regex.PatternSyntaxException
+	 *             if a rule isn't a valid regular expression.
+	 */
+	public static ReplaceRuleSet compile(String value) {
+		ReplaceRuleSet ruleSet = CACHE.get(value);
+		if (ruleSet == null) {
+			List<ReplaceRule> rules = new ArrayList<>();
+			String[] lines = value.split(RULE_SEPARATOR);
+			for (String line : lines) {
+				if (!line.isBlank() || lines.length == 1) {
+					rules.add(ReplaceRule.parse(line));
+				}
+			}
+			ruleSet = new ReplaceRuleSet(rules);
+			if (CACHE.size() >= MAX_CACHED_RULE_SETS) {
+				evictOne();
+			}
+			CACHE.putIfAbsent(value, ruleSet);
+		}
+		return ruleSet;
+	}
+
+	private static void evictOne() {
+		Iterator<String> keys = CACHE.keySet().iterator();
+		if (keys.hasNext()) {
+			keys.next();
+			keys.remove();
+		}
+	}
+
+	public static ReplaceRuleSet of(List<ReplaceRule> rules) {
+		return new ReplaceRuleSet(rules);
+	}
+
+	/**
+	 * Applies every rule, in order, to the value.
+	 */
+	public String apply(String value) {
+		for (UnaryOperator<String> step : steps) {
+			value = step.apply(value);
+		}
+		return value;
+	}
+
+	public List<ReplaceRule> getRules() {
+		return rules;
+	}
+
+	/**
+	 * Returns the number of passes over each value, fewer than the rules when
+	 * literal rules are grouped.
+	 */
+	public int getPassCount() {
+		return steps.size();
+	}
+
+	@Override
+	public String toString() {
+		return rules.toString();
+	}
+}
@@ -0,0 +1,15 @@
+package com.example.demopugspring.repository;
+
+import com.example.demopugspring.model.CodeEntry;
+import com.example.demopugspring.properties.PropertiesCategoriesEnum;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface CodeEntryRepository extends CrudRepository<CodeEntry, Long> {
+	List<CodeEntry> findByCategoryOrderByCodeAsc(PropertiesCategoriesEnum category);
+
+	long countByCategory(PropertiesCategoriesEnum category);
+}
@@ -0,0 +1,16 @@
+package com.example.demopugspring.repository;
+
+import com.example.demopugspring.model.CodeTableVersion;
+import com.example.demopugspring.properties.PropertiesCategoriesEnum;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface CodeTableVersionRepository extends CrudRepository<CodeTableVersion, PropertiesCategoriesEnum> {
+	@Modifying
+	@Query("update CodeTableVersion v set v.version = v.version + 1 where v.category = :category")
+	int increment(@Param("category") PropertiesCategoriesEnum category);
+}
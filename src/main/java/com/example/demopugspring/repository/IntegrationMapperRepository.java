@@ -1,15 +1,36 @@
 package com.example.demopugspring.repository;
 
 import java.util.List;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import com.example.demopugspring.model.IntegrationMapper;
+import com.example.demopugspring.model.Message;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
 @Repository
 public interface IntegrationMapperRepository extends CrudRepository<IntegrationMapper, Long> {
+	 @EntityGraph(attributePaths = "mapper")
 	 List<IntegrationMapper> findByIntegration_IdOrderByOrderIndex(Long integrationID);
+	 @EntityGraph(attributePaths = "mapper")
 	 List<IntegrationMapper> findByIntegration_IdAndActiveTrueOrderByOrderIndex(Long integrationID);
+
+	 /**
+	  * Finds the active mappers of the integration of a message between two
+	  * applications, in order, with their integration, its messages and
+	  * applications, in a single statement. The keys of the mappers take one
+	  * more, see {@link com.example.demopugspring.model.Mapper#getKey()}.
+	  */
+	 @Query("select im from IntegrationMapper im join fetch im.mapper join fetch im.integration i join fetch i.message m"
+			 + " join fetch i.sendingApp s join fetch i.receivingApp r left join fetch i.resultMessage"
+			 + " where im.active = true and m.code = :code and m.event = :event and m.version = :version"
+			 + " and s.code = :sendingApp and r.code = :receivingApp order by im.orderIndex")
+	 List<IntegrationMapper> findActiveByRoute(@Param("code") String code, @Param("event") String event,
+			 @Param("version") Message.Version version, @Param("sendingApp") String sendingApp,
+			 @Param("receivingApp") String receivingApp);
+
 	 @Transactional
 	 long deleteAllByIntegration_Id(Long integrationID);
 }
@@ -1,6 +1,9 @@
 package com.example.demopugspring.repository;
 
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 
 import com.example.demopugspring.model.Application;
 import com.example.demopugspring.model.Integration;
@@ -11,4 +14,17 @@ import org.springframework.stereotype.Repository;
 public interface IntegrationRepository extends CrudRepository<Integration, Long> {
 	Integration findByMessageAndSendingAppAndReceivingApp(Message message, Application sending, Application receiving);
 
+	/**
+	 * Finds the integration of a message between two applications, with its
+	 * messages and applications, in a single statement.
+	 */
+	@Query("select i from Integration i join fetch i.message m join fetch i.sendingApp s join fetch i.receivingApp r"
+			+ " left join fetch i.resultMessage where m.code = :code and m.event = :event and m.version = :version"
+			+ " and s.code = :sendingApp and r.code = :receivingApp")
+	Integration findByRoute(@Param("code") String code, @Param("event") String event, @Param("version") Message.Version version,
+			@Param("sendingApp") String sendingApp, @Param("receivingApp") String receivingApp);
+
+	@Override
+	@EntityGraph(attributePaths = { "message", "sendingApp", "receivingApp", "resultMessage" })
+	Iterable<Integration> findAll();
 }
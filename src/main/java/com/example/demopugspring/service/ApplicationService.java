@@ -1,5 +1,6 @@
 package com.example.demopugspring.service;
 
+import com.example.demopugspring.engine.plan.IntegrationPlanCache;
 import com.example.demopugspring.model.Application;
 import com.example.demopugspring.repository.ApplicationRepository;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -14,6 +15,9 @@ public class ApplicationService {
 	@Autowired
 	private ApplicationRepository applicationRepository;
 
+	@Autowired
+	private IntegrationPlanCache integrationPlanCache;
+
 	public List<Application> findAll() {
 		List<Application> applications = new ArrayList<>();
 		applicationRepository.findByOrderByCodeAsc().forEach(applications::add);
@@ -25,7 +29,10 @@ public class ApplicationService {
 	}
 
 	public Application save(Application application) {
-		return applicationRepository.save(application);
+		Application saved = applicationRepository.save(application);
+		// Application codes are part of every plan's routing key
+		integrationPlanCache.invalidateAll();
+		return saved;
 	}
 
 	public Application findByCode(String code) {
@@ -0,0 +1,231 @@
+package com.example.demopugspring.service;
+
+import com.example.demopugspring.model.CodeEntry;
+import com.example.demopugspring.model.CodeTableVersion;
+import com.example.demopugspring.properties.CodeTable;
+import com.example.demopugspring.properties.Codes;
+import com.example.demopugspring.properties.PropertiesCategoriesEnum;
+import com.example.demopugspring.repository.CodeEntryRepository;
+import com.example.demopugspring.repository.CodeTableVersionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the transcoding tables in the database and the {@link Codes} beans
+ * up to date with them.
+ * </p>
+ * Every change to the codes of a category increments its
+ * {@link CodeTableVersion} in the same transaction. The node making the change
+ * reloads the category right after committing, the others when they next
+ * poll the versions, every {@code codes.poll-interval} milliseconds. A reload
+ * builds a new {@link CodeTable} and swaps it into the {@link Codes} bean, so
+ * mappings in progress keep reading the table they started with.
+ * </p>
+ * Categories without codes in the database yet are imported from the
+ * property files on startup. The tables are only swapped in with
+ * {@code codes.lookup=database}; otherwise the property files stay in use and
+ * changes made here only reach the database. Categories read from a
+ * {@link com.example.demopugspring.properties.MappedCodeTable} are left out.
+ */
+@Service
+public class CodeTableService {
+
+	private static final Logger log = LoggerFactory.getLogger(CodeTableService.class);
+
+	static final String DATABASE_LOOKUP = "database";
+
+	@Autowired
+	CodeEntryRepository codeEntryRepository;
+
+	@Autowired
+	CodeTableVersionRepository codeTableVersionRepository;
+
+	@Autowired
+	PlatformTransactionManager transactionManager;
+
+	@Autowired
+	List<Codes> codes;
+
+	@Value("${codes.lookup:table}")
+	String lookup;
+
+	private final Map<PropertiesCategoriesEnum, Codes> codesByCategory = new EnumMap<>(PropertiesCategoriesEnum.class);
+	private TransactionTemplate transactionTemplate;
+
+	@PostConstruct
+	void init() {
+		transactionTemplate = new TransactionTemplate(transactionManager);
+		for (Codes category : codes) {
+			codesByCategory.put(category.getCategory(), category);
+		}
+		for (Codes category : codes) {
+			if (isManaged(category)) {
+				importIfMissing(category);
+			}
+		}
+		if (isDatabaseLookup()) {
+			for (Codes category : codes) {
+				if (isManaged(category)) {
+					reload(category.getCategory());
+				}
+			}
+		}
+	}
+
+	public List<PropertiesCategoriesEnum> findCategories() {
+		return new ArrayList<>(codesByCategory.keySet());
+	}
+
+	public Map<PropertiesCategoriesEnum, Long> findVersions() {
+		Map<PropertiesCategoriesEnum, Long> versions = new EnumMap<>(PropertiesCategoriesEnum.class);
+		codeTableVersionRepository.findAll().forEach(version -> versions.put(version.getCategory(), version.getVersion()));
+		return versions;
+	}
+
+	/**
+	 * Returns the table the given category is decoded with on this node.
+	 */
+	public CodeTable findTable(PropertiesCategoriesEnum category) {
+		return codesOf(category).getTable();
+	}
+
+	/**
+	 * Returns the lookup counters of every code table on this node, with at
+	 * most the given number of unmapped codes for each sending application.
+	 */
+	public List<CodeTableTelemetry> findTelemetry(int limit) {
+		List<CodeTableTelemetry> telemetry = new ArrayList<>();
+		codesByCategory.forEach((category, categoryCodes) -> telemetry.add(new CodeTableTelemetry(category, categoryCodes.getTelemetry(), limit)));
+		return telemetry;
+	}
+
+	public List<CodeEntry> findByCategory(PropertiesCategoriesEnum category) {
+		return codeEntryRepository.findByCategoryOrderByCodeAsc(category);
+	}
+
+	public CodeEntry findById(Long id) {
+		return codeEntryRepository.findById(id).orElseThrow();
+	}
+
+	public CodeEntry save(CodeEntry entry) {
+		codesOf(entry.getCategory());
+		CodeEntry saved = transactionTemplate.execute(status -> {
+			if (entry.getId() != null) {
+				CodeEntry previous = codeEntryRepository.findById(entry.getId()).orElseThrow();
+				if (previous.getCategory() != entry.getCategory()) {
+					codeTableVersionRepository.increment(previous.getCategory());
+				}
+			}
+			CodeEntry result = codeEntryRepository.save(entry);
+			codeTableVersionRepository.increment(entry.getCategory());
+			return result;
+		});
+		refresh();
+		return saved;
+	}
+
+	public void delete(Long id) {
+		transactionTemplate.executeWithoutResult(status -> {
+			CodeEntry entry = codeEntryRepository.findById(id).orElseThrow();
+			codeEntryRepository.delete(entry);
+			codeTableVersionRepository.increment(entry.getCategory());
+		});
+		refresh();
+	}
+
+	/**
+	 * Reloads the categories changed in the database since their table was
+	 * loaded on this node.
+	 */
+	@Scheduled(fixedDelayString = "${codes.poll-interval:30000}", initialDelayString = "${codes.poll-interval:30000}")
+	public void refresh() {
+		if (!isDatabaseLookup()) {
+			return;
+		}
+		try {
+			findVersions().forEach((category, version) -> {
+				Codes categoryCodes = codesByCategory.get(category);
+				if (categoryCodes != null && isManaged(categoryCodes) && categoryCodes.getTable().getVersion() != version) {
+					reload(category);
+				}
+			});
+		} catch (RuntimeException e) {
+			// Keep decoding with the tables already loaded
+			log.warn("Couldn't check the versions of the code tables", e);
+		}
+	}
+
+	private synchronized void reload(PropertiesCategoriesEnum category) {
+		Codes categoryCodes = codesByCategory.get(category);
+		CodeTable table = transactionTemplate.execute(status -> {
+			// The version is read before the codes: a change committed in
+			// between is loaded with the older version and loaded again on
+			// the next poll, never skipped
+			long version = codeTableVersionRepository.findById(category).map(CodeTableVersion::getVersion).orElse(0L);
+			Map<String, String> entries = new HashMap<>();
+			for (CodeEntry entry : codeEntryRepository.findByCategoryOrderByCodeAsc(category)) {
+				if (entry.getValue() != null) {
+					entries.put(entry.getCode(), entry.getValue());
+				}
+			}
+			return CodeTable.of(version, entries);
+		});
+		if (table.getVersion() > categoryCodes.getTable().getVersion()) {
+			categoryCodes.setTable(table);
+			log.info("Loaded version {} of the {} codes, {} entries", table.getVersion(), category, table.size());
+		}
+	}
+
+	private void importIfMissing(Codes category) {
+		if (codeTableVersionRepository.existsById(category.getCategory())) {
+			return;
+		}
+		try {
+			transactionTemplate.executeWithoutResult(status -> {
+				codeTableVersionRepository.save(new CodeTableVersion(category.getCategory(), 1));
+				List<CodeEntry> entries = new ArrayList<>();
+				category.getTable().forEach((code, value) -> entries.add(new CodeEntry(category.getCategory(), code, value)));
+				codeEntryRepository.saveAll(entries);
+			});
+			log.info("Imported {} {} codes from the property files", category.getTable().size(), category.getCategory());
+		} catch (DataIntegrityViolationException e) {
+			// Another node imported them first
+			log.debug("{} codes already imported", category.getCategory());
+		}
+	}
+
+	/**
+	 * Returns whether the codes of the category are kept in the database.
+	 * Mapped tables are too big for it, they are updated by rebuilding their
+	 * file, mapped again on restart.
+	 */
+	private boolean isManaged(Codes category) {
+		return !category.isEnvironmentLookup() && !category.isMapped();
+	}
+
+	private Codes codesOf(PropertiesCategoriesEnum category) {
+		Codes categoryCodes = codesByCategory.get(category);
+		if (categoryCodes == null) {
+			throw new IllegalArgumentException("No code table for category " + category);
+		}
+		return categoryCodes;
+	}
+
+	private boolean isDatabaseLookup() {
+		return DATABASE_LOOKUP.equals(lookup);
+	}
+}
@@ -0,0 +1,42 @@
+package com.example.demopugspring.service;
+
+import java.util.List;
+
+import com.example.demopugspring.properties.CodeTelemetry;
+import com.example.demopugspring.properties.PropertiesCategoriesEnum;
+import com.example.demopugspring.properties.UnmappedCode;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Snapshot of the {@link CodeTelemetry} of a code table, with the codes most
+ * often missing from it.
+ */
+@Getter
+@ToString
+public class CodeTableTelemetry {
+
+	@JsonProperty
+	private final PropertiesCategoriesEnum category;
+	@JsonProperty
+	private final long hits;
+	@JsonProperty
+	private final long misses;
+	@JsonProperty
+	private final long blanks;
+	@JsonProperty
+	private final long meanLookupNanos;
+	@JsonProperty
+	private final List<UnmappedCode> unmapped;
+
+	public CodeTableTelemetry(PropertiesCategoriesEnum category, CodeTelemetry telemetry, int limit) {
+		this.category = category;
+		this.hits = telemetry.getHits();
+		this.misses = telemetry.getMisses();
+		this.blanks = telemetry.getBlanks();
+		this.meanLookupNanos = telemetry.getMeanLookupNanos();
+		this.unmapped = telemetry.getTopUnmapped(limit);
+	}
+}
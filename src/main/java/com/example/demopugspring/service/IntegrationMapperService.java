@@ -2,7 +2,9 @@ package com.example.demopugspring.service;
 
 import java.util.List;
 
+import com.example.demopugspring.engine.plan.IntegrationPlanKey;
 import com.example.demopugspring.model.Integration;
+import com.example.demopugspring.model.Message;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -23,6 +25,16 @@ public class IntegrationMapperService {
 		return integrationMapperRepository.findByIntegration_IdAndActiveTrueOrderByOrderIndex(integration.getId());
 	}
 
+	/**
+	 * Returns the active mappers, in order, of the integration the key routes
+	 * to, with the integration, in two statements whatever their number.
+	 * Empty if there's no such integration or it has no active mappers.
+	 */
+	public List<IntegrationMapper> retrieveActiveIntegrationMappersByRoute(IntegrationPlanKey key) {
+		return integrationMapperRepository.findActiveByRoute(key.getMessageCode(), key.getMessageEvent(),
+				Message.Version.fromString(key.getMessageVersion()), key.getSendingApp(), key.getReceivingApp());
+	}
+
 	public void save(Integration integration, List<IntegrationMapper> integrationMappers) {
 		integrationMapperRepository.deleteAllByIntegration_Id(integration.getId());
 		for(IntegrationMapper intMapper : integrationMappers){
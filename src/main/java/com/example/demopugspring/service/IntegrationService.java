@@ -8,6 +8,8 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import com.example.demopugspring.engine.plan.IntegrationPlanCache;
+import com.example.demopugspring.engine.plan.IntegrationPlanKey;
 import com.example.demopugspring.model.Application;
 import com.example.demopugspring.model.Integration;
 import com.example.demopugspring.model.IntegrationMapper;
@@ -29,6 +31,9 @@ public class IntegrationService {
 	@Autowired
 	private IntegrationMapperService integrationMapperService;
 
+	@Autowired
+	private IntegrationPlanCache integrationPlanCache;
+
 	public List<Integration> findAll() {
 		List<Integration> integrations = new ArrayList<>();
 		integrationRepository.findAll().forEach(integrations::add);
@@ -45,7 +50,9 @@ public class IntegrationService {
 	}
 
 	public Integration save(Integration integration) {
-		return integrationRepository.save(integration);
+		Integration saved = integrationRepository.save(integration);
+		integrationPlanCache.invalidateIntegration(saved.getId());
+		return saved;
 	}
 
 	public Integration updateMappers(Long id, List<Long> mapperIds, List<Long> mapperActive) {
@@ -63,4 +70,13 @@ public class IntegrationService {
 	public Integration findByMessageAndApplications(Message message, Application sending, Application receiving) {
 		return integrationRepository.findByMessageAndSendingAppAndReceivingApp(message, sending, receiving);
 	}
+
+	/**
+	 * Returns the integration the key routes to, with its messages and
+	 * applications, in a single statement. Null without one.
+	 */
+	public Integration findByRoute(IntegrationPlanKey key) {
+		return integrationRepository.findByRoute(key.getMessageCode(), key.getMessageEvent(),
+				Message.Version.fromString(key.getMessageVersion()), key.getSendingApp(), key.getReceivingApp());
+	}
 }
@@ -1,5 +1,6 @@
 package com.example.demopugspring.service;
 
+import com.example.demopugspring.engine.plan.IntegrationPlanCache;
 import com.example.demopugspring.model.Mapper;
 import com.example.demopugspring.repository.MapperRepository;
 import org.checkerframework.checker.nullness.Opt;
@@ -16,6 +17,9 @@ public class MapperService {
 	@Autowired
 	private MapperRepository mapperRepository;
 
+	@Autowired
+	private IntegrationPlanCache integrationPlanCache;
+
 	public List<Mapper> findAll() {
 		List<Mapper> maps = new ArrayList<>();
 		mapperRepository.findAll().forEach(maps::add);
@@ -41,6 +45,8 @@ public class MapperService {
 		List<String> temp = mapper.getKey();
 		temp.removeAll(Collections.singleton(""));
 		mapper.setKey(temp);
-		return mapperRepository.save(mapper);
+		Mapper saved = mapperRepository.save(mapper);
+		integrationPlanCache.invalidateMapper(saved.getId());
+		return saved;
 	}
 }
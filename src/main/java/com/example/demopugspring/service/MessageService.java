@@ -1,5 +1,6 @@
 package com.example.demopugspring.service;
 
+import com.example.demopugspring.engine.plan.IntegrationPlanCache;
 import com.example.demopugspring.model.Message;
 import com.example.demopugspring.repository.MessageRepository;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -14,6 +15,9 @@ public class MessageService {
 	@Autowired
 	private MessageRepository messageRepository;
 
+	@Autowired
+	private IntegrationPlanCache integrationPlanCache;
+
 	public List<Message> findAll() {
 		List<Message> messages = new ArrayList<>();
 		messageRepository.findByOrderByCodeAscEventAscVersionAsc().forEach(messages::add);
@@ -25,7 +29,10 @@ public class MessageService {
 	}
 
 	public Message save(Message message) {
-		return messageRepository.save(message);
+		Message saved = messageRepository.save(message);
+		// Messages are part of every plan's routing key and result message
+		integrationPlanCache.invalidateAll();
+		return saved;
 	}
 
 	public Message findByCodeAndEvent(String code, String event) {
@@ -0,0 +1,197 @@
+package com.example.demopugspring.visitor;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
+
+import ca.uhn.hl7v2.HL7Exception;
+
+/**
+ * Immutable, thread-safe result of parsing a visitor path such as
+ * {@code /PATIENT/PID(#)-3-4-2}: the chain of groups ending in the segment,
+ * plus the field, component and subcomponent to visit.
+ * </p>
+ * A wildcard ({@code #}) repetition is stored as {@link #ALL_REPETITIONS} and a
+ * wildcard field, component or subcomponent number as {@link #ALL_INDEXES}.
+ * Missing parts default to the first field, component or subcomponent, as they
+ * always have in {@link MapperVisitor}.
+ * </p>
+ * Paths are compiled once per distinct string through {@link #compile(String)}
+ * and kept in a bounded cache, since integrations reuse the same few paths for
+ * every message.
+ */
+public final class CompiledPath {
+
+	public static final int ALL_REPETITIONS = -1;
+	public static final int ALL_INDEXES = 0;
+
+	private static final String WILDCARD = "#";
+	private static final int MAX_CACHED_PATHS = 4096;
+	private static final Map<String, CompiledPath> CACHE = new ConcurrentHashMap<>();
+
+	private final String spec;
+	private final List<HAPIPath> groupAndRep;
+	private final int fieldNumber;
+	private final int fieldRepetition;
+	private final int componentNumber;
+	private final int subComponentNumber;
+
+	private CompiledPath(String spec) throws HL7Exception {
+		this.spec = spec;
+
+		StringTokenizer tok = new StringTokenizer(spec, "-", false);
+		if (!tok.hasMoreTokens()) {
+			throw new HL7Exception(HAPIPath.WRONG_PATH);
+		}
+		this.groupAndRep = parseSegmentPathSpec(tok.nextToken());
+
+		HAPIPath field = parsePath(tok);
+		this.fieldNumber = parseIndex(field);
+		this.fieldRepetition = field.getRepetition();
+		this.componentNumber = parseIndex(parsePath(tok));
+		this.subComponentNumber = parseIndex(parsePath(tok));
+	}
+
+	/**
+	 * Returns the compiled form of the given path, parsing it only the first
+	 * time it is seen.
+	 */
+	public static CompiledPath compile(String spec) throws HL7Exception {
+		CompiledPath path = CACHE.get(spec);
+		if (path == null) {
+			path = new CompiledPath(spec);
+			if (CACHE.size() >= MAX_CACHED_PATHS) {
+				evictOne();
+			}
+			CACHE.putIfAbsent(spec, path);
+		}
+		return path;
+	}
+
+	private static void evictOne() {
+		Iterator<String> keys = CACHE.keySet().iterator();
+		if (keys.hasNext()) {
+			keys.next();
+			keys.remove();
+		}
+	}
+
+	public String getSpec() {
+		return spec;
+	}
+
+	/**
+	 * Number of groups in the path, including the segment it ends in.
+	 */
+	public int getDepth() {
+		return groupAndRep.size();
+	}
+
+	/**
+	 * Returns the group (or, for the last one, the segment) at the given depth,
+	 * or {@code null} if the path is not that deep.
+	 */
+	public HAPIPath getGroup(int depth) {
+		return depth < groupAndRep.size() ? groupAndRep.get(depth) : null;
+	}
+
+	public int getFieldNumber() {
+		return fieldNumber;
+	}
+
+	public int getFieldRepetition() {
+		return fieldRepetition;
+	}
+
+	public int getComponentNumber() {
+		return componentNumber;
+	}
+
+	public int getSubComponentNumber() {
+		return subComponentNumber;
+	}
+
+	/**
+	 * Whether any group or segment of the path has a wildcard repetition.
+	 */
+	public boolean hasGroupWildcard() {
+		for (HAPIPath group : groupAndRep) {
+			if (group.getRepetition() == ALL_REPETITIONS) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public String toString() {
+		return spec;
+	}
+
+	/**
+	 * Parses the path of the given tokenizer, if the tokenizer has a valid value
+	 * it will create the respective HAPIPath otherwise it will create a default
+	 * one
+	 */
+	private static HAPIPath parsePath(StringTokenizer tok) throws HL7Exception {
+		HAPIPath result;
+		if (tok.hasMoreTokens()) {
+			result = parseNameAndRepetition(tok.nextToken());
+		} else {
+			result = new HAPIPath();
+		}
+
+		return result;
+	}
+
+	/**
+	 * Parses the groups, and their repetitions, leading to the segment, which is
+	 * the last element of the returned list.
+	 */
+	private static List<HAPIPath> parseSegmentPathSpec(String segmentPathSpec) throws HL7Exception {
+		StringTokenizer segmentPathTokenizer = new StringTokenizer(segmentPathSpec, "/", false);
+		HAPIPath[] groups = new HAPIPath[segmentPathTokenizer.countTokens()];
+
+		for (int i = 0; i < groups.length; i++) {
+			groups[i] = parseNameAndRepetition(segmentPathTokenizer.nextToken());
+		}
+
+		return Collections.unmodifiableList(Arrays.asList(groups));
+	}
+
+	private static HAPIPath parseNameAndRepetition(String nameAndRep) throws HL7Exception {
+		String repToken;
+		String structureName;
+		Integer structureRep = 0;
+		StringTokenizer segRepTokenizer = new StringTokenizer(nameAndRep, "()", false);
+		if (!segRepTokenizer.hasMoreTokens()) {
+			throw new HL7Exception(HAPIPath.WRONG_PATH);
+		}
+		structureName = segRepTokenizer.nextToken();
+		try {
+			if (segRepTokenizer.hasMoreTokens()) {
+				repToken = segRepTokenizer.nextToken();
+				structureRep = (repToken.equals(WILDCARD)) ? ALL_REPETITIONS : Integer.parseInt(repToken);
+			}
+		} catch (NumberFormatException e) {
+			throw new HL7Exception("Invalid integer next to  " + structureName);
+		}
+		return new HAPIPath(structureName, structureRep);
+	}
+
+	private static int parseIndex(HAPIPath path) throws HL7Exception {
+		String name = path.getStructureName();
+		if (name.equals(WILDCARD)) {
+			return ALL_INDEXES;
+		}
+		try {
+			return Integer.parseInt(name);
+		} catch (NumberFormatException e) {
+			throw new HL7Exception("Invalid integer " + name);
+		}
+	}
+}
@@ -24,6 +24,10 @@ public class FilterPrimitivesVisitor extends MapperVisitor {
 	Filter toFilter;
 
 	public FilterPrimitivesVisitor(String path, String value, Filter toFilter) throws HL7Exception {
+		this(CompiledPath.compile(path), value, toFilter);
+	}
+
+	public FilterPrimitivesVisitor(CompiledPath path, String value, Filter toFilter) {
 		super(path, value);
 		primitivesWithCondition = new ArrayList<>();
 		this.toFilter = toFilter;
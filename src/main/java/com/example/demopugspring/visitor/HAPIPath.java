@@ -7,8 +7,8 @@ public class HAPIPath {
 	private static final String DEAFULT_INDEX = "1";
 	private static final Integer DEFAULT_REP = 0;
 
-	private String structureName;
-	private Integer repetition;
+	private final String structureName;
+	private final Integer repetition;
 
 	public HAPIPath() {
 		structureName = DEAFULT_INDEX;
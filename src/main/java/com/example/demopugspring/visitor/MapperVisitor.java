@@ -1,9 +1,5 @@
 package com.example.demopugspring.visitor;
 
-import java.util.LinkedList;
-import java.util.Queue;
-import java.util.StringTokenizer;
-
 import ca.uhn.hl7v2.HL7Exception;
 import ca.uhn.hl7v2.Location;
 import ca.uhn.hl7v2.model.Composite;
@@ -27,45 +23,36 @@ import ca.uhn.hl7v2.model.Type;
  * this function and then Override the visit Primitive function to get the
  * specific functionality.
  * 
+ * The path is parsed only once per distinct string, see {@link CompiledPath}.
+ * The visitor only keeps the depth it reached in the group chain, so the same
+ * instance can visit several messages, one at a time.
+ * 
  */
 
 public class MapperVisitor implements MessageVisitor{
 
 	private boolean itsSubComponent = false;
-	private Queue<HAPIPath> groupAndRep;
-	private HAPIPath field;
-	private HAPIPath component;
-	private HAPIPath subComponent;
+	private final CompiledPath path;
+	private int depth;
 	private String value;
 	
 	public MapperVisitor(String path, String value) throws HL7Exception
 	{
-		groupAndRep = new LinkedList<>();
-		getIndexs(path);
+		this(CompiledPath.compile(path), value);
+	}
+
+	public MapperVisitor(CompiledPath path, String value)
+	{
+		this.path = path;
 		this.value = value;
 	}
 	
 	
 	@Override
 	public boolean start(Message message) throws HL7Exception {
-		HAPIPath element = groupAndRep.poll();
-
-		if (element == null) {
-			throw new HL7Exception(HAPIPath.WRONG_PATH);
-		}
-
-		int elementRep = element.getRepetition();
-		
-		Structure[] structures = message.getAll(element.getStructureName());
-		
-		if (elementRep >= 0) {
-			structures[elementRep].accept(this, Location.UNKNOWN);
-		}
-		else {
-			for (Structure structure : structures) {
-				structure.accept(this, Location.UNKNOWN);
-			}
-		}
+		depth = 0;
+		itsSubComponent = false;
+		visitGroupElement(message, Location.UNKNOWN);
 
 		return false;
 	}
@@ -78,7 +65,18 @@ public class MapperVisitor implements MessageVisitor{
 
 	@Override
 	public boolean start(Group group, Location location) throws HL7Exception {
-		HAPIPath element = groupAndRep.poll();
+		visitGroupElement(group, location);
+
+		return false;
+	}
+
+	/**
+	 * Visits the structure of the given group named at the current depth of the
+	 * path. The depth is restored afterwards so every repetition of a wildcard
+	 * group walks the rest of the chain.
+	 */
+	private void visitGroupElement(Group group, Location location) throws HL7Exception {
+		HAPIPath element = path.getGroup(depth);
 
 		if (element == null) {
 			throw new HL7Exception(HAPIPath.WRONG_PATH);
@@ -88,15 +86,18 @@ public class MapperVisitor implements MessageVisitor{
 
 		Structure[] structures = group.getAll(element.getStructureName());
 
-		if (elementRep >= 0) {
-			structures[elementRep].accept(this, location);
-		} else {
-			for (Structure structure : structures) {
-				structure.accept(this, location);
+		depth++;
+		try {
+			if (elementRep >= 0) {
+				structures[elementRep].accept(this, location);
+			} else {
+				for (Structure structure : structures) {
+					structure.accept(this, location);
+				}
 			}
+		} finally {
+			depth--;
 		}
-
-		return false;
 	}
 
 	@Override
@@ -107,25 +108,14 @@ public class MapperVisitor implements MessageVisitor{
 
 	@Override
 	public boolean start(Segment segment, Location location) throws HL7Exception {
-		String fieldName;
-		int fieldNumber;
-		if (this.field == null) {
-			throw new HL7Exception(HAPIPath.WRONG_PATH);
-		}
-
-		fieldName = this.field.getStructureName();
-		if (fieldName.equals("#")) {
-			fieldNumber = 0;
-		} else {
-			fieldNumber = Integer.parseInt(fieldName);
-		}
+		int fieldNumber = path.getFieldNumber();
 
 		if(fieldNumber > 0) {
-			getField(segment, fieldNumber, this.field.getRepetition(), location);
+			getField(segment, fieldNumber, path.getFieldRepetition(), location);
 		}
 		else {
 			for(int i = 1; i <= segment.numFields(); i++) {
-				getField(segment, i, this.field.getRepetition(), location);
+				getField(segment, i, path.getFieldRepetition(), location);
 			}
 		}
 		
@@ -182,38 +172,18 @@ public class MapperVisitor implements MessageVisitor{
 	@Override
 	public boolean start(Composite type, Location location) throws HL7Exception {
 		Type[] types = type.getComponents(); 
-		HAPIPath hapiPath;
 		if(itsSubComponent){
-
-			hapiPath = subComponent;
-			if (hapiPath == null) {
-				throw new HL7Exception("Wrong path specified.");
-			}
-
-			visitComposites(types, hapiPath, location);
+			visitComposites(types, path.getSubComponentNumber(), location);
 		}
 		else {
 			itsSubComponent = true;
-			
-			hapiPath = this.component;
-			if (hapiPath == null) {
-				throw new HL7Exception("Wrong path specified.");
-			}
-
-			visitComposites(types, hapiPath, location);
+			visitComposites(types, path.getComponentNumber(), location);
 		}
 		return false;
 	}
 	
-	private void visitComposites(Type[] types, HAPIPath hapiPath, Location location) throws HL7Exception
+	private void visitComposites(Type[] types, int primitivetNumber, Location location) throws HL7Exception
 	{
-		int primitivetNumber = 0;
-		String compositeIndex = hapiPath.getStructureName();
-
-		if (!compositeIndex.equals("#")) {
-			primitivetNumber = Integer.parseInt(compositeIndex);
-		}
-
 		if (primitivetNumber > 0) {
 			types[primitivetNumber - 1].accept(this, location);
 		}
@@ -244,81 +214,8 @@ public class MapperVisitor implements MessageVisitor{
 		return false;
 	}
 
-	
-	/**
-	 * Probably this function could be better, but the mission of this function
-	 * it's with a given path retrieve each index of the tree, if the position
-	 * has a wildcard (#) it will perform all repetitions of that element,
-	 * example PID(#)-3-1 it will go for each PID to the position 3-1
-	 * 
-	 * @param spec
-	 *            - the path for a resource
-	 * @return
-	 * @throws HL7Exception
-	 */
-	private void getIndexs(String spec) throws HL7Exception {
-        StringTokenizer tok = new StringTokenizer(spec, "-", false);
-		parseSegmentPathSpec(tok.nextToken());
-		field = parsePath(tok);
-		component = parsePath(tok);
-		subComponent = parsePath(tok);
-    }
-
-	/**
-	 * Parses the path of the given tokenizer, if the tokenizer has a valid
-	 * value it will create the respective HAPIPath otherwise it will create a
-	 * default one
-	 * 
-	 * @param tok
-	 * @return
-	 * @throws HL7Exception
-	 */
-	private HAPIPath parsePath(StringTokenizer tok) throws HL7Exception {
-		HAPIPath result;
-		if (tok.hasMoreTokens()) {
-			result = parseNameAndRepetition(tok.nextToken());
-		} else {
-			result = new HAPIPath();
-		}
-
-		return result;
-	}
-
-	/**
-	 * This method parses if the path given has groups and group reps indicators
-	 * If they do they will be parsed and will be added to the structure, for
-	 * last it will check and parse the segment and its rep if exists.
-	 * 
-	 * @param segmentPathSpec
-	 * @throws HL7Exception
-	 */
-
-	private void parseSegmentPathSpec(String segmentPathSpec) throws HL7Exception {
-		String groupToken;
-		StringTokenizer segmentPathTokenizer = new StringTokenizer(segmentPathSpec, "/", false);
-
-		while (segmentPathTokenizer.hasMoreTokens()) {
-			groupToken = segmentPathTokenizer.nextToken();
-			groupAndRep.offer(parseNameAndRepetition(groupToken));
-		}
-
-	}
-
-	private HAPIPath parseNameAndRepetition(String nameAndRep) throws HL7Exception {
-		String repToken;
-		String structureName;
-		Integer structureRep = 0;
-		StringTokenizer segRepTokenizer = new StringTokenizer(nameAndRep, "()", false);
-		structureName = segRepTokenizer.nextToken();
-		try {
-			if (segRepTokenizer.hasMoreTokens()) {
-				repToken = segRepTokenizer.nextToken();
-				structureRep = (repToken.equals("#")) ? -1 : Integer.parseInt(repToken);
-			}
-		} catch (NumberFormatException e) {
-			throw new HL7Exception("Invalid integer next to  " + structureName);
-		}
-		return new HAPIPath(structureName, structureRep);
+	public CompiledPath getPath() {
+		return path;
 	}
 
 	public String getValue() {
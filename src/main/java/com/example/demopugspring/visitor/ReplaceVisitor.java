@@ -1,18 +1,32 @@
 package com.example.demopugspring.visitor;
 
+import java.util.List;
+
 import ca.uhn.hl7v2.HL7Exception;
 import ca.uhn.hl7v2.Location;
 import ca.uhn.hl7v2.model.Primitive;
+import com.example.demopugspring.replace.ReplaceRule;
+import com.example.demopugspring.replace.ReplaceRuleSet;
 
+/**
+ * Applies every rule of a {@link ReplaceRuleSet} to the primitives of the
+ * path, in one traversal.
+ */
 public class ReplaceVisitor extends MapperVisitor {
 
-	private String regex;
-	private String valueToReplace;
+	private ReplaceRuleSet rules;
 
 	public ReplaceVisitor(String path, String valueToReplace, String regex) throws HL7Exception {
-		super(path, valueToReplace);
-		this.regex = regex;
-		this.valueToReplace = valueToReplace;
+		this(CompiledPath.compile(path), ReplaceRuleSet.of(List.of(new ReplaceRule(regex, valueToReplace))));
+	}
+
+	public ReplaceVisitor(String path, ReplaceRuleSet rules) throws HL7Exception {
+		this(CompiledPath.compile(path), rules);
+	}
+
+	public ReplaceVisitor(CompiledPath path, ReplaceRuleSet rules) {
+		super(path, rules.toString());
+		this.rules = rules;
 
 	}
 
@@ -22,7 +36,7 @@ public class ReplaceVisitor extends MapperVisitor {
 		if (value == null) {
 			value = "";
 		}
-		type.setValue(value.replaceAll(regex, valueToReplace));
+		type.setValue(rules.apply(value));
 		return false;
 	}
 
@@ -12,6 +12,10 @@ public class RetrieveFieldsIfFiltered extends FilterPrimitivesVisitor {
 	ArrayList<Composite> composesFiltered;
 
 	public RetrieveFieldsIfFiltered(String path, String value, Filter filter) throws HL7Exception {
+		this(CompiledPath.compile(path), value, filter);
+	}
+
+	public RetrieveFieldsIfFiltered(CompiledPath path, String value, Filter filter) {
 		super(path, value, filter);
 		composesFiltered = new ArrayList<>();
 	}
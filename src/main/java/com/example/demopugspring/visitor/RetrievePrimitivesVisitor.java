@@ -11,6 +11,10 @@ public class RetrievePrimitivesVisitor extends MapperVisitor {
 	ArrayList<Primitive> primitives;
 
 	public RetrievePrimitivesVisitor(String path, String value) throws HL7Exception {
+		this(CompiledPath.compile(path), value);
+	}
+
+	public RetrievePrimitivesVisitor(CompiledPath path, String value) {
 		super(path, value);
 		primitives = new ArrayList<>();
 
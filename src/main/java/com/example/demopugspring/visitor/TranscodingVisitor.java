@@ -3,16 +3,39 @@ package com.example.demopugspring.visitor;
 import ca.uhn.hl7v2.HL7Exception;
 import ca.uhn.hl7v2.Location;
 import ca.uhn.hl7v2.model.Primitive;
+import com.example.demopugspring.properties.CodeLookups;
 import com.example.demopugspring.properties.Codes;
 
 
 public class TranscodingVisitor extends MapperVisitor {
 
 	Codes codeInterface;
+	CodeLookups lookups;
 
 	public TranscodingVisitor(String path, String value, Codes codeInterface) throws HL7Exception {
+		this(CompiledPath.compile(path), value, codeInterface, new CodeLookups());
+	}
+
+	public TranscodingVisitor(CompiledPath path, String value, Codes codeInterface) {
+		this(path, value, codeInterface, new CodeLookups());
+	}
+
+	/**
+	 * Counts the lookups in the given {@link CodeLookups}, so several visitors
+	 * of one transcoding are recorded together.
+	 */
+	public TranscodingVisitor(String path, String value, Codes codeInterface, CodeLookups lookups) throws HL7Exception {
+		this(CompiledPath.compile(path), value, codeInterface, lookups);
+	}
+
+	public TranscodingVisitor(CompiledPath path, String value, Codes codeInterface, CodeLookups lookups) {
 		super(path, value);
 		this.codeInterface = codeInterface;
+		this.lookups = lookups;
+	}
+
+	public CodeLookups getLookups() {
+		return lookups;
 	}
 
 
@@ -26,7 +49,7 @@ public class TranscodingVisitor extends MapperVisitor {
 
 	private String decodeFieldsCodes(String valueToDecode, Codes codeInterface) throws HL7Exception {
 
-		return codeInterface.getDecodeCode(valueToDecode);
+		return lookups.decode(codeInterface, valueToDecode);
 	}
 
 }
@@ -0,0 +1,128 @@
+package com.example.demopugspring.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.example.demopugspring.engine.Latin1Chars;
+import com.example.demopugspring.engine.RequestBodies;
+
+class IntegrationRestControllerTest {
+
+	private static final String MESSAGE = "MSH|^~\\&|GH|CUFC|ehCOS|CUFC|20201117172651||ADT^A31|1604236349|P|2.4\rPID|||42341818||JOS\u00C9^SEGUNDO";
+
+	private static MockHttpServletRequest request(byte[] body, String contentType) {
+		return request(body, contentType, body.length);
+	}
+
+	/**
+	 * Returns a request declaring a Content-Length of its own, which the mock
+	 * otherwise takes from the body.
+	 */
+	private static MockHttpServletRequest request(byte[] body, String contentType, long contentLength) {
+		MockHttpServletRequest request = new MockHttpServletRequest("POST", "/mapper") {
+			@Override
+			public long getContentLengthLong() {
+				return contentLength;
+			}
+		};
+		request.setContentType(contentType);
+		request.setContent(body);
+		return request;
+	}
+
+	@Test
+	void testBodyWithoutCharsetIsLatin1() throws IOException {
+		CharSequence message = IntegrationRestController.readMessage(request(MESSAGE.getBytes(StandardCharsets.ISO_8859_1), "text/plain"));
+
+		assertTrue(message instanceof Latin1Chars);
+		assertEquals(MESSAGE, message.toString());
+	}
+
+	@Test
+	void testUtf8BodyIsDecoded() throws IOException {
+		CharSequence message = IntegrationRestController.readMessage(request(MESSAGE.getBytes(StandardCharsets.UTF_8), "text/plain;charset=UTF-8"));
+
+		assertEquals(MESSAGE, message.toString());
+	}
+
+	@Test
+	void testShortBodyIsRead() throws IOException {
+		assertEquals("M", IntegrationRestController.readMessage(request(new byte[] { 'M' }, "text/plain")).toString());
+		assertEquals("", IntegrationRestController.readMessage(request(new byte[0], "text/plain")).toString());
+	}
+
+	@Test
+	void testBodyLargerThanTheInitialBufferIsRead() throws IOException {
+		byte[] body = new byte[3 * 1024 * 1024 + 17];
+		Arrays.fill(body, (byte) 'A');
+
+		CharSequence message = IntegrationRestController.readMessage(request(body, "text/plain"));
+
+		assertEquals(body.length, message.length());
+		assertEquals('A', message.charAt(body.length - 1));
+	}
+
+	@Test
+	void testBodyIsReadIntoReleasedArrays() throws IOException {
+		byte[] body = new byte[3 * 1024 * 1024];
+		Arrays.fill(body, (byte) 'A');
+		CharSequence large = IntegrationRestController.readMessage(request(body, "text/plain"));
+		RequestBodies.release(large);
+
+		CharSequence message = IntegrationRestController.readMessage(request(MESSAGE.getBytes(StandardCharsets.UTF_8), "text/plain;charset=UTF-8"));
+		CharSequence ascii = IntegrationRestController.readMessage(request(new byte[] { 'M' }, "text/plain;charset=UTF-8"));
+
+		assertEquals(MESSAGE, message.toString());
+		assertEquals("M", ascii.toString());
+		RequestBodies.release(ascii);
+	}
+
+	@Test
+	void testBodyWithoutContentLengthIsRead() throws IOException {
+		byte[] body = MESSAGE.getBytes(StandardCharsets.ISO_8859_1);
+
+		assertEquals(MESSAGE, IntegrationRestController.readMessage(request(body, "text/plain", -1)).toString());
+	}
+
+	@Test
+	void testBodyShorterThanItsContentLengthIsRejected() {
+		byte[] body = MESSAGE.getBytes(StandardCharsets.ISO_8859_1);
+
+		ResponseStatusException e = assertThrows(ResponseStatusException.class,
+				() -> IntegrationRestController.readMessage(request(body, "text/plain", 64L * 1024 * 1024)));
+		assertEquals(HttpStatus.BAD_REQUEST, e.getStatus());
+	}
+
+	@Test
+	void testBodyLongerThanItsContentLengthIsRejected() {
+		byte[] body = MESSAGE.getBytes(StandardCharsets.ISO_8859_1);
+
+		ResponseStatusException e = assertThrows(ResponseStatusException.class,
+				() -> IntegrationRestController.readMessage(request(body, "text/plain", body.length - 1)));
+		assertEquals(HttpStatus.BAD_REQUEST, e.getStatus());
+	}
+
+	@Test
+	void testUnknownCharsetIsUnsupported() {
+		byte[] body = MESSAGE.getBytes(StandardCharsets.ISO_8859_1);
+
+		ResponseStatusException e = assertThrows(ResponseStatusException.class,
+				() -> IntegrationRestController.readMessage(request(body, "text/plain;charset=x-unknown")));
+		assertEquals(HttpStatus.UNSUPPORTED_MEDIA_TYPE, e.getStatus());
+
+		MockHttpServletRequest request = request(body, null);
+		request.setCharacterEncoding("not a charset");
+		e = assertThrows(ResponseStatusException.class, () -> IntegrationRestController.readMessage(request));
+		assertEquals(HttpStatus.UNSUPPORTED_MEDIA_TYPE, e.getStatus());
+	}
+}
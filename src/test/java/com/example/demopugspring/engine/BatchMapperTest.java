@@ -0,0 +1,109 @@
+package com.example.demopugspring.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+class BatchMapperTest {
+
+	private BatchMapper batchMapper;
+
+	@BeforeEach
+	void setUp() {
+		batchMapper = new BatchMapper();
+		batchMapper.mapperEngine = Mockito.mock(MapperEngine.class);
+		batchMapper.threads = 4;
+		batchMapper.queueCapacity = 2;
+		batchMapper.maxMessages = 100;
+		batchMapper.start();
+
+		Mockito.when(batchMapper.mapperEngine.run(Mockito.anyString())).thenAnswer(invocation -> {
+			String message = invocation.getArgument(0);
+			Response response = new Response();
+			response.setMessage(message.substring(message.indexOf("|P|") - 2, message.indexOf("|P|")));
+			response.setErrorList(new ArrayList<>());
+			if (message.contains("ERR")) {
+				response.getErrorList().add(new MapperError("Global", "No integration found"));
+			}
+			if (message.contains("BOOM")) {
+				throw new IllegalStateException("BOOM");
+			}
+			if (message.contains("STUCK")) {
+				Thread.sleep(10000);
+			}
+			return response;
+		});
+	}
+
+	@AfterEach
+	void tearDown() {
+		batchMapper.stop();
+	}
+
+	@Test
+	void testResponsesKeepTheBatchOrder() {
+		StringBuilder batch = new StringBuilder("BHS|^~\\&\r");
+		for (int i = 10; i < 60; i++) {
+			batch.append("MSH|^~\\&|GH|CUFC|ehCOS|CUFC|20201117172651||ADT^A31|").append(i).append(i % 7 == 0 ? "ERR" : "").append("|P|2.4\r");
+		}
+		batch.append("BTS|50\r");
+
+		BatchResponse response = batchMapper.run(batch.toString());
+
+		assertTrue(response.getErrorList().isEmpty());
+		assertEquals(50, response.getTotal());
+		assertEquals(7, response.getFailed());
+		assertEquals(43, response.getMapped());
+		for (int i = 10; i < 60; i++) {
+			assertEquals(i % 7 == 0 ? "RR" : String.valueOf(i), response.getResponses().get(i - 10).getMessage());
+		}
+	}
+
+	@Test
+	void testUnexpectedExceptionFailsOnlyItsMessage() {
+		BatchResponse response = batchMapper.run("MSH|^~\\&|BOOM|1|P|2.4\rMSH|^~\\&|GH|22|P|2.4\r");
+
+		assertEquals(2, response.getTotal());
+		assertEquals(1, response.getFailed());
+		assertEquals(1, response.getResponses().get(0).getErrorList().size());
+		assertEquals("22", response.getResponses().get(1).getMessage());
+	}
+
+	@Test
+	void testStuckMessageTimesOut() {
+		batchMapper.timeoutMillis = 200;
+
+		BatchResponse response = batchMapper.run("MSH|^~\\&|STUCK|1|P|2.4\rMSH|^~\\&|GH|22|P|2.4\r");
+
+		assertEquals(1, response.getFailed());
+		assertEquals("Not mapped within 200 ms", response.getResponses().get(0).getErrorList().get(0).getError());
+		assertEquals("22", response.getResponses().get(1).getMessage());
+		assertTrue(response.getElapsedMillis() < 5000);
+	}
+
+	@Test
+	void testRejectsBatchesOnceShutDown() {
+		batchMapper.stop();
+
+		assertThrows(RejectedExecutionException.class, () -> batchMapper.run("MSH|^~\\&|GH|11|P|2.4\r"));
+	}
+
+	@Test
+	void testRejectedBatches() {
+		assertEquals(1, batchMapper.run("PID|||42341818\r").getErrorList().size());
+
+		batchMapper.maxMessages = 1;
+		BatchResponse response = batchMapper.run("MSH|^~\\&|GH|11|P|2.4\rMSH|^~\\&|GH|22|P|2.4\r");
+		assertEquals(1, response.getErrorList().size());
+		assertEquals(List.of(), response.getResponses());
+	}
+}
@@ -0,0 +1,65 @@
+package com.example.demopugspring.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import ca.uhn.hl7v2.HL7Exception;
+
+class BatchSplitterTest {
+
+	private static final String ADT_A31 = "MSH|^~\\&|GH|CUFC|ehCOS|CUFC|20201117172651||ADT^A31|1604236349|P|2.4|||AL\r"
+			+ "PID|||42341818^^^JMS^NS|995896186^^^NIF^PT|SEGUNDO^CLIENTE||19821209|M\r";
+
+	private static final String ORU_R01 = "MSH|^~\\&|CWM|CCB|PACS_CCB|CCB|20201203131143||ORU^R01|5b7f2609|P|2.4|||AL\r"
+			+ "PID||JMS5933504|JMS5933504^^^JMS^NS\r"
+			+ "OBX|1|ED|949922|| \n"
+			+ "MSH da consulta anterior\n"
+			+ "Dr(a): Luis Aragao Mata||||||F\r";
+
+	@Test
+	void testMllpFrames() throws HL7Exception {
+		String batch = BatchSplitter.START_BLOCK + ADT_A31 + BatchSplitter.END_BLOCK + "\r\n"
+				+ BatchSplitter.START_BLOCK + ORU_R01 + BatchSplitter.END_BLOCK + "\r";
+
+		assertEquals(List.of(ADT_A31, ORU_R01), BatchSplitter.split(batch));
+	}
+
+	@Test
+	void testBatchFormat() throws HL7Exception {
+		String batch = "FHS|^~\\&|GH|CUFC\r"
+				+ "BHS|^~\\&|GH|CUFC\r"
+				+ ADT_A31
+				+ ORU_R01
+				+ ADT_A31
+				+ "BTS|3\r"
+				+ "FTS|1\r";
+
+		assertEquals(List.of(ADT_A31, ORU_R01, ADT_A31), BatchSplitter.split(batch));
+	}
+
+	@Test
+	void testMessagesWithoutBatchHeaders() throws HL7Exception {
+		assertEquals(List.of(ADT_A31, ORU_R01), BatchSplitter.split(ADT_A31 + ORU_R01));
+		assertEquals(List.of(ADT_A31.replace("\r", "\r\n"), "MSH|^~\\&|GH\n"), BatchSplitter.split(ADT_A31.replace("\r", "\r\n") + "MSH|^~\\&|GH\n"));
+	}
+
+	@Test
+	void testBatchInsideMllpFrame() throws HL7Exception {
+		String batch = BatchSplitter.START_BLOCK + "BHS|^~\\&\r" + ADT_A31 + ORU_R01 + "BTS|2\r" + BatchSplitter.END_BLOCK + "\r";
+
+		assertEquals(List.of(ADT_A31, ORU_R01), BatchSplitter.split(batch));
+	}
+
+	@Test
+	void testInvalidBatches() {
+		assertThrows(HL7Exception.class, () -> BatchSplitter.split(""));
+		assertThrows(HL7Exception.class, () -> BatchSplitter.split("BHS|^~\\&\rBTS|0\r"));
+		assertThrows(HL7Exception.class, () -> BatchSplitter.split("PID|||42341818\r" + ADT_A31));
+		assertThrows(HL7Exception.class, () -> BatchSplitter.split(BatchSplitter.START_BLOCK + ADT_A31));
+		assertThrows(HL7Exception.class, () -> BatchSplitter.split(ADT_A31 + BatchSplitter.START_BLOCK + ORU_R01 + BatchSplitter.END_BLOCK));
+	}
+}
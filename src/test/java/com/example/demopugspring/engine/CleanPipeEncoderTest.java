@@ -0,0 +1,106 @@
+package com.example.demopugspring.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.demopugspring.factory.ContextSingleton;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import ca.uhn.hl7v2.HL7Exception;
+import ca.uhn.hl7v2.model.Message;
+import ca.uhn.hl7v2.util.Terser;
+
+class CleanPipeEncoderTest {
+
+	private static final String ADT_A31 = "MSH|^~\\&|GH|CUFC|ehCOS|CUFC|20201117172651||ADT^A31|1604236349|P|2.4|||AL\r"
+			+ "PID|||42341818^^^JMS^NS~684028^^^CUFC^NS|995896186^^^NIF^PT|SEGUNDO^CLIENTE||19821209|M|||^^^^^1||^^^^^^900000000|||||||||||||||1^PORTUGAL||N\r"
+			+ "PV1||O\r";
+
+	private static final String ORU_R01 = "MSH|^~\\&|CWM|CCTV|GH|CCB|20201103160113||ORU^R01|7ba75e23-f933-4c7f-b5ed-2be0efccc588|P|2.4|||AL\r"
+			+ "PID||43417401|43417401^^^JMS^NS|12586669^^^N_BI|CUNHA^LETICIA SOFIA^||19830224|F\r"
+			+ "ORC|SC|2060770|CCTV2020118074||CM||1.000\r"
+			+ "OBR||2060770|CCTV2020118074|62009903^ECO PELVICA|||20201103144258\r"
+			+ "OBX|1|TX|904476||Relatorio \\T\\ conclusao~Segunda linha||||||F\r";
+
+	@Test
+	void testSameAsEncodeAndClean() throws HL7Exception {
+		assertSameAsEncodeAndClean(parse(ADT_A31));
+		assertSameAsEncodeAndClean(parse(ORU_R01));
+	}
+
+	@Test
+	void testEmptyRepetitionsAreLeftOut() throws HL7Exception {
+		Message message = parse(ADT_A31);
+		Terser terser = new Terser(message);
+		// Terser only adds the repetition right after the last one
+		terser.set("PID-3(2)-1", "");
+		terser.set("PID-3(3)-1", "");
+		terser.set("PID-3(4)-1", "JMS43417401");
+		terser.set("PID-13(1)-1", "");
+		terser.set("PID-13(2)-1", "");
+		terser.set("PID-4(1)-1", "");
+
+		String encoded = CleanPipeEncoder.encode(message);
+
+		assertSameAsEncodeAndClean(message);
+		assertEquals("PID|||42341818^^^JMS^NS~684028^^^CUFC^NS~JMS43417401|995896186^^^NIF^PT|SEGUNDO^CLIENTE||19821209|M|||^^^^^1||^^^^^^900000000|||||||||||||||1^PORTUGAL||N",
+				encoded.split("\r")[1]);
+	}
+
+	@Test
+	void testFieldOfEmptyRepetitionsIsKept() throws HL7Exception {
+		Message message = parse(ADT_A31);
+		Terser terser = new Terser(message);
+		terser.set("PV1-3(0)-1", "");
+		terser.set("PV1-3(1)-1", "");
+
+		assertSameAsEncodeAndClean(message);
+		assertEquals("PV1||O|", CleanPipeEncoder.encode(message).split("\r")[2]);
+	}
+
+	@Test
+	void testTrailingEmptyRepetitionKeepsSegmentSeparator() throws HL7Exception {
+		Message message = parse(ADT_A31);
+		Terser terser = new Terser(message);
+		terser.set("PV1-3(0)-1", "URG");
+		terser.set("PV1-3(1)-1", "");
+
+		String encoded = CleanPipeEncoder.encode(message);
+
+		assertEquals("PV1||O|URG\r", encoded.substring(encoded.indexOf("PV1|")));
+	}
+
+	@Test
+	void testPooledMessageIsWrittenToJsonAndReleased() throws HL7Exception, JsonProcessingException {
+		Message message = parse(ORU_R01);
+		EncodedMessage pooled = CleanPipeEncoder.encodePooled(message, ORU_R01.length());
+		assertEquals(CleanPipeEncoder.encode(message), pooled.toString());
+
+		ObjectMapper mapper = new ObjectMapper();
+		String json = new String(mapper.writeValueAsBytes(response(pooled)), StandardCharsets.UTF_8);
+
+		assertEquals(mapper.writeValueAsString(response(CleanPipeEncoder.encode(message))), json);
+		assertThrows(IllegalStateException.class, pooled::length);
+	}
+
+	private static Response response(CharSequence message) {
+		Response response = new Response();
+		response.setErrorList(List.of());
+		response.setMessage(message);
+		return response;
+	}
+
+	private Message parse(String message) throws HL7Exception {
+		return ContextSingleton.getInstance().getPipeParser().parse(message);
+	}
+
+	private void assertSameAsEncodeAndClean(Message message) throws HL7Exception {
+		assertEquals(MapperEngine.cleanMessage(message.encode()), CleanPipeEncoder.encode(message));
+	}
+}
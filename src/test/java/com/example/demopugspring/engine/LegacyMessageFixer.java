@@ -0,0 +1,132 @@
+package com.example.demopugspring.engine;
+
+import java.util.StringTokenizer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * The regex based fixes {@link MapperEngine#fixMessage(CharSequence)} applied
+ * before {@link MessageFixer}. It is no longer used when mapping, so it lives
+ * with the tests: it is only kept as the reference {@link MessageFixer} must
+ * produce the same output as, and to benchmark one against the other.
+ */
+final class LegacyMessageFixer {
+
+	private static final String SEGMENT_SEPARATOR = "\r";
+	private static final String FIELD_SEPARATOR = "|";
+	private static final String COMPONENT_SEPARATOR = "^";
+
+	private static final String ESCAPED_CARRIAGE_RETURN = "\\.br\\";
+
+	private static final Pattern HL7_ESCAPED_HEX_PATTERN = Pattern.compile("\\\\X[89A-F][0-9A-F]\\\\");
+
+	private static final int NUMBER_PID_SEQ = 39;
+
+	private static final Pattern OBX2_ED_PATTERN = Pattern.compile("(?<=OBX\\|\\d{0,4}\\|)ED");
+	private static final Pattern OBX2_PDF_BASE64_PATTERN = Pattern.compile("(?<=OBX\\|\\d{0,4}\\|)PDF_BASE64");
+	private static final Pattern OBX5_JVBER_PATTERN = Pattern.compile("(?<=OBX\\|\\d{0,4}\\|ED\\|.{0,250}\\|.{0,20}\\|)JVBER");
+
+	private LegacyMessageFixer() {
+	}
+
+	static String fix(String message) {
+		// Replace all LF (0x0A) characters with HL7-escaped CR sequence,
+		// "\.br\"
+		message = message.replace("\n", ESCAPED_CARRIAGE_RETURN);
+
+		// Unescapes all HL7-escaped hexadecimal sequences greater than decimal
+		// 127, "\X80\"
+		message = unescapeNonASCIISequences(message);
+
+		// Iterate each segment and apply specific fixes
+		StringTokenizer messageTokenizer = new StringTokenizer(message, SEGMENT_SEPARATOR);
+		String segment = "";
+		StringBuilder newMessageBuilder = new StringBuilder();
+
+		while (messageTokenizer.hasMoreTokens()) {
+			segment = messageTokenizer.nextToken();
+			if (Character.isWhitespace(segment.charAt(0)))
+				segment = segment.stripLeading();
+
+			switch (segment.substring(0, 3)) {
+			case "PID":
+				newMessageBuilder.append(fixPID(segment));
+				break;
+			case "OBX":
+				newMessageBuilder.append(fixOBX(segment));
+				break;
+			default:
+				newMessageBuilder.append(segment);
+			}
+
+			newMessageBuilder.append(SEGMENT_SEPARATOR);
+		}
+
+		return newMessageBuilder.toString();
+	}
+
+	private static String fixPID(String segment) {
+		String[] fields = segment.split("\\" + FIELD_SEPARATOR);
+
+		StringBuilder newSegmentBuilder = new StringBuilder();
+		for (int i = 0; i < fields.length; i++) {
+			switch (i) {
+			case 13:
+				newSegmentBuilder.append(getFixContactPhone(fields[i]));
+				break;
+			case 14:
+				newSegmentBuilder.append(getFixContactPhone(fields[i]));
+				break;
+			default:
+				newSegmentBuilder.append(fields[i]);
+			}
+
+			newSegmentBuilder.append(FIELD_SEPARATOR);
+		}
+
+		return newSegmentBuilder.toString();
+	}
+
+	private static String getFixContactPhone(String field13Old) {
+		String[] field13NewArray = new String[NUMBER_PID_SEQ];
+		int i = 0;
+		String[] field13OldTokenizer = field13Old.split("\\" + COMPONENT_SEPARATOR);
+		for (String component : field13OldTokenizer) {
+			field13NewArray[i] = component;
+			i++;
+		}
+		if (!StringUtils.isEmpty(field13NewArray[7 - 1])) {
+			field13NewArray[12 - 1] = field13NewArray[7 - 1];
+			field13NewArray[7 - 1] = StringUtils.EMPTY;
+		}
+		StringBuilder field13New = new StringBuilder();
+		for (String field : field13NewArray) {
+			field13New.append(field == null ? StringUtils.EMPTY : field);
+			field13New.append(COMPONENT_SEPARATOR);
+		}
+		return field13New.toString().replaceAll("\\^{2,}$", "");
+	}
+
+	private static String fixOBX(String segment) {
+		String newSegment = OBX2_ED_PATTERN.matcher(segment).replaceFirst("TX");
+		newSegment = OBX2_PDF_BASE64_PATTERN.matcher(newSegment).replaceFirst("ED");
+		return OBX5_JVBER_PATTERN.matcher(newSegment).replaceFirst("^^^^JVBER");
+	}
+
+	private static String unescapeNonASCIISequences(String str) {
+		StringBuffer newString = new StringBuffer();
+		Matcher matcher = HL7_ESCAPED_HEX_PATTERN.matcher(str);
+		while (matcher.find()) {
+			matcher.appendReplacement(newString, String.valueOf(unescapeNonASCIIChar(matcher.group())));
+		}
+		matcher.appendTail(newString);
+
+		return newString.toString();
+	}
+
+	private static char unescapeNonASCIIChar(String str) {
+		return (char) Integer.parseInt(str.substring(2, 4), 16);
+	}
+}
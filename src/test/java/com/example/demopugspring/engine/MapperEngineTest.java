@@ -7,6 +7,7 @@ import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.regex.Pattern;
@@ -15,13 +16,19 @@ import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 
+import com.example.demopugspring.engine.metrics.MappingMetrics;
+import com.example.demopugspring.engine.operation.OperationRegistry;
+import com.example.demopugspring.engine.plan.PlanOptimizer;
+import com.example.demopugspring.engine.plan.PlanStep;
 import com.example.demopugspring.factory.ContextSingleton;
+import com.example.demopugspring.model.Mapper;
 import com.example.demopugspring.model.Mapper.Category;
 import com.example.demopugspring.properties.CountryCodes;
 import com.example.demopugspring.properties.IdentificationCodes;
 import com.example.demopugspring.properties.InsurersCodes;
 
 import ca.uhn.hl7v2.HL7Exception;
+import ca.uhn.hl7v2.model.Group;
 import ca.uhn.hl7v2.model.Message;
 import ca.uhn.hl7v2.util.Terser;
 
@@ -396,6 +403,59 @@ class MapperEngineTest {
 
 	}
 
+	@Test
+	void testWildcardRepetitions() throws HL7Exception {
+		String messageString = "MSH|^~\\&|CWM|CCTV|GH|CCB|20201103160113||ORU^R01|7ba75e23|P|2.4|||AL\r"
+				+ "PID||43417401|43417401^^^JMS^NS|12586669^^^N_BI|CUNHA^LETICIA SOFIA^||19830224|F\r"
+				+ "ORC|SC|2060770|CCTV2020118074||CM\r"
+				+ "OBR||2060770|CCTV2020118074|62009903^ECO PELVICA\r"
+				+ "OBX|1|TX|904476||FIRST\r"
+				+ "ORC|SC|2060771|CCTV2020118075||CM\r"
+				+ "OBR||2060771|CCTV2020118075|62009904^ECO RENAL\r"
+				+ "OBX|1|TX|904477||SECOND\r";
+
+		Message outMessage = ContextSingleton.getInstance().getPipeParser().parse(messageString);
+		Terser t = new Terser(outMessage);
+		List<MapperError> errorList = new ArrayList<>();
+
+		MapperEngine meng = new MapperEngine();
+		meng.mapper(t, t, List.of("/PATIENT_RESULT/ORDER_OBSERVATION(#)/OBR-1"), "#", Category.TEXT, errorList);
+		meng.mapper(t, t, List.of("/PATIENT_RESULT/ORDER_OBSERVATION(#)/OBR-13"), "/PATIENT_RESULT/ORDER_OBSERVATION(#)/OBR-4-2", Category.FIELD, errorList);
+
+		assertTrue(errorList.isEmpty(), errorList::toString);
+		assertEquals("1", t.get("/PATIENT_RESULT/ORDER_OBSERVATION(0)/OBR-1"));
+		assertEquals("2", t.get("/PATIENT_RESULT/ORDER_OBSERVATION(1)/OBR-1"));
+		assertEquals("ECO RENAL", t.get("/PATIENT_RESULT/ORDER_OBSERVATION(1)/OBR-13"));
+		// Nothing written past the last repetition
+		assertEquals(2, ((Group) outMessage.get("PATIENT_RESULT")).getAll("ORDER_OBSERVATION").length);
+	}
+
+	@Test
+	void testSegmentWritesReportUnreachableTarget() throws HL7Exception {
+		String messageString = "MSH|^~\\&|GH|CUFC|ehCOS|TESTE|20201117172651||ADT^A31|1604236349|P|2.4|||AL\r"
+				+ "PID|||42341818^^^JMS^NS||SEGUNDO^CLIENTE||19821209|M\r";
+
+		Message outMessage = ContextSingleton.getInstance().getPipeParser().parse(messageString);
+		Terser t = new Terser(outMessage);
+		Terser tmp = Mockito.spy(new Terser(outMessage));
+		Mockito.doThrow(new HL7Exception("Unreachable")).when(tmp).getSegment("/PID");
+		Mapper name = new Mapper(List.of("/PID-5-1"), "PRIMEIRO", Category.TEXT);
+		name.setId(1L);
+		Mapper sex = new Mapper(List.of("/PID-8"), "F", Category.TEXT);
+		sex.setId(2L);
+		List<PlanStep> steps = PlanOptimizer.optimize(List.of(name, sex));
+		assertEquals(PlanStep.Kind.SEGMENT_WRITES, steps.get(0).getKind());
+		List<MapperError> errorList = new ArrayList<>();
+
+		MapperEngine meng = new MapperEngine();
+		meng.operationRegistry = new OperationRegistry();
+		meng.apply(steps.get(0), new MappingMetrics().integration(1L), outMessage, outMessage, t, tmp, errorList);
+
+		assertEquals(1, errorList.size(), errorList::toString);
+		assertEquals("/PID", errorList.get(0).getField());
+		assertEquals("PRIMEIRO", t.get("/PID-5-1"));
+	}
+
 	@Test
 	void testFixMessage() {
 		String messageString = "MSH|^~\\&|CWM|CCTV|GH|CCB|20201103160113||ORU^R01|7ba75e23-f933-4c7f-b5ed-2be0efccc588|P|2.4|||AL\r"
@@ -0,0 +1,98 @@
+package com.example.demopugspring.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+class MappingExecutorTest {
+
+	private MappingExecutor mappingExecutor;
+	private CountDownLatch started;
+	private CountDownLatch release;
+
+	@BeforeEach
+	void setUp() {
+		mappingExecutor = new MappingExecutor();
+		mappingExecutor.mapperEngine = Mockito.mock(MapperEngine.class);
+		mappingExecutor.threads = 1;
+		mappingExecutor.queueCapacity = 1;
+		mappingExecutor.start();
+
+		started = new CountDownLatch(1);
+		release = new CountDownLatch(0);
+		Mockito.when(mappingExecutor.mapperEngine.run(Mockito.anyString(), Mockito.anyBoolean(), Mockito.anyBoolean(), Mockito.anyBoolean())).thenAnswer(invocation -> {
+			String message = invocation.getArgument(0);
+			started.countDown();
+			release.await(5, TimeUnit.SECONDS);
+			if (message.contains("BOOM")) {
+				throw new IllegalStateException("BOOM");
+			}
+			Response response = new Response();
+			response.setMessage(message);
+			response.setErrorList(new ArrayList<>());
+			return response;
+		});
+	}
+
+	@AfterEach
+	void tearDown() {
+		release.countDown();
+		mappingExecutor.stop();
+	}
+
+	@Test
+	void testMapsOnItsOwnThread() throws Exception {
+		CompletableFuture<Response> future = mappingExecutor.submit("MSH|1", true, false);
+
+		assertEquals("MSH|1", future.get(5, TimeUnit.SECONDS).getMessage());
+		Mockito.verify(mappingExecutor.mapperEngine).run("MSH|1", true, false, true);
+	}
+
+	@Test
+	void testRejectsWhenQueueIsFull() throws Exception {
+		release = new CountDownLatch(1);
+		mappingExecutor.submit("MSH|1", false, false);
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		mappingExecutor.submit("MSH|2", false, false);
+
+		assertThrows(RejectedExecutionException.class, () -> mappingExecutor.submit("MSH|3", false, false));
+		assertEquals(1, mappingExecutor.getRejected());
+		assertEquals(1, mappingExecutor.getQueued());
+	}
+
+	@Test
+	void testTimedOutMessageIsSkipped() throws Exception {
+		release = new CountDownLatch(1);
+		CompletableFuture<Response> first = mappingExecutor.submit("MSH|1", false, false);
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		CompletableFuture<Response> waiting = mappingExecutor.submit("MSH|2", false, false);
+
+		mappingExecutor.timeOut(waiting);
+		release.countDown();
+
+		assertEquals("MSH|1", first.get(5, TimeUnit.SECONDS).getMessage());
+		mappingExecutor.submit("MSH|3", false, false).get(5, TimeUnit.SECONDS);
+		Mockito.verify(mappingExecutor.mapperEngine, Mockito.never()).run(Mockito.eq("MSH|2"), Mockito.anyBoolean(), Mockito.anyBoolean(), Mockito.anyBoolean());
+		assertEquals(1, mappingExecutor.getTimedOut());
+	}
+
+	@Test
+	void testUnexpectedExceptionCompletesExceptionally() {
+		CompletableFuture<Response> future = mappingExecutor.submit("MSH|BOOM", false, false);
+
+		ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+		assertEquals("BOOM", e.getCause().getMessage());
+	}
+}
@@ -0,0 +1,123 @@
+package com.example.demopugspring.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class MessageFixerTest {
+
+	private static final String ORU_R01 = "MSH|^~\\&|CWM|CCTV|GH|CCB|20201103160113||ORU^R01|7ba75e23-f933-4c7f-b5ed-2be0efccc588|P|2.4|||AL\r"
+			+ "PID||43417401|43417401^^^JMS^NS|12586669^^^N_BI|CUNHA^LETÍCIA SOFIA^||19830224|F|||RUA VALE DE ROSAS Nº 7^^PONTE DO ROL^^2560-150^||^^^^^^915369804|^^^^^^|||||383543824|||||||||||N\r"
+			+ "PV1||Consultas|||||||||1||||||||5486248|||S\r"
+			+ "ORC|SC|2060770|CCTV2020118074||CM||1.000\r"
+			+ "OBR||2060770|CCTV2020118074|62009903^ECO PELVICA|||20201103144258|20201103160113||||||||||CCTV2020118074|||US|20201103040103||US|||1^^^20201103040103|||||16265|16265|16265&&José Rebelo||||||||||||CCTV2020118074^^ACCESSION_NUMBER\r"
+			+ "OBX|1|PDF_BASE64|904476||JVBERi0xLjQKJeLjz9MKCONCATENATED_BASE_64_STRINGZgo2MTg0OQolJUVPRgo=||||||F\r";
+
+	private static final String ORU_R01_TEXT = "MSH|^~\\&|CWM|CCB|PACS_CCB|CCB|20201203131143||ORU^R01|5b7f2609-9977-4a56-b01c-880a6325f1d7|P|2.4|||AL\r"
+			+ "PID||JMS5933504|JMS5933504^^^JMS^NS|^^^N_BI|CARONA^MARIA ROSA ANUNCIA\\XC7\\\\XC3\\O^||19700922|F|||ESTRADA SERRA DO SOCORRO Nº  10^^ENXARA DO BISPO^^2665-059^||^^^^^^919584765|^^^^^^|||||378783230|||||||||||N\r"
+			+ "OBR||1392472|CCB2020027482|62000125^ECO PARTES MOLES|||20201203113619|20201203131143||||||||||CCB2020027482|||US|||||30363&&Lu\\XED\\s Arag\\XE3\\o Mata\r"
+			+ "OBX|1|ED|949922|| \n"
+			+ "\\T\\Ecografia da parede abdominal\n"
+			+ "\\S\\Observamos diastase dos rectos na regiao supra-umbilical.\n"
+			+ "\n"
+			+ "Dr(a): Luis Aragao Mata\n"
+			+ "OM: 30363||||||F\r";
+
+	/**
+	 * Messages exercising the corner cases of each fix, the output has to be the
+	 * same as the one of the regex based implementation.
+	 */
+	private static final List<String> CORPUS = List.of(
+			ORU_R01,
+			ORU_R01_TEXT,
+			"MSH|^~\\&|GH|CUFC|ehCOS||20201117172651||ADT^A40|1604236349|P|2.4|||AL\r"
+					+ "PID|||42341818^^^JMS^NS~684028^^^CUFC^NS|CUFC^^^NIF^PT|SEGUNDO||19821209|M|||^^^^^1||^^^^^^900000000-ST|||||||||||||||1^PORTUGAL||N\r"
+					+ "OBX||||||",
+			"\r\r\n  MSH|^~\\&|\r\t PID|x||\r",
+			"PID|" + "|".repeat(12) + "^^^^^^9^^^^^x|a^b^c^d^e^f^g^h^i^j^k^l^m^n\r",
+			"PID|" + "|".repeat(12) + "^".repeat(38) + "x\r",
+			"PID|" + "|".repeat(12) + "^".repeat(37) + "x^^\r",
+			"PID|" + "|".repeat(12) + "|^^^^^^^^^^^^\r",
+			"OBX|1|ED|904476||JVBERi0x\r",
+			"OBX|1|ED|x|OBX|2|PDF_BASE64|y||JVBER\r",
+			"OBX|12345|PDF_BASE64|y||JVBER\r",
+			"OBX|1|PDF_BASE64|a|b|c|d|JVBER|JVBER\r",
+			"OBX||PDF_BASE64|" + "x".repeat(250) + "|" + "y".repeat(20) + "|JVBER\r",
+			"OBX||PDF_BASE64|" + "x".repeat(251) + "|" + "y".repeat(20) + "|JVBER\r",
+			"OBX||PDF_BASE64|" + "x".repeat(250) + "|" + "y".repeat(21) + "|JVBER\r",
+			"OBX|1234|PDF_BASE64|" + "😀".repeat(100) + "|" + "y".repeat(20) + "|JVBER\r",
+			"OBX|1|PDF_BASE64|a\u0085b||JVBER\r",
+			"OBX|1|PDF_BASE64|\\X85\\||JVBER\r",
+			"OBX|1|TX|a\n\\X8A\\\nX8A\nX8A\\b\r",
+			"OBX|1|TX|\\Xc3\\\\X7F\\\\X8A\\XC3\\\r");
+
+	@Test
+	void testCorpusMatchesLegacyFixes() {
+		for (String message : CORPUS) {
+			assertSameFix(message);
+		}
+	}
+
+	@Test
+	void testGeneratedMessagesMatchLegacyFixes() {
+		Random random = new Random(20201117);
+		for (int i = 0; i < 1000; i++) {
+			assertSameFix(generate(random));
+		}
+	}
+
+	@Test
+	void testBufferIsReused() {
+		String first = MessageFixer.fix(ORU_R01);
+		MessageFixer.fix(ORU_R01_TEXT);
+
+		assertEquals(first, MessageFixer.fix(ORU_R01));
+	}
+
+	@Test
+	void testBytesAreFixedAsLatin1() {
+		for (String message : List.of(ORU_R01, ORU_R01_TEXT)) {
+			byte[] bytes = message.getBytes(StandardCharsets.ISO_8859_1);
+
+			assertEquals(MessageFixer.fix(message), MessageFixer.fix(new Latin1Chars(bytes)));
+		}
+	}
+
+	private static final String[] PIECES = { "PID|", "OBX|", "OBX|1|", "OBX|12345|", "ED", "ED|", "PDF_BASE64", "JVBER", "|", "||", "^", "^^^^^^",
+			"\r", "\r\r", "\n", "\\", "\\X8A\\", "\\XC3\\", "\\X8A", "\\X7F\\", "X9F\\", " ", "\t", "\u0085", "\u2028", "😀", "1", "JMS^NS",
+			"900000000-ST", "Nº" };
+
+	private String generate(Random random) {
+		StringBuilder message = new StringBuilder(random.nextBoolean() ? "PID|" : "OBX|");
+		int pieces = random.nextInt(60);
+		for (int i = 0; i < pieces; i++) {
+			switch (random.nextInt(8)) {
+			case 0:
+				message.append("a".repeat(random.nextInt(300)));
+				break;
+			case 1:
+				message.append("^c".repeat(random.nextInt(45)));
+				break;
+			default:
+				message.append(PIECES[random.nextInt(PIECES.length)]);
+			}
+		}
+		return message.toString();
+	}
+
+	private void assertSameFix(String message) {
+		assertEquals(fix(message, true), fix(message, false), message);
+	}
+
+	private String fix(String message, boolean legacy) {
+		try {
+			return legacy ? LegacyMessageFixer.fix(message) : MessageFixer.fix(message);
+		} catch (RuntimeException e) {
+			return e.getClass().getName();
+		}
+	}
+}
@@ -0,0 +1,74 @@
+package com.example.demopugspring.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.demopugspring.factory.ContextSingleton;
+
+import ca.uhn.hl7v2.HL7Exception;
+import ca.uhn.hl7v2.model.Message;
+import ca.uhn.hl7v2.parser.PipeParser;
+import ca.uhn.hl7v2.util.Terser;
+
+class MessageHeaderRewriterTest {
+
+	private static final String ADT_A31 = "MSH|^~\\&|GH|CUFC|ehCOS|CUFC|20201117172651||ADT^A31|1604236349|P|2.4|||AL\r" +
+			"PID|||42341818^^^JMS^NS~684028^^^CUFC^NS|995896186^^^NIF^PT|SEGUNDO||19821209|M|||^^^^^1||^^^^^^900000000|||||||||||||||1^PORTUGAL||N\r";
+
+	private static final String ORU_R01 = "MSH|^~\\&|CWM|CCTV|GH|CCB|20201103160113||ORU^R01|7ba75e23-f933-4c7f-b5ed-2be0efccc588|P|2.4|||AL\r"
+			+ "PID||43417401|43417401^^^JMS^NS|12586669^^^N_BI|CUNHA^LETICIA SOFIA^||19830224|F|||RUA VALE DE ROSAS^^PONTE DO ROL^^2560-150^||^^^^^^915369804|^^^^^^|||||383543824|||||||||||N\r"
+			+ "PV1||Consultas|||||||||1||||||||5486248|||S\r"
+			+ "ORC|SC|2060770|CCTV2020118074||CM||1.000\r"
+			+ "OBR||2060770|CCTV2020118074|62009903^ECO PELVICA|||20201103144258|20201103160113||||||||||CCTV2020118074|||US|20201103040103||US|||1^^^20201103040103\r"
+			+ "OBX|1|ED|904476||^^^^JVBERi0xLjQKJeLjz9MKCONCATENATED_BASE_64_STRINGZgo2MTg0OQolJUVPRgo=||||||F\r";
+
+	@Test
+	void testRetargetSameVersion() throws HL7Exception {
+		assertRetargetMatchesReparse(ADT_A31, "ADT", "A08", "2.4");
+	}
+
+	@Test
+	void testRetargetNewVersion() throws HL7Exception {
+		assertRetargetMatchesReparse(ADT_A31, "ADT", "A31", "2.5.1");
+		assertRetargetMatchesReparse(ORU_R01, "ORU", "R01", "2.5.1");
+	}
+
+	@Test
+	void testRetargetKeepsOtherComponents() {
+		String message = "MSH|^~\\&|GH|CUFC|ehCOS|CUFC|20201117172651||ADT^A31^ADT_A05|1604236349|P|2.4\rPID|||1\r";
+
+		String retargeted = MessageHeaderRewriter.retarget(message, "ADT", "A08", "2.5.1", "8859/1");
+
+		assertEquals("MSH|^~\\&|GH|CUFC|ehCOS|CUFC|20201117172651||ADT^A08^ADT_A05|1604236349|P|2.5.1||||||8859/1\rPID|||1\r", retargeted);
+	}
+
+	@Test
+	void testRetargetIgnoresMessagesWithoutHeader() {
+		String message = "PID|||1\r";
+
+		assertEquals(message, MessageHeaderRewriter.retarget(message, "ADT", "A08", "2.5.1", "8859/1"));
+	}
+
+	/**
+	 * The rewritten message must parse to the same outgoing message the engine
+	 * used to build by parsing, setting the header with a Terser, encoding and
+	 * parsing again.
+	 */
+	private void assertRetargetMatchesReparse(String messageString, String code, String event, String version) throws HL7Exception {
+		PipeParser parser = ContextSingleton.getInstance().getPipeParser();
+
+		Message volatileMessage = parser.parse(messageString);
+		Terser volatileTerser = new Terser(volatileMessage);
+		volatileTerser.set("MSH-9-1", code);
+		volatileTerser.set("MSH-9-2", event);
+		volatileTerser.set("MSH-12", version);
+		volatileTerser.set("MSH-18", "8859/1");
+		Message expected = parser.parse(volatileMessage.encode());
+
+		Message actual = parser.parse(MessageHeaderRewriter.retarget(messageString, code, event, version, "8859/1"));
+
+		assertEquals(expected.getClass(), actual.getClass());
+		assertEquals(expected.encode(), actual.encode());
+	}
+}
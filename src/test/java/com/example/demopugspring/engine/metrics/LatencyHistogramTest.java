@@ -0,0 +1,64 @@
+package com.example.demopugspring.engine.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class LatencyHistogramTest {
+
+	@Test
+	void testBuckets() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(TimeUnit.MICROSECONDS.toNanos(10));
+		histogram.record(TimeUnit.MICROSECONDS.toNanos(11));
+		histogram.record(TimeUnit.MILLISECONDS.toNanos(3));
+		histogram.record(TimeUnit.SECONDS.toNanos(30));
+
+		long[] counts = histogram.getCumulativeCounts();
+		assertEquals(LatencyHistogram.BOUNDS.length + 1, counts.length);
+		assertEquals(1, counts[0]);
+		assertEquals(2, counts[1]);
+		assertEquals(2, counts[7]);
+		assertEquals(3, counts[8]);
+		assertEquals(3, counts[LatencyHistogram.BOUNDS.length - 1]);
+		assertEquals(4, counts[LatencyHistogram.BOUNDS.length]);
+		assertEquals(4, histogram.getCount());
+		assertEquals(TimeUnit.MICROSECONDS.toNanos(10 + 11 + 3000 + 30_000_000), histogram.getTotalNanos());
+	}
+
+	@Test
+	void testQuantiles() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0, histogram.getQuantileNanos(0.5));
+		assertEquals(0, histogram.getMeanNanos());
+		for (int i = 0; i < 99; i++) {
+			histogram.record(TimeUnit.MICROSECONDS.toNanos(40));
+		}
+		histogram.record(TimeUnit.MILLISECONDS.toNanos(20));
+
+		assertEquals(TimeUnit.MICROSECONDS.toNanos(50), histogram.getQuantileNanos(0.5));
+		assertEquals(TimeUnit.MICROSECONDS.toNanos(50), histogram.getQuantileNanos(0.99));
+		assertEquals(TimeUnit.MILLISECONDS.toNanos(25), histogram.getQuantileNanos(1));
+	}
+
+	@Test
+	void testConcurrentRecords() throws InterruptedException {
+		LatencyHistogram histogram = new LatencyHistogram();
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread(() -> {
+				for (int i = 0; i < 10_000; i++) {
+					histogram.record(i * 1000L);
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(40_000, histogram.getCount());
+		assertEquals(40_000, histogram.getCumulativeCounts()[LatencyHistogram.BOUNDS.length]);
+	}
+}
@@ -0,0 +1,79 @@
+package com.example.demopugspring.engine.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.demopugspring.model.Mapper;
+import com.example.demopugspring.model.Mapper.Category;
+
+class MappingMetricsTest {
+
+	private static Mapper mapper(long id, Category category) {
+		Mapper mapper = new Mapper(List.of("PID-5"), "X", category);
+		mapper.setId(id);
+		return mapper;
+	}
+
+	@Test
+	void testMapperMetrics() {
+		MappingMetrics metrics = new MappingMetrics();
+		IntegrationMetrics integration = metrics.integration(7L);
+		assertSame(integration, metrics.integration(7L));
+
+		Mapper text = mapper(1, Category.TEXT);
+		MapperMetrics textMetrics = integration.mapper(text);
+		assertSame(textMetrics, integration.mapper(text));
+		textMetrics.record(TimeUnit.MILLISECONDS.toNanos(2), 0);
+		integration.mapper(mapper(2, Category.REPLACE)).record(TimeUnit.MILLISECONDS.toNanos(30), 1);
+		integration.record(TimeUnit.MILLISECONDS.toNanos(40), 1);
+
+		List<MapperMetrics> slowest = metrics.findSlowestMappers(1);
+		assertEquals(1, slowest.size());
+		assertEquals(2, slowest.get(0).getMapperId().longValue());
+		assertEquals(1, slowest.get(0).getErrors());
+		assertEquals(1, integration.getFailed());
+
+		// Changed to another category, the mapper starts over
+		assertNotSame(textMetrics, integration.mapper(mapper(1, Category.FIELD)));
+		assertEquals(0, integration.mapper(mapper(1, Category.FIELD)).getLatency().getCount());
+	}
+
+	@Test
+	void testUnsavedMapperIsNotKept() {
+		MappingMetrics metrics = new MappingMetrics();
+		IntegrationMetrics integration = metrics.integration(7L);
+
+		MapperMetrics unsaved = integration.mapper(new Mapper(List.of("PID-5"), "X", Category.TEXT));
+		unsaved.record(TimeUnit.MILLISECONDS.toNanos(2), 0);
+		assertEquals(Category.TEXT, unsaved.getCategory());
+		assertTrue(integration.getMappers().isEmpty());
+		assertTrue(metrics.toPrometheus().contains("mapper_integration_failed_messages_total{integration=\"7\"} 0\n"));
+	}
+
+	@Test
+	void testPrometheusFormat() {
+		MappingMetrics metrics = new MappingMetrics();
+		metrics.record(MappingMetrics.Stage.PARSE, TimeUnit.MICROSECONDS.toNanos(200));
+		metrics.recordUnrouted();
+		metrics.integration(3L).mapper(mapper(5, Category.TEXT)).record(TimeUnit.MICROSECONDS.toNanos(20), 2);
+
+		String text = metrics.toPrometheus();
+		assertTrue(text.contains("# TYPE mapper_stage_seconds histogram\n"), text);
+		assertTrue(text.contains("mapper_stage_seconds_bucket{stage=\"parse\",le=\"1.0E-4\"} 0\n"), text);
+		assertTrue(text.contains("mapper_stage_seconds_bucket{stage=\"parse\",le=\"2.5E-4\"} 1\n"), text);
+		assertTrue(text.contains("mapper_stage_seconds_bucket{stage=\"parse\",le=\"+Inf\"} 1\n"), text);
+		assertTrue(text.contains("mapper_stage_seconds_count{stage=\"parse\"} 1\n"), text);
+		assertTrue(text.contains("mapper_stage_seconds_sum{stage=\"parse\"} 2.0E-4\n"), text);
+		assertTrue(text.contains("mapper_unrouted_messages_total 1\n"), text);
+		assertTrue(text.contains("mapper_mapper_seconds_count{integration=\"3\",mapper=\"5\",category=\"TEXT\"} 1\n"), text);
+		assertTrue(text.contains("mapper_mapper_errors_total{integration=\"3\",mapper=\"5\",category=\"TEXT\"} 2\n"), text);
+		assertTrue(text.contains("mapper_integration_failed_messages_total{integration=\"3\"} 0\n"), text);
+	}
+}
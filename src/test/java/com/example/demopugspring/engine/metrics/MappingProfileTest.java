@@ -0,0 +1,47 @@
+package com.example.demopugspring.engine.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.demopugspring.model.Mapper;
+import com.example.demopugspring.model.Mapper.Category;
+
+class MappingProfileTest {
+
+	@Test
+	void testEntries() {
+		MappingProfile profile = new MappingProfile();
+		profile.stage(MappingMetrics.Stage.PARSE);
+		Mapper mapper = new Mapper(List.of("PID-5"), "X", Category.TEXT);
+		mapper.setId(9L);
+		profile.mark();
+		StringBuilder allocating = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			allocating.append(i);
+		}
+		profile.mapper(3, mapper);
+		assertNull(profile.getTotal());
+		profile.finish();
+
+		List<ProfileEntry> entries = profile.getEntries();
+		assertEquals(2, entries.size());
+		assertEquals("PARSE", entries.get(0).getStage());
+		assertNull(entries.get(0).getOrderIndex());
+		assertEquals("MAPPER", entries.get(1).getStage());
+		assertEquals(3, entries.get(1).getOrderIndex().intValue());
+		assertEquals(9, entries.get(1).getMapperId().longValue());
+		assertEquals(Category.TEXT, entries.get(1).getCategory());
+		assertTrue(entries.get(1).getWallNanos() > 0);
+		assertTrue(entries.get(1).getAllocatedBytes() != 0, allocating::toString);
+
+		ProfileEntry total = profile.getTotal();
+		assertEquals("TOTAL", total.getStage());
+		assertTrue(total.getWallNanos() >= entries.get(0).getWallNanos() + entries.get(1).getWallNanos());
+		assertTrue(total.getCpuNanos() == -1 || total.getCpuNanos() >= entries.get(1).getCpuNanos());
+	}
+}
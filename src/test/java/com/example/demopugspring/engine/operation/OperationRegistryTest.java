@@ -0,0 +1,34 @@
+package com.example.demopugspring.engine.operation;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.demopugspring.model.Mapper.Category;
+
+class OperationRegistryTest {
+
+	@Test
+	void testEveryCategoryIsMapped() {
+		OperationRegistry registry = new OperationRegistry();
+
+		for (Category category : Category.values()) {
+			assertTrue(registry.supports(category) || OperationRegistry.ENGINE_CATEGORIES.contains(category)
+					|| OperationRegistry.UNMAPPED_CATEGORIES.contains(category), category.name());
+		}
+	}
+
+	@Test
+	void testMissingOperationFailsAtStartup() {
+		Map<Category, OperationFactory> registered = new EnumMap<>(Category.class);
+		registered.put(Category.TEXT, Text::new);
+
+		IllegalStateException e = assertThrows(IllegalStateException.class, () -> new OperationRegistry(registered));
+
+		assertTrue(e.getMessage().contains("FIELD"));
+	}
+}
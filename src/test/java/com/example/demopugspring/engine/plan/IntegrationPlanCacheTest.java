@@ -0,0 +1,231 @@
+package com.example.demopugspring.engine.plan;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.example.demopugspring.model.Mapper;
+import com.example.demopugspring.model.Message;
+
+class IntegrationPlanCacheTest {
+
+	private static final IntegrationPlanKey KEY = key("SEND");
+
+	private IntegrationPlanCache cache;
+	private long now;
+	private int loads;
+
+	@BeforeEach
+	void setUp() {
+		cache = new IntegrationPlanCache();
+		cache.clock = () -> now;
+	}
+
+	@Test
+	void testHitDoesNotLoad() throws Exception {
+		IntegrationPlan plan = plan(1L);
+
+		assertSame(plan, cache.get(KEY, key -> load(plan)));
+		assertSame(plan, cache.get(KEY, key -> load(plan(2L))));
+
+		assertEquals(1, loads);
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+		assertEquals(0.5, cache.getHitRate());
+	}
+
+	@Test
+	void testKeyWithoutIntegrationIsCachedForLess() throws Exception {
+		assertNull(cache.get(KEY, key -> load(null)));
+		assertNull(cache.get(KEY, key -> load(null)));
+		assertEquals(1, loads);
+
+		now += TimeUnit.MILLISECONDS.toNanos(cache.unroutedTtlMillis);
+		assertNull(cache.get(KEY, key -> load(null)));
+		assertEquals(2, loads);
+		assertEquals(1, cache.getExpirations());
+	}
+
+	@Test
+	void testPlanExpires() throws Exception {
+		cache.get(KEY, key -> load(plan(1L)));
+
+		now += TimeUnit.MILLISECONDS.toNanos(cache.ttlMillis) - 1;
+		cache.get(KEY, key -> load(plan(1L)));
+		assertEquals(1, loads);
+
+		now++;
+		cache.get(KEY, key -> load(plan(1L)));
+		assertEquals(2, loads);
+	}
+
+	@Test
+	void testZeroTtlNeverExpires() throws Exception {
+		cache.ttlMillis = 0;
+		cache.get(KEY, key -> load(plan(1L)));
+
+		now = Long.MAX_VALUE - 1;
+		cache.get(KEY, key -> load(plan(1L)));
+		assertEquals(1, loads);
+	}
+
+	@Test
+	void testFullCacheEvictsClosestToExpiring() throws Exception {
+		cache.maxSize = 2;
+		cache.get(key("A"), key -> load(plan(1L)));
+		now++;
+		cache.get(key("B"), key -> load(plan(2L)));
+		now++;
+		cache.get(key("C"), key -> load(plan(3L)));
+
+		assertEquals(2, cache.size());
+		assertEquals(1, cache.getEvictions());
+		cache.get(key("B"), key -> load(plan(2L)));
+		cache.get(key("C"), key -> load(plan(3L)));
+		assertEquals(3, loads);
+	}
+
+	@Test
+	void testFullCacheDropsExpiredFirst() throws Exception {
+		cache.maxSize = 2;
+		cache.get(key("A"), key -> load(plan(1L)));
+		cache.get(key("B"), key -> load(null));
+		now += TimeUnit.MILLISECONDS.toNanos(cache.unroutedTtlMillis);
+		cache.get(key("C"), key -> load(plan(3L)));
+
+		assertEquals(0, cache.getEvictions());
+		assertEquals(1, cache.getExpirations());
+		cache.get(key("A"), key -> load(plan(1L)));
+		assertEquals(3, loads);
+	}
+
+	@Test
+	void testInvalidatingIntegrationDropsKeysWithoutOne() throws Exception {
+		cache.get(key("A"), key -> load(plan(1L)));
+		cache.get(key("B"), key -> load(plan(2L)));
+		cache.get(key("C"), key -> load(null));
+
+		cache.invalidateIntegration(1L);
+
+		assertEquals(1, cache.size());
+		cache.get(key("B"), key -> load(plan(2L)));
+		assertEquals(3, loads);
+	}
+
+	@Test
+	void testPlanLoadedDuringInvalidationIsNotStored() throws Exception {
+		cache.get(KEY, key -> {
+			cache.invalidateAll();
+			return load(plan(1L));
+		});
+
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	void testInvalidationWhileStoringIsNotMissed() throws Exception {
+		cache.clock = () -> {
+			// runs in store, after the generation was checked and before the put
+			cache.invalidateAll();
+			return now;
+		};
+
+		cache.get(KEY, key -> load(plan(1L)));
+
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	void testConcurrentLoadsAndInvalidationsLeaveNoStalePlan() throws Exception {
+		AtomicLong version = new AtomicLong(1);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<?>> tasks = new ArrayList<>();
+			for (int i = 0; i < 3; i++) {
+				tasks.add(executor.submit(() -> {
+					for (int j = 0; j < 20000; j++) {
+						cache.get(KEY, key -> plan(version.get()));
+					}
+					return null;
+				}));
+			}
+			tasks.add(executor.submit(() -> {
+				for (int j = 0; j < 20000; j++) {
+					version.incrementAndGet();
+					cache.invalidateAll();
+				}
+				return null;
+			}));
+			for (Future<?> task : tasks) {
+				task.get(30, TimeUnit.SECONDS);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		assertEquals(version.get(), cache.get(KEY, key -> plan(-1L)).getIntegrationId().longValue());
+	}
+
+	@Test
+	void testConcurrentMissesDontOverfill() throws Exception {
+		cache.maxSize = 8;
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<?>> tasks = new ArrayList<>();
+			for (int i = 0; i < 4; i++) {
+				int thread = i;
+				tasks.add(executor.submit(() -> {
+					for (int j = 0; j < 5000; j++) {
+						cache.get(key(thread + "-" + j), key -> plan(1L));
+					}
+					return null;
+				}));
+			}
+			for (Future<?> task : tasks) {
+				task.get(30, TimeUnit.SECONDS);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		assertTrue(cache.size() <= cache.maxSize);
+	}
+
+	@Test
+	void testPrometheusCounters() throws Exception {
+		cache.get(KEY, key -> load(plan(1L)));
+		cache.get(KEY, key -> load(plan(1L)));
+
+		String text = cache.toPrometheus();
+
+		assertTrue(text.contains("mapper_plan_cache_requests_total{result=\"hit\"} 1\n"));
+		assertTrue(text.contains("mapper_plan_cache_requests_total{result=\"miss\"} 1\n"));
+		assertTrue(text.contains("mapper_plan_cache_entries 1\n"));
+	}
+
+	private IntegrationPlan load(IntegrationPlan plan) {
+		loads++;
+		return plan;
+	}
+
+	private static IntegrationPlan plan(Long integrationId) {
+		return IntegrationPlan.of(integrationId, new Message("ADT", "A01", Message.Version.v25),
+				List.of(new Mapper(List.of("/PID-5"), "X", Mapper.Category.TEXT)));
+	}
+
+	private static IntegrationPlanKey key(String sendingApp) {
+		return new IntegrationPlanKey("ADT", "A01", "2.4", sendingApp, "RECV");
+	}
+}
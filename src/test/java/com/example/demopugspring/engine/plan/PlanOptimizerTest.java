@@ -0,0 +1,132 @@
+package com.example.demopugspring.engine.plan;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.demopugspring.engine.plan.PlanStep.Kind;
+import com.example.demopugspring.model.Mapper;
+import com.example.demopugspring.model.Mapper.Category;
+
+class PlanOptimizerTest {
+
+	private long nextId = 1;
+
+	@Test
+	void testOverwrittenWriteIsEliminated() {
+		Mapper text = mapper(Category.TEXT, "PT", "/PID-11-6");
+		Mapper field = mapper(Category.FIELD, "/[MSG]/PID-11-6", "/PID-11-6");
+
+		List<PlanStep> steps = PlanOptimizer.optimize(List.of(text, mapper(Category.TEXT, "N", "/PV1-2"), field));
+
+		assertEquals(List.of(Kind.ELIMINATED, Kind.MAPPER, Kind.MAPPER), kinds(steps));
+		assertEquals("Overwritten by mapper " + field.getId(), steps.get(0).getNote());
+	}
+
+	@Test
+	void testWriteReadInBetweenIsKept() {
+		List<Mapper> mappers = List.of(
+				mapper(Category.TEXT, "PT", "/PID-11-6"),
+				mapper(Category.FIELD, "/PID-11-6", "/PV1-2"),
+				mapper(Category.TEXT, "ES", "/PID-11-6"));
+
+		assertEquals(List.of(Kind.MAPPER, Kind.MAPPER, Kind.MAPPER), kinds(PlanOptimizer.optimize(mappers)));
+	}
+
+	@Test
+	void testWriteIsKeptPastOtherCategories() {
+		List<Mapper> mappers = List.of(
+				mapper(Category.TEXT, "1", "/PID-19"),
+				mapper(Category.TRANSCODING, "IDENTIFICATIONS", "/PID-3(#)-4"),
+				mapper(Category.TEXT, "2", "/PID-19"));
+
+		assertEquals(List.of(Kind.MAPPER, Kind.MAPPER, Kind.MAPPER), kinds(PlanOptimizer.optimize(mappers)));
+	}
+
+	@Test
+	void testRelativePathsAreLeftAlone() {
+		List<Mapper> mappers = List.of(
+				mapper(Category.TEXT, "1", "PID-19"),
+				mapper(Category.TEXT, "2", "PID-19"),
+				mapper(Category.TEXT, "3", "PID-20"));
+
+		assertEquals(List.of(Kind.MAPPER, Kind.MAPPER, Kind.MAPPER), kinds(PlanOptimizer.optimize(mappers)));
+	}
+
+	@Test
+	void testIncomingReadBeforeRelativeReadIsKept() {
+		// The FIELD leaves the incoming terser on PV1, the NUMERIC reads PID-19 from there
+		List<Mapper> mappers = List.of(
+				mapper(Category.FIELD, "/[MSG]/PV1-2", "/PID-19"),
+				mapper(Category.TEXT, "1", "/PID-19"),
+				mapper(Category.NUMERIC, null, "PID-19"));
+
+		assertEquals(List.of(Kind.SEGMENT_WRITES, Kind.MAPPER), kinds(PlanOptimizer.optimize(mappers)));
+	}
+
+	@Test
+	void testSameSegmentWritesAreGrouped() {
+		List<Mapper> mappers = List.of(
+				mapper(Category.FIELD, "/[MSG]/PID-5-1", "/PID-5-2"),
+				mapper(Category.TEXT, "A", "/PID-8"),
+				mapper(Category.TEXT, "B", "/PID-8"),
+				mapper(Category.TEXT, "1", "/PV1-2"),
+				mapper(Category.TEXT, "2", "/PV1-3"));
+
+		List<PlanStep> steps = PlanOptimizer.optimize(mappers);
+
+		assertEquals(List.of(Kind.SEGMENT_WRITES, Kind.ELIMINATED, Kind.SEGMENT_WRITES), kinds(steps));
+		assertEquals("/PID", steps.get(0).getTarget());
+		assertEquals(List.of(mappers.get(0), mappers.get(2)), steps.get(0).getMappers());
+		assertEquals(List.of(mappers.get(1)), steps.get(1).getMappers());
+		assertEquals("/PV1", steps.get(2).getTarget());
+	}
+
+	@Test
+	void testReplacesOnTheSamePathsAreMerged() {
+		List<Mapper> mappers = List.of(
+				mapper(Category.CLEAR_IF, "CUFC", "/PID-3(#)-4"),
+				mapper(Category.REPLACE, "Ã,A", "/PID-5-1", "/PV1-2"),
+				mapper(Category.REPLACE, "(00)+\nÇ,C", "/PID-5-1", "/PV1-2"),
+				mapper(Category.REPLACE, "X", "/PID-5-1"));
+
+		List<PlanStep> steps = PlanOptimizer.optimize(mappers);
+
+		assertEquals(List.of(Kind.MAPPER, Kind.MERGED_REPLACE, Kind.MAPPER), kinds(steps));
+		assertEquals("Ã,A\n(00)+\nÇ,C", steps.get(1).getMapper().getValue());
+		assertEquals(List.of("/PID-5-1", "/PV1-2"), steps.get(1).getMapper().getKey());
+	}
+
+	@Test
+	void testReplacesReachingTheSameSegmentAreNotMerged() {
+		List<Mapper> mappers = List.of(
+				mapper(Category.REPLACE, "a,b", "/PID-5-1", "/PID-5"),
+				mapper(Category.REPLACE, "b,c", "/PID-5-1", "/PID-5"));
+
+		assertEquals(List.of(Kind.MAPPER, Kind.MAPPER), kinds(PlanOptimizer.optimize(mappers)));
+	}
+
+	@Test
+	void testUnoptimizedRunsEveryMapper() {
+		List<Mapper> mappers = List.of(mapper(Category.TEXT, "1", "/PID-19"), mapper(Category.TEXT, "2", "/PID-19"));
+
+		assertEquals(List.of(Kind.MAPPER, Kind.MAPPER), kinds(PlanOptimizer.unoptimized(mappers)));
+	}
+
+	private Mapper mapper(Category category, String value, String... keys) {
+		Mapper mapper = new Mapper(List.of(keys), value, category);
+		mapper.setId(nextId++);
+		return mapper;
+	}
+
+	private static List<Kind> kinds(List<PlanStep> steps) {
+		List<Kind> kinds = new ArrayList<>();
+		for (PlanStep step : steps) {
+			kinds.add(step.getKind());
+		}
+		return kinds;
+	}
+}
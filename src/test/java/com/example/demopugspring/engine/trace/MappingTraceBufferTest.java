@@ -0,0 +1,41 @@
+package com.example.demopugspring.engine.trace;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class MappingTraceBufferTest {
+
+	@Test
+	void testKeepsTheLastTraces() {
+		MappingTraceBuffer buffer = new MappingTraceBuffer(2);
+		MappingTrace first = new MappingTrace(1L, "ADT^A01", "1");
+		MappingTrace second = new MappingTrace(1L, "ADT^A01", "2");
+		MappingTrace third = new MappingTrace(1L, "ADT^A01", "3");
+
+		assertEquals(1, buffer.add(first));
+		assertEquals(2, buffer.add(second));
+		assertEquals(List.of(second, first), buffer.findAll());
+		assertEquals(3, buffer.add(third));
+
+		assertEquals(List.of(third, second), buffer.findAll());
+		assertFalse(buffer.find(1).isPresent());
+		assertSame(second, buffer.find(2).get());
+		assertSame(third, buffer.find(3).get());
+		assertFalse(buffer.find(4).isPresent());
+		assertEquals(3, third.getId());
+	}
+
+	@Test
+	void testEmpty() {
+		MappingTraceBuffer buffer = new MappingTraceBuffer(5);
+		assertEquals(List.of(), buffer.findAll());
+		assertFalse(buffer.find(0).isPresent());
+		assertThrows(IllegalArgumentException.class, () -> new MappingTraceBuffer(0));
+	}
+}
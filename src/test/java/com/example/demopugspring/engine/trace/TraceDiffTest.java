@@ -0,0 +1,44 @@
+package com.example.demopugspring.engine.trace;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+class TraceDiffTest {
+
+	private static final String MESSAGE = "MSH|^~\\&|GH|CUFC|ehCOS|CUFC|20201117172651||ADT^A31|1604236349|P|2.4\r"
+			+ "PID|||42341818^^^JMS^NS||SEGUNDO||19821209|M\r"
+			+ "OBX|1|ST|A||first\r";
+
+	@Test
+	void testSameMessage() {
+		assertTrue(TraceDiff.diff(MESSAGE, MESSAGE).isEmpty());
+	}
+
+	@Test
+	void testChangedFields() {
+		String after = MESSAGE.replace("ADT^A31", "ADT^A08").replace("SEGUNDO", "PRIMEIRO").replace("|M\r", "|M|||added\r");
+		List<FieldChange> changes = TraceDiff.diff(MESSAGE, after);
+
+		assertEquals(3, changes.size());
+		assertEquals("MSH-9: ADT^A31 -> ADT^A08", changes.get(0).toString());
+		assertEquals("PID-5: SEGUNDO -> PRIMEIRO", changes.get(1).toString());
+		assertEquals("PID-11", changes.get(2).getPath());
+		assertEquals("", changes.get(2).getBefore());
+		assertEquals("added", changes.get(2).getAfter());
+	}
+
+	@Test
+	void testAddedAndRemovedSegments() {
+		String after = MESSAGE.replace("OBX|1|ST|A||first\r", "OBX|1|ST|A||first\rOBX|2|ST|B||second\r").replace("PID|||42341818^^^JMS^NS||SEGUNDO||19821209|M\r", "");
+		List<FieldChange> changes = TraceDiff.diff(MESSAGE, after);
+
+		assertEquals(List.of("PID-3", "PID-5", "PID-7", "PID-8", "OBX(1)-1", "OBX(1)-2", "OBX(1)-3", "OBX(1)-5"),
+				changes.stream().map(FieldChange::getPath).collect(Collectors.toList()));
+		assertEquals("second", changes.get(7).getAfter());
+	}
+}
@@ -0,0 +1,70 @@
+package com.example.demopugspring.factory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import ca.uhn.hl7v2.HL7Exception;
+import ca.uhn.hl7v2.HapiContext;
+import ca.uhn.hl7v2.model.Message;
+import ca.uhn.hl7v2.parser.DefaultModelClassFactory;
+import ca.uhn.hl7v2.validation.impl.ValidationContextFactory;
+
+class CachingModelClassFactoryTest {
+
+	private static final String ADT_A31 = "MSH|^~\\&|GH|CUFC|ehCOS|CUFC|20201117172651||ADT^A31|1604236349|P|2.4|||AL\r"
+			+ "PID|||42341818^^^JMS^NS|995896186^^^NIF^PT|SEGUNDO^CLIENTE||19821209|M\r"
+			+ "ZPD|1|x\r";
+
+	@Test
+	void testResolvesTheSameClassesAsTheDefaultFactory() throws HL7Exception {
+		CachingModelClassFactory factory = new CachingModelClassFactory();
+		DefaultModelClassFactory defaultFactory = new DefaultModelClassFactory();
+
+		assertSame(defaultFactory.getMessageClass("ADT_A05", "2.4", true), factory.getMessageClass("ADT_A05", "2.4", true));
+		assertSame(defaultFactory.getSegmentClass("PID", "2.5.1"), factory.getSegmentClass("PID", "2.5.1"));
+		assertSame(defaultFactory.getTypeClass("CX", "2.5.1"), factory.getTypeClass("CX", "2.5.1"));
+		assertSame(defaultFactory.getGroupClass("ORU_R01_PATIENT_RESULT", "2.5.1"), factory.getGroupClass("ORU_R01_PATIENT_RESULT", "2.5.1"));
+		assertNull(factory.getSegmentClass("ZPD", "2.4"));
+		assertNull(factory.getSegmentClass("ZPD", "2.4"));
+	}
+
+	@Test
+	void testParsesWithCachedClasses() throws HL7Exception {
+		HapiContext context = ContextSingleton.create(ValidationContextFactory.defaultValidation(), new CachingModelClassFactory());
+
+		for (int i = 0; i < 2; i++) {
+			Message message = context.getPipeParser().parse(ADT_A31);
+			assertEquals("ADT_A05", message.getName());
+			assertEquals(ADT_A31, message.encode());
+		}
+	}
+
+	@Test
+	void testPreload() {
+		CachingModelClassFactory factory = new CachingModelClassFactory();
+
+		assertTrue(factory.preload("2.4") > 100);
+		assertEquals(0, factory.preload("2.3.1"));
+	}
+
+	@Test
+	void testSingletonIsShared() throws Exception {
+		HapiContext[] contexts = new HapiContext[8];
+		Thread[] threads = new Thread[contexts.length];
+		for (int i = 0; i < threads.length; i++) {
+			int index = i;
+			threads[i] = new Thread(() -> contexts[index] = ContextSingleton.getInstance());
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		for (HapiContext context : contexts) {
+			assertSame(ContextSingleton.getInstance(), context);
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package com.example.demopugspring.filter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.demopugspring.factory.ContextSingleton;
+
+import ca.uhn.hl7v2.HL7Exception;
+import ca.uhn.hl7v2.model.Message;
+import ca.uhn.hl7v2.model.Primitive;
+import ca.uhn.hl7v2.util.Terser;
+
+class FilterExpressionTest {
+
+	private static final String ADT_A01 = "MSH|^~\\&|CWM|CUFC|GH|CCB|20201103160113||ADT^A01|7ba75e23|P|2.4|||AL\r"
+			+ "PID||43417401|43417401^^^JMS^NS~684028^^^CUFC^NS|12586669^^^N_BI|CUNHA^LETICIA SOFIA^||19830224|F\r";
+
+	@Test
+	void testExpressionIsShared() {
+		FilterExpression expression = FilterExpression.compile("CUFC|JMS");
+
+		assertSame(expression, FilterExpression.compile("CUFC|JMS"));
+		assertFalse(expression.hasPaths());
+		assertFalse(expression.isNegated());
+	}
+
+	@Test
+	void testPatternWithoutPathsIsCompiledOnce() throws HL7Exception {
+		Terser tmp = terser();
+		FilterExpression expression = FilterExpression.compile("!CUFC");
+
+		assertTrue(expression.isNegated());
+		assertSame(expression.resolve(tmp), expression.resolve(terser()));
+		assertEquals("CUFC", expression.resolve(tmp).pattern());
+	}
+
+	@Test
+	void testMatchesValue() throws HL7Exception {
+		Terser tmp = terser();
+		MatchesValueFilter filter = new MatchesValueFilter("CUFC", tmp);
+		MatchesValueFilter negated = new MatchesValueFilter("!CUFC", tmp);
+
+		assertTrue(filter.doFilter(primitive(tmp, 3, 1, 4)));
+		assertFalse(filter.doFilter(primitive(tmp, 3, 0, 4)));
+		assertFalse(negated.doFilter(primitive(tmp, 3, 1, 4)));
+		assertTrue(negated.doFilter(primitive(tmp, 3, 0, 4)));
+	}
+
+	@Test
+	void testPathsAreResolvedPerMessage() throws HL7Exception {
+		Terser tmp = terser();
+		FilterExpression expression = FilterExpression.compile("=MSH-4-1=|N_BI");
+
+		assertTrue(expression.hasPaths());
+		assertEquals("CUFC|N_BI", expression.resolve(tmp).pattern());
+		assertSame(expression.resolve(tmp), expression.resolve(terser()));
+
+		MatchesValueFilter filter = new MatchesValueFilter(expression, tmp);
+		assertTrue(filter.doFilter(primitive(tmp, 3, 1, 4)));
+		assertTrue(filter.doFilter(primitive(tmp, 4, 0, 4)));
+		assertFalse(filter.doFilter(primitive(tmp, 3, 0, 4)));
+
+		tmp.set("MSH-4-1", "JMS");
+		assertEquals("JMS|N_BI", expression.resolve(tmp).pattern());
+	}
+
+	@Test
+	void testDoubledSeparatorsAndUnresolvedPaths() throws HL7Exception {
+		Terser tmp = terser();
+
+		// The separators next to the path are replaced with it, as they always were
+		assertEquals("=CUFC=", FilterExpression.compile("==MSH-4-1==").resolve(tmp).pattern());
+		assertEquals("=XYZ-1=", FilterExpression.compile("=XYZ-1=").resolve(tmp).pattern());
+		assertEquals("a=b", FilterExpression.compile("a=b").resolve(tmp).pattern());
+	}
+
+	@Test
+	void testBlankValueMatchesEmptyPrimitives() throws HL7Exception {
+		Terser tmp = terser();
+		MatchesValueFilter filter = new MatchesValueFilter("", tmp);
+
+		assertTrue(filter.doFilter(primitive(tmp, 3, 0, 2)));
+		assertFalse(filter.doFilter(primitive(tmp, 3, 0, 4)));
+	}
+
+	private static Terser terser() throws HL7Exception {
+		Message message = ContextSingleton.getInstance().getPipeParser().parse(ADT_A01);
+		return new Terser(message);
+	}
+
+	private static Primitive primitive(Terser tmp, int field, int repetition, int component) throws HL7Exception {
+		return Terser.getPrimitive(tmp.getSegment("PID").getField(field, repetition), component, 1);
+	}
+}
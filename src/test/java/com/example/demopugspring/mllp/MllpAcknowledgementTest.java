@@ -0,0 +1,62 @@
+package com.example.demopugspring.mllp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.demopugspring.engine.MapperError;
+import com.example.demopugspring.engine.Response;
+
+class MllpAcknowledgementTest {
+
+	private static final String ADT_A31 = "MSH|^~\\&|GH|CUFC|ehCOS|CUFC|20201117172651||ADT^A31|1604236349|P|2.4|||AL\r"
+			+ "PID|||42341818^^^JMS^NS|995896186^^^NIF^PT|SEGUNDO^CLIENTE||19821209|M\r";
+
+	@Test
+	void testAcceptAddressedBackToTheSender() {
+		String[] segments = MllpAcknowledgement.build(ADT_A31, response()).split("\r");
+		String[] msh = segments[0].split("\\|", -1);
+
+		assertEquals(2, segments.length);
+		assertEquals("^~\\&", msh[1]);
+		assertEquals(List.of("ehCOS", "CUFC", "GH", "CUFC"), List.of(msh[2], msh[3], msh[4], msh[5]));
+		assertEquals("ACK^A31", msh[8]);
+		assertEquals("P", msh[10]);
+		assertEquals("2.4", msh[11]);
+		assertEquals("MSA|AA|1604236349", segments[1]);
+	}
+
+	@Test
+	void testErrorsAreEscapedInTheText() {
+		String ack = MllpAcknowledgement.build(ADT_A31, response(new MapperError("/PID-3", "a|b^c"), new MapperError("Global", "x")));
+
+		assertTrue(ack.endsWith("\rMSA|AE|1604236349|/PID-3: a\\F\\b\\S\\c; Global: x\r"), ack);
+	}
+
+	@Test
+	void testRejectWithoutHeader() {
+		String ack = MllpAcknowledgement.build("PID|||42341818\r", response());
+
+		assertTrue(ack.startsWith("MSH|^~\\&|||||"), ack);
+		assertTrue(ack.endsWith("\rMSA|AR||Message has no MSH segment\r"), ack);
+	}
+
+	@Test
+	void testRejectWithText() {
+		String ack = MllpAcknowledgement.reject("a|b");
+
+		assertTrue(ack.startsWith("MSH|^~\\&|||||"), ack);
+		assertTrue(ack.endsWith("\rMSA|AR||a\\F\\b\r"), ack);
+	}
+
+	private static Response response(MapperError... errors) {
+		Response response = new Response();
+		response.setMessage("");
+		response.setErrorList(new ArrayList<>(List.of(errors)));
+		return response;
+	}
+}
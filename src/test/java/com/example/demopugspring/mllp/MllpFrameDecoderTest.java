@@ -0,0 +1,56 @@
+package com.example.demopugspring.mllp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class MllpFrameDecoderTest {
+
+	private static final String ADT_A31 = "MSH|^~\\&|GH|CUFC|ehCOS|CUFC|20201117172651||ADT^A31|1604236349|P|2.4|||AL\r"
+			+ "PID|||42341818^^^JMS^NS|995896186^^^NIF^PT|SEGUNDO^CLIENTE||19821209|M\r";
+
+	@Test
+	void testFrameSplitAcrossReads() throws IOException {
+		MllpFrameDecoder decoder = new MllpFrameDecoder(1024, StandardCharsets.ISO_8859_1);
+		List<String> messages = new ArrayList<>();
+		for (byte b : frame(ADT_A31)) {
+			decoder.decode(ByteBuffer.wrap(new byte[] { b }), messages);
+		}
+
+		assertEquals(List.of(ADT_A31), messages);
+	}
+
+	@Test
+	void testManyFramesInOneRead() throws IOException {
+		MllpFrameDecoder decoder = new MllpFrameDecoder(1024, StandardCharsets.ISO_8859_1);
+		List<String> messages = new ArrayList<>();
+		String withoutCarriageReturn = "\u000bMSH|^~\\&|GH\r\u001c";
+		String input = new String(frame(ADT_A31), StandardCharsets.ISO_8859_1) + "\r\n" + withoutCarriageReturn
+				+ new String(frame("MSH|^~\\&|CWM\r"), StandardCharsets.ISO_8859_1);
+
+		decoder.decode(ByteBuffer.wrap(input.getBytes(StandardCharsets.ISO_8859_1)), messages);
+
+		assertEquals(List.of(ADT_A31, "MSH|^~\\&|GH\r", "MSH|^~\\&|CWM\r"), messages);
+	}
+
+	@Test
+	void testFrameBiggerThanTheLimit() throws IOException {
+		MllpFrameDecoder decoder = new MllpFrameDecoder(32, StandardCharsets.ISO_8859_1);
+		List<String> messages = new ArrayList<>();
+		decoder.decode(ByteBuffer.wrap(frame("MSH|^~\\&|GH\r")), messages);
+
+		assertThrows(IOException.class, () -> decoder.decode(ByteBuffer.wrap(frame(ADT_A31)), messages));
+		assertEquals(List.of("MSH|^~\\&|GH\r"), messages);
+	}
+
+	static byte[] frame(String message) {
+		return ("\u000b" + message + "\u001c\r").getBytes(StandardCharsets.ISO_8859_1);
+	}
+}
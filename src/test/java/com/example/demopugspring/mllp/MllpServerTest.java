@@ -0,0 +1,128 @@
+package com.example.demopugspring.mllp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import com.example.demopugspring.engine.MapperEngine;
+import com.example.demopugspring.engine.MapperError;
+import com.example.demopugspring.engine.Response;
+
+class MllpServerTest {
+
+	private MllpServer server;
+	private CountDownLatch release;
+
+	@BeforeEach
+	void setUp() {
+		server = new MllpServer();
+		server.mapperEngine = Mockito.mock(MapperEngine.class);
+		server.port = 0;
+		server.workerThreads = 2;
+		server.maxPendingMessages = 8;
+		server.maxMessageSize = 1024 * 1024;
+		server.charset = "ISO-8859-1";
+		release = new CountDownLatch(0);
+		Response unreadable = Mockito.mock(Response.class);
+		Mockito.when(unreadable.getErrorList()).thenThrow(new IllegalStateException("Unreadable"));
+
+		Mockito.when(server.mapperEngine.run(Mockito.anyString())).thenAnswer(invocation -> {
+			release.await(10, TimeUnit.SECONDS);
+			String message = invocation.getArgument(0);
+			if (message.contains("|BAD|")) {
+				return unreadable;
+			}
+			Response response = new Response();
+			response.setMessage(message);
+			response.setErrorList(new ArrayList<>());
+			if (message.contains("|ERR|")) {
+				response.getErrorList().add(new MapperError("Global", "No integration found"));
+			}
+			return response;
+		});
+	}
+
+	@AfterEach
+	void tearDown() throws InterruptedException {
+		server.stop();
+	}
+
+	@Test
+	void testAcknowledgesInOrder() throws IOException {
+		server.start();
+		try (Socket client = new Socket("localhost", server.getLocalPort())) {
+			client.getOutputStream().write(frames("1", "ERR", "3"));
+
+			InputStream input = client.getInputStream();
+			assertEquals("MSA|AA|1", msa(readFrame(input)));
+			assertEquals("MSA|AE|ERR|Global: No integration found", msa(readFrame(input)));
+			assertEquals("MSA|AA|3", msa(readFrame(input)));
+		}
+	}
+
+	@Test
+	void testStopsReadingPastThePendingLimit() throws IOException {
+		server.maxPendingMessages = 1;
+		release = new CountDownLatch(1);
+		server.start();
+		try (Socket client = new Socket("localhost", server.getLocalPort())) {
+			client.getOutputStream().write(frames("1", "2", "3"));
+
+			Mockito.verify(server.mapperEngine, Mockito.after(300).times(1)).run(Mockito.anyString());
+			release.countDown();
+
+			InputStream input = client.getInputStream();
+			assertEquals("MSA|AA|1", msa(readFrame(input)));
+			assertEquals("MSA|AA|2", msa(readFrame(input)));
+			assertEquals("MSA|AA|3", msa(readFrame(input)));
+		}
+	}
+
+	@Test
+	void testMessageThatCantBeAcknowledgedIsRejected() throws IOException {
+		server.start();
+		try (Socket client = new Socket("localhost", server.getLocalPort())) {
+			client.getOutputStream().write(frames("BAD", "2"));
+
+			InputStream input = client.getInputStream();
+			assertEquals("MSA|AR||Couldn't acknowledge the message", msa(readFrame(input)));
+			assertEquals("MSA|AA|2", msa(readFrame(input)));
+		}
+	}
+
+	private static byte[] frames(String... controlIds) {
+		ByteArrayOutputStream frames = new ByteArrayOutputStream();
+		for (String controlId : controlIds) {
+			frames.writeBytes(MllpFrameDecoderTest.frame("MSH|^~\\&|GH|CUFC|ehCOS|CUFC|20201117172651||ADT^A31|" + controlId + "|P|2.4\r"));
+		}
+		return frames.toByteArray();
+	}
+
+	private static String readFrame(InputStream input) throws IOException {
+		MllpFrameDecoder decoder = new MllpFrameDecoder(1024 * 1024, StandardCharsets.ISO_8859_1);
+		List<String> messages = new ArrayList<>();
+		byte[] b = new byte[1];
+		while (messages.isEmpty() && input.read(b) > 0) {
+			decoder.decode(ByteBuffer.wrap(b), messages);
+		}
+		return messages.get(0);
+	}
+
+	private static String msa(String ack) {
+		return ack.split("\r")[1];
+	}
+}
@@ -0,0 +1,130 @@
+package com.example.demopugspring.properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+class CodeTelemetryTest {
+
+	private static final Codes CODES = new MarriageStatusCodes() {
+		{
+			setTable(CodeTable.of(Map.of("C", "M", "D", "D")));
+		}
+	};
+
+	@Test
+	void testCountsLookups() {
+		CodeLookups lookups = new CodeLookups();
+
+		assertEquals("M", lookups.decode(CODES, "C"));
+		assertEquals("D", lookups.decode(CODES, "D"));
+		lookups.decode(CODES, "X");
+		lookups.decode(CODES, "");
+		lookups.decode(CODES, null);
+		lookups.decode(CODES, "X");
+
+		assertEquals(2, lookups.getHits());
+		assertEquals(2, lookups.getMisses());
+		assertEquals(2, lookups.getBlanks());
+		assertTrue(lookups.getTimed() <= 1);
+		assertEquals(List.of("X", "X"), lookups.getUnmapped());
+	}
+
+	@Test
+	void testTimesOneLookupInIntervalAcrossTranscodings() throws Exception {
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			long timed = executor.submit(() -> {
+				long count = 0;
+				for (int i = 0; i < 2 * CodeLookups.TIMING_INTERVAL; i++) {
+					// A transcoding of a single field, as a mapper over PID-8
+					CodeLookups lookups = new CodeLookups();
+					lookups.decode(CODES, "C");
+					count += lookups.getTimed();
+				}
+				return count;
+			}).get();
+			assertEquals(2, timed);
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	void testRecordsBySendingApplication() {
+		CodeTelemetry telemetry = new CodeTelemetry();
+		for (int i = 0; i < 3; i++) {
+			CodeLookups lookups = new CodeLookups();
+			lookups.decode(CODES, "C");
+			lookups.decode(CODES, "X");
+			lookups.decode(CODES, i == 0 ? "Y" : "X");
+			telemetry.record(lookups, i == 2 ? "CWM" : "GH");
+		}
+
+		assertEquals(3, telemetry.getHits());
+		assertEquals(6, telemetry.getMisses());
+		List<UnmappedCode> unmapped = telemetry.getTopUnmapped(10);
+		assertEquals(3, unmapped.size());
+		assertUnmapped(unmapped.get(0), "CWM", "X", 2);
+		assertUnmapped(unmapped.get(1), "GH", "X", 3);
+		assertUnmapped(unmapped.get(2), "GH", "Y", 1);
+		assertEquals(2, telemetry.getTopUnmapped(1).size());
+	}
+
+	@Test
+	void testApplicationsAreBounded() {
+		CodeTelemetry telemetry = new CodeTelemetry();
+		for (int i = 0; i < CodeTelemetry.MAX_APPLICATIONS * 2; i++) {
+			CodeLookups lookups = new CodeLookups();
+			lookups.decode(CODES, "X");
+			telemetry.record(lookups, "APP" + i);
+		}
+
+		List<UnmappedCode> unmapped = telemetry.getTopUnmapped(10);
+		assertEquals(CodeTelemetry.MAX_APPLICATIONS + 1, unmapped.size());
+		assertUnmapped(unmapped.get(0), CodeTelemetry.OTHER_APPLICATIONS, "X", CodeTelemetry.MAX_APPLICATIONS);
+	}
+
+	@Test
+	void testSketchKeepsFrequentCodes() throws Exception {
+		UnmappedCodeSketch sketch = new UnmappedCodeSketch(64);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int thread = 0; thread < 4; thread++) {
+				int seed = thread;
+				futures.add(executor.submit(() -> {
+					for (int i = 0; i < 20_000; i++) {
+						sketch.add(i % 4 == 0 ? "FREQUENT" + (i / 4 % 3) : "RARE" + seed + "-" + i);
+					}
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		List<UnmappedCode> top = sketch.top("GH", 3);
+		assertEquals(3, top.size());
+		for (UnmappedCode code : top) {
+			assertTrue(code.getCode().startsWith("FREQUENT"), code.getCode());
+		}
+		assertTrue(sketch.top("GH", 1000).size() <= 64);
+	}
+
+	private static void assertUnmapped(UnmappedCode code, String sendingApp, String value, long count) {
+		assertEquals(sendingApp, code.getSendingApp());
+		assertEquals(value, code.getCode());
+		assertEquals(count, code.getCount());
+	}
+}
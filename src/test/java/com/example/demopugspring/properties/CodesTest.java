@@ -0,0 +1,97 @@
+package com.example.demopugspring.properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.support.EncodedResource;
+import org.springframework.core.io.support.ResourcePropertySource;
+import org.springframework.mock.env.MockPropertySource;
+
+class CodesTest {
+
+	private static final List<String> FILES = List.of("Country_GH_ehCOS", "IdentificationCodes", "MarriageStatus", "facilities",
+			"insurersCodes");
+
+	@Test
+	void testTableMatchesEnvironment() throws IOException {
+		StandardEnvironment env = environment();
+
+		Map<Codes, String> files = Map.of(new CountryCodes(), "Country_GH_ehCOS", new IdentificationCodes(), "IdentificationCodes",
+				new MarriageStatusCodes(), "MarriageStatus", new FacilitiesCodes(), "facilities", new InsurersCodes(), "insurersCodes");
+
+		for (Map.Entry<Codes, String> file : files.entrySet()) {
+			Codes table = load(file.getKey(), env);
+			Codes legacy = load(newInstance(file.getKey()), legacyEnvironment(env));
+
+			String suffix = file.getKey().getSuffix();
+			String prefix = suffix.isBlank() ? "" : suffix + ".";
+			String[] names = properties(file.getValue()).getPropertyNames();
+			assertTrue(names.length > 0, file.getValue());
+			for (String name : names) {
+				String code = name.substring(prefix.length());
+				assertEquals(legacy.getDecodeCode(code), table.getDecodeCode(code), name);
+			}
+			assertEquals(legacy.getDecodeCode(null), table.getDecodeCode(null));
+			assertNull(table.getDecodeCode("NOT-A-CODE"));
+		}
+	}
+
+	@Test
+	void testLookups() throws IOException {
+		StandardEnvironment env = environment();
+
+		assertEquals("M", load(new MarriageStatusCodes(), env).getDecodeCode("C"));
+		assertEquals("AF", load(new CountryCodes(), env).getDecodeCode("113"));
+		assertEquals("1", load(new InsurersCodes(), env).getDecodeCode("CCC1"));
+		assertNull(load(new FacilitiesCodes(), env).getDecodeCode("C"));
+	}
+
+	@Test
+	void testOverriddenInEnvironment() throws IOException {
+		StandardEnvironment env = environment();
+		env.getPropertySources().addFirst(new MockPropertySource().withProperty("marriage.status.C", "X"));
+
+		assertEquals("X", load(new MarriageStatusCodes(), env).getDecodeCode("C"));
+	}
+
+	private static StandardEnvironment environment() throws IOException {
+		StandardEnvironment env = new StandardEnvironment();
+		for (String file : FILES) {
+			env.getPropertySources().addLast(properties(file));
+		}
+		return env;
+	}
+
+	private static StandardEnvironment legacyEnvironment(StandardEnvironment env) {
+		StandardEnvironment legacy = new StandardEnvironment();
+		legacy.getPropertySources().addFirst(new MockPropertySource().withProperty(Codes.LOOKUP_PROPERTY, Codes.ENVIRONMENT_LOOKUP));
+		env.getPropertySources().forEach(source -> legacy.getPropertySources().addLast(source));
+		return legacy;
+	}
+
+	private static ResourcePropertySource properties(String file) throws IOException {
+		return new ResourcePropertySource(new EncodedResource(new ClassPathResource("properties/" + file + ".properties"), "utf-8"));
+	}
+
+	private static Codes newInstance(Codes codes) {
+		try {
+			return codes.getClass().getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static Codes load(Codes codes, StandardEnvironment env) {
+		codes.setEnvironment(env);
+		codes.loadTable();
+		return codes;
+	}
+}
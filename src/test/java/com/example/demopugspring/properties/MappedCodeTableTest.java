@@ -0,0 +1,93 @@
+package com.example.demopugspring.properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.mock.env.MockPropertySource;
+
+class MappedCodeTableTest {
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void testMatchesThePropertyFile() throws IOException {
+		Map<String, String> codes = MappedCodeTableBuilder.readProperties(Paths.get("src/main/resources/properties/insurersCodes.properties"), "");
+		Path file = directory.resolve("insurers.codes");
+		MappedCodeTable.write(file, codes);
+
+		MappedCodeTable table = MappedCodeTable.open(file);
+
+		assertEquals(codes.size(), table.size());
+		codes.forEach((code, value) -> assertEquals(value, table.get(code), code));
+		Map<String, String> read = new HashMap<>();
+		table.forEach(read::put);
+		assertEquals(codes, read);
+		assertNull(table.get("NOT-A-CODE"));
+		assertNull(table.get(""));
+		assertNull(table.get(null));
+	}
+
+	@Test
+	void testNonAsciiCodes() throws IOException {
+		Map<String, String> codes = Map.of("A", "1", "AB", "2", "Ção", "3", "Çb", "4", "Z", "5", "ÿ", "6", "日本", "7", "", "8");
+		Path file = directory.resolve("mixed.codes");
+		MappedCodeTable.write(file, codes);
+
+		MappedCodeTable table = MappedCodeTable.open(file);
+
+		codes.forEach((code, value) -> assertEquals(value, table.get(code), code));
+		assertNull(table.get("Ç"));
+		assertNull(table.get("日"));
+		assertNull(table.get("AA"));
+		assertNull(table.get("ZZ"));
+	}
+
+	@Test
+	void testRejectsOtherFiles() throws IOException {
+		Path file = directory.resolve("other.codes");
+		Files.writeString(file, "country.113=AF");
+
+		assertThrows(IOException.class, () -> MappedCodeTable.open(file));
+	}
+
+	@Test
+	void testReadsCsv() throws IOException {
+		Path file = directory.resolve("codes.csv");
+		Files.writeString(file, "A1,Value 1\n\nB2;Value 2;ignored\nÇ3 , Três\n", StandardCharsets.UTF_8);
+
+		assertEquals(Map.of("A1", "Value 1", "B2", "Value 2", "Ç3", "Três"), MappedCodeTableBuilder.readCsv(file));
+	}
+
+	@Test
+	void testCodesUseTheMappedFile() throws IOException {
+		MappedCodeTable.write(directory.resolve(PropertiesCategoriesEnum.MARRIAGE_STATUS.name() + Codes.MAPPED_EXTENSION), Map.of("C", "X"));
+		StandardEnvironment env = new StandardEnvironment();
+		env.getPropertySources().addFirst(new MockPropertySource().withProperty(Codes.MAPPED_DIRECTORY_PROPERTY, directory.toString()));
+
+		MarriageStatusCodes mapped = new MarriageStatusCodes();
+		mapped.setEnvironment(env);
+		mapped.loadTable();
+		CountryCodes loaded = new CountryCodes();
+		loaded.setEnvironment(env);
+		loaded.loadTable();
+
+		assertTrue(mapped.isMapped());
+		assertEquals("X", mapped.getDecodeCode("C"));
+		assertNull(mapped.getDecodeCode("D"));
+		assertEquals("AF", loaded.getDecodeCode("113"));
+	}
+}
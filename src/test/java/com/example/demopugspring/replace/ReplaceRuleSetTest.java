@@ -0,0 +1,90 @@
+package com.example.demopugspring.replace;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class ReplaceRuleSetTest {
+
+	@Test
+	void testSingleRuleIsUnchanged() {
+		ReplaceRuleSet rules = ReplaceRuleSet.compile("(00)+");
+
+		assertSame(rules, ReplaceRuleSet.compile("(00)+"));
+		assertEquals(1, rules.getRules().size());
+		assertEquals("19821209", rules.apply("198212090000"));
+		assertEquals("1982-12-09", ReplaceRuleSet.compile("/,-").apply("1982/12/09"));
+	}
+
+	@Test
+	void testLiteralDetection() {
+		assertTrue(ReplaceRule.parse("Ã,A").isLiteral());
+		assertTrue(ReplaceRule.parse("&amp;").isLiteral());
+		assertFalse(ReplaceRule.parse("a.b,c").isLiteral());
+		assertFalse(ReplaceRule.parse("ab,$0$0").isLiteral());
+		assertFalse(ReplaceRule.parse(",x").isLiteral());
+	}
+
+	@Test
+	void testIndependentLiteralsShareOnePass() {
+		ReplaceRuleSet rules = ReplaceRuleSet.compile("Ã,A\nÇ,C\r\n\nÉ,E\n[0-9]+,#\n&amp;,&");
+
+		assertEquals(5, rules.getRules().size());
+		assertEquals(3, rules.getPassCount());
+		assertEquals("CONCEICAO # & E", rules.apply("CONÇEIÇÃO 12 &amp; É"));
+	}
+
+	@Test
+	void testDependentLiteralsKeepTheirOrder() {
+		// The second rule sees the text the first one brings together
+		ReplaceRuleSet deletion = ReplaceRuleSet.compile("-\nab,X");
+		assertEquals(2, deletion.getPassCount());
+		assertEquals("X", deletion.apply("a-b"));
+
+		// And the replacement of the first one
+		ReplaceRuleSet replacement = ReplaceRuleSet.compile("a,b\nb,c");
+		assertEquals(2, replacement.getPassCount());
+		assertEquals("cc", replacement.apply("ab"));
+
+		ReplaceRuleSet overlapping = ReplaceRuleSet.compile("b,y\nab,x");
+		assertEquals(2, overlapping.getPassCount());
+		assertEquals("ay", overlapping.apply("ab"));
+	}
+
+	@Test
+	void testSameResultAsOneRuleAfterTheOther() {
+		Random random = new Random(42);
+		for (int set = 0; set < 2000; set++) {
+			List<ReplaceRule> rules = new ArrayList<>();
+			int count = 1 + random.nextInt(6);
+			for (int i = 0; i < count; i++) {
+				rules.add(new ReplaceRule(randomString(random, 1, 3), randomString(random, 0, 2)));
+			}
+			ReplaceRuleSet ruleSet = ReplaceRuleSet.of(rules);
+			for (int value = 0; value < 20; value++) {
+				String text = randomString(random, 0, 12);
+				String expected = text;
+				for (ReplaceRule rule : rules) {
+					expected = expected.replace(rule.getRegex(), rule.getReplacement());
+				}
+				assertEquals(expected, ruleSet.apply(text), () -> ruleSet + " on " + text);
+			}
+		}
+	}
+
+	private static String randomString(Random random, int min, int max) {
+		int length = min + random.nextInt(max - min + 1);
+		StringBuilder value = new StringBuilder();
+		for (int i = 0; i < length; i++) {
+			value.append((char) ('a' + random.nextInt(4)));
+		}
+		return value.toString();
+	}
+}
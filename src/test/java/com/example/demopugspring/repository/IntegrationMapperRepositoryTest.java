@@ -0,0 +1,124 @@
+package com.example.demopugspring.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import com.example.demopugspring.model.Application;
+import com.example.demopugspring.model.Integration;
+import com.example.demopugspring.model.IntegrationMapper;
+import com.example.demopugspring.model.Mapper;
+import com.example.demopugspring.model.Message;
+
+/**
+ * Counts the statements loading an integration and its mappers takes, which
+ * mustn't grow with the number of mappers.
+ */
+@DataJpaTest(properties = {
+		"spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+		"spring.jpa.properties.hibernate.generate_statistics=true" })
+class IntegrationMapperRepositoryTest {
+
+	private static final int MAPPERS = 80;
+
+	@Autowired
+	TestEntityManager entityManager;
+
+	@Autowired
+	IntegrationRepository integrationRepository;
+
+	@Autowired
+	IntegrationMapperRepository integrationMapperRepository;
+
+	@Autowired
+	MapperRepository mapperRepository;
+
+	private Long integrationId;
+	private Statistics statistics;
+
+	@BeforeEach
+	void setUp() {
+		Message message = entityManager.persist(new Message("ADT", "A01", Message.Version.v25));
+		Integration integration = new Integration(message, entityManager.persist(new Application("SEND", "Sending")),
+				entityManager.persist(new Application("RECV", "Receiving")), null);
+		integration.setResultMessage(entityManager.persist(new Message("ADT", "A01", Message.Version.v24)));
+		integrationId = entityManager.persist(integration).getId();
+		for (int i = 0; i < MAPPERS; i++) {
+			Mapper mapper = entityManager.persist(new Mapper(new ArrayList<>(List.of("/PID-" + i, "/PID-" + (i + 1))), "", Mapper.Category.FIELD));
+			// Saved in reverse order, every tenth one inactive
+			entityManager.persist(new IntegrationMapper(integration, mapper, MAPPERS - i, i % 10 != 0));
+		}
+		entityManager.flush();
+		entityManager.clear();
+
+		statistics = entityManager.getEntityManager().getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+		statistics.clear();
+	}
+
+	@Test
+	void findActiveByRouteLoadsMappersAndKeysInTwoStatements() {
+		List<IntegrationMapper> mappers = integrationMapperRepository.findActiveByRoute("ADT", "A01", Message.Version.v25, "SEND", "RECV");
+
+		assertEquals(MAPPERS - MAPPERS / 10, mappers.size());
+		int previous = 0;
+		for (IntegrationMapper integrationMapper : mappers) {
+			assertTrue(integrationMapper.getOrderIndex() > previous);
+			previous = integrationMapper.getOrderIndex();
+			int index = MAPPERS - integrationMapper.getOrderIndex();
+			assertEquals(List.of("/PID-" + index, "/PID-" + (index + 1)), integrationMapper.getMapper().getKey());
+		}
+		Integration integration = mappers.get(0).getIntegration();
+		assertEquals(integrationId, integration.getId());
+		assertEquals("RECV", integration.getReceivingApp().getCode());
+		assertEquals(Message.Version.v24, integration.getResultMessage().getVersion());
+		assertEquals(2, statistics.getPrepareStatementCount());
+	}
+
+	@Test
+	void findActiveByRouteFindsNothingForAnotherRoute() {
+		assertEquals(List.of(), integrationMapperRepository.findActiveByRoute("ADT", "A01", Message.Version.v25, "RECV", "SEND"));
+		assertEquals(1, statistics.getPrepareStatementCount());
+	}
+
+	@Test
+	void findByRouteLoadsIntegrationInOneStatement() {
+		Integration integration = integrationRepository.findByRoute("ADT", "A01", Message.Version.v25, "SEND", "RECV");
+
+		assertEquals(integrationId, integration.getId());
+		assertEquals("SEND", integration.getSendingApp().getCode());
+		assertEquals("RECV", integration.getReceivingApp().getCode());
+		assertEquals(Message.Version.v24, integration.getResultMessage().getVersion());
+		assertEquals(1, statistics.getPrepareStatementCount());
+	}
+
+	@Test
+	void integrationDetailsLoadInThreeStatements() {
+		// As the integration page does: the integration, then all its mappers
+		integrationRepository.findById(integrationId).orElseThrow();
+		List<IntegrationMapper> mappers = integrationMapperRepository.findByIntegration_IdOrderByOrderIndex(integrationId);
+
+		assertEquals(MAPPERS, mappers.size());
+		mappers.forEach(integrationMapper -> assertEquals(2, integrationMapper.getMapper().getKey().size()));
+		assertEquals(3, statistics.getPrepareStatementCount());
+	}
+
+	@Test
+	void findAllMappersLoadsKeysInOneMoreStatement() {
+		List<Mapper> mappers = new ArrayList<>();
+		mapperRepository.findAll().forEach(mappers::add);
+
+		assertEquals(MAPPERS, mappers.size());
+		mappers.forEach(mapper -> assertEquals(2, mapper.getKey().size()));
+		assertEquals(2, statistics.getPrepareStatementCount());
+	}
+}
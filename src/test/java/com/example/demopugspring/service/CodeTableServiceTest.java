@@ -0,0 +1,134 @@
+package com.example.demopugspring.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.example.demopugspring.model.CodeEntry;
+import com.example.demopugspring.model.CodeTableVersion;
+import com.example.demopugspring.properties.CodeTable;
+import com.example.demopugspring.properties.MarriageStatusCodes;
+import com.example.demopugspring.properties.PropertiesCategoriesEnum;
+import com.example.demopugspring.repository.CodeEntryRepository;
+import com.example.demopugspring.repository.CodeTableVersionRepository;
+
+class CodeTableServiceTest {
+
+	private static final PropertiesCategoriesEnum CATEGORY = PropertiesCategoriesEnum.MARRIAGE_STATUS;
+
+	private CodeTableService service;
+	private MarriageStatusCodes codes;
+	private CodeTableVersion databaseVersion;
+	private List<CodeEntry> databaseEntries;
+
+	@BeforeEach
+	void setUp() {
+		codes = new MarriageStatusCodes();
+		codes.setEnvironment(new StandardEnvironment());
+		codes.loadTable();
+
+		service = new CodeTableService();
+		service.codeEntryRepository = Mockito.mock(CodeEntryRepository.class);
+		service.codeTableVersionRepository = Mockito.mock(CodeTableVersionRepository.class);
+		service.transactionManager = Mockito.mock(PlatformTransactionManager.class);
+		service.codes = List.of(codes);
+		service.lookup = CodeTableService.DATABASE_LOOKUP;
+
+		Mockito.when(service.codeTableVersionRepository.findById(CATEGORY)).then(invocation -> Optional.of(databaseVersion));
+		Mockito.when(service.codeTableVersionRepository.findAll()).then(invocation -> List.of(databaseVersion));
+		Mockito.when(service.codeEntryRepository.findByCategoryOrderByCodeAsc(CATEGORY)).then(invocation -> databaseEntries);
+	}
+
+	@Test
+	void testImportsMissingCategories() {
+		Mockito.when(service.codeTableVersionRepository.existsById(CATEGORY)).thenReturn(false);
+		givenDatabase(1, new CodeEntry(CATEGORY, "C", "M"));
+
+		service.init();
+
+		Mockito.verify(service.codeTableVersionRepository).save(Mockito.<CodeTableVersion>argThat(version -> version.getVersion() == 1));
+		Mockito.verify(service.codeEntryRepository).saveAll(Mockito.<Iterable<CodeEntry>>argThat(entries -> {
+			int count = 0;
+			for (CodeEntry entry : entries) {
+				assertEquals(codes.getTable().get(entry.getCode()), entry.getValue());
+				count++;
+			}
+			return count == 6;
+		}));
+	}
+
+	@Test
+	void testLoadsTheDatabaseTable() {
+		Mockito.when(service.codeTableVersionRepository.existsById(CATEGORY)).thenReturn(true);
+		givenDatabase(3, new CodeEntry(CATEGORY, "C", "X"));
+
+		service.init();
+
+		Mockito.verify(service.codeEntryRepository, Mockito.never()).saveAll(Mockito.any());
+		assertEquals(3, codes.getTable().getVersion());
+		assertEquals("X", codes.getDecodeCode("C"));
+		assertNull(codes.getDecodeCode("D"));
+	}
+
+	@Test
+	void testRefreshSwapsChangedTables() {
+		Mockito.when(service.codeTableVersionRepository.existsById(CATEGORY)).thenReturn(true);
+		givenDatabase(3, new CodeEntry(CATEGORY, "C", "X"));
+		service.init();
+		CodeTable loaded = codes.getTable();
+
+		service.refresh();
+		assertSame(loaded, codes.getTable());
+
+		givenDatabase(4, new CodeEntry(CATEGORY, "C", "Y"));
+		service.refresh();
+		assertEquals(4, codes.getTable().getVersion());
+		assertEquals("Y", codes.getDecodeCode("C"));
+	}
+
+	@Test
+	void testFileTablesWithoutDatabaseLookup() {
+		service.lookup = "table";
+		Mockito.when(service.codeTableVersionRepository.existsById(CATEGORY)).thenReturn(true);
+		givenDatabase(3, new CodeEntry(CATEGORY, "C", "X"));
+
+		service.init();
+		service.refresh();
+
+		assertEquals(0, codes.getTable().getVersion());
+		assertEquals("M", codes.getDecodeCode("C"));
+	}
+
+	@Test
+	void testSaveIncrementsTheVersion() {
+		Mockito.when(service.codeTableVersionRepository.existsById(CATEGORY)).thenReturn(true);
+		givenDatabase(3, new CodeEntry(CATEGORY, "C", "X"));
+		service.init();
+
+		CodeEntry entry = new CodeEntry(CATEGORY, "Z", "Y");
+		Mockito.when(service.codeEntryRepository.save(entry)).thenReturn(entry);
+		Mockito.when(service.codeTableVersionRepository.increment(CATEGORY)).then(invocation -> {
+			givenDatabase(4, new CodeEntry(CATEGORY, "C", "X"), entry);
+			return 1;
+		});
+
+		service.save(entry);
+
+		assertEquals(4, codes.getTable().getVersion());
+		assertEquals("Y", codes.getDecodeCode("Z"));
+	}
+
+	private void givenDatabase(long version, CodeEntry... entries) {
+		databaseVersion = new CodeTableVersion(CATEGORY, version);
+		databaseEntries = List.of(entries);
+	}
+}
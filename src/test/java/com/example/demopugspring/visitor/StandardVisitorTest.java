@@ -0,0 +1,89 @@
+package com.example.demopugspring.visitor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.demopugspring.factory.ContextSingleton;
+
+import ca.uhn.hl7v2.HL7Exception;
+import ca.uhn.hl7v2.model.Message;
+import ca.uhn.hl7v2.model.Primitive;
+import ca.uhn.hl7v2.model.Type;
+
+class StandardVisitorTest {
+
+	private static final String ORU_R01 = "MSH|^~\\&|CWM|CCTV|GH|CCB|20201103160113||ORU^R01|7ba75e23-f933-4c7f-b5ed-2be0efccc588|P|2.4|||AL\r"
+			+ "PID||43417401|43417401^^^JMS^NS~684028^^^CUFC^NS|12586669^^^N_BI|CUNHA^LETICIA SOFIA^||19830224|F\r"
+			+ "ORC|SC|2060770|CCTV2020118074||CM\r"
+			+ "OBR||2060770|CCTV2020118074|62009903^ECO PELVICA\r"
+			+ "OBX|1|TX|904476||FIRST\r"
+			+ "ORC|SC|2060771|CCTV2020118075||CM\r"
+			+ "OBR||2060771|CCTV2020118075|62009904^ECO RENAL\r"
+			+ "OBX|1|TX|904477||SECOND\r";
+
+	@Test
+	void testCompiledPathIsShared() throws HL7Exception {
+		CompiledPath path = CompiledPath.compile("/PATIENT_RESULT/ORDER_OBSERVATION(#)/OBR-4-2");
+
+		assertSame(path, CompiledPath.compile("/PATIENT_RESULT/ORDER_OBSERVATION(#)/OBR-4-2"));
+		assertEquals(3, path.getDepth());
+		assertEquals(CompiledPath.ALL_REPETITIONS, path.getGroup(1).getRepetition());
+		assertEquals(4, path.getFieldNumber());
+		assertEquals(2, path.getComponentNumber());
+		assertEquals(1, path.getSubComponentNumber());
+	}
+
+	@Test
+	void testInvalidPath() {
+		assertThrows(HL7Exception.class, () -> CompiledPath.compile("PID(x)-3"));
+		assertThrows(HL7Exception.class, () -> CompiledPath.compile("PID-#x"));
+	}
+
+	@Test
+	void testWildcardGroupVisitsEveryRepetition() throws HL7Exception {
+		Message message = ContextSingleton.getInstance().getPipeParser().parse(ORU_R01);
+		StandardVisitor visitor = new StandardVisitor("/PATIENT_RESULT/ORDER_OBSERVATION(#)/OBR-4-2");
+
+		visitor.start(message);
+
+		assertEquals(List.of("ECO PELVICA", "ECO RENAL"), values(visitor.getVisitedTypes()));
+	}
+
+	@Test
+	void testVisitorIsReusable() throws HL7Exception {
+		Message message = ContextSingleton.getInstance().getPipeParser().parse(ORU_R01);
+		StandardVisitor visitor = new StandardVisitor("/PATIENT_RESULT/PATIENT/PID-3(#)-1");
+
+		visitor.start(message);
+		assertEquals(List.of("43417401", "684028"), values(visitor.getVisitedTypes()));
+
+		visitor.start(message);
+		assertEquals(List.of("43417401", "684028"), values(visitor.getVisitedTypes()));
+	}
+
+	@Test
+	void testMapperVisitorSetsEveryRepetition() throws HL7Exception {
+		Message message = ContextSingleton.getInstance().getPipeParser().parse(ORU_R01);
+		CompiledPath path = CompiledPath.compile("/PATIENT_RESULT/ORDER_OBSERVATION(#)/OBSERVATION/OBX-5");
+
+		new MapperVisitor(path, "MAPPED").start(message);
+
+		StandardVisitor visitor = new StandardVisitor(path);
+		visitor.start(message);
+		assertEquals(List.of("MAPPED", "MAPPED"), values(visitor.getVisitedTypes()));
+	}
+
+	private List<String> values(List<Type> types) {
+		List<String> values = new ArrayList<>();
+		for (Type type : types) {
+			values.add(((Primitive) type).getValue());
+		}
+		return values;
+	}
+}